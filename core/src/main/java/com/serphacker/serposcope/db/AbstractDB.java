@@ -7,7 +7,14 @@
  */
 package com.serphacker.serposcope.db;
 
+import com.google.inject.name.Named;
 import com.querydsl.sql.Configuration;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.StatementOptions;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import javax.inject.Inject;
 import javax.sql.DataSource;
 import org.slf4j.Logger;
@@ -18,12 +25,54 @@ public abstract class AbstractDB {
     
     protected final static Logger LOG = LoggerFactory.getLogger(AbstractDB.class);
     
-    @Inject
+    public final static int DEFAULT_MAX_ALLOWED_PACKET = 4194304;
+    
+    public final static String FETCH_SIZE = "serposcope.db.fetchSize";
+    public final static int DEFAULT_FETCH_SIZE = 64;
+    
+    /**
+     * connections of the unit of work open on the thread, if any
+     */
     protected DataSource ds;
     
+    private DataSource detachedDs;
+    
     @Inject
     protected Configuration dbTplConf;
+    
+    private volatile int maxAllowedPacket;
+    
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
+    @Inject
+    protected void setDataSource(DataSource dataSource){
+        this.detachedDs = dataSource;
+        this.ds = new UnitOfWorkDataSource(dataSource);
+    }
+    
+    @com.google.inject.Inject(optional = true)
+    protected void setFetchSize(@Named(FETCH_SIZE) int fetchSize){
+        this.fetchSize = fetchSize > 0 ? fetchSize : DEFAULT_FETCH_SIZE;
+    }
+    
+    /**
+     * Stream the rows of the query by fetch size instead of buffering the whole result set : MariaDB
+     * only streams when a fetch size is set. The connection must not run another query until the 
+     * cursor is closed, or the driver buffers the remaining rows.
+     */
+    protected <T> SQLQuery<T> streaming(SQLQuery<T> query){
+        query.setStatementOptions(StatementOptions.builder().setFetchSize(fetchSize).build());
+        return query;
+    }
+    
+    /**
+     * autocommit connection outside of the unit of work of the thread, for writes other threads must 
+     * see before the unit commits
+     */
+    protected Connection getDetachedConnection() throws SQLException {
+        return detachedDs.getConnection();
+    }
+    
     protected boolean isMySQL(){
         return !isH2();
     }
@@ -31,4 +80,36 @@ public abstract class AbstractDB {
     protected boolean isH2(){
         return dbTplConf.getTemplates().isNativeMerge();
     }
+    
+    protected int getMaxAllowedPacket(){
+        if(maxAllowedPacket == 0){
+            try(Connection con = ds.getConnection()){
+                return getMaxAllowedPacket(con);
+            } catch(SQLException ex){
+                LOG.error("SQL error", ex);
+                return DEFAULT_MAX_ALLOWED_PACKET;
+            }
+        }
+        return maxAllowedPacket;
+    }
+    
+    /**
+     * max_allowed_packet of the MySQL server, read once. H2 has no such limit and gets the MySQL default.
+     */
+    protected int getMaxAllowedPacket(Connection con){
+        if(maxAllowedPacket == 0){
+            int packet = DEFAULT_MAX_ALLOWED_PACKET;
+            if(isMySQL()){
+                try(Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery("SELECT @@max_allowed_packet")){
+                    if(rs.next()){
+                        packet = rs.getInt(1);
+                    }
+                } catch(SQLException ex){
+                    LOG.warn("can't read max_allowed_packet", ex);
+                }
+            }
+            maxAllowedPacket = packet;
+        }
+        return maxAllowedPacket;
+    }
 }
@@ -0,0 +1,53 @@
+/* 
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ * 
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db;
+
+import java.nio.ByteBuffer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+/**
+ * LZ4 compressed blob : decompressed length on 4 bytes followed by the compressed data
+ */
+public class LZ4Blob {
+    
+    final static LZ4Factory factory = LZ4Factory.fastestInstance();
+    final static LZ4Compressor compressor = factory.fastCompressor();
+    final static LZ4FastDecompressor decompressor = factory.fastDecompressor();
+    
+    public static byte[] compress(byte[] data){
+        if(data == null || data.length < 1){
+            return null;
+        }
+        
+        int decompressedLength = data.length;
+        int maxCompressedLength = compressor.maxCompressedLength(decompressedLength);
+        byte[] tmp = new byte[maxCompressedLength];
+        int compressedLength = compressor.compress(data, 0, decompressedLength, tmp, 0, maxCompressedLength);
+
+        byte[] compressed = new byte[4 + compressedLength];
+        ByteBuffer.wrap(compressed, 0, 4).putInt(decompressedLength);
+        System.arraycopy(tmp, 0, compressed, 4, compressedLength);
+        
+        return compressed;
+    }    
+    
+    public static byte[] decompress(byte[] compressed){
+        if(compressed == null || compressed.length < 5){
+            return null;
+        }
+        
+        int decompressedLength = ByteBuffer.wrap(compressed, 0, 4).getInt();
+        byte[] decompressed = new byte[decompressedLength];
+        decompressor.decompress(compressed, 4, decompressed, 0, decompressedLength);
+        
+        return decompressed;
+    }
+    
+}
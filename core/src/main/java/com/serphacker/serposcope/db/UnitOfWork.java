@@ -0,0 +1,205 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connection and transaction bound to the current thread. Until {@link #close()}, the DAO calls of the
+ * thread share this connection with autocommit off and their writes are committed together by
+ * {@link #commit()}, which can be called several times to commit by batches. Work not committed when
+ * the unit is closed is rolled back.
+ *
+ * A unit begun while another one is open on the thread joins it : its commit and close do nothing,
+ * the outer unit decides. DAO methods log their SQL errors and don't throw, the unit records that a
+ * statement failed and its next commit rolls back instead and returns false.
+ *
+ * <pre>
+ * try(UnitOfWork uow = baseDB.uow.begin()){
+ *     googleDB.serp.insert(serp);
+ *     googleDB.rank.insert(ranks);
+ *     uow.commit();
+ * }
+ * </pre>
+ */
+public class UnitOfWork implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(UnitOfWork.class);
+
+    private final static ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    final DataSource ds;
+    final Connection con;
+    final Connection shared;
+    final AtomicBoolean failed;
+    final boolean joined;
+
+    private UnitOfWork(DataSource ds, Connection con, Connection shared, AtomicBoolean failed, boolean joined) {
+        this.ds = ds;
+        this.con = con;
+        this.shared = shared;
+        this.failed = failed;
+        this.joined = joined;
+    }
+
+    /**
+     * @return a new unit, the open unit of the thread joined, or a detached unit if no connection
+     * could be obtained (DAO calls then use their own connections)
+     */
+    public static UnitOfWork begin(DataSource ds){
+        UnitOfWork current = CURRENT.get();
+        if(current != null){
+            return new UnitOfWork(current.ds, current.con, current.shared, current.failed, true);
+        }
+
+        Connection con = null;
+        try {
+            con = ds.getConnection();
+            con.setAutoCommit(false);
+        } catch(SQLException ex){
+            LOG.error("can't begin unit of work", ex);
+            close(con);
+            return new UnitOfWork(ds, null, null, new AtomicBoolean(), true);
+        }
+
+        AtomicBoolean failed = new AtomicBoolean();
+        UnitOfWork uow = new UnitOfWork(ds, con, nonClosing(con, failed), failed, false);
+        CURRENT.set(uow);
+        return uow;
+    }
+
+    /**
+     * @return connection of the unit of work open on the thread for this data source, null if none
+     */
+    static Connection currentConnection(DataSource ds){
+        UnitOfWork current = CURRENT.get();
+        if(current == null || current.ds != ds){
+            return null;
+        }
+        return current.shared;
+    }
+
+    /**
+     * commit the work done so far, the unit stays open. If a statement failed since the last commit,
+     * the work is rolled back instead.
+     * @return false if the work was rolled back or the commit failed, always true for a joined unit
+     */
+    public boolean commit(){
+        if(joined){
+            return true;
+        }
+        if(failed.getAndSet(false)){
+            LOG.warn("statement failed in unit of work, rolling back");
+            rollback();
+            return false;
+        }
+        try {
+            con.commit();
+            return true;
+        } catch(SQLException ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    public void rollback(){
+        if(joined){
+            return;
+        }
+        failed.set(false);
+        try {
+            con.rollback();
+        } catch(SQLException ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+    /**
+     * @return true if a statement failed since the last commit or rollback
+     */
+    public boolean isFailed(){
+        return failed.get();
+    }
+
+    @Override
+    public void close() {
+        if(joined){
+            return;
+        }
+        CURRENT.remove();
+        try {
+            con.rollback();
+            con.setAutoCommit(true);
+        } catch(SQLException ex){
+            LOG.error("SQL error", ex);
+        } finally {
+            close(con);
+        }
+    }
+
+    protected static void close(Connection con){
+        if(con == null){
+            return;
+        }
+        try {
+            con.close();
+        } catch(SQLException ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+    /**
+     * the DAOs close their connection after each call, the connection of the unit must survive them.
+     * Statements are wrapped to record their SQL errors, the DAOs swallow them.
+     */
+    protected static Connection nonClosing(Connection con, AtomicBoolean failed){
+        return (Connection) Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                if("close".equals(method.getName())){
+                    return null;
+                }
+                Object result = invoke(con, method, args, failed);
+                if(result instanceof Statement){
+                    return failureRecording((Statement) result, method.getReturnType(), failed);
+                }
+                return result;
+            }
+        );
+    }
+
+    protected static Object failureRecording(Statement statement, Class<?> type, AtomicBoolean failed){
+        return Proxy.newProxyInstance(
+            Connection.class.getClassLoader(),
+            new Class<?>[]{type},
+            (proxy, method, args) -> invoke(statement, method, args, failed)
+        );
+    }
+
+    protected static Object invoke(Object target, Method method, Object[] args, AtomicBoolean failed) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch(InvocationTargetException ex){
+            if(ex.getCause() instanceof SQLException){
+                failed.set(true);
+            }
+            throw ex.getCause();
+        }
+    }
+
+}
@@ -34,4 +34,10 @@ public class BaseDB {
     @Inject
     public ProxyDB proxy;
     
+    @Inject
+    public UnitOfWorkDB uow;
+    
+    @Inject
+    public PartitionDB partition;
+    
 }
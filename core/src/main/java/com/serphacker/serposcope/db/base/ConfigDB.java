@@ -27,6 +27,9 @@ public class ConfigDB extends AbstractDB {
     
 //    public final static String APP_CRON_ENABLED = "app.cronenabled";
     public final static String APP_CRON_TIME = "app.crontime";
+    public final static String APP_CRON_SPREAD = "app.cronspread";
+    public final static String APP_CRON_SCHEDULES = "app.cronschedules";
+    public final static String APP_CRON_JITTER = "app.cronjitter";
     
     public final static String APP_DBC_USER = "app.dbc.user";
     public final static String APP_DBC_PASS = "app.dbc.pass";
@@ -45,6 +48,8 @@ public class ConfigDB extends AbstractDB {
     public final static String APP_DISPLAY_GOOGLE_SEARCH = "app.display.google.search";
     
     public final static String APP_PRUNE_RUNS = "app.prune.runs";
+    public final static String APP_PRUNE_DAYS = "app.prune.days";
+    public final static String APP_PRUNE_DB_SIZE = "app.prune.dbsize";
     
     QConfig t_cfg = QConfig.config;
     
@@ -133,6 +138,9 @@ public class ConfigDB extends AbstractDB {
         Config config = new Config();
 
         config.setCronTime(get(APP_CRON_TIME, null));
+        config.setCronSpreadMinutes(getInt(APP_CRON_SPREAD, 0));
+        config.setCronSchedules(get(APP_CRON_SCHEDULES, null));
+        config.setCronJitterMinutes(getInt(APP_CRON_JITTER, 0));
         
         config.setDbcUser(get(APP_DBC_USER,null));
         config.setDbcPass(get(APP_DBC_PASS,null));
@@ -151,12 +159,17 @@ public class ConfigDB extends AbstractDB {
         config.setDisplayGoogleTarget(get(APP_DISPLAY_GOOGLE_TARGET, Config.DEFAULT_DISPLAY_GOOGLE_TARGET));
         
         config.setPruneRuns(getInt(APP_PRUNE_RUNS, Config.DEFAULT_PRUNE_RUNS));
+        config.setPruneDays(getInt(APP_PRUNE_DAYS, 0));
+        config.setPruneDbSizeMB(getInt(APP_PRUNE_DB_SIZE, 0));
         
         return config;
     }
     
     public void updateConfig(Config config){
         update(APP_CRON_TIME, config.getCronTime() == null ? null : config.getCronTime().toString());
+        updateInt(APP_CRON_SPREAD, config.getCronSpreadMinutes());
+        update(APP_CRON_SCHEDULES, config.getCronSchedules());
+        updateInt(APP_CRON_JITTER, config.getCronJitterMinutes());
         
         update(APP_DBC_USER, config.getDbcUser());
         update(APP_DBC_PASS, config.getDbcPass());
@@ -175,6 +188,8 @@ public class ConfigDB extends AbstractDB {
         update(APP_DISPLAY_GOOGLE_TARGET, config.getDisplayGoogleTarget());
         
         updateInt(APP_PRUNE_RUNS, config.getPruneRuns());
+        updateInt(APP_PRUNE_DAYS, config.getPruneDays());
+        updateInt(APP_PRUNE_DB_SIZE, config.getPruneDbSizeMB());
     }
     
 }
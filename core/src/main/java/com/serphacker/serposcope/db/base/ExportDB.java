@@ -65,6 +65,7 @@ public class ExportDB extends AbstractDB {
                 }
             }
         }
+        migrationDB.clearCaches();
         migrationDB.migrateIfNeeded();
         return true;
     }
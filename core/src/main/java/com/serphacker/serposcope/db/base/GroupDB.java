@@ -20,7 +20,10 @@ import com.serphacker.serposcope.models.base.User;
 import com.serphacker.serposcope.querybuilder.QGroup;
 import com.serphacker.serposcope.querybuilder.QUserGroup;
 import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 @Singleton
@@ -37,6 +40,8 @@ public class GroupDB extends AbstractDB {
             Integer key = new SQLInsertClause(con, dbTplConf, t_group)
                 .set(t_group.moduleId, group.getModule().ordinal())
                 .set(t_group.name, group.getName())
+                .set(t_group.priority, group.getPriority())
+                .set(t_group.schedule, group.getSchedule())
                 .executeWithKey(t_group.id);
             
             if(key != null){
@@ -82,6 +87,8 @@ public class GroupDB extends AbstractDB {
         try(Connection con = ds.getConnection()){
             updated = new SQLUpdateClause(con, dbTplConf, t_group)
                 .set(t_group.name, group.getName())
+                .set(t_group.priority, group.getPriority())
+                .set(t_group.schedule, group.getSchedule())
                 .where(t_group.id.eq(group.getId()))
                 .execute() == 1;
         }catch(Exception ex){
@@ -91,6 +98,24 @@ public class GroupDB extends AbstractDB {
         return updated;
     }    
     
+    /**
+     * the fire of the schedules was handled for the groups
+     */
+    public boolean updateScheduled(Collection<Integer> groupIds, LocalDateTime scheduled){
+        boolean updated = false;
+        
+        try(Connection con = ds.getConnection()){
+            updated = new SQLUpdateClause(con, dbTplConf, t_group)
+                .set(t_group.scheduled, Timestamp.valueOf(scheduled))
+                .where(t_group.id.in(groupIds))
+                .execute() > 0;
+        }catch(Exception ex){
+            LOG.error("SQLError ex", ex);
+        }
+        
+        return updated;
+    }
+    
     public List<Group> list(){
         return list(null);
     }
@@ -171,11 +196,16 @@ public class GroupDB extends AbstractDB {
             return null;
         }
         
-        return new Group(
+        Group group = new Group(
             tuple.get(t_group.id), 
             Group.Module.values()[tuple.get(t_group.moduleId)], 
             tuple.get(t_group.name)
         );
+        group.setPriority(tuple.get(t_group.priority));
+        group.setSchedule(tuple.get(t_group.schedule));
+        Timestamp scheduled = tuple.get(t_group.scheduled);
+        group.setScheduled(scheduled == null ? null : scheduled.toLocalDateTime());
+        return group;
     }
     
 }
@@ -10,11 +10,23 @@ package com.serphacker.serposcope.db.base;
 import com.google.common.io.ByteStreams;
 import com.google.inject.Singleton;
 import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.db.LZ4Blob;
+import com.serphacker.serposcope.db.google.GoogleSerpCodecDB;
+import com.serphacker.serposcope.db.google.GoogleSerpDB;
+import com.serphacker.serposcope.db.google.GoogleUrlDB;
+import com.serphacker.serposcope.models.google.GoogleSerp;
 import com.serphacker.serposcope.scraper.google.GoogleCountryCode;
 import java.io.InputStream;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import javax.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,7 +35,7 @@ import org.slf4j.LoggerFactory;
 @Singleton
 public class MigrationDB extends AbstractDB {
     
-    public final static int LAST_DB_VERSION = 7;
+    public final static int LAST_DB_VERSION = 19;
     
     public final static String[] DB_SCHEMA_FILES = new String[]{
         "/db/00-base.h2.sql",
@@ -32,12 +44,22 @@ public class MigrationDB extends AbstractDB {
     
     public final static String[] TABLES = new String[]{
         "CONFIG", "USER", "GROUP", "EVENT", "USER_GROUP", "RUN", "PROXY",
-        "GOOGLE_SEARCH", "GOOGLE_SERP", "GOOGLE_SEARCH_GROUP", "GOOGLE_TARGET", "GOOGLE_RANK", "GOOGLE_RANK_BEST", "GOOGLE_TARGET_SUMMARY"
+        "GOOGLE_SEARCH", "GOOGLE_SERP", "GOOGLE_SEARCH_GROUP", "GOOGLE_TARGET", "GOOGLE_RANK", "GOOGLE_RANK_BEST", "GOOGLE_TARGET_SUMMARY",
+        "GOOGLE_URL", "GOOGLE_SERP_DICTIONARY"
     };    
     
     @Inject
     ConfigDB config;
     
+    @Inject
+    GoogleUrlDB urlDB;
+    
+    @Inject
+    GoogleSerpDB serpDB;
+    
+    @Inject
+    GoogleSerpCodecDB serpCodecDB;
+    
     private static final Logger LOG = LoggerFactory.getLogger(MigrationDB.class);
     
     public boolean isDbCreated() throws Exception {
@@ -72,6 +94,16 @@ public class MigrationDB extends AbstractDB {
                 stmt.executeUpdate(new String(ByteStreams.toByteArray(MigrationDB.class.getResourceAsStream(resource))));
             }
         }
+        clearCaches();
+    }
+    
+    /**
+     * drop what the DAOs cached from the previous content of the database, after a recreation or an import
+     */
+    public void clearCaches(){
+        urlDB.clearCache();
+        serpCodecDB.clearCache();
+        serpDB.clearCache();
     }
     
     public void migrateIfNeeded() throws Exception {
@@ -108,6 +140,12 @@ public class MigrationDB extends AbstractDB {
                         case 6:
                             upgradeFromV6(stmt);
                             break;
+                        case 8:
+                            upgradeFromV8(stmt);
+                            break;
+                        case 17:
+                            upgradeFromV17(stmt);
+                            break;
                     }
                 }catch(Exception ex){
                     con.rollback();
@@ -194,6 +232,211 @@ public class MigrationDB extends AbstractDB {
 
         stmt.executeUpdate("alter table `GOOGLE_SEARCH` drop column `tld`;");
         stmt.executeUpdate("insert into `CONFIG` values ('app.dbversion','7') on duplicate key update `value` = '7';");
-    }    
+    }
+    
+    /**
+     * URL dictionary : GOOGLE_RANK and GOOGLE_RANK_BEST reference url ids, SERP blobs are re-serialized with url ids.
+     * Data is converted run by run and each chunk is committed, if the migration is interrupted it restarts 
+     * where it stopped.
+     */
+    protected void upgradeFromV8(Statement stmt) throws Exception {
+        if(!hasTable("GOOGLE_URL")){
+            stmt.executeUpdate(
+                "create table `GOOGLE_URL` (" +
+                "    id int primary key auto_increment," +
+                "    hash bigint not null," +
+                "    url varchar(2048) not null" +
+                ") engine = innodb default charset=utf8 /*! collate utf8_bin */;"
+            );
+            stmt.executeUpdate("create index GOOGLE_URL_HASH on `GOOGLE_URL`(hash);");
+        }
+        urlDB.clearCache();
+        
+        if(hasColumn(stmt, "GOOGLE_RANK", "url")){
+            if(!hasColumn(stmt, "GOOGLE_RANK", "url_id")){
+                stmt.executeUpdate("alter table `GOOGLE_RANK` add column `url_id` int;");
+            }
+            migrateUrlIds("GOOGLE_RANK", "run_id");
+            stmt.executeUpdate("alter table `GOOGLE_RANK` drop column `url`;");
+        }
+        
+        if(hasColumn(stmt, "GOOGLE_RANK_BEST", "url")){
+            if(!hasColumn(stmt, "GOOGLE_RANK_BEST", "url_id")){
+                stmt.executeUpdate("alter table `GOOGLE_RANK_BEST` add column `url_id` int;");
+            }
+            migrateUrlIds("GOOGLE_RANK_BEST", "group_id");
+            stmt.executeUpdate("alter table `GOOGLE_RANK_BEST` drop column `url`;");
+        }
+        
+        migrateSerpUrlIds();
+        
+        stmt.executeUpdate("insert into `CONFIG` values ('app.dbversion','9') on duplicate key update `value` = '9';");
+    }
+    
+    /**
+     * Fill the url_id column of the table, one chunk per distinct value of chunkColumn. The ids of the urls 
+     * of a chunk are written to a mapping table and the chunk is updated from it in a single statement.
+     */
+    protected void migrateUrlIds(String table, String chunkColumn) throws Exception {
+        List<Integer> chunks = new ArrayList<>();
+        try(Connection con = ds.getConnection(); Statement stmt = con.createStatement()){
+            ResultSet rs = stmt.executeQuery("select distinct `" + chunkColumn + "` from `" + table + "` where `url_id` is null;");
+            while(rs.next()){
+                chunks.add(rs.getInt(1));
+            }
+            
+            stmt.executeUpdate("drop table if exists `MIGRATION_URL`;");
+            stmt.executeUpdate(
+                "create table `MIGRATION_URL` (" +
+                "    url varchar(2048) not null," +
+                "    id int not null" +
+                ") engine = innodb default charset=utf8 /*! collate utf8_bin */;"
+            );
+        }
+        
+        String updateSql;
+        if(isMySQL()){
+            updateSql = "update `" + table + "` t join `MIGRATION_URL` m on m.url = t.url set t.url_id = m.id " +
+                "where t.`" + chunkColumn + "` = ? and t.url_id is null;";
+        } else {
+            // no update join on H2
+            updateSql = "update `" + table + "` t set url_id = (select m.id from `MIGRATION_URL` m where m.url = t.url) " +
+                "where t.`" + chunkColumn + "` = ? and t.url is not null and t.url_id is null;";
+        }
+        
+        try(
+            Connection con = ds.getConnection();
+            Statement stmt = con.createStatement();
+            PreparedStatement select = con.prepareStatement(
+                "select distinct `url` from `" + table + "` where `" + chunkColumn + "` = ? and `url` is not null and `url_id` is null;");
+            PreparedStatement insert = con.prepareStatement("insert into `MIGRATION_URL` values (?, ?);");
+            PreparedStatement update = con.prepareStatement(updateSql);
+        ){
+            for (int i = 0; i < chunks.size(); i++) {
+                int chunk = chunks.get(i);
+                
+                List<String> urls = new ArrayList<>();
+                select.setInt(1, chunk);
+                try(ResultSet rs = select.executeQuery()){
+                    while(rs.next()){
+                        urls.add(rs.getString(1));
+                    }
+                }
+                
+                Map<String,Integer> ids = urlDB.getIds(urls);
+                stmt.executeUpdate("delete from `MIGRATION_URL`;");
+                for (String url : urls) {
+                    Integer id = ids.get(url);
+                    if(id == null){
+                        throw new IllegalStateException("can't assign an id to url " + url);
+                    }
+                    insert.setString(1, url);
+                    insert.setInt(2, id);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+                
+                update.setInt(1, chunk);
+                update.executeUpdate();
+                
+                LOG.info("{} urls : {}/{} {} converted", table, i+1, chunks.size(), chunkColumn);
+            }
+            
+            stmt.executeUpdate("drop table `MIGRATION_URL`;");
+        }
+    }
+    
+    /**
+     * re-serialize the SERP blobs still written with urls, one chunk per run
+     */
+    protected void migrateSerpUrlIds() throws Exception {
+        List<Integer> runs = new ArrayList<>();
+        try(Connection con = ds.getConnection(); Statement stmt = con.createStatement()){
+            ResultSet rs = stmt.executeQuery("select distinct `run_id` from `GOOGLE_SERP`;");
+            while(rs.next()){
+                runs.add(rs.getInt(1));
+            }
+        }
+        
+        try(
+            Connection con = ds.getConnection();
+            PreparedStatement select = con.prepareStatement(
+                "select `google_search_id`, `run_day`, `serp` from `GOOGLE_SERP` where `run_id` = ?;");
+            PreparedStatement update = con.prepareStatement(
+                "update `GOOGLE_SERP` set `serp` = ? where `run_id` = ? and `google_search_id` = ?;");
+        ){
+            for (int i = 0; i < runs.size(); i++) {
+                int runId = runs.get(i);
+                boolean updated = false;
+                
+                select.setInt(1, runId);
+                try(ResultSet rs = select.executeQuery()){
+                    while(rs.next()){
+                        byte[] compressed = rs.getBytes(3);
+                        if(compressed == null){
+                            continue;
+                        }
+                        byte[] data = LZ4Blob.decompress(compressed);
+                        if(data == null || data.length == 0 || data[0] != GoogleSerp.SERIAL_VERSION_URLS){
+                            continue;
+                        }
+                        
+                        Timestamp runDay = rs.getTimestamp(2);
+                        GoogleSerp serp = new GoogleSerp(runId, rs.getInt(1), runDay == null ? null : runDay.toLocalDateTime());
+                        serp.setSerializedEntries(data);
+                        serp.setUrlIds(urlDB.getIds(serp.getUrlsWithoutId()));
+                        
+                        byte[] serialized = serp.getSerializedEntries();
+                        if(serialized[0] != GoogleSerp.SERIAL_VERSION_URL_IDS){
+                            continue;
+                        }
+                        
+                        update.setBytes(1, LZ4Blob.compress(serialized));
+                        update.setInt(2, runId);
+                        update.setInt(3, serp.getGoogleSearchId());
+                        update.addBatch();
+                        updated = true;
+                    }
+                }
+                if(updated){
+                    update.executeBatch();
+                }
+                
+                LOG.info("GOOGLE_SERP urls : {}/{} runs converted", i+1, runs.size());
+            }
+        }
+    }
+
+    /**
+     * the unique index on hash and url created by the patch replaces the index on hash
+     */
+    protected void upgradeFromV17(Statement stmt) throws Exception {
+        if(isMySQL()){
+            stmt.executeUpdate("alter table `GOOGLE_URL` drop index GOOGLE_URL_HASH;");
+        } else {
+            stmt.executeUpdate("drop index if exists GOOGLE_URL_HASH;");
+        }
+    }
+
+    protected boolean hasTable(String table){
+        try(Connection con = ds.getConnection(); Statement stmt = con.createStatement()){
+            stmt.executeQuery("select 1 from `" + table + "` where 1 = 0;").close();
+            return true;
+        } catch(SQLException ex){
+            return false;
+        }
+    }
+    
+    protected boolean hasColumn(Statement stmt, String table, String column) throws SQLException {
+        try(ResultSet rs = stmt.executeQuery("select * from `" + table + "` where 1 = 0;")){
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if(column.equalsIgnoreCase(meta.getColumnName(i))){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
     
-}
+}
\ No newline at end of file
@@ -0,0 +1,384 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.base;
+
+import com.google.inject.Singleton;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.querybuilder.QRun;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional monthly layout of GOOGLE_RANK and GOOGLE_SERP on MySQL/MariaDB : the tables are partitioned
+ * by RANGE(run_id), one partition per month of runs named pYYYYMM, followed by p_future. Pruning drops
+ * whole partitions instead of deleting rows and queries by run only read the partitions of their runs.
+ *
+ * The ids of the runs of a month are not known in advance, {@link #prepare(LocalDate)} creates the
+ * partitions of the current and next months ahead of their runs from the number of runs of the last
+ * month, splitting p_future while it's still empty. Partitions are then roughly monthly and
+ * {@link #dropBefore(int)} checks the runs each one really holds.
+ *
+ * Partitioned InnoDB tables can't have foreign keys, the ones of the two tables are dropped by
+ * {@link #enable()} and restored by {@link #disable()}.
+ *
+ * H2 has no partitions, every method is a no-op there and pruning deletes rows.
+ */
+@Singleton
+public class PartitionDB extends AbstractDB {
+
+    public final static List<String> TABLES = Arrays.asList("GOOGLE_RANK", "GOOGLE_SERP");
+    public final static String FUTURE = "p_future";
+
+    final static DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+
+    // foreign keys of the tables when they are not partitioned, see 01-google.h2.sql
+    final static Map<String,List<String>> FOREIGN_KEYS = new LinkedHashMap<>();
+    static {
+        FOREIGN_KEYS.put("GOOGLE_RANK", Arrays.asList(
+            "run_id:RUN", "group_id:GROUP", "google_target_id:GOOGLE_TARGET", "google_search_id:GOOGLE_SEARCH"
+        ));
+        FOREIGN_KEYS.put("GOOGLE_SERP", Arrays.asList(
+            "google_search_id:GOOGLE_SEARCH"
+        ));
+    }
+
+    QRun t_run = QRun.run;
+
+    private volatile Boolean partitioned;
+
+    public boolean isSupported(){
+        return isMySQL();
+    }
+
+    public boolean isPartitioned(){
+        if(!isSupported()){
+            return false;
+        }
+        if(partitioned == null){
+            try(Connection con = getDetachedConnection()){
+                partitioned = !listPartitions(con, TABLES.get(0)).isEmpty();
+            } catch(Exception ex){
+                LOG.error("SQL error", ex);
+                return false;
+            }
+        }
+        return partitioned;
+    }
+
+    /**
+     * partition the tables by month of the existing runs
+     */
+    public boolean enable(){
+        if(!isSupported()){
+            return false;
+        }
+        try(Connection con = getDetachedConnection()){
+            Map<String,Integer> bounds = monthBounds(con);
+            for (String table : TABLES) {
+                if(!listPartitions(con, table).isEmpty()){
+                    continue;
+                }
+                dropForeignKeys(con, table);
+
+                LOG.info("partitioning {} in {} months", table, bounds.size() + 1);
+                execute(con, partitionBy(table, bounds));
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+            return false;
+        } finally {
+            partitioned = null;
+        }
+        // the current month, in p_future until now
+        prepare(LocalDate.now());
+        return true;
+    }
+
+    /**
+     * merge back the partitions and restore the foreign keys, the rows of deleted runs, groups,
+     * targets or searches left while the tables had no foreign keys are deleted first
+     */
+    public boolean disable(){
+        if(!isSupported()){
+            return false;
+        }
+        try(Connection con = getDetachedConnection()){
+            for (String table : TABLES) {
+                if(!listPartitions(con, table).isEmpty()){
+                    execute(con, "ALTER TABLE `" + table + "` REMOVE PARTITIONING");
+                }
+                if(listForeignKeys(con, table).isEmpty()){
+                    for (String sql : deleteOrphans(table)) {
+                        execute(con, sql);
+                    }
+                    LOG.info("restoring the foreign keys of {}", table);
+                    execute(con, addForeignKeys(table));
+                }
+            }
+            return true;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        } finally {
+            partitioned = null;
+        }
+        return false;
+    }
+
+    /**
+     * Create the partitions of the month of the day and of the next month if they don't exist yet,
+     * called by the cron while no run is running. Each one is sized for as many runs as the last
+     * month had, the split of p_future is immediate as long as the runs didn't go past the last one.
+     */
+    public void prepare(LocalDate day){
+        if(!isPartitioned()){
+            return;
+        }
+        try(Connection con = getDetachedConnection()){
+            Integer maxRunId = new SQLQuery<>(con, dbTplConf).select(t_run.id.max()).from(t_run).fetchFirst();
+            long monthRuns = new SQLQuery<>(con, dbTplConf)
+                .select(t_run.id)
+                .from(t_run)
+                .where(t_run.day.goe(Date.valueOf(day.minusMonths(1))))
+                .fetchCount();
+            int nextRunId = maxRunId == null ? 1 : maxRunId + 1;
+
+            YearMonth month = YearMonth.from(day);
+            for (String table : TABLES) {
+                Map<String,Integer> partitions = listPartitions(con, table);
+                Map<String,Integer> added = aheadBounds(partitions, Arrays.asList(month, month.plusMonths(1)),
+                    nextRunId, (int) monthRuns);
+                if(added.isEmpty()){
+                    continue;
+                }
+                LOG.info("creating partitions {} of {}", added, table);
+                execute(con, splitFuture(table, added));
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+    /**
+     * drop the partitions holding only runs before firstKeptRunId, the empty partitions created ahead
+     * of their runs are kept
+     * @return number of partitions dropped
+     */
+    public int dropBefore(int firstKeptRunId){
+        if(!isPartitioned()){
+            return 0;
+        }
+        int dropped = 0;
+        try(Connection con = getDetachedConnection()){
+            for (String table : TABLES) {
+                Map<String,Integer> partitions = listPartitions(con, table);
+                Map<String,Integer> maxRunIds = new LinkedHashMap<>();
+                for (String name : partitions.keySet()) {
+                    maxRunIds.put(name, getMaxRunId(con, table, name));
+                }
+                List<String> names = droppable(partitions, maxRunIds, firstKeptRunId);
+                if(!names.isEmpty()){
+                    LOG.info("dropping partitions {} of {}", names, table);
+                    execute(con, "ALTER TABLE `" + table + "` DROP PARTITION " + String.join(", ", names));
+                    dropped += names.size();
+                }
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return dropped;
+    }
+
+    /**
+     * @param partitions partition name to exclusive upper run id, in order
+     * @param months months which must have a partition
+     * @param nextRunId id of the next run
+     * @param monthRuns runs of the last month
+     * @return partitions to create before p_future with their bounds
+     */
+    static Map<String,Integer> aheadBounds(Map<String,Integer> partitions, List<YearMonth> months,
+        int nextRunId, int monthRuns) {
+        Map<String,Integer> added = new LinkedHashMap<>();
+        int bound = nextRunId;
+        for (Integer partitionBound : partitions.values()) {
+            if(partitionBound != null){
+                bound = Math.max(bound, partitionBound);
+            }
+        }
+        for (YearMonth month : months) {
+            String name = PARTITION_NAME.format(month);
+            if(partitions.containsKey(name)){
+                continue;
+            }
+            bound += Math.max(1, monthRuns);
+            added.put(name, bound);
+        }
+        return added;
+    }
+
+    /**
+     * @param partitions partition name to exclusive upper run id, MAXVALUE partition mapped to null
+     * @param maxRunIds partition name to its greatest run id, null if empty
+     * @return partitions whose runs are all before firstKeptRunId
+     */
+    static List<String> droppable(Map<String,Integer> partitions, Map<String,Integer> maxRunIds, int firstKeptRunId) {
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Integer> partition : partitions.entrySet()) {
+            if(partition.getValue() == null){
+                continue;
+            }
+            Integer maxRunId = maxRunIds.get(partition.getKey());
+            if(maxRunId == null ? partition.getValue() <= firstKeptRunId : maxRunId < firstKeptRunId){
+                names.add(partition.getKey());
+            }
+        }
+        return names;
+    }
+
+    static String partitionBy(String table, Map<String,Integer> bounds) {
+        StringBuilder sql = new StringBuilder("ALTER TABLE `").append(table).append("` PARTITION BY RANGE (run_id) (");
+        for (Map.Entry<String, Integer> bound : bounds.entrySet()) {
+            sql.append("PARTITION ").append(bound.getKey()).append(" VALUES LESS THAN (").append(bound.getValue()).append("), ");
+        }
+        sql.append("PARTITION ").append(FUTURE).append(" VALUES LESS THAN MAXVALUE)");
+        return sql.toString();
+    }
+
+    static String splitFuture(String table, Map<String,Integer> bounds) {
+        StringBuilder sql = new StringBuilder("ALTER TABLE `").append(table).append("` REORGANIZE PARTITION ")
+            .append(FUTURE).append(" INTO (");
+        for (Map.Entry<String, Integer> bound : bounds.entrySet()) {
+            sql.append("PARTITION ").append(bound.getKey()).append(" VALUES LESS THAN (").append(bound.getValue()).append("), ");
+        }
+        sql.append("PARTITION ").append(FUTURE).append(" VALUES LESS THAN MAXVALUE)");
+        return sql.toString();
+    }
+
+    static String addForeignKeys(String table) {
+        List<String> clauses = new ArrayList<>();
+        for (String foreignKey : FOREIGN_KEYS.get(table)) {
+            String[] columnTable = foreignKey.split(":");
+            clauses.add("ADD FOREIGN KEY (" + columnTable[0] + ") REFERENCES `" + columnTable[1] + "`(id)");
+        }
+        return "ALTER TABLE `" + table + "` " + String.join(", ", clauses);
+    }
+
+    static List<String> deleteOrphans(String table) {
+        List<String> deletes = new ArrayList<>();
+        for (String foreignKey : FOREIGN_KEYS.get(table)) {
+            String[] columnTable = foreignKey.split(":");
+            deletes.add("DELETE FROM `" + table + "` WHERE " + columnTable[0] + " IS NOT NULL AND " + columnTable[0] +
+                " NOT IN (SELECT id FROM `" + columnTable[1] + "`)");
+        }
+        return deletes;
+    }
+
+    protected Integer getMaxRunId(Connection con, String table, String partition) throws SQLException {
+        try(
+            Statement stmt = con.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT MAX(run_id) FROM `" + table + "` PARTITION (" + partition + ")")
+        ){
+            if(rs.next()){
+                int maxRunId = rs.getInt(1);
+                return rs.wasNull() ? null : maxRunId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return partition name to exclusive upper run id, MAXVALUE partition mapped to null
+     */
+    protected Map<String,Integer> listPartitions(Connection con, String table) throws SQLException {
+        Map<String,Integer> partitions = new LinkedHashMap<>();
+        try(PreparedStatement stmt = con.prepareStatement(
+            "SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND UPPER(TABLE_NAME) = ? AND PARTITION_NAME IS NOT NULL " +
+            "ORDER BY PARTITION_ORDINAL_POSITION"
+        )){
+            stmt.setString(1, table);
+            try(ResultSet rs = stmt.executeQuery()){
+                while(rs.next()){
+                    String description = rs.getString(2);
+                    partitions.put(rs.getString(1), "MAXVALUE".equalsIgnoreCase(description) ? null : Integer.valueOf(description));
+                }
+            }
+        }
+        return partitions;
+    }
+
+    protected List<String> listForeignKeys(Connection con, String table) throws SQLException {
+        List<String> constraints = new ArrayList<>();
+        try(PreparedStatement stmt = con.prepareStatement(
+            "SELECT CONSTRAINT_NAME FROM information_schema.TABLE_CONSTRAINTS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND UPPER(TABLE_NAME) = ? AND CONSTRAINT_TYPE = 'FOREIGN KEY'"
+        )){
+            stmt.setString(1, table);
+            try(ResultSet rs = stmt.executeQuery()){
+                while(rs.next()){
+                    constraints.add(rs.getString(1));
+                }
+            }
+        }
+        return constraints;
+    }
+
+    protected void dropForeignKeys(Connection con, String table) throws SQLException {
+        for (String constraint : listForeignKeys(con, table)) {
+            execute(con, "ALTER TABLE `" + table + "` DROP FOREIGN KEY `" + constraint + "`");
+        }
+    }
+
+    /**
+     * @return partition name of each closed month to the id of the first run of the next month
+     */
+    protected Map<String,Integer> monthBounds(Connection con){
+        Map<String,Integer> bounds = new LinkedHashMap<>();
+        List<Tuple> runs = new SQLQuery<>(con, dbTplConf)
+            .select(t_run.id, t_run.day)
+            .from(t_run)
+            .orderBy(t_run.id.asc())
+            .fetch();
+
+        YearMonth month = null;
+        for (Tuple run : runs) {
+            Date day = run.get(t_run.day);
+            if(day == null){
+                continue;
+            }
+            YearMonth runMonth = YearMonth.from(day.toLocalDate());
+            if(month != null && month.isBefore(runMonth)){
+                bounds.putIfAbsent(PARTITION_NAME.format(month), run.get(t_run.id));
+            }
+            if(month == null || month.isBefore(runMonth)){
+                month = runMonth;
+            }
+        }
+        return bounds;
+    }
+
+    protected void execute(Connection con, String sql) throws SQLException {
+        try(Statement stmt = con.createStatement()){
+            stmt.execute(sql);
+        }
+    }
+
+}
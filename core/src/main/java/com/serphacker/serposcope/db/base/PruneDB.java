@@ -8,15 +8,36 @@
 
 package com.serphacker.serposcope.db.base;
 
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLExpressions;
 import com.querydsl.sql.SQLQuery;
 import com.querydsl.sql.dml.SQLDeleteClause;
 import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.db.UnitOfWork;
+import com.serphacker.serposcope.db.google.GoogleRunQueueDB;
+import com.serphacker.serposcope.db.google.GoogleSerpArchive;
+import com.serphacker.serposcope.db.google.GoogleSerpDB;
 import com.serphacker.serposcope.querybuilder.QGoogleRank;
+import com.serphacker.serposcope.querybuilder.QGoogleRankBest;
+import com.serphacker.serposcope.querybuilder.QGoogleSearchGroup;
 import com.serphacker.serposcope.querybuilder.QGoogleSerp;
+import com.serphacker.serposcope.querybuilder.QGoogleTarget;
 import com.serphacker.serposcope.querybuilder.QGoogleTargetSummary;
+import com.serphacker.serposcope.querybuilder.QGroup;
 import com.serphacker.serposcope.querybuilder.QRun;
 import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import javax.inject.Inject;
 
 
 public class PruneDB extends AbstractDB {
@@ -24,6 +45,31 @@ public class PruneDB extends AbstractDB {
     QGoogleRank t_google_rank = QGoogleRank.googleRank;
     QGoogleSerp t_serp = QGoogleSerp.googleSerp;
     QGoogleTargetSummary t_target_summary = QGoogleTargetSummary.googleTargetSummary;
+    QGoogleRankBest t_best = QGoogleRankBest.googleRankBest;
+    QGoogleSearchGroup t_search_group = QGoogleSearchGroup.googleSearchGroup;
+    QGoogleTarget t_target = QGoogleTarget.googleTarget;
+    QGroup t_group = QGroup.group;
+    
+    // counter of the runs of all the groups
+    final static int ALL_GROUPS = 0;
+    
+    @Inject
+    GoogleSerpDB serpDB;
+    
+    @Inject
+    PartitionDB partitionDB;
+    
+    @Inject
+    GoogleSerpArchive serpArchive;
+    
+    @Inject
+    GoogleRunQueueDB runQueueDB;
+    
+    @Inject
+    UnitOfWorkDB uowDB;
+    
+    @Inject
+    RunDB runDB;
     
     public long prune(int maxRuns){
         
@@ -31,41 +77,196 @@ public class PruneDB extends AbstractDB {
             return 0;
         }
         
+        List<Integer> runIds = listRunIdsBeyond(maxRuns);
+        if(runIds.isEmpty()){
+            return 0;
+        }
+        
+        return pruneRuns(runIds);
+    }
+    
+    /**
+     * Runs may check some groups only, the max number of runs is kept for each group : a run is beyond
+     * the limit when each group it checked was checked by maxRuns later runs. Runs of all the groups 
+     * are also counted apart, for the runs done before any group existed.
+     * @return ids of the runs beyond the limit, oldest first
+     */
+    public List<Integer> listRunIdsBeyond(int maxRuns){
+        List<Integer> runIds = new ArrayList<>();
         try(Connection con = ds.getConnection()){
-            
-            Long count = new SQLQuery<>(con, dbTplConf)
-                .select(t_run.count())
+            List<Integer> groupIds = new SQLQuery<>(con, dbTplConf)
+                .select(t_group.id)
+                .from(t_group)
+                .fetch();
+            List<Tuple> runs = new SQLQuery<>(con, dbTplConf)
+                .select(t_run.id, t_run.groupIds)
                 .from(t_run)
-                .fetchFirst();
+                .orderBy(t_run.id.desc())
+                .fetch();
             
-            if(count == null ){
-                LOG.warn("count return null");
-                return 0;
+            Map<Integer,Integer> keptByGroup = new HashMap<>();
+            for (Tuple run : runs) {
+                List<Integer> checked = runDB.unserializeGroups(run.get(t_run.groupIds));
+                if(checked == null){
+                    checked = new ArrayList<>(groupIds);
+                    checked.add(ALL_GROUPS);
+                }
+                
+                boolean kept = false;
+                for (Integer groupId : checked) {
+                    if(keptByGroup.merge(groupId, 1, Integer::sum) <= maxRuns){
+                        kept = true;
+                    }
+                }
+                if(!kept){
+                    runIds.add(run.get(t_run.id));
+                }
             }
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+            return new ArrayList<>();
+        }
+        Collections.reverse(runIds);
+        return runIds;
+    }
+    
+    /**
+     * delete the runs and their rankings, SERPs and summaries
+     * @param runIds ascending ids of the oldest runs
+     * @return number of runs deleted
+     */
+    public long pruneRuns(List<Integer> runIds){
+        
+        if(runIds.isEmpty()){
+            return 0;
+        }
+        
+        // no SERP can be based on the runs from their detach to their delete
+        Lock lock = serpDB.lockInserts();
+        try {
+            serpDB.detachFromRuns(runIds);
             
-            long limit = count - maxRuns;
+            // whole months go away with their partitions, the delete only sees the remaining runs
+            partitionDB.dropBefore(runIds.get(runIds.size() - 1) + 1);
+            serpArchive.dropBefore(runIds.get(runIds.size() - 1) + 1);
             
-            if(limit < 1){
-                return 0;
+            try(UnitOfWork uow = uowDB.begin(); Connection con = ds.getConnection()){
+                new SQLDeleteClause(con, dbTplConf, t_google_rank).where(t_google_rank.runId.in(runIds)).execute();
+                new SQLDeleteClause(con, dbTplConf, t_serp).where(t_serp.runId.in(runIds)).execute();
+                new SQLDeleteClause(con, dbTplConf, t_target_summary).where(t_target_summary.runId.in(runIds)).execute();
+                runQueueDB.delete(runIds);
+                long deleted = new SQLDeleteClause(con, dbTplConf, t_run).where(t_run.id.in(runIds)).execute();
+                return uow.commit() ? deleted : 0;
             }
             
-            List<Integer> runIds = new SQLQuery<>(con, dbTplConf)
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        } finally {
+            lock.unlock();
+        }
+        
+        return 0;
+        
+    }
+    
+    /**
+     * @return ids of all the runs, oldest first
+     */
+    public List<Integer> listRunIds(){
+        try(Connection con = ds.getConnection()){
+            return new SQLQuery<>(con, dbTplConf)
                 .select(t_run.id)
                 .from(t_run)
                 .orderBy(t_run.id.asc())
-                .limit(limit)
                 .fetch();
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return new ArrayList<>();
+    }
+    
+    public int countRunsBefore(LocalDate day){
+        try(Connection con = ds.getConnection()){
+            Long count = new SQLQuery<>(con, dbTplConf)
+                .select(t_run.count())
+                .from(t_run)
+                .where(t_run.day.lt(Date.valueOf(day)))
+                .fetchFirst();
+            return count == null ? 0 : count.intValue();
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return 0;
+    }
+    
+    /**
+     * @return ids of runs older than the oldest run still having rankings, SERPs or summaries, 
+     * left by an interrupted pruning or a deleted run
+     */
+    public List<Integer> listOrphanRunIds(){
+        TreeSet<Integer> runIds = new TreeSet<>();
+        try(Connection con = ds.getConnection()){
+            Integer minRunId = new SQLQuery<>(con, dbTplConf)
+                .select(t_run.id.min())
+                .from(t_run)
+                .fetchFirst();
+            if(minRunId == null){
+                minRunId = Integer.MAX_VALUE;
+            }
             
-            new SQLDeleteClause(con, dbTplConf, t_google_rank).where(t_google_rank.runId.in(runIds)).execute();
-            new SQLDeleteClause(con, dbTplConf, t_serp).where(t_serp.runId.in(runIds)).execute();
-            new SQLDeleteClause(con, dbTplConf, t_target_summary).where(t_target_summary.runId.in(runIds)).execute();
-            return new SQLDeleteClause(con, dbTplConf, t_run).where(t_run.id.in(runIds)).execute();
+            runIds.addAll(new SQLQuery<>(con, dbTplConf).select(t_google_rank.runId).distinct()
+                .from(t_google_rank).where(t_google_rank.runId.lt(minRunId)).fetch());
+            runIds.addAll(new SQLQuery<>(con, dbTplConf).select(t_serp.runId).distinct()
+                .from(t_serp).where(t_serp.runId.lt(minRunId)).fetch());
+            runIds.addAll(new SQLQuery<>(con, dbTplConf).select(t_target_summary.runId).distinct()
+                .from(t_target_summary).where(t_target_summary.runId.lt(minRunId)).fetch());
             
         }catch(Exception ex){
             LOG.error("SQL error", ex);
         }
-        
+        return new ArrayList<>(runIds);
+    }
+    
+    /**
+     * delete the best rankings of searches removed from their group and of deleted targets
+     * @return number of best rankings deleted
+     */
+    public long pruneOrphanBests(){
+        try(Connection con = ds.getConnection()){
+            return new SQLDeleteClause(con, dbTplConf, t_best)
+                .where(
+                    SQLExpressions.selectOne().from(t_search_group)
+                        .where(t_search_group.groupId.eq(t_best.groupId), t_search_group.googleSearchId.eq(t_best.googleSearchId))
+                        .notExists()
+                    .or(SQLExpressions.selectOne().from(t_target)
+                        .where(t_target.id.eq(t_best.googleTargetId))
+                        .notExists())
+                )
+                .execute();
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
         return 0;
-        
+    }
+    
+    /**
+     * @return size of the data and indexes of the MySQL schema in bytes, -1 on H2 (use the file size)
+     */
+    public long getDatabaseSize(){
+        if(!isMySQL()){
+            return -1l;
+        }
+        try(Connection con = ds.getConnection(); 
+            Statement stmt = con.createStatement(); 
+            ResultSet rs = stmt.executeQuery(
+                "SELECT SUM(DATA_LENGTH + INDEX_LENGTH) FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE()")
+        ){
+            if(rs.next()){
+                return rs.getLong(1);
+            }
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return -1l;
     }
 }
@@ -9,6 +9,7 @@ package com.serphacker.serposcope.db.base;
 
 import com.google.inject.Singleton;
 import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.sql.SQLQuery;
 import com.querydsl.sql.dml.SQLDeleteClause;
 import com.querydsl.sql.dml.SQLInsertClause;
@@ -53,6 +54,7 @@ public class RunDB extends AbstractDB {
                 .set(t_run.errors, run.getErrors())
                 .set(t_run.status, run.getStatus().ordinal())
                 .set(t_run.mode, run.getMode().ordinal())
+                .set(t_run.groupIds, serializeGroups(run.getGroups()))
                 .executeWithKey(t_run.id);
             
             run.setId(id);
@@ -151,6 +153,22 @@ public class RunDB extends AbstractDB {
         return updated;        
     }
     
+    /**
+     * groups left to the run, when some are deferred to another run
+     */
+    public boolean updateGroups(Run run){
+        boolean updated = false;
+        try(Connection conn = ds.getConnection()){
+            updated = new SQLUpdateClause(conn, dbTplConf, t_run)
+                .set(t_run.groupIds, serializeGroups(run.getGroups()))
+                .where(t_run.id.eq(run.getId()))
+                .execute() == 1;
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return updated;        
+    }
+    
     public void delete(int runId){
         try(Connection conn = ds.getConnection()){
             new SQLDeleteClause(conn, dbTplConf, t_run).where(t_run.id.eq(runId)).execute();
@@ -160,6 +178,13 @@ public class RunDB extends AbstractDB {
     }
     
     public List<Run> listDone(Integer firstId, Integer lastId){
+        return listDone(firstId, lastId, null);
+    }
+    
+    /**
+     * @param groupId only the runs which checked the group, null for all the runs
+     */
+    public List<Run> listDone(Integer firstId, Integer lastId, Integer groupId){
         List<Run> runs = new ArrayList<>();
         try(Connection conn = ds.getConnection()){
             SQLQuery<Tuple> query = new SQLQuery<>(conn, dbTplConf)
@@ -174,6 +199,10 @@ public class RunDB extends AbstractDB {
                 query = query.where(t_run.id.loe(lastId));
             }
             
+            if(groupId != null){
+                query = query.where(checkedGroup(groupId));
+            }
+            
             List<Tuple> tuples = query
                 .where(t_run.finished.isNotNull())
                 .orderBy(t_run.id.asc())
@@ -231,6 +260,13 @@ public class RunDB extends AbstractDB {
     public final static Collection<Run.Status> STATUSES_RUNNING = Arrays.asList(RUNNING,ABORTING);
     public final static Collection<Run.Status> STATUSES_DONE = Arrays.asList(DONE_ABORTED,DONE_CRASHED,DONE_SUCCESS,DONE_WITH_ERROR);
     public List<Run> listByStatus(Collection<Run.Status> statuses, Long limit, Long offset){
+        return listByStatus(statuses, limit, offset, null);
+    }
+    
+    /**
+     * @param groupId only the runs which checked the group, null for all the runs
+     */
+    public List<Run> listByStatus(Collection<Run.Status> statuses, Long limit, Long offset, Integer groupId){
         List<Integer> statusesVal = null;
         if(statuses != null && !statuses.isEmpty()){
             statusesVal = statuses.stream().map(Run.Status::ordinal).collect(Collectors.toList());
@@ -246,6 +282,10 @@ public class RunDB extends AbstractDB {
             if(statusesVal != null){
                 query.where(t_run.status.in(statusesVal));
             }
+            
+            if(groupId != null){
+                query.where(checkedGroup(groupId));
+            }
                 
             query.orderBy(t_run.id.desc());
             
@@ -273,14 +313,29 @@ public class RunDB extends AbstractDB {
     }
     
     public List<Run> findByDay(Module module, LocalDate day){
+        return findByDay(module, day, null);
+    }
+    
+    /**
+     * @param groupId only the runs which checked the group, null for all the runs
+     * @return runs of the day, last one first
+     */
+    public List<Run> findByDay(Module module, LocalDate day, Integer groupId){
         List<Run> runs = new ArrayList<>();
         try(Connection conn = ds.getConnection()){
             
-            List<Tuple> tuples = new SQLQuery<>(conn, dbTplConf)
+            SQLQuery<Tuple> query = new SQLQuery<>(conn, dbTplConf)
                 .select(t_run.all())
                 .from(t_run)
                 .where(t_run.moduleId.eq(module.ordinal()))
-                .where(t_run.day.eq(Date.valueOf(day)))
+                .where(t_run.day.eq(Date.valueOf(day)));
+            
+            if(groupId != null){
+                query.where(checkedGroup(groupId));
+            }
+            
+            List<Tuple> tuples = query
+                .orderBy(t_run.id.desc())
                 .fetch();
 
             for (Tuple tuple : tuples) {
@@ -315,13 +370,26 @@ public class RunDB extends AbstractDB {
     }
     
     public Run findPrevious(int runId){
+        return findPrevious(runId, null);
+    }
+    
+    /**
+     * @param groupId only the runs which checked the group, null for all the runs
+     */
+    public Run findPrevious(int runId, Integer groupId){
         Run run = null;
         try(Connection conn = ds.getConnection()){
             
-            Tuple tuple = new SQLQuery<>(conn, dbTplConf)
+            SQLQuery<Tuple> query = new SQLQuery<>(conn, dbTplConf)
                 .select(t_run.all())
                 .from(t_run)
-                .where(t_run.id.lt(runId))
+                .where(t_run.id.lt(runId));
+            
+            if(groupId != null){
+                query.where(checkedGroup(groupId));
+            }
+            
+            Tuple tuple = query
                 .orderBy(t_run.id.desc())
                 .fetchFirst();
                 
@@ -334,6 +402,13 @@ public class RunDB extends AbstractDB {
     }    
     
     public Run findLast(Module module, Collection<Run.Status> statuses, LocalDate untilDate){
+        return findLast(module, statuses, untilDate, null);
+    }
+    
+    /**
+     * @param groupId only the runs which checked the group, null for all the runs
+     */
+    public Run findLast(Module module, Collection<Run.Status> statuses, LocalDate untilDate, Integer groupId){
         Run run = null;
         try(Connection conn = ds.getConnection()){
 
@@ -349,6 +424,10 @@ public class RunDB extends AbstractDB {
             if(untilDate != null){
                 query.where(t_run.day.loe(Date.valueOf(untilDate)));
             }
+            
+            if(groupId != null){
+                query.where(checkedGroup(groupId));
+            }
         
             Tuple tuple = query
                 .orderBy(t_run.id.desc())
@@ -363,6 +442,13 @@ public class RunDB extends AbstractDB {
     }
     
     public Run findFirst(Module module, Collection<Run.Status> statuses, LocalDate fromDate){
+        return findFirst(module, statuses, fromDate, null);
+    }
+    
+    /**
+     * @param groupId only the runs which checked the group, null for all the runs
+     */
+    public Run findFirst(Module module, Collection<Run.Status> statuses, LocalDate fromDate, Integer groupId){
         Run run = null;
         try(Connection conn = ds.getConnection()){
 
@@ -378,6 +464,10 @@ public class RunDB extends AbstractDB {
             if(fromDate != null){
                 query.where(t_run.day.goe(Date.valueOf(fromDate)));
             }
+            
+            if(groupId != null){
+                query.where(checkedGroup(groupId));
+            }
         
             Tuple tuple = query
                 .orderBy(t_run.id.asc())
@@ -417,8 +507,33 @@ public class RunDB extends AbstractDB {
         run.setErrors(tuple.get(t_run.errors));
         run.setCaptchas(tuple.get(t_run.captchas));
         run.setMode(Run.Mode.values()[tuple.get(t_run.mode)]);
+        run.setGroups(unserializeGroups(tuple.get(t_run.groupIds)));
         
         return run;
     }
     
+    /**
+     * runs which checked the group, a run without groups checked all of them
+     */
+    protected Predicate checkedGroup(int groupId){
+        return t_run.groupIds.isNull().or(t_run.groupIds.prepend(",").append(",").like("%," + groupId + ",%"));
+    }
+    
+    protected String serializeGroups(Collection<Integer> groups){
+        if(groups == null){
+            return null;
+        }
+        return groups.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+    
+    protected List<Integer> unserializeGroups(String groupIds){
+        if(groupIds == null){
+            return null;
+        }
+        if(groupIds.isEmpty()){
+            return Collections.emptyList();
+        }
+        return Arrays.stream(groupIds.split(",")).map(Integer::valueOf).collect(Collectors.toList());
+    }
+    
 }
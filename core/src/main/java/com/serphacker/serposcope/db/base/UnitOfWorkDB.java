@@ -0,0 +1,29 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.base;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.serphacker.serposcope.db.UnitOfWork;
+import javax.sql.DataSource;
+
+@Singleton
+public class UnitOfWorkDB {
+
+    @Inject
+    DataSource dataSource;
+
+    /**
+     * run the next DAO calls of the thread on one connection and transaction
+     * @see UnitOfWork
+     */
+    public UnitOfWork begin(){
+        return UnitOfWork.begin(dataSource);
+    }
+
+}
@@ -0,0 +1,23 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.codec;
+
+/**
+ * Compression of a blob, the first byte of an encoded blob is the id of its codec.
+ */
+public interface BlobCodec {
+
+    public byte getId();
+
+    public String getName();
+
+    public byte[] encode(byte[] data);
+
+    public byte[] decode(byte[] blob);
+
+}
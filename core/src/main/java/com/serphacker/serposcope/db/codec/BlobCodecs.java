@@ -0,0 +1,89 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.codec;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codecs known to decode stored blobs, new blobs are encoded with the default one.
+ */
+public class BlobCodecs {
+
+    final LZ4Codec lz4 = new LZ4Codec();
+    final Map<Integer,DeflateDictionaryCodec> dictionaryCodecs = new ConcurrentHashMap<>();
+    volatile BlobCodec defaultCodec = lz4;
+
+    public void addDictionaryCodec(DeflateDictionaryCodec codec){
+        dictionaryCodecs.put(codec.getDictionaryId(), codec);
+    }
+
+    public BlobCodec getDefaultCodec() {
+        return defaultCodec;
+    }
+
+    public void setDefaultCodec(BlobCodec defaultCodec) {
+        this.defaultCodec = defaultCodec;
+    }
+
+    public LZ4Codec getLZ4Codec(){
+        return lz4;
+    }
+
+    public DeflateDictionaryCodec getDictionaryCodec(int dictionaryId){
+        return dictionaryCodecs.get(dictionaryId);
+    }
+
+    public byte[] encode(byte[] data){
+        return defaultCodec.encode(data);
+    }
+
+    public byte[] decode(byte[] blob){
+        if(blob == null || blob.length < 1){
+            return null;
+        }
+        return getCodec(blob).decode(blob);
+    }
+
+    /**
+     * @return true if the blob is encoded with the default codec (and the same dictionary)
+     */
+    public boolean isDefaultEncoding(byte[] blob){
+        if(blob == null || blob.length < 1){
+            return true;
+        }
+        return canDecode(blob) && getCodec(blob) == defaultCodec;
+    }
+
+    /**
+     * @return false if the blob uses a dictionary unknown to these codecs
+     */
+    public boolean canDecode(byte[] blob){
+        if(blob == null || blob.length < 1 || blob[0] != DeflateDictionaryCodec.ID){
+            return true;
+        }
+        return dictionaryCodecs.containsKey(DeflateDictionaryCodec.readDictionaryId(blob));
+    }
+
+    protected BlobCodec getCodec(byte[] blob){
+        switch(blob[0]){
+            case LZ4Codec.ID:
+                return lz4;
+            case DeflateDictionaryCodec.ID:
+                int dictionaryId = DeflateDictionaryCodec.readDictionaryId(blob);
+                BlobCodec codec = dictionaryCodecs.get(dictionaryId);
+                if(codec == null){
+                    throw new IllegalStateException("unknown dictionary " + dictionaryId);
+                }
+                return codec;
+            default:
+                throw new IllegalStateException("unknown codec " + blob[0]);
+        }
+    }
+
+}
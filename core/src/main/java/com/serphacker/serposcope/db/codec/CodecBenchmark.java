@@ -0,0 +1,87 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.codec;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression ratio and decode speed of a codec on a set of samples.
+ */
+public class CodecBenchmark {
+
+    public final static long MIN_DECODE_DURATION_NS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    final String name;
+    int samples;
+    long rawBytes;
+    long encodedBytes;
+    long decodedBytes;
+    long decodeNanos;
+
+    public CodecBenchmark(String name) {
+        this.name = name;
+    }
+
+    public static CodecBenchmark run(String name, BlobCodec codec, List<byte[]> samples){
+        CodecBenchmark benchmark = new CodecBenchmark(name);
+        benchmark.samples = samples.size();
+
+        byte[][] encoded = new byte[samples.size()][];
+        for (int i = 0; i < samples.size(); i++) {
+            encoded[i] = codec.encode(samples.get(i));
+            benchmark.rawBytes += samples.get(i).length;
+            benchmark.encodedBytes += encoded[i].length;
+        }
+
+        if(benchmark.rawBytes == 0){
+            return benchmark;
+        }
+
+        long start = System.nanoTime();
+        do {
+            for (byte[] blob : encoded) {
+                benchmark.decodedBytes += codec.decode(blob).length;
+            }
+            benchmark.decodeNanos = System.nanoTime() - start;
+        } while(benchmark.decodeNanos < MIN_DECODE_DURATION_NS);
+
+        return benchmark;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public long getRawBytes() {
+        return rawBytes;
+    }
+
+    public long getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    public double getRatio(){
+        return encodedBytes == 0 ? 0 : (double)rawBytes / (double)encodedBytes;
+    }
+
+    public double getDecodeMBps(){
+        return decodeNanos == 0 ? 0 : (decodedBytes / 1048576d) / (decodeNanos / 1e9d);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-24s samples=%d raw=%d encoded=%d ratio=%.2f decode=%.1fMB/s",
+            name, samples, rawBytes, encodedBytes, getRatio(), getDecodeMBps());
+    }
+
+}
@@ -0,0 +1,149 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw deflate with a preset dictionary, short blobs can reference the dictionary instead of carrying
+ * their own context. Layout : codec id, varint dictionary id, varint decoded length, deflate data.
+ * Dictionary id 0 means no dictionary.
+ */
+public class DeflateDictionaryCodec implements BlobCodec {
+
+    public final static byte ID = 1;
+    public final static String NAME = "deflate-dict";
+
+    final int dictionaryId;
+    final byte[] dictionary;
+    final int level;
+
+    public DeflateDictionaryCodec(int dictionaryId, byte[] dictionary) {
+        this(dictionaryId, dictionary, Deflater.BEST_COMPRESSION);
+    }
+
+    public DeflateDictionaryCodec(int dictionaryId, byte[] dictionary, int level) {
+        this.dictionaryId = dictionaryId;
+        this.dictionary = dictionary;
+        this.level = level;
+    }
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    public int getDictionaryId() {
+        return dictionaryId;
+    }
+
+    @Override
+    public byte[] encode(byte[] data) {
+        if(data == null || data.length < 1){
+            return null;
+        }
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(data.length + 8);
+        baos.write(ID);
+        writeVarint(baos, dictionaryId);
+        writeVarint(baos, data.length);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if(dictionary != null && dictionary.length > 0){
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, data.length)];
+            while(!deflater.finished()){
+                int length = deflater.deflate(buffer);
+                baos.write(buffer, 0, length);
+            }
+        } finally {
+            deflater.end();
+        }
+
+        return baos.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] blob) {
+        if(blob == null || blob.length < 3 || blob[0] != ID){
+            return null;
+        }
+
+        int[] position = new int[]{1};
+        int blobDictionaryId = readVarint(blob, position);
+        if(blobDictionaryId != dictionaryId){
+            throw new IllegalArgumentException("blob encoded with dictionary " + blobDictionaryId + " instead of " + dictionaryId);
+        }
+        int length = readVarint(blob, position);
+
+        byte[] decoded = new byte[length];
+        Inflater inflater = new Inflater(true);
+        try {
+            if(dictionary != null && dictionary.length > 0){
+                inflater.setDictionary(dictionary);
+            }
+            // raw inflate wants an extra dummy byte after the deflate data
+            inflater.setInput(Arrays.copyOfRange(blob, position[0], blob.length + 1));
+            int decodedLength = 0;
+            while(decodedLength < length){
+                int read = inflater.inflate(decoded, decodedLength, length - decodedLength);
+                if(read == 0 && (inflater.finished() || inflater.needsInput())){
+                    break;
+                }
+                decodedLength += read;
+            }
+            if(decodedLength != length){
+                throw new IllegalStateException("truncated blob, decoded " + decodedLength + "/" + length + " bytes");
+            }
+        } catch(DataFormatException ex){
+            throw new IllegalStateException("corrupted blob", ex);
+        } finally {
+            inflater.end();
+        }
+
+        return decoded;
+    }
+
+    public static int readDictionaryId(byte[] blob){
+        return readVarint(blob, new int[]{1});
+    }
+
+    protected static void writeVarint(ByteArrayOutputStream baos, int value){
+        while((value & ~0x7F) != 0){
+            baos.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        baos.write(value);
+    }
+
+    protected static int readVarint(byte[] data, int[] position){
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data[position[0]++] & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Builds a deflate preset dictionary from sample blobs : the byte sequences shared by the most samples
+ * are concatenated, the most frequent ones last because deflate encodes closer matches with shorter distances.
+ */
+public class DictionaryTrainer {
+
+    public final static int DEFAULT_DICTIONARY_SIZE = 16384;
+    public final static int GRAM_LENGTH = 8;
+
+    public static byte[] train(List<byte[]> samples, int dictionarySize){
+        Map<ByteBuffer,Integer> counts = new HashMap<>();
+        for (byte[] sample : samples) {
+            Set<ByteBuffer> seen = new HashSet<>();
+            for (int i = 0; i + GRAM_LENGTH <= sample.length; i++) {
+                ByteBuffer gram = ByteBuffer.wrap(Arrays.copyOfRange(sample, i, i + GRAM_LENGTH));
+                if(seen.add(gram)){
+                    counts.merge(gram, 1, Integer::sum);
+                }
+            }
+        }
+
+        List<Map.Entry<ByteBuffer,Integer>> grams = new ArrayList<>();
+        for (Map.Entry<ByteBuffer, Integer> entry : counts.entrySet()) {
+            // a sequence found in a single sample is useless to the others
+            if(entry.getValue() > 1){
+                grams.add(entry);
+            }
+        }
+        grams.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+
+        int maxGrams = Math.min(grams.size(), dictionarySize / GRAM_LENGTH);
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(maxGrams * GRAM_LENGTH);
+        for (int i = maxGrams - 1; i >= 0; i--) {
+            dictionary.write(grams.get(i).getKey().array(), 0, GRAM_LENGTH);
+        }
+        return dictionary.toByteArray();
+    }
+
+}
@@ -0,0 +1,41 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.codec;
+
+import com.serphacker.serposcope.db.LZ4Blob;
+
+/**
+ * Layout of {@link LZ4Blob}, stored blobs written before codecs existed are read as is : the 4 bytes length
+ * header of a blob smaller than 16MB always starts with a zero byte, which is the id of this codec.
+ */
+public class LZ4Codec implements BlobCodec {
+
+    public final static byte ID = 0;
+    public final static String NAME = "lz4";
+
+    @Override
+    public byte getId() {
+        return ID;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(byte[] data) {
+        return LZ4Blob.compress(data);
+    }
+
+    @Override
+    public byte[] decode(byte[] blob) {
+        return LZ4Blob.decompress(blob);
+    }
+
+}
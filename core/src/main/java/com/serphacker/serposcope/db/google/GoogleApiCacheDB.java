@@ -0,0 +1,107 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.common.hash.Hashing;
+import com.google.inject.Singleton;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLMergeClause;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.db.LZ4Blob;
+import com.serphacker.serposcope.querybuilder.QGoogleApiCache;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleCustomSearchAPIScraper.ApiResponseCache;
+import java.nio.charset.StandardCharsets;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import javax.sql.rowset.serial.SerialBlob;
+
+/**
+ * Custom search API responses of the day, a restarted or manual run doesn't pay twice for the same query.
+ * Entries are keyed by request and day, and expire after TTL_HOURS.
+ */
+@Singleton
+public class GoogleApiCacheDB extends AbstractDB implements ApiResponseCache {
+
+    public final static int TTL_HOURS = 24;
+
+    QGoogleApiCache t_cache = QGoogleApiCache.googleApiCache;
+
+    @Override
+    public String get(String key){
+        String response = null;
+        try(Connection con = ds.getConnection()){
+
+            Tuple tuple = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_cache.all())
+                .from(t_cache)
+                .where(t_cache.cacheKey.eq(hashKey(key, LocalDate.now())))
+                .where(t_cache.expires.gt(Timestamp.valueOf(LocalDateTime.now())))
+                .fetchFirst();
+
+            if(tuple != null){
+                Blob blob = tuple.get(t_cache.response);
+                if(blob != null){
+                    byte[] data = LZ4Blob.decompress(blob.getBytes(1, (int)blob.length()));
+                    if(data != null){
+                        response = new String(data, StandardCharsets.UTF_8);
+                    }
+                }
+            }
+
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return response;
+    }
+
+    @Override
+    public void put(String key, String response){
+        try(Connection con = ds.getConnection()){
+
+            new SQLMergeClause(con, dbTplConf, t_cache)
+                .set(t_cache.cacheKey, hashKey(key, LocalDate.now()))
+                .set(t_cache.expires, Timestamp.valueOf(LocalDateTime.now().plusHours(TTL_HOURS)))
+                .set(t_cache.response, new SerialBlob(LZ4Blob.compress(response.getBytes(StandardCharsets.UTF_8))))
+                .execute();
+
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+    public long deleteExpired(){
+        long deleted = 0;
+        try(Connection con = ds.getConnection()){
+            deleted = new SQLDeleteClause(con, dbTplConf, t_cache)
+                .where(t_cache.expires.loe(Timestamp.valueOf(LocalDateTime.now())))
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return deleted;
+    }
+
+    public void wipe(){
+        try(Connection con = ds.getConnection()){
+            new SQLDeleteClause(con, dbTplConf, t_cache)
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+    protected String hashKey(String key, LocalDate day){
+        return Hashing.sha256().hashString(day + "|" + key, StandardCharsets.UTF_8).toString();
+    }
+
+}
@@ -22,6 +22,15 @@ public class GoogleDB {
     @Inject
     public GoogleSerpDB serp;
     
+    @Inject
+    public GoogleUrlDB url;
+    
+    @Inject
+    public GoogleSerpCodecDB serpCodec;
+    
+    @Inject
+    public GoogleSerpArchive serpArchive;
+    
     @Inject
     public GoogleTargetDB target;
     
@@ -34,4 +43,10 @@ public class GoogleDB {
     @Inject
     public GoogleSerpRescanDB serpRescan;
     
+    @Inject
+    public GoogleApiCacheDB apiCache;
+    
+    @Inject
+    public GoogleRunQueueDB runQueue;
+    
 }
@@ -11,6 +11,7 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.serphacker.serposcope.db.base.ConfigDB;
 import com.serphacker.serposcope.models.google.GoogleSettings;
+import java.time.LocalTime;
 
 @Singleton
 public class GoogleOptionsDB {
@@ -21,6 +22,10 @@ public class GoogleOptionsDB {
     private final static String MAX_PAUSE_BETWEEN_PAGE_SEC = "google.max_pause_between_page_sec";    
     private final static String MAX_THREADS = "google.maxThreads";
     private final static String FETCH_RETRY = "google.fetchRetry";    
+    private final static String LEAN_FETCH = "google.lean_fetch";
+    private final static String EARLY_TERMINATION = "google.early_termination";
+    private final static String RUN_DEADLINE = "google.run_deadline";
+    private final static String MAX_CHECK_INTERVAL = "google.max_check_interval";
     
     private final static String DEFAULT_DATACENTER = "google.default_datacenter";
     private final static String DEFAULT_DEVICE = "google.default.device";
@@ -47,6 +52,11 @@ public class GoogleOptionsDB {
         options.setMaxPauseBetweenPageSec(configDB.getInt(MAX_PAUSE_BETWEEN_PAGE_SEC, options.getMaxPauseBetweenPageSec()));        
         options.setMaxThreads(configDB.getInt(MAX_THREADS, options.getMaxThreads()));
         options.setFetchRetry(configDB.getInt(FETCH_RETRY, options.getFetchRetry()));
+        options.setLeanFetch(configDB.getBoolean(LEAN_FETCH, options.isLeanFetch()));
+        options.setEarlyTermination(configDB.getBoolean(EARLY_TERMINATION, options.isEarlyTermination()));
+        String runDeadline = configDB.get(RUN_DEADLINE, null);
+        options.setRunDeadline(runDeadline == null ? null : LocalTime.parse(runDeadline));
+        options.setMaxCheckInterval(configDB.getInt(MAX_CHECK_INTERVAL, options.getMaxCheckInterval()));
         
         options.setDefaultDatacenter(configDB.get(DEFAULT_DATACENTER, options.getDefaultDatacenter()));
         options.setDefaultDevice(configDB.get(DEFAULT_DEVICE, null));
@@ -74,6 +84,10 @@ public class GoogleOptionsDB {
         configDB.updateInt(MAX_PAUSE_BETWEEN_PAGE_SEC, nullIfDefault(opts.getMaxPauseBetweenPageSec(), def.getMaxPauseBetweenPageSec()));
         configDB.updateInt(MAX_THREADS, nullIfDefault(opts.getMaxThreads(), def.getMaxThreads()));
         configDB.updateInt(FETCH_RETRY, nullIfDefault(opts.getFetchRetry(), def.getFetchRetry()));
+        configDB.updateBoolean(LEAN_FETCH, nullIfDefault(opts.isLeanFetch(), def.isLeanFetch()));
+        configDB.updateBoolean(EARLY_TERMINATION, nullIfDefault(opts.isEarlyTermination(), def.isEarlyTermination()));
+        configDB.update(RUN_DEADLINE, opts.getRunDeadline() == null ? null : opts.getRunDeadline().toString());
+        configDB.updateInt(MAX_CHECK_INTERVAL, nullIfDefault(opts.getMaxCheckInterval(), def.getMaxCheckInterval()));
 
         // search
         configDB.update(DEFAULT_DATACENTER, nullIfDefault(opts.getDefaultDatacenter(), def.getDefaultDatacenter()));
@@ -138,6 +152,43 @@ public class GoogleOptionsDB {
         return todayCount >= maxDailyQueries;
     }
     
+    /**
+     * 今日のAPI使用回数をまとめて確保する（1回の更新でblock回分）
+     * 確保した分は使用済みとしてカウントされ、未使用分はreleaseApiQueriesで返却する
+     * @param block 確保したい回数
+     * @param maxDailyQueries 1日の最大使用回数
+     * @return 確保できた回数、上限に達している場合0
+     */
+    public synchronized int reserveApiQueries(int block, int maxDailyQueries) {
+        String today = java.time.LocalDate.now().toString();
+        String storedDate = configDB.get(API_QUERIES_COUNT_DATE, null);
+        
+        int currentCount = today.equals(storedDate) ? configDB.getInt(API_QUERIES_COUNT, 0) : 0;
+        int granted = Math.max(0, Math.min(block, maxDailyQueries - currentCount));
+        if (granted == 0) {
+            return 0;
+        }
+        
+        if (!today.equals(storedDate)) {
+            configDB.update(API_QUERIES_COUNT_DATE, today);
+        }
+        configDB.updateInt(API_QUERIES_COUNT, currentCount + granted);
+        return granted;
+    }
+    
+    /**
+     * reserveApiQueriesで確保したが使用しなかった回数を返却する
+     * 確保した日から日付が変わっている場合は何もしない
+     * @param unused 未使用の回数
+     * @param day 確保した日
+     */
+    public synchronized void releaseApiQueries(int unused, java.time.LocalDate day) {
+        if (unused <= 0 || day == null || !day.toString().equals(configDB.get(API_QUERIES_COUNT_DATE, null))) {
+            return;
+        }
+        configDB.updateInt(API_QUERIES_COUNT, Math.max(0, configDB.getInt(API_QUERIES_COUNT, 0) - unused));
+    }
+    
     protected Boolean nullIfDefault(Boolean value, Boolean def){
         return (Boolean)nullIfDefaultObject(value, def);
     }
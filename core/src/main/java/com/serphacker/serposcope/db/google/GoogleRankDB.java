@@ -7,10 +7,14 @@
  */
 package com.serphacker.serposcope.db.google;
 
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.QueryFlag;
 import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.CaseBuilder;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.sql.Configuration;
 import com.querydsl.sql.SQLBindings;
 import com.querydsl.sql.SQLQuery;
 import com.querydsl.sql.dml.SQLDeleteClause;
@@ -20,12 +24,16 @@ import com.querydsl.sql.dml.SQLMergeClause;
 import com.serphacker.serposcope.db.AbstractDB;
 import com.serphacker.serposcope.models.google.GoogleBest;
 import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSearchCheck;
 import com.serphacker.serposcope.models.google.GoogleTarget;
 import com.serphacker.serposcope.querybuilder.QGoogleRank;
 import com.serphacker.serposcope.querybuilder.QGoogleRankBest;
+import com.serphacker.serposcope.querybuilder.QGoogleUrl;
 import java.sql.Connection;
-import java.sql.Statement;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -34,28 +42,93 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
+import org.apache.commons.lang3.ArrayUtils;
 
 @Singleton
 public class GoogleRankDB extends AbstractDB {
 
     static QGoogleRank t_rank = QGoogleRank.googleRank;
     static QGoogleRankBest t_best = QGoogleRankBest.googleRankBest;
+    static QGoogleUrl t_url = QGoogleUrl.googleUrl;
+    
+    public final static int ROW_BYTES = 128;
+    
+    final static String UPSERT_RANK = "INSERT INTO `GOOGLE_RANK` " + 
+        "(`RUN_ID`, `GROUP_ID`, `GOOGLE_TARGET_ID`, `GOOGLE_SEARCH_ID`, `RANK`, `PREVIOUS_RANK`, `DIFF`, `URL_ID`, `CARRIED`) " + 
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) " + 
+        "ON DUPLICATE KEY UPDATE `RANK` = VALUES(`RANK`), `PREVIOUS_RANK` = VALUES(`PREVIOUS_RANK`), " + 
+        "`DIFF` = VALUES(`DIFF`), `URL_ID` = VALUES(`URL_ID`), `CARRIED` = VALUES(`CARRIED`)";
+    
+    final static String UPSERT_BEST = "INSERT INTO `GOOGLE_RANK_BEST` " + 
+        "(`GROUP_ID`, `GOOGLE_TARGET_ID`, `GOOGLE_SEARCH_ID`, `RANK`, `RUN_DAY`, `URL_ID`) " + 
+        "VALUES (?, ?, ?, ?, ?, ?) " + 
+        "ON DUPLICATE KEY UPDATE `RANK` = VALUES(`RANK`), `RUN_DAY` = VALUES(`RUN_DAY`), `URL_ID` = VALUES(`URL_ID`)";
+    
+    @Inject
+    GoogleUrlDB urlDB;
 
     public boolean insertBest(GoogleBest best){
-        boolean inserted = false;
+        return insertBest(Arrays.asList(best));
+    }
+    
+    public boolean insertBest(Collection<GoogleBest> bests){
+        if(bests.isEmpty()){
+            return false;
+        }
+        List<String> urls = new ArrayList<>(bests.size());
+        for (GoogleBest best : bests) {
+            urls.add(best.getUrl());
+        }
+        Map<String,Integer> urlIds = urlDB.getIds(urls);
+        
         try(Connection con = ds.getConnection()){
-            inserted = new SQLMergeClause(con, dbTplConf, t_best)
-                .set(t_best.groupId, best.getGroupId())
-                .set(t_best.googleTargetId, best.getGoogleTargetId())
-                .set(t_best.googleSearchId, best.getGoogleSearchId())
-                .set(t_best.rank, best.getRank())
-                .set(t_best.url, best.getUrl())
-                .set(t_best.runDay, best.getRunDay() == null ? null : Timestamp.valueOf(best.getRunDay()))
-                .execute() == 1;
+            if(isH2()){
+                SQLMergeClause clause = new SQLMergeClause(con, dbTplConf, t_best);
+                for (GoogleBest best : bests) {
+                    clause
+                        .set(t_best.groupId, best.getGroupId())
+                        .set(t_best.googleTargetId, best.getGoogleTargetId())
+                        .set(t_best.googleSearchId, best.getGoogleSearchId())
+                        .set(t_best.rank, best.getRank())
+                        .set(t_best.urlId, urlIds.get(best.getUrl()))
+                        .set(t_best.runDay, best.getRunDay() == null ? null : Timestamp.valueOf(best.getRunDay()))
+                        .addBatch();
+                }
+                return clause.execute() > 0;
+            }
+            
+            try(PreparedStatement stmt = con.prepareStatement(UPSERT_BEST)){
+                int batchRows = getBatchRows(con);
+                int batchSize = 0;
+                for (GoogleBest best : bests) {
+                    stmt.setInt(1, best.getGroupId());
+                    stmt.setInt(2, best.getGoogleTargetId());
+                    stmt.setInt(3, best.getGoogleSearchId());
+                    stmt.setShort(4, best.getRank());
+                    stmt.setTimestamp(5, best.getRunDay() == null ? null : Timestamp.valueOf(best.getRunDay()));
+                    setInteger(stmt, 6, urlIds.get(best.getUrl()));
+                    stmt.addBatch();
+                    if(++batchSize == batchRows){
+                        stmt.executeBatch();
+                        batchSize = 0;
+                    }
+                }
+                if(batchSize > 0){
+                    stmt.executeBatch();
+                }
+                return true;
+            }
         } catch(Exception ex){
             LOG.error("SQL error", ex);
         }
-        return inserted;
+        return false;
+    }
+    
+    /**
+     * buffered writer of ranks and bests, shared by the task and the rescan
+     */
+    public GoogleRankWriter writer(){
+        return new GoogleRankWriter(this, Math.max(1, getMaxAllowedPacket() / 2 / ROW_BYTES));
     }
     
     public GoogleBest getBest(int groupId, int googleTargetId, int googleSearchId){
@@ -63,8 +136,9 @@ public class GoogleRankDB extends AbstractDB {
         
         try(Connection con = ds.getConnection()){
             Tuple tuple = new SQLQuery<Void>(con, dbTplConf)
-                .select(t_best.all())
+                .select(ArrayUtils.add(t_best.all(), t_url.url))
                 .from(t_best)
+                .leftJoin(t_url).on(t_url.id.eq(t_best.urlId))
                 .where(t_best.groupId.eq(groupId))
                 .where(t_best.googleTargetId.eq(googleTargetId))
                 .where(t_best.googleSearchId.eq(googleSearchId))
@@ -77,7 +151,7 @@ public class GoogleRankDB extends AbstractDB {
                     tuple.get(t_best.googleSearchId),
                     tuple.get(t_best.rank),
                     tuple.get(t_best.runDay) != null ? tuple.get(t_best.runDay).toLocalDateTime() : null,
-                    tuple.get(t_best.url)
+                    tuple.get(t_url.url)
                 );
             } else {
                 best = new GoogleBest(groupId, googleTargetId, googleSearchId, (short)GoogleRank.UNRANKED, null, null);
@@ -106,6 +180,7 @@ public class GoogleRankDB extends AbstractDB {
     }    
     
     public boolean insertMerge(Collection<GoogleRank> ranks){
+        Map<String,Integer> urlIds = getUrlIds(ranks);
         try(Connection con = ds.getConnection()){
             SQLMergeClause clause = new SQLMergeClause(con, dbTplConf, t_rank);
             for (GoogleRank rank : ranks) {
@@ -117,7 +192,8 @@ public class GoogleRankDB extends AbstractDB {
                     .set(t_rank.rank, rank.rank)
                     .set(t_rank.previousRank, rank.previousRank)
                     .set(t_rank.diff, rank.diff)
-                    .set(t_rank.url, rank.url)
+                    .set(t_rank.urlId, urlIds.get(rank.url))
+                    .set(t_rank.carried, rank.carried)
                     .addBatch();
             }
             return clause.execute() > 0;
@@ -127,60 +203,35 @@ public class GoogleRankDB extends AbstractDB {
         return false;
     }
     
+    /**
+     * MySQL upsert with a batched prepared statement, the driver rewrites it as multi-row inserts
+     * (rewriteBatchedStatements). Batches are split to stay under max_allowed_packet.
+     */
     public boolean insertOnDuplicateKey(Collection<GoogleRank> ranks){
-        try(Connection con = ds.getConnection()){
-            
-            // waiting for patch https://github.com/querydsl/querydsl/issues/1921
-            /*
-            SQLInsertClause clause = new SQLInsertClause(con, dbTplConf, t_rank);
-            clause.setBatchToBulk(true);
+        Map<String,Integer> urlIds = getUrlIds(ranks);
+        try(Connection con = ds.getConnection(); PreparedStatement stmt = con.prepareStatement(UPSERT_RANK)){
+            int batchRows = getBatchRows(con);
+            int batchSize = 0;
             for (GoogleRank rank : ranks) {
-                clause
-                    .set(t_rank.runId, rank.runId)
-                    .set(t_rank.groupId, rank.groupId)
-                    .set(t_rank.googleTargetId, rank.googleTargetId)
-                    .set(t_rank.googleSearchId, rank.googleSearchId)
-                    .set(t_rank.rank, rank.rank)
-                    .set(t_rank.previousRank, rank.previousRank)
-                    .set(t_rank.diff, rank.diff)
-                    .set(t_rank.url, rank.url)
-                    .addBatch();
-            }
-            clause.addFlag(QueryFlag.Position.END, 
-                " on duplicate key update rank = values(rank) " +
-                ", previous_rank = values(previous_rank)" + 
-                ", diff = values(diff)" + 
-                ", url = values(url)"
-            );
-            return clause.execute() > 0;
-            */
-            
-            // 
-            StringBuilder builder = new StringBuilder("INSERT INTO `GOOGLE_RANK` " + 
-                "(`RUN_ID`, `GROUP_ID`, `GOOGLE_TARGET_ID`, `GOOGLE_SEARCH_ID`, `RANK`, `PREVIOUS_RANK`, `DIFF`, `URL`) " + 
-                "VALUES ");
-            for (GoogleRank rank : ranks) {
-                builder.append("(");
-                builder.append(rank.runId).append(',');
-                builder.append(rank.groupId).append(',');
-                builder.append(rank.googleTargetId).append(',');
-                builder.append(rank.googleSearchId).append(',');
-                builder.append(rank.rank).append(',');
-                builder.append(rank.previousRank).append(',');
-                builder.append(rank.diff).append(',');
-                builder.append(dbTplConf.asLiteral(rank.url));
-                builder.append("),");
+                stmt.setInt(1, rank.runId);
+                stmt.setInt(2, rank.groupId);
+                stmt.setInt(3, rank.googleTargetId);
+                stmt.setInt(4, rank.googleSearchId);
+                stmt.setShort(5, rank.rank);
+                stmt.setShort(6, rank.previousRank);
+                stmt.setShort(7, rank.diff);
+                setInteger(stmt, 8, urlIds.get(rank.url));
+                stmt.setBoolean(9, rank.carried);
+                stmt.addBatch();
+                if(++batchSize == batchRows){
+                    stmt.executeBatch();
+                    batchSize = 0;
+                }
             }
-            builder.setCharAt(builder.length()-1, ' ');
-            builder.append(" on duplicate key update rank = values(rank) " +
-                ", previous_rank = values(previous_rank)" + 
-                ", diff = values(diff)" + 
-                ", url = values(url)"
-            );
-            try(Statement stmt = con.createStatement()){
-                return stmt.executeUpdate(builder.toString()) > 0;
+            if(batchSize > 0){
+                stmt.executeBatch();
             }
-            
+            return !ranks.isEmpty();
         } catch(Exception ex){
             LOG.error("SQL error", ex);
         }
@@ -189,6 +240,7 @@ public class GoogleRankDB extends AbstractDB {
     
     public boolean insertMerge(GoogleRank rank) {
         boolean inserted = false;
+        Integer urlId = urlDB.getId(rank.url);
         try(Connection con = ds.getConnection()){
             inserted = new SQLMergeClause(con, dbTplConf, t_rank)
                 .set(t_rank.runId, rank.runId)
@@ -198,7 +250,8 @@ public class GoogleRankDB extends AbstractDB {
                 .set(t_rank.rank, rank.rank)
                 .set(t_rank.previousRank, rank.previousRank)
                 .set(t_rank.diff, rank.diff)
-                .set(t_rank.url, rank.url)
+                .set(t_rank.urlId, urlId)
+                .set(t_rank.carried, rank.carried)
                 .execute() == 1;
         } catch(Exception ex){
             LOG.error("SQL error", ex);
@@ -208,6 +261,7 @@ public class GoogleRankDB extends AbstractDB {
     
     public boolean insertOnDuplicateKey(GoogleRank rank) {
         boolean inserted = false;
+        Integer urlId = urlDB.getId(rank.url);
         try(Connection con = ds.getConnection()){
             inserted = new SQLInsertClause(con, dbTplConf, t_rank)
                 .set(t_rank.runId, rank.runId)
@@ -217,12 +271,14 @@ public class GoogleRankDB extends AbstractDB {
                 .set(t_rank.rank, rank.rank)
                 .set(t_rank.previousRank, rank.previousRank)
                 .set(t_rank.diff, rank.diff)
-                .set(t_rank.url, rank.url)
+                .set(t_rank.urlId, urlId)
+                .set(t_rank.carried, rank.carried)
                 .addFlag(QueryFlag.Position.END, 
                     " on duplicate key update rank = " + rank.rank + 
                     ", previous_rank = " + rank.previousRank + 
                     ", diff = " + rank.diff +
-                    ", url = " + (rank.url == null ? "NULL" : dbTplConf.asLiteral(rank.url))
+                    ", url_id = " + (urlId == null ? "NULL" : urlId) +
+                    ", carried = " + rank.carried
                 )
                 .execute() == 1;
         } catch(Exception ex){
@@ -257,9 +313,7 @@ public class GoogleRankDB extends AbstractDB {
         
         try(Connection con = ds.getConnection()){
             
-            Tuple tuple = new SQLQuery<Void>(con, dbTplConf)
-                .select(t_rank.all())
-                .from(t_rank)
+            Tuple tuple = selectRanks(con, dbTplConf)
                 .where(t_rank.runId.eq(runId))
                 .where(t_rank.groupId.eq(groupId))
                 .where(t_rank.googleTargetId.eq(googleTargetId))
@@ -280,9 +334,7 @@ public class GoogleRankDB extends AbstractDB {
         
         try(Connection con = ds.getConnection()){
             
-            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
-                .select(t_rank.all())
-                .from(t_rank)
+            List<Tuple> tuples = selectRanks(con, dbTplConf)
                 .where(t_rank.runId.eq(runId))
                 .where(t_rank.groupId.eq(groupId))
                 .where(t_rank.googleTargetId.eq(targetId))
@@ -313,9 +365,7 @@ public class GoogleRankDB extends AbstractDB {
         
         try(Connection con = ds.getConnection()){
             
-            SQLQuery<Tuple> query = new SQLQuery<Void>(con, dbTplConf)
-                .select(t_rank.all())
-                .from(t_rank);
+            SQLQuery<Tuple> query = selectRanks(con, dbTplConf);
             
             if(runs != null){
                 query.where(t_rank.runId.in(runs));
@@ -346,6 +396,45 @@ public class GoogleRankDB extends AbstractDB {
         return ranks;
     }        
     
+    /**
+     * @return the checks of the searches in the runs, a search has no check in a run which didn't check its groups
+     */
+    public List<GoogleSearchCheck> listChecks(Collection<Integer> runIds){
+        List<GoogleSearchCheck> checks = new ArrayList<>();
+        if(runIds.isEmpty()){
+            return checks;
+        }
+        
+        NumberExpression<Integer> carried = new CaseBuilder()
+            .when(t_rank.carried.isTrue()).then(1).otherwise(0).max();
+        NumberExpression<Integer> changed = new CaseBuilder()
+            .when(t_rank.rank.ne(t_rank.previousRank)).then(1).otherwise(0).max();
+        
+        try(Connection con = ds.getConnection()){
+            
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_rank.runId, t_rank.googleSearchId, carried, changed)
+                .from(t_rank)
+                .where(t_rank.runId.in(runIds))
+                .groupBy(t_rank.runId, t_rank.googleSearchId)
+                .fetch();
+            
+            for (Tuple tuple : tuples) {
+                checks.add(new GoogleSearchCheck(
+                    tuple.get(t_rank.runId), 
+                    tuple.get(t_rank.googleSearchId), 
+                    tuple.get(carried) == 1, 
+                    tuple.get(changed) == 1
+                ));
+            }
+            
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        
+        return checks;
+    }
+    
     public boolean deleteBySearch(int groupId, int googleSearchId){
         boolean deleted = false;
         
@@ -421,8 +510,42 @@ public class GoogleRankDB extends AbstractDB {
             tuple.get(t_rank.googleSearchId),
             tuple.get(t_rank.rank),
             tuple.get(t_rank.previousRank),
-            tuple.get(t_rank.url)
+            tuple.get(t_url.url),
+            Boolean.TRUE.equals(tuple.get(t_rank.carried))
         );
     }
     
+    /**
+     * ranks joined with the url dictionary, rows must be read with {@link #fromTuple(Tuple)}
+     */
+    public static SQLQuery<Tuple> selectRanks(Connection con, Configuration conf){
+        return new SQLQuery<Void>(con, conf)
+            .select(ArrayUtils.add(t_rank.all(), t_url.url))
+            .from(t_rank)
+            .leftJoin(t_url).on(t_url.id.eq(t_rank.urlId));
+    }
+    
+    /**
+     * rows of a batch, a rewritten row is estimated to ROW_BYTES
+     */
+    protected int getBatchRows(Connection con){
+        return Math.max(1, getMaxAllowedPacket(con) / 2 / ROW_BYTES);
+    }
+    
+    protected static void setInteger(PreparedStatement stmt, int index, Integer value) throws SQLException {
+        if(value == null){
+            stmt.setNull(index, Types.INTEGER);
+        } else {
+            stmt.setInt(index, value);
+        }
+    }
+    
+    protected Map<String,Integer> getUrlIds(Collection<GoogleRank> ranks){
+        List<String> urls = new ArrayList<>(ranks.size());
+        for (GoogleRank rank : ranks) {
+            urls.add(rank.url);
+        }
+        return urlDB.getIds(urls);
+    }
+    
 }
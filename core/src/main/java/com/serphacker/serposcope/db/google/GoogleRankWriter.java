@@ -0,0 +1,70 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.serphacker.serposcope.models.google.GoogleBest;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Buffers ranks and bests and writes them with the bulk upserts of {@link GoogleRankDB} once a batch
+ * is full or on {@link #flush()}. Not thread safe, get one from {@link GoogleRankDB#writer()}.
+ */
+public class GoogleRankWriter implements AutoCloseable {
+
+    final GoogleRankDB rankDB;
+    final int batchRows;
+
+    final List<GoogleRank> ranks = new ArrayList<>();
+    final List<GoogleBest> bests = new ArrayList<>();
+
+    GoogleRankWriter(GoogleRankDB rankDB, int batchRows) {
+        this.rankDB = rankDB;
+        this.batchRows = batchRows;
+    }
+
+    public void add(GoogleRank rank){
+        ranks.add(rank);
+        if(ranks.size() >= batchRows){
+            flushRanks();
+        }
+    }
+
+    public void addBest(GoogleBest best){
+        bests.add(best);
+        if(bests.size() >= batchRows){
+            flushBests();
+        }
+    }
+
+    public void flush(){
+        flushRanks();
+        flushBests();
+    }
+
+    protected void flushRanks(){
+        if(!ranks.isEmpty()){
+            rankDB.insert(ranks);
+            ranks.clear();
+        }
+    }
+
+    protected void flushBests(){
+        if(!bests.isEmpty()){
+            rankDB.insertBest(bests);
+            bests.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+    }
+
+}
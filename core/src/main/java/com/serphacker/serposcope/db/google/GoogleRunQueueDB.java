@@ -0,0 +1,369 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Singleton;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLUpdateClause;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.querybuilder.QGoogleRunQueue;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Work queue of a run persisted in GOOGLE_RUN_QUEUE, one row per search with its state and number of
+ * scrape attempts. A resumed run starts from the queue instead of rebuilding it from GOOGLE_SERP and
+ * keeps the attempts of its searches.
+ *
+ * Searches are leased by an owner until an expiry, the task of the web process and the headless
+ * workers sharing the run only scrape the searches they leased. A lease of a dead process expires and
+ * the search can be leased again. Leases are dated with the clock of the database, not the one of the
+ * owner.
+ */
+@Singleton
+public class GoogleRunQueueDB extends AbstractDB {
+
+    public enum State {
+        PENDING,
+        LEASED,
+        DONE,
+        FAILED
+    }
+
+    final static int INSERT_BATCH = 1000;
+
+    QGoogleRunQueue t_queue = QGoogleRunQueue.googleRunQueue;
+
+    /**
+     * queue the searches of the run as pending
+     */
+    public boolean create(int runId, Collection<Integer> googleSearchIds){
+        try(Connection con = ds.getConnection()){
+            Timestamp now = now(con);
+            SQLInsertClause insert = new SQLInsertClause(con, dbTplConf, t_queue);
+            int rows = 0;
+            for (Integer googleSearchId : googleSearchIds) {
+                insert
+                    .set(t_queue.runId, runId)
+                    .set(t_queue.googleSearchId, googleSearchId)
+                    .set(t_queue.state, State.PENDING.ordinal())
+                    .set(t_queue.attempts, 0)
+                    .set(t_queue.updated, now)
+                    .addBatch();
+                if(++rows % INSERT_BATCH == 0){
+                    insert.execute();
+                    insert = new SQLInsertClause(con, dbTplConf, t_queue);
+                }
+            }
+            if(rows % INSERT_BATCH != 0){
+                insert.execute();
+            }
+            return true;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    public boolean exists(int runId){
+        try(Connection con = ds.getConnection()){
+            return new SQLQuery<Void>(con, dbTplConf)
+                .select(t_queue.runId)
+                .from(t_queue)
+                .where(t_queue.runId.eq(runId))
+                .fetchFirst() != null;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    /**
+     * searches left to do, failed or in flight with an expired lease when the run stopped, put back
+     * as pending. Searches leased by a live worker are left to it.
+     * @return search id to attempts
+     */
+    public Map<Integer,Integer> resume(int runId){
+        Map<Integer,Integer> attempts = new LinkedHashMap<>();
+        try(Connection con = ds.getConnection()){
+            Timestamp now = now(con);
+            new SQLUpdateClause(con, dbTplConf, t_queue)
+                .set(t_queue.state, State.PENDING.ordinal())
+                .set(t_queue.updated, now)
+                .setNull(t_queue.leaseOwner)
+                .setNull(t_queue.leaseExpires)
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.state.eq(State.FAILED.ordinal()).or(expiredLease(now)))
+                .execute();
+
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_queue.googleSearchId, t_queue.attempts)
+                .from(t_queue)
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.state.eq(State.PENDING.ordinal()))
+                .orderBy(t_queue.googleSearchId.asc())
+                .fetch();
+            for (Tuple tuple : tuples) {
+                Integer count = tuple.get(t_queue.attempts);
+                attempts.put(tuple.get(t_queue.googleSearchId), count == null ? 0 : count);
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return attempts;
+    }
+
+    /**
+     * a thread of the owner starts scraping the search, fails if the search is done or leased by
+     * another owner
+     */
+    public boolean lease(int runId, int googleSearchId, String owner, int attempts, int leaseSeconds){
+        try(Connection con = ds.getConnection()){
+            Timestamp now = now(con);
+            return new SQLUpdateClause(con, dbTplConf, t_queue)
+                .set(t_queue.state, State.LEASED.ordinal())
+                .set(t_queue.attempts, attempts)
+                .set(t_queue.updated, now)
+                .set(t_queue.leaseOwner, owner)
+                .set(t_queue.leaseExpires, new Timestamp(now.getTime() + leaseSeconds * 1000l))
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.googleSearchId.eq(googleSearchId))
+                .where(t_queue.state.eq(State.PENDING.ordinal()).or(
+                    t_queue.state.eq(State.LEASED.ordinal()).and(t_queue.leaseOwner.eq(owner))
+                ).or(expiredLease(now)))
+                .execute() == 1;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    /**
+     * lease up to max pending searches or searches of an expired lease. Each row is taken with a
+     * conditional update, concurrent owners never get the same search.
+     * @return search id to attempts of the searches leased
+     */
+    public Map<Integer,Integer> claim(int runId, String owner, int max, int leaseSeconds){
+        Map<Integer,Integer> claimed = new LinkedHashMap<>();
+        try(Connection con = ds.getConnection()){
+            Timestamp now = now(con);
+            Timestamp expires = new Timestamp(now.getTime() + leaseSeconds * 1000l);
+
+            // more candidates than needed, other owners take some of them
+            List<Tuple> candidates = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_queue.googleSearchId, t_queue.attempts)
+                .from(t_queue)
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.state.eq(State.PENDING.ordinal()).or(expiredLease(now)))
+                .orderBy(t_queue.attempts.asc(), t_queue.googleSearchId.asc())
+                .limit(max * 4l)
+                .fetch();
+
+            for (Tuple candidate : candidates) {
+                if(claimed.size() >= max){
+                    break;
+                }
+                long updated = new SQLUpdateClause(con, dbTplConf, t_queue)
+                    .set(t_queue.state, State.LEASED.ordinal())
+                    .set(t_queue.updated, now)
+                    .set(t_queue.leaseOwner, owner)
+                    .set(t_queue.leaseExpires, expires)
+                    .where(t_queue.runId.eq(runId))
+                    .where(t_queue.googleSearchId.eq(candidate.get(t_queue.googleSearchId)))
+                    .where(t_queue.state.eq(State.PENDING.ordinal()).or(expiredLease(now)))
+                    .execute();
+                if(updated == 1){
+                    Integer attempts = candidate.get(t_queue.attempts);
+                    claimed.put(candidate.get(t_queue.googleSearchId), attempts == null ? 0 : attempts);
+                }
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return claimed;
+    }
+
+    /**
+     * put back as pending the searches still leased by the owner, when it stops
+     */
+    public long release(int runId, String owner){
+        try(Connection con = ds.getConnection()){
+            return new SQLUpdateClause(con, dbTplConf, t_queue)
+                .set(t_queue.state, State.PENDING.ordinal())
+                .set(t_queue.updated, now(con))
+                .setNull(t_queue.leaseOwner)
+                .setNull(t_queue.leaseExpires)
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.state.eq(State.LEASED.ordinal()))
+                .where(t_queue.leaseOwner.eq(owner))
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return 0;
+    }
+
+    /**
+     * @return searches pending or of an expired lease
+     */
+    public int countClaimable(int runId){
+        try(Connection con = ds.getConnection()){
+            Long count = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_queue.googleSearchId.count())
+                .from(t_queue)
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.state.eq(State.PENDING.ordinal()).or(expiredLease(now(con))))
+                .fetchFirst();
+            return count == null ? 0 : count.intValue();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return 0;
+    }
+
+    /**
+     * @return searches leased by other owners and not expired
+     */
+    public int countLeasedByOthers(int runId, String owner){
+        try(Connection con = ds.getConnection()){
+            Long count = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_queue.googleSearchId.count())
+                .from(t_queue)
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.state.eq(State.LEASED.ordinal()))
+                .where(t_queue.leaseOwner.ne(owner))
+                .where(t_queue.leaseExpires.gt(now(con)))
+                .fetchFirst();
+            return count == null ? 0 : count.intValue();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return 0;
+    }
+
+    /**
+     * clock of the database, the web process and the workers of other hosts lease and expire with the
+     * same time whatever the drift of their own clocks
+     */
+    protected Timestamp now(Connection con) throws SQLException {
+        try(Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery("SELECT CURRENT_TIMESTAMP")){
+            if(!rs.next()){
+                throw new SQLException("no CURRENT_TIMESTAMP");
+            }
+            return rs.getTimestamp(1);
+        }
+    }
+
+    protected Predicate expiredLease(Timestamp now){
+        return t_queue.state.eq(State.LEASED.ordinal())
+            .and(t_queue.leaseExpires.isNull().or(t_queue.leaseExpires.lt(now)));
+    }
+
+    public boolean done(int runId, int googleSearchId){
+        return update(runId, googleSearchId, State.DONE, null);
+    }
+
+    /**
+     * the search was given up
+     */
+    public boolean fail(int runId, int googleSearchId){
+        return update(runId, googleSearchId, State.FAILED, null);
+    }
+
+    protected boolean update(int runId, int googleSearchId, State state, Integer attempts){
+        try(Connection con = ds.getConnection()){
+            SQLUpdateClause update = new SQLUpdateClause(con, dbTplConf, t_queue)
+                .set(t_queue.state, state.ordinal())
+                .set(t_queue.updated, now(con))
+                .setNull(t_queue.leaseExpires)
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.googleSearchId.eq(googleSearchId));
+            if(attempts != null){
+                update.set(t_queue.attempts, attempts);
+            }
+            return update.execute() == 1;
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return false;
+    }
+
+    public Map<State,Integer> countByState(int runId){
+        Map<State,Integer> counts = new EnumMap<>(State.class);
+        try(Connection con = ds.getConnection()){
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_queue.state, t_queue.googleSearchId.count())
+                .from(t_queue)
+                .where(t_queue.runId.eq(runId))
+                .groupBy(t_queue.state)
+                .fetch();
+            for (Tuple tuple : tuples) {
+                counts.put(State.values()[tuple.get(t_queue.state)], tuple.get(t_queue.googleSearchId.count()).intValue());
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return counts;
+    }
+
+    public void delete(int runId){
+        delete(Collections.singletonList(runId));
+    }
+
+    /**
+     * remove searches from the queue of the run, they are left to another run
+     */
+    public long delete(int runId, Collection<Integer> googleSearchIds){
+        if(googleSearchIds.isEmpty()){
+            return 0;
+        }
+        try(Connection con = ds.getConnection()){
+            return new SQLDeleteClause(con, dbTplConf, t_queue)
+                .where(t_queue.runId.eq(runId))
+                .where(t_queue.googleSearchId.in(googleSearchIds))
+                .where(t_queue.state.ne(State.DONE.ordinal()))
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return 0;
+    }
+
+    public void delete(Collection<Integer> runIds){
+        try(Connection con = ds.getConnection()){
+            new SQLDeleteClause(con, dbTplConf, t_queue)
+                .where(t_queue.runId.in(runIds))
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+    public void wipe(){
+        try(Connection con = ds.getConnection()){
+            new SQLDeleteClause(con, dbTplConf, t_queue)
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+    }
+
+}
@@ -249,6 +249,8 @@ public class GoogleSearchDB extends AbstractDB {
             if(groups != null){
                 query.join(t_ggroup).on(t_gsearch.id.eq(t_ggroup.googleSearchId));
                 query.where(t_ggroup.groupId.in(groups));
+                // a search can belong to several of the groups
+                query.distinct();
             }
             
             List<Tuple> tuples = query.fetch();
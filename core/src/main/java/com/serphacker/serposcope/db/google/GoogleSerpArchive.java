@@ -0,0 +1,336 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cold tier of GOOGLE_SERP : SERPs of old runs moved by {@link GoogleSerpDB#archive} to append-only
+ * segment files of the archive directory, read through memory-mapped I/O. Archived SERPs are self
+ * contained keyframes encoded with LZ4 and keep their url ids, {@link GoogleSerpDB} reads them when
+ * the rows are not in the database.
+ *
+ * Disabled until a directory is configured with {@value #DIR}.
+ */
+@Singleton
+public class GoogleSerpArchive {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GoogleSerpArchive.class);
+
+    public final static String DIR = "serposcope.archivedir";
+    public final static long MAX_SEGMENT_SIZE = 256l * 1024l * 1024l;
+    public final static int DEFAULT_ARCHIVE_DAYS = 90;
+
+    final static String SEGMENT_PREFIX = "serps-";
+    final static String DATA_EXT = ".seg";
+    final static String INDEX_EXT = ".idx";
+
+    public static class Entry {
+
+        final int runId;
+        final int googleSearchId;
+        final LocalDateTime runDay;
+        final byte[] blob;
+
+        public Entry(int runId, int googleSearchId, LocalDateTime runDay, byte[] blob) {
+            this.runId = runId;
+            this.googleSearchId = googleSearchId;
+            this.runDay = runDay;
+            this.blob = blob;
+        }
+
+        public int getRunId() {
+            return runId;
+        }
+
+        public int getGoogleSearchId() {
+            return googleSearchId;
+        }
+
+        public LocalDateTime getRunDay() {
+            return runDay;
+        }
+
+        public byte[] getBlob() {
+            return blob;
+        }
+
+    }
+
+    File dir;
+
+    /**
+     * segments by first run, replaced on each change so readers don't lock
+     */
+    volatile List<SerpSegment> segments = Collections.emptyList();
+
+    int nextSegment = 1;
+
+    /**
+     * removed segments whose files are still there, deleted again on the next changes
+     */
+    final List<SerpSegment> tombstones = new ArrayList<>();
+
+    @com.google.inject.Inject(optional = true)
+    public void setDirectory(@Named(DIR) String directory){
+        if(directory == null || directory.isEmpty()){
+            return;
+        }
+        open(new File(directory));
+    }
+
+    public synchronized void open(File directory){
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            LOG.error("can't create archive directory {}", directory);
+            return;
+        }
+        dir = directory;
+
+        List<SerpSegment> opened = new ArrayList<>();
+        File[] files = dir.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            String name = file.getName();
+            if(name.endsWith(".tmp")){
+                file.delete();
+                continue;
+            }
+            if(name.startsWith(SEGMENT_PREFIX) && name.endsWith(DATA_EXT)){
+                // crashed between the renames of the data and the index, its SERPs are still in the database
+                String base = name.substring(0, name.length() - DATA_EXT.length());
+                if(!new File(dir, base + INDEX_EXT).exists()){
+                    LOG.warn("deleting archive segment {} without index", file);
+                    file.delete();
+                }
+                continue;
+            }
+            if(!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(INDEX_EXT)){
+                continue;
+            }
+            String base = name.substring(0, name.length() - INDEX_EXT.length());
+            try {
+                nextSegment = Math.max(nextSegment, Integer.parseInt(base.substring(SEGMENT_PREFIX.length())) + 1);
+                opened.add(SerpSegment.open(new File(dir, base + DATA_EXT), file));
+            } catch(IOException | NumberFormatException ex){
+                LOG.error("can't open archive segment " + file, ex);
+            }
+        }
+        opened.sort(Comparator.comparingInt(SerpSegment::getFirstRunId));
+        segments = Collections.unmodifiableList(opened);
+
+        if(!opened.isEmpty()){
+            LOG.info("{} archive segments opened in {}", opened.size(), dir);
+        }
+    }
+
+    public boolean isEnabled(){
+        return dir != null;
+    }
+
+    public boolean isEmpty(){
+        return segments.isEmpty();
+    }
+
+    public Entry get(int runId, int googleSearchId){
+        long key = GoogleSerpDB.key(runId, googleSearchId);
+        for (SerpSegment segment : segments) {
+            if(runId < segment.getFirstRunId() || runId > segment.getLastRunId()){
+                continue;
+            }
+            int position = segment.find(key);
+            if(position >= 0){
+                return segment.read(position);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return SERPs of the run ordered by search
+     */
+    public List<Entry> listByRun(int runId){
+        List<Entry> entries = new ArrayList<>();
+        for (SerpSegment segment : segments) {
+            if(runId < segment.getFirstRunId() || runId > segment.getLastRunId()){
+                continue;
+            }
+            for (int i = segment.findRun(runId); i < segment.size() && GoogleSerpDB.runIdOf(segment.getKey(i)) == runId; i++) {
+                entries.add(segment.read(i));
+            }
+            if(!entries.isEmpty()){
+                break;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Scans the in-memory indexes, only the records of the search are read, one at a time as the
+     * iterator goes : the segments are merged by run.
+     * @return SERPs of the search ordered by run
+     */
+    public Iterator<Entry> listBySearch(int googleSearchId, Integer firstRun, Integer lastRun){
+        PriorityQueue<SearchCursor> cursors = new PriorityQueue<>(Comparator.comparingInt(SearchCursor::getRunId));
+        for (SerpSegment segment : segments) {
+            if((firstRun != null && segment.getLastRunId() < firstRun) || (lastRun != null && segment.getFirstRunId() > lastRun)){
+                continue;
+            }
+            SearchCursor cursor = new SearchCursor(segment, googleSearchId, lastRun);
+            if(cursor.seek(firstRun == null ? 0 : segment.findRun(firstRun))){
+                cursors.add(cursor);
+            }
+        }
+        
+        return new Iterator<Entry>() {
+            @Override
+            public boolean hasNext() {
+                return !cursors.isEmpty();
+            }
+
+            @Override
+            public Entry next() {
+                SearchCursor cursor = cursors.poll();
+                if(cursor == null){
+                    throw new NoSuchElementException();
+                }
+                Entry entry = cursor.segment.read(cursor.position);
+                if(cursor.seek(cursor.position + 1)){
+                    cursors.add(cursor);
+                }
+                return entry;
+            }
+        };
+    }
+
+    /**
+     * position of the next record of the search in a segment
+     */
+    static class SearchCursor {
+
+        final SerpSegment segment;
+        final int googleSearchId;
+        final Integer lastRun;
+        int position;
+
+        SearchCursor(SerpSegment segment, int googleSearchId, Integer lastRun) {
+            this.segment = segment;
+            this.googleSearchId = googleSearchId;
+            this.lastRun = lastRun;
+        }
+
+        /**
+         * @return false when the segment has no more record of the search
+         */
+        boolean seek(int from){
+            for (position = from; position < segment.size(); position++) {
+                long key = segment.getKey(position);
+                if(lastRun != null && GoogleSerpDB.runIdOf(key) > lastRun){
+                    return false;
+                }
+                if(GoogleSerpDB.googleSearchIdOf(key) == googleSearchId){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int getRunId(){
+            return GoogleSerpDB.runIdOf(segment.getKey(position));
+        }
+
+    }
+
+    /**
+     * @return archived runs in ascending order
+     */
+    public List<Integer> listRunIds(){
+        TreeSet<Integer> runIds = new TreeSet<>();
+        for (SerpSegment segment : segments) {
+            for (int i = 0; i < segment.size(); i++) {
+                runIds.add(GoogleSerpDB.runIdOf(segment.getKey(i)));
+            }
+        }
+        return new ArrayList<>(runIds);
+    }
+
+    synchronized SerpSegment.Writer newSegment() throws IOException {
+        if(dir == null){
+            throw new IllegalStateException("archive directory not configured");
+        }
+        String base = String.format("%s%06d", SEGMENT_PREFIX, nextSegment++);
+        return new SerpSegment.Writer(new File(dir, base + DATA_EXT), new File(dir, base + INDEX_EXT));
+    }
+
+    synchronized void add(SerpSegment segment){
+        deleteTombstones();
+        List<SerpSegment> updated = new ArrayList<>(segments);
+        updated.add(segment);
+        updated.sort(Comparator.comparingInt(SerpSegment::getFirstRunId));
+        segments = Collections.unmodifiableList(updated);
+    }
+
+    synchronized void remove(SerpSegment segment){
+        List<SerpSegment> updated = new ArrayList<>(segments);
+        updated.remove(segment);
+        segments = Collections.unmodifiableList(updated);
+        // readers may still use the mapping, it isn't unmapped explicitly : the space is reclaimed once 
+        // the mapping is collected, and Windows refuses to delete the data until then
+        if(!segment.delete()){
+            LOG.warn("can't delete archive segment {} yet, will retry", segment.data);
+            tombstones.add(segment);
+        }
+        deleteTombstones();
+    }
+
+    /**
+     * @return number of segments still to delete
+     */
+    synchronized int deleteTombstones(){
+        tombstones.removeIf(SerpSegment::delete);
+        return tombstones.size();
+    }
+
+    List<SerpSegment> getSegments(){
+        return segments;
+    }
+
+    /**
+     * delete the segments holding only runs before firstKeptRunId
+     * @return number of segments deleted
+     */
+    public int dropBefore(int firstKeptRunId){
+        int dropped = 0;
+        for (SerpSegment segment : segments) {
+            if(segment.getLastRunId() < firstKeptRunId){
+                remove(segment);
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    public void wipe(){
+        for (SerpSegment segment : segments) {
+            remove(segment);
+        }
+    }
+
+}
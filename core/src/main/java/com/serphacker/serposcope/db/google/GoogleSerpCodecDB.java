@@ -0,0 +1,217 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLInsertClause;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.db.base.ConfigDB;
+import com.serphacker.serposcope.db.codec.BlobCodec;
+import com.serphacker.serposcope.db.codec.BlobCodecs;
+import com.serphacker.serposcope.db.codec.CodecBenchmark;
+import com.serphacker.serposcope.db.codec.DeflateDictionaryCodec;
+import com.serphacker.serposcope.db.codec.DictionaryTrainer;
+import com.serphacker.serposcope.db.codec.LZ4Codec;
+import com.serphacker.serposcope.querybuilder.QGoogleSerp;
+import com.serphacker.serposcope.querybuilder.QGoogleSerpDictionary;
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.rowset.serial.SerialBlob;
+
+/**
+ * Codecs of the SERP blobs. Dictionaries are trained from stored SERPs and versioned in GOOGLE_SERP_DICTIONARY,
+ * a dictionary is never deleted while blobs may reference it. The default codec stays LZ4 until switched
+ * with {@link #setDefaultCodec(String)}.
+ */
+@Singleton
+public class GoogleSerpCodecDB extends AbstractDB {
+
+    public final static String SERP_CODEC = "google.serp_codec";
+    public final static int DEFAULT_SAMPLE_SIZE = 2000;
+
+    QGoogleSerp t_serp = QGoogleSerp.googleSerp;
+    QGoogleSerpDictionary t_dictionary = QGoogleSerpDictionary.googleSerpDictionary;
+
+    @Inject
+    ConfigDB config;
+
+    volatile BlobCodecs codecs;
+
+    public byte[] encode(byte[] data){
+        return getCodecs().encode(data);
+    }
+
+    /**
+     * dictionaries trained since the codecs were loaded, by another process sharing the database, are 
+     * read once before failing on an unknown dictionary
+     */
+    public byte[] decode(byte[] blob){
+        BlobCodecs current = getCodecs();
+        if(!current.canDecode(blob)){
+            current = reload(current);
+        }
+        return current.decode(blob);
+    }
+
+    public BlobCodecs getCodecs(){
+        BlobCodecs current = codecs;
+        if(current == null){
+            current = load();
+        }
+        return current;
+    }
+
+    protected synchronized BlobCodecs load(){
+        if(codecs != null){
+            return codecs;
+        }
+
+        BlobCodecs loaded = new BlobCodecs();
+        DeflateDictionaryCodec latest = null;
+        try(Connection con = ds.getConnection()){
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_dictionary.id, t_dictionary.dictionary)
+                .from(t_dictionary)
+                .orderBy(t_dictionary.id.asc())
+                .fetch();
+
+            for (Tuple tuple : tuples) {
+                Blob blob = tuple.get(t_dictionary.dictionary);
+                latest = new DeflateDictionaryCodec(tuple.get(t_dictionary.id), blob.getBytes(1, (int)blob.length()));
+                loaded.addDictionaryCodec(latest);
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+
+        if(DeflateDictionaryCodec.NAME.equals(config.get(SERP_CODEC, LZ4Codec.NAME)) && latest != null){
+            loaded.setDefaultCodec(latest);
+        }
+
+        codecs = loaded;
+        return loaded;
+    }
+
+    protected synchronized BlobCodecs reload(BlobCodecs stale){
+        if(codecs == stale){
+            codecs = null;
+        }
+        return load();
+    }
+
+    /**
+     * must be called whenever the database is recreated or imported
+     */
+    public void clearCache(){
+        codecs = null;
+    }
+
+    /**
+     * @param name {@link LZ4Codec#NAME} or {@link DeflateDictionaryCodec#NAME} (latest dictionary)
+     */
+    public boolean setDefaultCodec(String name){
+        if(!LZ4Codec.NAME.equals(name) && !DeflateDictionaryCodec.NAME.equals(name)){
+            return false;
+        }
+        config.update(SERP_CODEC, name);
+        clearCache();
+        return true;
+    }
+
+    public String getDefaultCodecName(){
+        return getCodecs().getDefaultCodec().getName();
+    }
+
+    /**
+     * decoded payloads of the most recent SERPs
+     */
+    public List<byte[]> sample(int size){
+        List<byte[]> samples = new ArrayList<>();
+        try(Connection con = ds.getConnection()){
+            List<Blob> blobs = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.serp)
+                .from(t_serp)
+                .orderBy(t_serp.runId.desc())
+                .limit(size)
+                .fetch();
+
+            for (Blob blob : blobs) {
+                if(blob != null){
+                    samples.add(decode(blob.getBytes(1, (int)blob.length())));
+                }
+            }
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return samples;
+    }
+
+    /**
+     * train a dictionary from the most recent SERPs and store it as a new version
+     * @return id of the dictionary, null if there is nothing to train on
+     */
+    public Integer trainDictionary(int sampleSize){
+        List<byte[]> samples = sample(sampleSize);
+        byte[] dictionary = DictionaryTrainer.train(samples, DictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+        if(dictionary.length == 0){
+            LOG.info("no dictionary trained from {} samples", samples.size());
+            return null;
+        }
+
+        Integer id = null;
+        try(Connection con = ds.getConnection()){
+            id = new SQLInsertClause(con, dbTplConf, t_dictionary)
+                .set(t_dictionary.created, Timestamp.valueOf(LocalDateTime.now()))
+                .set(t_dictionary.dictionary, new SerialBlob(dictionary))
+                .executeWithKey(t_dictionary.id);
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+
+        LOG.info("dictionary {} trained from {} samples, {} bytes", id, samples.size(), dictionary.length);
+        clearCache();
+        return id;
+    }
+
+    /**
+     * Compare the codecs on the most recent SERPs. The dictionary is trained on half of the sample and
+     * measured on the other half, so the ratio isn't flattered by samples it has already seen.
+     */
+    public List<CodecBenchmark> benchmark(int sampleSize){
+        List<byte[]> samples = sample(sampleSize);
+        List<byte[]> training = new ArrayList<>();
+        List<byte[]> testing = new ArrayList<>();
+        for (int i = 0; i < samples.size(); i++) {
+            (i % 2 == 0 ? training : testing).add(samples.get(i));
+        }
+
+        List<CodecBenchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(CodecBenchmark.run(LZ4Codec.NAME, new LZ4Codec(), testing));
+        benchmarks.add(CodecBenchmark.run("deflate", new DeflateDictionaryCodec(0, null), testing));
+        benchmarks.add(CodecBenchmark.run(DeflateDictionaryCodec.NAME + " (trained)",
+            new DeflateDictionaryCodec(0, DictionaryTrainer.train(training, DictionaryTrainer.DEFAULT_DICTIONARY_SIZE)),
+            testing
+        ));
+
+        BlobCodec current = getCodecs().getDefaultCodec();
+        if(current instanceof DeflateDictionaryCodec){
+            benchmarks.add(CodecBenchmark.run(DeflateDictionaryCodec.NAME + " #"
+                + ((DeflateDictionaryCodec)current).getDictionaryId(), current, testing));
+        }
+
+        return benchmarks;
+    }
+
+}
@@ -7,61 +7,307 @@
  */
 package com.serphacker.serposcope.db.google;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.NumberExpression;
 import com.querydsl.sql.SQLQuery;
 import com.querydsl.sql.dml.SQLDeleteClause;
 import com.querydsl.sql.dml.SQLInsertClause;
+import com.querydsl.sql.dml.SQLUpdateClause;
 import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.db.UnitOfWork;
+import com.serphacker.serposcope.db.base.UnitOfWorkDB;
+import com.serphacker.serposcope.db.codec.BlobCodecs;
+import com.serphacker.serposcope.db.codec.LZ4Codec;
 import com.serphacker.serposcope.models.google.GoogleSerp;
 import com.serphacker.serposcope.querybuilder.QGoogleSerp;
-import java.nio.ByteBuffer;
+import java.io.IOException;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
 import javax.sql.rowset.serial.SerialBlob;
-import net.jpountz.lz4.LZ4Compressor;
-import net.jpountz.lz4.LZ4Factory;
-import net.jpountz.lz4.LZ4FastDecompressor;
 
+/**
+ * SERPs are stored as a delta against the SERP of the previous run of the same search (see GoogleSerp 
+ * serial versions), with a keyframe at least every MAX_DELTA_CHAIN+1 runs to bound decoding. 
+ * base_run_id references the base row, rows based on a deleted run are rewritten as keyframes first.
+ */
 @Singleton
 public class GoogleSerpDB extends AbstractDB {
     
+    public final static int MAX_DELTA_CHAIN = 15;
+    public final static int DECODED_CACHE_SIZE = 1024;
+    public final static int IN_CHUNK_SIZE = 500;
+    
     QGoogleSerp t_serp = QGoogleSerp.googleSerp;
     
-    LZ4Factory factory = LZ4Factory.fastestInstance();
-    LZ4Compressor compressor = factory.fastCompressor();
-    LZ4FastDecompressor decompressor = factory.fastDecompressor();    
-
+    @Inject
+    GoogleUrlDB urlDB;
+    
+    @Inject
+    GoogleSerpCodecDB codecDB;
+    
+    @Inject
+    GoogleSerpArchive archive;
+    
+    @Inject
+    UnitOfWorkDB uowDB;
+    
+    /**
+     * Inserts hold the read lock, the detach of the runs to delete holds the write lock until their 
+     * SERPs are gone : a SERP inserted meanwhile could be based on one of them. Only guards the 
+     * inserts of this process.
+     */
+    final ReadWriteLock detachLock = new ReentrantReadWriteLock();
+    
+    /**
+     * decoded SERPs used as base, never handed to callers
+     */
+    final Cache<Long,GoogleSerp> decodedCache = CacheBuilder.newBuilder().maximumSize(DECODED_CACHE_SIZE).build();
+    
     public boolean insert(GoogleSerp serp){
-        boolean inserted = false;
+        return insert(Arrays.asList(serp)) == 1;
+    }
+    
+    /**
+     * JDBC batched insert, batches are split to stay under half of max_allowed_packet. A SERP can be 
+     * a delta against an older SERP of the same search from the same collection.
+     * @return number of SERPs inserted
+     */
+    public int insert(Collection<GoogleSerp> serps){
+        if(serps.isEmpty()){
+            return 0;
+        }
+        int inserted = 0;
+        
+        Set<String> urls = new HashSet<>();
+        for (GoogleSerp serp : serps) {
+            urls.addAll(serp.getUrlsWithoutId());
+        }
+        Map<String,Integer> urlIds = urlDB.getIds(urls);
         
+        List<GoogleSerp> sorted = new ArrayList<>(serps);
+        sorted.sort(Comparator.comparingInt(GoogleSerp::getRunId).thenComparingInt(GoogleSerp::getGoogleSearchId));
+        Set<Integer> searchIds = new HashSet<>();
+        for (GoogleSerp serp : sorted) {
+            serp.setUrlIds(urlIds);
+            searchIds.add(serp.getGoogleSearchId());
+        }
+        
+        detachLock.readLock().lock();
         try(Connection con = ds.getConnection()){
             
-            inserted = new SQLInsertClause(con, dbTplConf, t_serp)
-                .set(t_serp.runId, serp.getRunId())
-                .set(t_serp.googleSearchId, serp.getGoogleSearchId())
-                .set(t_serp.runDay, Timestamp.valueOf(serp.getRunDay()))
-                .set(t_serp.serp, new SerialBlob(compress(serp.getSerializedEntries())))
-                .execute() == 1;
+            Map<Integer,GoogleSerp> bases = findPrevious(con, sorted.get(0).getRunId(), searchIds);
+            int maxBatchBytes = getMaxAllowedPacket(con) / 2;
+            
+            SQLInsertClause insert = new SQLInsertClause(con, dbTplConf, t_serp);
+            int batchSize = 0;
+            int batchBytes = 0;
+            
+            for (GoogleSerp serp : sorted) {
+                Integer baseRunId = null;
+                byte[] data = null;
+                
+                GoogleSerp base = bases.get(serp.getGoogleSearchId());
+                if(base != null && base.getRunId() < serp.getRunId() && base.getChainDepth() < MAX_DELTA_CHAIN){
+                    data = serp.getSerializedDelta(base);
+                    if(data != null){
+                        baseRunId = base.getRunId();
+                    }
+                }
+                if(data == null){
+                    data = serp.getSerializedEntries();
+                }
+                
+                // decoded as written, keeps the chain depth for the next SERP of the search
+                GoogleSerp written = new GoogleSerp(serp.getRunId(), serp.getGoogleSearchId(), serp.getRunDay());
+                written.setSerializedEntries(data);
+                if(written.isDeltaPending()){
+                    written.applyBase(base);
+                }
+                bases.put(serp.getGoogleSearchId(), written);
+                
+                byte[] compressed = compress(data);
+                if(batchSize > 0 && batchBytes + compressed.length > maxBatchBytes){
+                    insert.execute();
+                    inserted += batchSize;
+                    insert = new SQLInsertClause(con, dbTplConf, t_serp);
+                    batchSize = 0;
+                    batchBytes = 0;
+                }
+                
+                insert
+                    .set(t_serp.runId, serp.getRunId())
+                    .set(t_serp.googleSearchId, serp.getGoogleSearchId())
+                    .set(t_serp.runDay, Timestamp.valueOf(serp.getRunDay()))
+                    .set(t_serp.serp, new SerialBlob(compressed))
+                    .set(t_serp.baseRunId, baseRunId)
+                    .addBatch();
+                batchSize++;
+                batchBytes += compressed.length;
+            }
+            
+            // drivers rewriting batches don't report the row counts, a failed batch throws
+            if(batchSize > 0){
+                insert.execute();
+                inserted += batchSize;
+            }
 
         } catch(Exception ex){
             LOG.error("SQL error", ex);
+        } finally {
+            detachLock.readLock().unlock();
         }
         
         return inserted;
     }
     
-    public void deleteByRun(int runId){
+    /**
+     * latest decoded SERP of each search before the run
+     */
+    protected Map<Integer,GoogleSerp> findPrevious(Connection con, int runId, Collection<Integer> googleSearchIds) throws Exception {
+        NumberExpression<Integer> maxRunId = t_serp.runId.max();
+        Set<Long> keys = new HashSet<>();
+        for (List<Integer> chunk : Iterables.partition(googleSearchIds, IN_CHUNK_SIZE)) {
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.googleSearchId, maxRunId)
+                .from(t_serp)
+                .where(t_serp.googleSearchId.in(chunk))
+                .where(t_serp.runId.lt(runId))
+                .groupBy(t_serp.googleSearchId)
+                .fetch();
+            
+            for (Tuple tuple : tuples) {
+                keys.add(key(tuple.get(maxRunId), tuple.get(t_serp.googleSearchId)));
+            }
+        }
+        
+        Map<Integer,GoogleSerp> previous = new HashMap<>();
+        for (GoogleSerp serp : decode(con, fetchRows(con, keys)).values()) {
+            previous.put(serp.getGoogleSearchId(), serp);
+        }
+        return previous;
+    }
+    
+    /**
+     * SERPs can't be inserted until the lock is released, held from the detach of runs to the delete 
+     * of their SERPs
+     */
+    public Lock lockInserts(){
+        Lock lock = detachLock.writeLock();
+        lock.lock();
+        return lock;
+    }
+    
+    /**
+     * rewrite as keyframes the SERPs based on one of these runs which are not part of them, 
+     * must be called before deleting the SERPs of the runs, with {@link #lockInserts()} held until then
+     */
+    public void detachFromRuns(Collection<Integer> runIds){
+        Lock lock = lockInserts();
         try(Connection con = ds.getConnection()){
+            detachFromRuns(con, runIds);
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        } finally {
+            lock.unlock();
+        }
+        decodedCache.invalidateAll();
+    }
+    
+    /**
+     * rewrites decoded by chunk and updated by batch, batches stay under half of max_allowed_packet
+     */
+    protected int detachFromRuns(Connection con, Collection<Integer> runIds) throws Exception {
+        Set<Integer> detached = new HashSet<>(runIds);
+        List<Long> keys = new ArrayList<>();
+        for (List<Integer> chunk : Iterables.partition(runIds, IN_CHUNK_SIZE)) {
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.runId, t_serp.googleSearchId)
+                .from(t_serp)
+                .where(t_serp.baseRunId.in(chunk))
+                .fetch();
+            for (Tuple tuple : tuples) {
+                if(!detached.contains(tuple.get(t_serp.runId))){
+                    keys.add(key(tuple.get(t_serp.runId), tuple.get(t_serp.googleSearchId)));
+                }
+            }
+        }
+        
+        int maxBatchBytes = getMaxAllowedPacket(con) / 2;
+        for (List<Long> chunk : Iterables.partition(keys, IN_CHUNK_SIZE)) {
+            SQLUpdateClause update = new SQLUpdateClause(con, dbTplConf, t_serp);
+            int batchSize = 0;
+            int batchBytes = 0;
+            for (GoogleSerp serp : decode(con, fetchRows(con, chunk)).values()) {
+                byte[] compressed = compress(serp.getSerializedEntries());
+                if(batchSize > 0 && batchBytes + compressed.length > maxBatchBytes){
+                    update.execute();
+                    update = new SQLUpdateClause(con, dbTplConf, t_serp);
+                    batchSize = 0;
+                    batchBytes = 0;
+                }
+                update
+                    .set(t_serp.serp, new SerialBlob(compressed))
+                    .setNull(t_serp.baseRunId)
+                    .where(t_serp.runId.eq(serp.getRunId()))
+                    .where(t_serp.googleSearchId.eq(serp.getGoogleSearchId()))
+                    .addBatch();
+                batchSize++;
+                batchBytes += compressed.length;
+            }
+            if(batchSize > 0){
+                update.execute();
+            }
+        }
+        
+        if(!keys.isEmpty()){
+            LOG.info("{} SERPs rewritten as keyframes", keys.size());
+        }
+        return keys.size();
+    }
+    
+    /**
+     * the rewrites of the SERPs based on the run and the delete of its SERPs are committed together
+     */
+    public void deleteByRun(int runId){
+        Lock lock = lockInserts();
+        try(UnitOfWork uow = uowDB.begin(); Connection con = ds.getConnection()){
+            detachFromRuns(con, Arrays.asList(runId));
             new SQLDeleteClause(con, dbTplConf, t_serp)
                 .where(t_serp.runId.eq(runId))
                 .execute();
+            uow.commit();
         } catch(Exception ex){
             LOG.error("SQL error", ex);
+        } finally {
+            lock.unlock();
         }
+        decodedCache.invalidateAll();
     }
     
     public void deleteBySearch(int searchId){
@@ -72,6 +318,7 @@ public class GoogleSerpDB extends AbstractDB {
         } catch(Exception ex){
             LOG.error("SQL error", ex);
         }
+        decodedCache.invalidateAll();
     }    
     
     public void wipe(){
@@ -81,6 +328,8 @@ public class GoogleSerpDB extends AbstractDB {
         } catch(Exception ex){
             LOG.error("SQL error", ex);
         }
+        archive.wipe();
+        decodedCache.invalidateAll();
     }
     
     public GoogleSerp get(int runId, int googleSearchId){
@@ -94,7 +343,11 @@ public class GoogleSerpDB extends AbstractDB {
                 .where(t_serp.googleSearchId.eq(googleSearchId))
                 .fetchFirst();
             
-            serp = fromTuple(tuple);
+            if(tuple == null){
+                serp = resolveUrls(fromArchive(archive.get(runId, googleSearchId)));
+            } else {
+                serp = fromTuple(con, tuple, null);
+            }
             
         }catch(Exception ex){
             LOG.error("SQL error", ex);
@@ -102,6 +355,186 @@ public class GoogleSerpDB extends AbstractDB {
         return serp;
     }
     
+    /**
+     * multi-get of the SERPs of every run and search given, missing SERPs are skipped
+     * @return SERPs ordered by run then search
+     */
+    public List<GoogleSerp> list(Collection<Integer> runIds, Collection<Integer> googleSearchIds){
+        List<Long> keys = new ArrayList<>();
+        for (Integer runId : runIds) {
+            for (Integer googleSearchId : googleSearchIds) {
+                keys.add(key(runId, googleSearchId));
+            }
+        }
+        
+        List<GoogleSerp> serps = new ArrayList<>();
+        if(keys.isEmpty()){
+            return serps;
+        }
+        
+        try(Connection con = ds.getConnection()){
+            serps.addAll(decode(con, fetchRows(con, keys)).values());
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        
+        serps.sort(Comparator.comparingInt(GoogleSerp::getRunId).thenComparingInt(GoogleSerp::getGoogleSearchId));
+        return serps;
+    }
+    
+    /**
+     * SERPs of all the searches of a run fetched with a single cursor
+     * @return SERPs by search id
+     */
+    public Map<Integer,GoogleSerp> listByRun(int runId){
+        return listByRun(runId, true);
+    }
+    
+    /**
+     * @param archived read the run from the archive if it isn't in the database
+     */
+    protected Map<Integer,GoogleSerp> listByRun(int runId, boolean archived){
+        Map<Integer,GoogleSerp> serps = new HashMap<>();
+        try(Connection con = ds.getConnection()){
+            
+            Map<Long,GoogleSerp> rows = new HashMap<>();
+            try(CloseableIterator<Tuple> iterate = streaming(new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.all())
+                .from(t_serp)
+                .where(t_serp.runId.eq(runId)))
+                .iterate()){
+                while(iterate.hasNext()){
+                    GoogleSerp serp = fromRow(iterate.next());
+                    rows.put(key(serp.getRunId(), serp.getGoogleSearchId()), serp);
+                }
+            }
+            
+            if(rows.isEmpty() && archived){
+                for (GoogleSerpArchive.Entry entry : archive.listByRun(runId)) {
+                    rows.put(key(entry.getRunId(), entry.getGoogleSearchId()), fromArchive(entry));
+                }
+            }
+            
+            for (GoogleSerp serp : decode(con, rows).values()) {
+                serps.put(serp.getGoogleSearchId(), serp);
+            }
+            
+        }catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return serps;
+    }
+    
+    /**
+     * rows of the given keys, entries not decoded yet
+     */
+    protected Map<Long,GoogleSerp> fetchRows(Connection con, Collection<Long> keys) throws Exception {
+        Map<Long,GoogleSerp> rows = new HashMap<>();
+        for (List<Long> chunk : Iterables.partition(keys, IN_CHUNK_SIZE)) {
+            
+            Map<Integer,List<Integer>> searchIdsByRun = new HashMap<>();
+            for (Long key : chunk) {
+                searchIdsByRun.computeIfAbsent(runIdOf(key), (k) -> new ArrayList<>()).add(googleSearchIdOf(key));
+            }
+            
+            BooleanBuilder where = new BooleanBuilder();
+            for (Map.Entry<Integer, List<Integer>> entry : searchIdsByRun.entrySet()) {
+                where.or(t_serp.runId.eq(entry.getKey()).and(t_serp.googleSearchId.in(entry.getValue())));
+            }
+            
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.all())
+                .from(t_serp)
+                .where(where)
+                .fetch();
+            
+            for (Tuple tuple : tuples) {
+                GoogleSerp serp = fromRow(tuple);
+                rows.put(key(serp.getRunId(), serp.getGoogleSearchId()), serp);
+            }
+            
+            if(rows.size() < keys.size() && !archive.isEmpty()){
+                for (Long key : chunk) {
+                    if(!rows.containsKey(key)){
+                        GoogleSerp serp = fromArchive(archive.get(runIdOf(key), googleSearchIdOf(key)));
+                        if(serp != null){
+                            rows.put(key, serp);
+                        }
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * Decode a set of rows at once : missing bases are fetched level by level of the delta chains 
+     * and the urls are resolved in a single lookup.
+     */
+    protected Map<Long,GoogleSerp> decode(Connection con, Map<Long,GoogleSerp> rows) throws Exception {
+        Map<Long,GoogleSerp> pendings = new HashMap<>(rows);
+        Map<Long,GoogleSerp> decoded = new HashMap<>();
+        
+        Collection<GoogleSerp> level = rows.values();
+        while(!level.isEmpty()){
+            Set<Long> missings = new HashSet<>();
+            for (GoogleSerp serp : level) {
+                if(!serp.isDeltaPending()){
+                    continue;
+                }
+                long baseKey = key(serp.getBaseRunId(), serp.getGoogleSearchId());
+                if(pendings.containsKey(baseKey) || decoded.containsKey(baseKey)){
+                    continue;
+                }
+                GoogleSerp cached = decodedCache.getIfPresent(baseKey);
+                if(cached != null){
+                    decoded.put(baseKey, cached);
+                } else {
+                    missings.add(baseKey);
+                }
+            }
+            Map<Long,GoogleSerp> bases = missings.isEmpty() ? Collections.emptyMap() : fetchRows(con, missings);
+            pendings.putAll(bases);
+            level = bases.values();
+        }
+        
+        for (Long key : pendings.keySet()) {
+            applyBases(key, pendings, decoded);
+        }
+        
+        Set<Integer> urlIds = new HashSet<>();
+        for (GoogleSerp serp : decoded.values()) {
+            urlIds.addAll(serp.getUnresolvedUrlIds());
+        }
+        if(!urlIds.isEmpty()){
+            Map<Integer,String> urls = urlDB.getUrls(urlIds);
+            for (GoogleSerp serp : decoded.values()) {
+                serp.resolveUrls(urls);
+            }
+        }
+        
+        decoded.keySet().retainAll(rows.keySet());
+        return decoded;
+    }
+    
+    protected GoogleSerp applyBases(long key, Map<Long,GoogleSerp> pendings, Map<Long,GoogleSerp> decoded) throws Exception {
+        GoogleSerp serp = decoded.get(key);
+        if(serp != null){
+            return serp;
+        }
+        
+        serp = pendings.get(key);
+        if(serp == null){
+            throw new IllegalStateException("missing base SERP of run " + runIdOf(key) + " search " + googleSearchIdOf(key));
+        }
+        
+        if(serp.isDeltaPending()){
+            serp.applyBase(applyBases(key(serp.getBaseRunId(), serp.getGoogleSearchId()), pendings, decoded));
+        }
+        decoded.put(key, serp);
+        return serp;
+    }
+    
 //    public void stream(Collection<Integer> runs, int googleSearchId, Consumer<GoogleSerp> callback){
 //        try(Connection con = ds.getConnection()){
 //            
@@ -123,6 +556,10 @@ public class GoogleSerpDB extends AbstractDB {
 //        }
 //    }    
     
+    /**
+     * SERPs of the search in run order, read through a streaming cursor and decoded one at a time, 
+     * memory doesn't depend on the range of runs
+     */
     public void stream(Integer firstRun, Integer lastRun, int googleSearchId, Consumer<GoogleSerp> callback){
         try(Connection con = ds.getConnection()){
             
@@ -138,14 +575,56 @@ public class GoogleSerpDB extends AbstractDB {
                 query.where(t_serp.runId.loe(lastRun));
             }
             
-            CloseableIterator<Tuple> iterate = query
+            // runs are streamed in order, the previous SERPs are the bases of the next ones
+            Map<Integer,GoogleSerp> keyframes = new LinkedHashMap<Integer,GoogleSerp>(){
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, GoogleSerp> eldest) {
+                    return size() > MAX_DELTA_CHAIN + 1;
+                }
+            };
+            
+            // archived runs are merged in run order, the database wins if a run is in both
+            Iterator<GoogleSerpArchive.Entry> archived = archive.isEmpty() ? 
+                Collections.emptyIterator() : archive.listBySearch(googleSearchId, firstRun, lastRun);
+            GoogleSerpArchive.Entry nextArchived = archived.hasNext() ? archived.next() : null;
+            
+            try(CloseableIterator<Tuple> iterate = streaming(query)
                 .where(t_serp.googleSearchId.eq(googleSearchId))
                 .orderBy(t_serp.runId.asc())
-                .iterate();
+                .iterate()){
+                
+                while(iterate.hasNext()){
+                    GoogleSerp serp = fromRow(iterate.next());
+                    for (; nextArchived != null && nextArchived.getRunId() <= serp.getRunId(); 
+                        nextArchived = archived.hasNext() ? archived.next() : null) {
+                        if(nextArchived.getRunId() < serp.getRunId()){
+                            acceptArchived(nextArchived, keyframes, callback);
+                        }
+                    }
+                    
+                    if(serp.isDeltaPending()){
+                        GoogleSerp base = keyframes.get(serp.getBaseRunId());
+                        if(base == null){
+                            // the connection of the cursor, also the one of the unit of work if any, can't run 
+                            // the lookup while streaming
+                            try(Connection lookup = getDetachedConnection()){
+                                base = getDecoded(lookup, serp.getBaseRunId(), googleSearchId, null);
+                            }
+                        }
+                        serp.applyBase(base);
+                    }
+                    Set<Integer> urlIds = serp.getUnresolvedUrlIds();
+                    if(!urlIds.isEmpty()){
+                        serp.resolveUrls(urlDB.getUrls(urlIds));
+                    }
+                    
+                    keyframes.put(serp.getRunId(), serp.copy());
+                    callback.accept(serp);
+                }
+            }
             
-            while(iterate.hasNext()){
-                GoogleSerp serp = fromTuple(iterate.next());
-                callback.accept(serp);
+            for (; nextArchived != null; nextArchived = archived.hasNext() ? archived.next() : null) {
+                acceptArchived(nextArchived, keyframes, callback);
             }
             
         }catch(Exception ex){
@@ -153,52 +632,329 @@ public class GoogleSerpDB extends AbstractDB {
         }
     }
     
-    protected GoogleSerp fromTuple(Tuple tuple) throws Exception{
+    /**
+     * @param decoded already decoded SERPs of the same search by run id, may be null
+     */
+    protected GoogleSerp fromTuple(Connection con, Tuple tuple, Map<Integer,GoogleSerp> decoded) throws Exception{
         if(tuple == null){
             return null;
         }
         
+        GoogleSerp serp = fromRow(tuple);
+        if(serp.isDeltaPending()){
+            serp.applyBase(getDecoded(con, serp.getBaseRunId(), serp.getGoogleSearchId(), decoded));
+        }
+        Set<Integer> urlIds = serp.getUnresolvedUrlIds();
+        if(!urlIds.isEmpty()){
+            serp.resolveUrls(urlDB.getUrls(urlIds));
+        }
+        
+        return serp;
+        
+    }
+    
+    /**
+     * SERP of the row, a delta is left pending
+     */
+    protected GoogleSerp fromRow(Tuple tuple) throws Exception {
         GoogleSerp serp = new GoogleSerp(tuple.get(t_serp.runId), tuple.get(t_serp.googleSearchId), tuple.get(t_serp.runDay).toLocalDateTime());
         Blob blob = tuple.get(t_serp.serp);
         if(blob != null){
             byte[] compressedData = blob.getBytes(1,(int)blob.length());
             serp.setSerializedEntries(decompress(compressedData));
         }
-        
         return serp;
-        
     }
     
+    /**
+     * SERP of an archived entry, always a keyframe, urls not resolved
+     */
+    protected GoogleSerp fromArchive(GoogleSerpArchive.Entry entry) throws Exception {
+        if(entry == null){
+            return null;
+        }
+        GoogleSerp serp = new GoogleSerp(entry.getRunId(), entry.getGoogleSearchId(), entry.getRunDay());
+        serp.setSerializedEntries(decompress(entry.getBlob()));
+        return serp;
+    }
     
-    protected byte[] compress(byte[] data){
-        if(data == null || data.length < 1){
+    protected GoogleSerp resolveUrls(GoogleSerp serp){
+        if(serp == null){
             return null;
         }
+        Set<Integer> urlIds = serp.getUnresolvedUrlIds();
+        if(!urlIds.isEmpty()){
+            serp.resolveUrls(urlDB.getUrls(urlIds));
+        }
+        return serp;
+    }
+    
+    protected void acceptArchived(GoogleSerpArchive.Entry entry, Map<Integer,GoogleSerp> keyframes, 
+        Consumer<GoogleSerp> callback) throws Exception {
+        GoogleSerp serp = resolveUrls(fromArchive(entry));
+        keyframes.put(serp.getRunId(), serp.copy());
+        callback.accept(serp);
+    }
+    
+    /**
+     * fully decoded SERP, walking up the delta chain if needed
+     */
+    protected GoogleSerp getDecoded(Connection con, int runId, int googleSearchId, Map<Integer,GoogleSerp> decoded) throws Exception {
+        if(decoded != null && decoded.containsKey(runId)){
+            return decoded.get(runId);
+        }
         
-        int decompressedLength = data.length;
-        int maxCompressedLength = compressor.maxCompressedLength(decompressedLength);
-        byte[] tmp = new byte[maxCompressedLength];
-        int compressedLength = compressor.compress(data, 0, decompressedLength, tmp, 0, maxCompressedLength);
-
-        byte[] compressed = new byte[4 + compressedLength];
-        ByteBuffer.wrap(compressed, 0, 4).putInt(decompressedLength);
-        System.arraycopy(tmp, 0, compressed, 4, compressedLength);
+        long key = key(runId, googleSearchId);
+        GoogleSerp serp = decodedCache.getIfPresent(key);
+        if(serp != null){
+            return serp;
+        }
+        
+        Tuple tuple = new SQLQuery<Void>(con, dbTplConf)
+            .select(t_serp.all())
+            .from(t_serp)
+            .where(t_serp.runId.eq(runId))
+            .where(t_serp.googleSearchId.eq(googleSearchId))
+            .fetchFirst();
         
-        return compressed;
+        if(tuple == null){
+            serp = resolveUrls(fromArchive(archive.get(runId, googleSearchId)));
+            if(serp == null){
+                throw new IllegalStateException("missing base SERP of run " + runId + " search " + googleSearchId);
+            }
+            serp = serp.copy();
+        } else {
+            serp = fromTuple(con, tuple, decoded).copy();
+        }
+        decodedCache.put(key, serp);
+        return serp;
+    }
+    
+    
+    protected static long key(int runId, int googleSearchId){
+        return ((long)runId << 32) | (googleSearchId & 0xFFFFFFFFL);
+    }
+    
+    protected static int runIdOf(long key){
+        return (int)(key >>> 32);
+    }
+    
+    protected static int googleSearchIdOf(long key){
+        return (int)key;
+    }
+    
+    protected byte[] compress(byte[] data){
+        return codecDB.encode(data);
     }    
     
     protected byte[] decompress(byte[] compressed){
-        if(compressed == null || compressed.length < 5){
-            return null;
+        return codecDB.decode(compressed);
+    }    
+    
+    public List<Integer> listRunIds(){
+        List<Integer> runIds = new ArrayList<>();
+        try(Connection con = ds.getConnection()){
+            runIds = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.runId)
+                .distinct()
+                .from(t_serp)
+                .orderBy(t_serp.runId.asc())
+                .fetch();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return runIds;
+    }
+    
+    /**
+     * re-encode with the default codec the SERPs of the run which use another one
+     * @return number of SERPs re-encoded
+     */
+    public int recompress(int runId){
+        int recompressed = 0;
+        BlobCodecs codecs = codecDB.getCodecs();
+        try(Connection con = ds.getConnection()){
+            
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.googleSearchId, t_serp.serp)
+                .from(t_serp)
+                .where(t_serp.runId.eq(runId))
+                .fetch();
+            
+            SQLUpdateClause update = new SQLUpdateClause(con, dbTplConf, t_serp);
+            for (Tuple tuple : tuples) {
+                Blob blob = tuple.get(t_serp.serp);
+                if(blob == null){
+                    continue;
+                }
+                byte[] data = blob.getBytes(1, (int)blob.length());
+                if(codecs.isDefaultEncoding(data)){
+                    continue;
+                }
+                update
+                    .set(t_serp.serp, new SerialBlob(codecs.encode(codecDB.decode(data))))
+                    .where(t_serp.runId.eq(runId))
+                    .where(t_serp.googleSearchId.eq(tuple.get(t_serp.googleSearchId)))
+                    .addBatch();
+                recompressed++;
+            }
+            
+            if(recompressed > 0){
+                update.execute();
+            }
+            
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return recompressed;
+    }
+    
+    /**
+     * @return runs having SERPs in the database from before the day
+     */
+    public List<Integer> listRunIdsBefore(LocalDate day){
+        List<Integer> runIds = new ArrayList<>();
+        try(Connection con = ds.getConnection()){
+            runIds = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_serp.runId)
+                .distinct()
+                .from(t_serp)
+                .where(t_serp.runDay.lt(Timestamp.valueOf(day.atStartOfDay())))
+                .orderBy(t_serp.runId.asc())
+                .fetch();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return runIds;
+    }
+    
+    /**
+     * Move the SERPs of the runs from the database to the archive. SERPs of other runs based on them 
+     * are rewritten as keyframes first, rows are deleted once their segment is written.
+     * @return number of SERPs archived
+     */
+    public int archive(List<Integer> runIds){
+        if(!archive.isEnabled() || runIds.isEmpty()){
+            return 0;
         }
         
-        int decompressedLength = ByteBuffer.wrap(compressed, 0, 4).getInt();
-        byte[] decompressed = new byte[decompressedLength];
-        decompressor.decompress(compressed, 4, decompressed, 0, decompressedLength);
+        List<Integer> sorted = new ArrayList<>(runIds);
+        Collections.sort(sorted);
         
-        return decompressed;
-    }    
+        SerpSegment.Writer writer = null;
+        List<Integer> written = new ArrayList<>();
+        int archived = 0;
+        int pending = 0;
+        // held until the archived rows are deleted
+        Lock lock = lockInserts();
+        try {
+            detachFromRuns(runIds);
+            LZ4Codec lz4 = codecDB.getCodecs().getLZ4Codec();
+            for (Integer runId : sorted) {
+                Map<Integer,GoogleSerp> serps = listByRun(runId, false);
+                if(serps.isEmpty()){
+                    continue;
+                }
+                
+                if(writer == null){
+                    writer = archive.newSegment();
+                }
+                for (GoogleSerp serp : new TreeMap<>(serps).values()) {
+                    writer.add(serp.getRunId(), serp.getGoogleSearchId(), serp.getRunDay(), lz4.encode(serp.getSerializedEntries()));
+                }
+                written.add(runId);
+                pending += serps.size();
+                
+                if(writer.getSize() >= GoogleSerpArchive.MAX_SEGMENT_SIZE){
+                    commitSegment(writer, written);
+                    writer = null;
+                    written.clear();
+                    archived += pending;
+                    pending = 0;
+                }
+            }
+            
+            if(writer != null){
+                commitSegment(writer, written);
+                writer = null;
+                archived += pending;
+            }
+            
+        } catch(Exception ex){
+            LOG.error("archive error", ex);
+        } finally {
+            lock.unlock();
+            if(writer != null){
+                try {
+                    writer.close();
+                } catch(IOException ex){
+                    LOG.error("archive error", ex);
+                }
+            }
+        }
+        
+        return archived;
+    }
+    
+    protected void commitSegment(SerpSegment.Writer writer, List<Integer> runIds) throws Exception {
+        archive.add(writer.commit());
+        try(Connection con = ds.getConnection()){
+            new SQLDeleteClause(con, dbTplConf, t_serp)
+                .where(t_serp.runId.in(runIds))
+                .execute();
+        }
+        decodedCache.invalidateAll();
+    }
     
+    /**
+     * Move back the archived SERPs to the database, segments are deleted once restored. Runs already
+     * in the database are skipped.
+     * @return number of SERPs restored
+     */
+    public int restore(){
+        int restored = 0;
+        Set<Integer> runIds = new HashSet<>(listRunIds());
+        
+        for (SerpSegment segment : archive.getSegments()) {
+            try {
+                List<GoogleSerp> serps = new ArrayList<>();
+                for (int i = 0; i < segment.size(); i++) {
+                    GoogleSerpArchive.Entry entry = segment.read(i);
+                    if(runIds.contains(entry.getRunId())){
+                        continue;
+                    }
+                    if(!serps.isEmpty() && serps.get(0).getRunId() != entry.getRunId()){
+                        restored += restore(serps);
+                    }
+                    serps.add(fromArchive(entry));
+                }
+                restored += restore(serps);
+                
+                archive.remove(segment);
+            } catch(Exception ex){
+                LOG.error("restore error", ex);
+                break;
+            }
+        }
+        
+        decodedCache.invalidateAll();
+        return restored;
+    }
     
+    protected int restore(List<GoogleSerp> serps){
+        if(serps.isEmpty()){
+            return 0;
+        }
+        int inserted = insert(serps);
+        if(inserted != serps.size()){
+            throw new IllegalStateException("failed to restore SERPs of run " + serps.get(0).getRunId());
+        }
+        serps.clear();
+        return inserted;
+    }
+    
+    public void clearCache(){
+        decodedCache.invalidateAll();
+    }
     
 }
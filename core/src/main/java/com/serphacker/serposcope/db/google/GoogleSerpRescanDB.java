@@ -8,7 +8,9 @@
 
 package com.serphacker.serposcope.db.google;
 
+import com.serphacker.serposcope.db.UnitOfWork;
 import com.serphacker.serposcope.db.base.RunDB;
+import com.serphacker.serposcope.db.base.UnitOfWorkDB;
 import com.serphacker.serposcope.models.base.Run;
 import com.serphacker.serposcope.models.google.GoogleBest;
 import com.serphacker.serposcope.models.google.GoogleRank;
@@ -16,12 +18,11 @@ import com.serphacker.serposcope.models.google.GoogleSearch;
 import com.serphacker.serposcope.models.google.GoogleSerp;
 import com.serphacker.serposcope.models.google.GoogleTarget;
 import com.serphacker.serposcope.models.google.GoogleTargetSummary;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.inject.Inject;
@@ -50,22 +51,23 @@ public class GoogleSerpRescanDB {
     @Inject
     RunDB runDB;
     
+    @Inject
+    UnitOfWorkDB uowDB;
+    
     public void rescanNonBulk(Integer specificRunId, Collection<GoogleTarget> targets, Collection<GoogleSearch> searches,  boolean updateSummary) {
         LOG.debug("SERP rescan (non-bulk) : starting");
         long _start = System.currentTimeMillis();
-        Run specPrevRun = null;
-        Map<Integer, GoogleTargetSummary> specPrevRunSummaryByTarget = new HashMap<>();
-        
-        if(specificRunId != null){
-            specPrevRun = runDB.findPrevious(specificRunId);
-            if(specPrevRun != null){
-                specPrevRunSummaryByTarget = targetSummaryDB.list(specPrevRun.getId()).stream()
-                    .collect(Collectors.toMap(GoogleTargetSummary::getTargetId, Function.identity()));
-            }
-        }        
+        // previous run of each group, runs may check some groups only
+        Map<Integer, Run> specPrevRunByGroup = new HashMap<>();
+        Map<Integer, Map<Integer, GoogleTargetSummary>> specPrevRunSummaries = new HashMap<>();
         
         for (GoogleTarget target : targets) {
             
+            Run specPrevRun = findPrevious(specificRunId, target.getGroupId(), specPrevRunByGroup);
+            Map<Integer, GoogleTargetSummary> specPrevRunSummaryByTarget = specPrevRun == null ? new HashMap<>() :
+                specPrevRunSummaries.computeIfAbsent(specPrevRun.getId(), (Integer runId) -> targetSummaryDB.list(runId).stream()
+                    .collect(Collectors.toMap(GoogleTargetSummary::getTargetId, Function.identity())));
+            
             Map<Integer, GoogleTargetSummary> summaryByRunId = new HashMap<>();
             GoogleTargetSummary specificPreviousSummary = specPrevRunSummaryByTarget.get(target.getId());
             if(specificPreviousSummary != null){
@@ -156,118 +158,141 @@ public class GoogleSerpRescanDB {
         LOG.debug("SERP rescan (bulk) : starting");
         long _start = System.currentTimeMillis();
         Map<Integer, Integer> searchCountByGroup = searchDB.countByGroup();
-        Run specPrevRun = null;
-        Map<Integer, GoogleTargetSummary> specPrevRunSummaryByTarget = new HashMap<>();
+        // previous run of each group, runs may check some groups only
+        Map<Integer, Run> specPrevRunByGroup = new HashMap<>();
+        Map<Integer, Map<Integer, GoogleTargetSummary>> specPrevRunSummaries = new HashMap<>();
         
-        if(specificRunId != null){
-            specPrevRun = runDB.findPrevious(specificRunId);
-            if(specPrevRun != null){
-                specPrevRunSummaryByTarget = targetSummaryDB.list(specPrevRun.getId()).stream()
-                    .collect(Collectors.toMap(GoogleTargetSummary::getTargetId, Function.identity()));
-            }
-        }        
+        // a single cursor for the SERPs of the run instead of one query by target and search
+        Map<Integer,GoogleSerp> runSerps = specificRunId == null ? null : serpDB.listByRun(specificRunId);
         
-        List<GoogleRank> ranks = new ArrayList<>();
-        for (GoogleTarget target : targets) {
+        // one transaction for the rescan, committed after each target
+        try(UnitOfWork uow = uowDB.begin()){
+            GoogleRankWriter writer = rankDB.writer();
+            for (GoogleTarget target : targets) {
             
-            Map<Integer, GoogleTargetSummary> summaryByRunId = new HashMap<>();
-            GoogleTargetSummary specificPreviousSummary = specPrevRunSummaryByTarget.get(target.getId());
-            if(specificPreviousSummary != null){
-                summaryByRunId.put(specPrevRun.getId(), specificPreviousSummary);
-            }
+                Run specPrevRun = findPrevious(specificRunId, target.getGroupId(), specPrevRunByGroup);
+                Map<Integer, GoogleTargetSummary> specPrevRunSummaryByTarget = specPrevRun == null ? new HashMap<>() :
+                    specPrevRunSummaries.computeIfAbsent(specPrevRun.getId(), (Integer runId) -> targetSummaryDB.list(runId).stream()
+                        .collect(Collectors.toMap(GoogleTargetSummary::getTargetId, Function.identity())));
             
-            for (GoogleSearch search : searches) {
-                final MutableInt previousRunId = new MutableInt(0);
-                final MutableInt previousRank = new MutableInt(GoogleRank.UNRANKED);
-                GoogleBest searchBest = new GoogleBest(target.getGroupId(), target.getId(), search.getId(), GoogleRank.UNRANKED, null, null);
+                Map<Integer, GoogleTargetSummary> summaryByRunId = new HashMap<>();
+                GoogleTargetSummary specificPreviousSummary = specPrevRunSummaryByTarget.get(target.getId());
+                if(specificPreviousSummary != null){
+                    summaryByRunId.put(specPrevRun.getId(), specificPreviousSummary);
+                }
+            
+                for (GoogleSearch search : searches) {
+                    final MutableInt previousRunId = new MutableInt(0);
+                    final MutableInt previousRank = new MutableInt(GoogleRank.UNRANKED);
+                    GoogleBest searchBest = new GoogleBest(target.getGroupId(), target.getId(), search.getId(), GoogleRank.UNRANKED, null, null);
                 
-                if(specPrevRun != null){
-                    previousRunId.setValue(specPrevRun.getId());
-                    previousRank.setValue(rankDB.get(specPrevRun.getId(), target.getGroupId(), target.getId(), search.getId()));
-                    GoogleBest specificBest = rankDB.getBest(target.getGroupId(), target.getId(), search.getId());
-                    if(specificBest != null){
-                        searchBest = specificBest;
+                    if(specPrevRun != null){
+                        previousRunId.setValue(specPrevRun.getId());
+                        previousRank.setValue(rankDB.get(specPrevRun.getId(), target.getGroupId(), target.getId(), search.getId()));
+                        GoogleBest specificBest = rankDB.getBest(target.getGroupId(), target.getId(), search.getId());
+                        if(specificBest != null){
+                            searchBest = specificBest;
+                        }
                     }
-                }
-                final GoogleBest best = searchBest;
+                    final GoogleBest best = searchBest;
 
-                serpDB.stream(specificRunId, specificRunId, search.getId(), (GoogleSerp res) -> {
+                    streamSerps(specificRunId, runSerps, search.getId(), (GoogleSerp res) -> {
                     
-                    int rank = GoogleRank.UNRANKED;
-                    String rankedUrl = null;
-                    for (int i = 0; i < res.getEntries().size(); i++) {
-                        if (target.match(res.getEntries().get(i).getUrl())) {
-                            rankedUrl = res.getEntries().get(i).getUrl();
-                            rank = i + 1;
-                            break;
+                        int rank = GoogleRank.UNRANKED;
+                        String rankedUrl = null;
+                        for (int i = 0; i < res.getEntries().size(); i++) {
+                            if (target.match(res.getEntries().get(i).getUrl())) {
+                                rankedUrl = res.getEntries().get(i).getUrl();
+                                rank = i + 1;
+                                break;
+                            }
                         }
-                    }
 
-                    // only update last run
-                    GoogleRank gRank = new GoogleRank(res.getRunId(), target.getGroupId(), target.getId(), search.getId(),
-                        rank, previousRank.shortValue(), rankedUrl);
-                    ranks.add(gRank);
-                    if(ranks.size() > 2000){
-                        rankDB.insert(ranks);
-                        ranks.clear();
-                    }
+                        // only update last run
+                        GoogleRank gRank = new GoogleRank(res.getRunId(), target.getGroupId(), target.getId(), search.getId(),
+                            rank, previousRank.shortValue(), rankedUrl);
+                        writer.add(gRank);
                     
-                    if(updateSummary){
-                        GoogleTargetSummary summary = summaryByRunId.get(res.getRunId());
-                        if (summary == null) {
-                            summaryByRunId.put(res.getRunId(), summary = new GoogleTargetSummary(target.getGroupId(),
-                                target.getId(), res.getRunId(), 0));
-                        }
-                        summary.addRankCandidat(gRank);
-                    }                    
+                        if(updateSummary){
+                            GoogleTargetSummary summary = summaryByRunId.get(res.getRunId());
+                            if (summary == null) {
+                                summaryByRunId.put(res.getRunId(), summary = new GoogleTargetSummary(target.getGroupId(),
+                                    target.getId(), res.getRunId(), 0));
+                            }
+                            summary.addRankCandidat(gRank);
+                        }                    
 
-                    if (rank != GoogleRank.UNRANKED && rank <= best.getRank()) {
-                        best.setRank((short) rank);
-                        best.setUrl(rankedUrl);
-                        best.setRunDay(res.getRunDay());
-                    }
+                        if (rank != GoogleRank.UNRANKED && rank <= best.getRank()) {
+                            best.setRank((short) rank);
+                            best.setUrl(rankedUrl);
+                            best.setRunDay(res.getRunDay());
+                        }
 
-                    previousRunId.setValue(res.getRunId());
-                    previousRank.setValue(rank);
-                });
+                        previousRunId.setValue(res.getRunId());
+                        previousRank.setValue(rank);
+                    });
                 
-                if (best.getRank() != GoogleRank.UNRANKED) {
-                    rankDB.insertBest(best);
+                    if (best.getRank() != GoogleRank.UNRANKED) {
+                        writer.addBest(best);
+                    }
                 }
-            }
             
-            // fill previous summary score
-            if(updateSummary){
-                TreeMap<Integer, GoogleTargetSummary> summaries = new TreeMap<>(summaryByRunId);
+                // fill previous summary score
+                if(updateSummary){
+                    TreeMap<Integer, GoogleTargetSummary> summaries = new TreeMap<>(summaryByRunId);
                 
-                GoogleTargetSummary previousSummary = null;
-                for (Map.Entry<Integer, GoogleTargetSummary> entry : summaries.entrySet()) {
-                    GoogleTargetSummary summary = entry.getValue();
-                    summary.computeScoreBP(searchCountByGroup.getOrDefault(summary.getGroupId(), 0));
-                    if (previousSummary != null) {
-                        summary.setPreviousScoreBP(previousSummary.getScoreBP());
+                    GoogleTargetSummary previousSummary = null;
+                    for (Map.Entry<Integer, GoogleTargetSummary> entry : summaries.entrySet()) {
+                        GoogleTargetSummary summary = entry.getValue();
+                        summary.computeScoreBP(searchCountByGroup.getOrDefault(summary.getGroupId(), 0));
+                        if (previousSummary != null) {
+                            summary.setPreviousScoreBP(previousSummary.getScoreBP());
+                        }
+                        previousSummary = summary;
                     }
-                    previousSummary = summary;
-                }
                 
-                if(specPrevRun != null){
-                    summaries.remove(specPrevRun.getId());
-                }
+                    if(specPrevRun != null){
+                        summaries.remove(specPrevRun.getId());
+                    }
                 
-                if(!summaries.isEmpty()){
-                    targetSummaryDB.insert(summaries.values());
+                    if(!summaries.isEmpty()){
+                        targetSummaryDB.insert(summaries.values());
+                    }
                 }
+                uow.commit();
             }
-        }
         
-        if(!ranks.isEmpty()){
-            rankDB.insert(ranks);
-            ranks.clear();
+            writer.flush();
+            uow.commit();
         }
         
         LOG.debug("SERP rescan : done, duration = {}", DurationFormatUtils.formatDurationHMS(System.currentTimeMillis()-_start));
     }    
     
+    /**
+     * @return previous run which checked the group, cached by group, null if none
+     */
+    protected Run findPrevious(Integer runId, int groupId, Map<Integer, Run> cache){
+        if(runId == null){
+            return null;
+        }
+        if(!cache.containsKey(groupId)){
+            cache.put(groupId, runDB.findPrevious(runId, groupId));
+        }
+        return cache.get(groupId);
+    }
+    
+    protected void streamSerps(Integer specificRunId, Map<Integer,GoogleSerp> runSerps, int searchId, Consumer<GoogleSerp> callback){
+        if(runSerps == null){
+            serpDB.stream(specificRunId, specificRunId, searchId, callback);
+            return;
+        }
+        GoogleSerp serp = runSerps.get(searchId);
+        if(serp != null){
+            callback.accept(serp);
+        }
+    }
+    
     /*
     public void rescan(Integer specificRunId, List<GoogleSearch> searches, List<GoogleTarget> targets, boolean updateSummary) {
         Run specPrevRun = null;
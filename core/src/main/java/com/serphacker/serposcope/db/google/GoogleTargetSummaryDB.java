@@ -186,9 +186,7 @@ public class GoogleTargetSummaryDB extends AbstractDB {
                     searchIds.addAll(topImprovementsIds);
                     searchIds.addAll(topLostsIds);
 
-                    List<Tuple> rankTuples = new SQLQuery<Void>(con, dbTplConf)
-                        .select(t_rank.all())
-                        .from(t_rank)
+                    List<Tuple> rankTuples = GoogleRankDB.selectRanks(con, dbTplConf)
                         .where(t_rank.runId.eq(runId))
                         .where(t_rank.groupId.eq(summary.getGroupId()))
                         .where(t_rank.googleTargetId.eq(summary.getTargetId()))
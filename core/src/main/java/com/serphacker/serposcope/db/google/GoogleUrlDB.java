@@ -0,0 +1,249 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.Hashing;
+import com.google.inject.Singleton;
+import com.querydsl.core.QueryException;
+import com.querydsl.core.Tuple;
+import com.querydsl.sql.SQLQuery;
+import com.querydsl.sql.dml.SQLDeleteClause;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.querybuilder.QGoogleUrl;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * URL dictionary, every URL stored in a SERP or a rank is referenced by an integer id.
+ * Ids are never reused nor deleted, both directions are kept in a LRU cache.
+ */
+@Singleton
+public class GoogleUrlDB extends AbstractDB {
+
+    public final static int CACHE_SIZE = 100000;
+    public final static int IN_CHUNK_SIZE = 500;
+
+    final static String INSERT_URL = "INSERT INTO `GOOGLE_URL` (`hash`, `url`) VALUES (?, ?)";
+
+    QGoogleUrl t_url = QGoogleUrl.googleUrl;
+
+    final Cache<String,Integer> idsCache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+    final Cache<Integer,String> urlsCache = CacheBuilder.newBuilder().maximumSize(CACHE_SIZE).build();
+
+    /**
+     * @return id of the url, created if it doesn't exist yet, null if url is null
+     * @throws IllegalStateException if the id can't be read or created
+     */
+    public Integer getId(String url){
+        if(url == null){
+            return null;
+        }
+        return getIds(Arrays.asList(url)).get(url);
+    }
+
+    /**
+     * get or create ids of a batch of urls, unknown urls are inserted
+     * @throws IllegalStateException if the ids can't be read or created
+     */
+    public Map<String,Integer> getIds(Collection<String> urls){
+        Map<String,Integer> ids = new HashMap<>();
+        Set<String> missings = new LinkedHashSet<>();
+        for (String url : urls) {
+            if(url == null){
+                continue;
+            }
+            Integer id = idsCache.getIfPresent(url);
+            if(id != null){
+                ids.put(url, id);
+            } else {
+                missings.add(url);
+            }
+        }
+
+        if(!missings.isEmpty()){
+            try {
+                fetchOrCreateIds(missings, ids);
+            } catch(SQLException | QueryException ex){
+                throw new IllegalStateException("can't get ids of " + missings.size() + " urls", ex);
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Insert the urls not found and read the ids again, the unique index on hash and url makes the insert
+     * of a url already created by another thread or process fail instead of creating a second id. On a
+     * detached connection so the other threads and processes see the new urls even when the caller is in
+     * a unit of work.
+     */
+    protected void fetchOrCreateIds(Set<String> missings, Map<String,Integer> ids) throws SQLException {
+        try(Connection con = getDetachedConnection()){
+            fetchIds(con, missings, ids);
+            if(missings.isEmpty()){
+                return;
+            }
+
+            try(PreparedStatement stmt = con.prepareStatement(INSERT_URL)){
+                for (String url : missings) {
+                    stmt.setLong(1, hash(url));
+                    stmt.setString(2, url);
+                    try {
+                        stmt.executeUpdate();
+                    } catch(SQLException ex){
+                        if(!isDuplicateKey(ex)){
+                            throw ex;
+                        }
+                    }
+                }
+            }
+
+            fetchIds(con, missings, ids);
+            if(!missings.isEmpty()){
+                throw new SQLException("no id created for " + missings.size() + " urls");
+            }
+        }
+    }
+
+    /**
+     * read the ids of the urls, the urls found are removed from the missings
+     */
+    protected void fetchIds(Connection con, Set<String> missings, Map<String,Integer> ids){
+        Set<Long> hashes = new HashSet<>();
+        for (String url : missings) {
+            hashes.add(hash(url));
+        }
+
+        for (List<Long> chunk : Iterables.partition(hashes, IN_CHUNK_SIZE)) {
+            List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_url.id, t_url.url)
+                .from(t_url)
+                .where(t_url.hash.in(chunk))
+                .fetch();
+
+            for (Tuple tuple : tuples) {
+                String url = tuple.get(t_url.url);
+                if(missings.remove(url)){
+                    cache(tuple.get(t_url.id), url);
+                    ids.put(url, tuple.get(t_url.id));
+                }
+            }
+        }
+    }
+
+    protected static boolean isDuplicateKey(SQLException ex){
+        // integrity constraint violation class
+        return ex instanceof SQLIntegrityConstraintViolationException
+            || (ex.getSQLState() != null && ex.getSQLState().startsWith("23"));
+    }
+
+    public String getUrl(int id){
+        return getUrls(Arrays.asList(id)).get(id);
+    }
+
+    /**
+     * resolve a batch of ids, unknown ids are missing from the returned map. On a detached connection
+     * like the creation of the ids, it can be called while the connection of the unit of work streams
+     * a cursor.
+     */
+    public Map<Integer,String> getUrls(Collection<Integer> ids){
+        Map<Integer,String> urls = new HashMap<>();
+        Set<Integer> missings = new HashSet<>();
+        for (Integer id : ids) {
+            if(id == null){
+                continue;
+            }
+            String url = urlsCache.getIfPresent(id);
+            if(url != null){
+                urls.put(id, url);
+            } else {
+                missings.add(id);
+            }
+        }
+
+        if(missings.isEmpty()){
+            return urls;
+        }
+
+        try(Connection con = getDetachedConnection()){
+
+            for (List<Integer> chunk : Iterables.partition(missings, IN_CHUNK_SIZE)) {
+                List<Tuple> tuples = new SQLQuery<Void>(con, dbTplConf)
+                    .select(t_url.id, t_url.url)
+                    .from(t_url)
+                    .where(t_url.id.in(chunk))
+                    .fetch();
+
+                for (Tuple tuple : tuples) {
+                    cache(tuple.get(t_url.id), tuple.get(t_url.url));
+                    urls.put(tuple.get(t_url.id), tuple.get(t_url.url));
+                }
+            }
+
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+
+        return urls;
+    }
+
+    public long count(){
+        Long count = null;
+        try(Connection con = ds.getConnection()){
+            count = new SQLQuery<Void>(con, dbTplConf)
+                .select(t_url.id.count())
+                .from(t_url)
+                .fetchFirst();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * must be called whenever the table is recreated or imported, cached ids would be stale
+     */
+    public void clearCache(){
+        idsCache.invalidateAll();
+        urlsCache.invalidateAll();
+    }
+
+    public void wipe(){
+        try(Connection con = ds.getConnection()){
+            new SQLDeleteClause(con, dbTplConf, t_url)
+                .execute();
+        } catch(Exception ex){
+            LOG.error("SQL error", ex);
+        }
+        clearCache();
+    }
+
+    protected void cache(int id, String url){
+        idsCache.put(url, id);
+        urlsCache.put(id, url);
+    }
+
+    protected static long hash(String url){
+        return Hashing.murmur3_128().hashString(url, StandardCharsets.UTF_8).asLong();
+    }
+
+}
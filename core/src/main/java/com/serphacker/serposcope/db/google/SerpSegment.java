@@ -0,0 +1,234 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * Immutable segment of archived SERPs : a data file of records (run id, search id, run day, blob)
+ * memory-mapped for reading, and an index file of the (run id, search id) keys sorted with the offset
+ * of their record, loaded in memory.
+ *
+ * Segments are written once by a {@link Writer} in key order, synced and renamed in place when complete,
+ * a segment without index is an interrupted write and is deleted by {@link GoogleSerpArchive#open(File)}.
+ */
+class SerpSegment {
+
+    final static int INDEX_MAGIC = 0x53455247;
+
+    final File data;
+    final File index;
+    final long[] keys;
+    final long[] offsets;
+    final MappedByteBuffer buffer;
+
+    SerpSegment(File data, File index, long[] keys, long[] offsets, MappedByteBuffer buffer) {
+        this.data = data;
+        this.index = index;
+        this.keys = keys;
+        this.offsets = offsets;
+        this.buffer = buffer;
+    }
+
+    static SerpSegment open(File data, File index) throws IOException {
+        long[] keys;
+        long[] offsets;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))){
+            if(in.readInt() != INDEX_MAGIC){
+                throw new IOException("invalid segment index " + index);
+            }
+            int count = in.readInt();
+            keys = new long[count];
+            offsets = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = in.readLong();
+                offsets[i] = in.readLong();
+            }
+        }
+
+        try(RandomAccessFile file = new RandomAccessFile(data, "r"); FileChannel channel = file.getChannel()){
+            // the mapping outlives the channel
+            return new SerpSegment(data, index, keys, offsets, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    int getFirstRunId(){
+        return keys.length == 0 ? Integer.MAX_VALUE : GoogleSerpDB.runIdOf(keys[0]);
+    }
+
+    int getLastRunId(){
+        return keys.length == 0 ? Integer.MIN_VALUE : GoogleSerpDB.runIdOf(keys[keys.length - 1]);
+    }
+
+    int size(){
+        return keys.length;
+    }
+
+    long getKey(int position){
+        return keys[position];
+    }
+
+    /**
+     * @return position of the key, negative if absent
+     */
+    int find(long key){
+        return Arrays.binarySearch(keys, key);
+    }
+
+    /**
+     * @return position of the first key of the run or after it
+     */
+    int findRun(int runId){
+        int position = Arrays.binarySearch(keys, GoogleSerpDB.key(runId, 0));
+        return position < 0 ? -position - 1 : position;
+    }
+
+    GoogleSerpArchive.Entry read(int position){
+        ByteBuffer record = buffer.duplicate();
+        record.position((int) offsets[position]);
+        int runId = record.getInt();
+        int googleSearchId = record.getInt();
+        LocalDateTime runDay = LocalDateTime.ofEpochSecond(record.getLong(), 0, ZoneOffset.UTC);
+        byte[] blob = new byte[record.getInt()];
+        record.get(blob);
+        return new GoogleSerpArchive.Entry(runId, googleSearchId, runDay, blob);
+    }
+
+    /**
+     * the index goes first, a data file left without index is deleted by the next open
+     * @return false while a file is left, the data of a mapped segment can't be deleted on Windows
+     */
+    boolean delete(){
+        index.delete();
+        data.delete();
+        return !index.exists() && !data.exists();
+    }
+
+    /**
+     * persist the renames done in the directory
+     */
+    static void syncDirectory(File directory) throws IOException {
+        try(FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)){
+            channel.force(true);
+        } catch(AccessDeniedException ex){
+            // windows can't open a directory, its renames are durable once done
+        }
+    }
+
+    /**
+     * appends records in key order to a temporary file, {@link #commit()} writes the index and
+     * renames the files
+     */
+    static class Writer implements AutoCloseable {
+
+        final File data;
+        final File index;
+        final File tmp;
+        final FileOutputStream file;
+        final DataOutputStream out;
+
+        long[] keys = new long[1024];
+        long[] offsets = new long[1024];
+        int count;
+        long size;
+
+        Writer(File data, File index) throws IOException {
+            this.data = data;
+            this.index = index;
+            this.tmp = new File(data.getPath() + ".tmp");
+            this.file = new FileOutputStream(tmp);
+            this.out = new DataOutputStream(new BufferedOutputStream(file));
+        }
+
+        void add(int runId, int googleSearchId, LocalDateTime runDay, byte[] blob) throws IOException {
+            long key = GoogleSerpDB.key(runId, googleSearchId);
+            if(count > 0 && key <= keys[count - 1]){
+                throw new IllegalArgumentException("SERPs must be archived in run then search order");
+            }
+            if(count == keys.length){
+                keys = Arrays.copyOf(keys, count * 2);
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            keys[count] = key;
+            offsets[count] = size;
+            count++;
+
+            out.writeInt(runId);
+            out.writeInt(googleSearchId);
+            out.writeLong(runDay.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(blob.length);
+            out.write(blob);
+            size += 20 + blob.length;
+        }
+
+        long getSize(){
+            return size;
+        }
+
+        int getCount(){
+            return count;
+        }
+
+        /**
+         * the data and the index are on disk when it returns, the SERPs can be deleted from the database
+         */
+        SerpSegment commit() throws IOException {
+            out.flush();
+            file.getChannel().force(true);
+            out.close();
+            Files.move(tmp.toPath(), data.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            // an index must never be found without its data
+            syncDirectory(data.getParentFile());
+
+            File indexTmp = new File(index.getPath() + ".tmp");
+            try(
+                FileOutputStream indexFile = new FileOutputStream(indexTmp);
+                DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(indexFile))
+            ){
+                idx.writeInt(INDEX_MAGIC);
+                idx.writeInt(count);
+                for (int i = 0; i < count; i++) {
+                    idx.writeLong(keys[i]);
+                    idx.writeLong(offsets[i]);
+                }
+                idx.flush();
+                indexFile.getChannel().force(true);
+            }
+            Files.move(indexTmp.toPath(), index.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory(index.getParentFile());
+
+            return open(data, index);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+            tmp.delete();
+        }
+
+    }
+
+}
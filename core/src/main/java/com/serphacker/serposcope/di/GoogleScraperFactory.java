@@ -8,12 +8,36 @@
 package com.serphacker.serposcope.di;
 
 import com.google.inject.ImplementedBy;
+import com.serphacker.serposcope.models.google.GoogleSettings;
 import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleCustomSearchAPIScraper;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleCustomSearchAPIScraper.ApiQueriesCounter;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleCustomSearchAPIScraper.ApiResponseCache;
 import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
 
 @ImplementedBy(GoogleScraperFactoryImpl.class)
 public interface GoogleScraperFactory {
     public GoogleScraper get(ScrapClient http, CaptchaSolver solver);
-    public GoogleScraper get(ScrapClient http, CaptchaSolver solver, com.serphacker.serposcope.models.google.GoogleSettings settings);
+    
+    public default GoogleScraper get(ScrapClient http, CaptchaSolver solver, GoogleSettings settings) {
+        return get(http, solver);
+    }
+    
+    /**
+     * scraper of the API lane, queries are accounted with the given counter, cache can be null
+     */
+    public default GoogleScraper getApiScraper(ScrapClient http, GoogleSettings settings, 
+        ApiQueriesCounter counter, ApiResponseCache cache) {
+        final int maxQueries = settings.getMaxDailyApiQueries();
+        GoogleCustomSearchAPIScraper scraper = new GoogleCustomSearchAPIScraper(http, null, 
+            settings.getGoogleApiKey(), settings.getGoogleCustomSearchEngineId(), counter) {
+            @Override
+            protected int getMaxDailyQueries() {
+                return maxQueries;
+            }
+        };
+        scraper.setResponseCache(cache);
+        return scraper;
+    }
 }
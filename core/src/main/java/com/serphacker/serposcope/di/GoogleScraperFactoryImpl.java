@@ -8,6 +8,7 @@
 package com.serphacker.serposcope.di;
 
 import com.google.inject.Inject;
+import com.serphacker.serposcope.db.google.GoogleApiCacheDB;
 import com.serphacker.serposcope.db.google.GoogleOptionsDB;
 import com.serphacker.serposcope.models.google.GoogleSettings;
 import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
@@ -23,10 +24,12 @@ public class GoogleScraperFactoryImpl implements GoogleScraperFactory{
     private static final Logger LOG = LoggerFactory.getLogger(GoogleScraperFactoryImpl.class);
     
     private GoogleOptionsDB googleOptionsDB;
+    private GoogleApiCacheDB googleApiCacheDB;
 
     @Inject
-    public GoogleScraperFactoryImpl(GoogleOptionsDB googleOptionsDB) {
+    public GoogleScraperFactoryImpl(GoogleOptionsDB googleOptionsDB, GoogleApiCacheDB googleApiCacheDB) {
         this.googleOptionsDB = googleOptionsDB;
+        this.googleApiCacheDB = googleApiCacheDB;
     }
 
     @Override
@@ -36,9 +39,7 @@ public class GoogleScraperFactoryImpl implements GoogleScraperFactory{
 
     @Override
     public GoogleScraper get(ScrapClient http, CaptchaSolver solver, GoogleSettings settings) {
-        if (settings != null && settings.isUseCustomSearchAPI() && 
-            settings.getGoogleApiKey() != null && !settings.getGoogleApiKey().isEmpty() &&
-            settings.getGoogleCustomSearchEngineId() != null && !settings.getGoogleCustomSearchEngineId().isEmpty()) {
+        if (settings != null && settings.isCustomSearchAPIConfigured()) {
             
             // 使用回数制限をチェック
             if (googleOptionsDB != null && googleOptionsDB.isApiQueriesLimitReached(settings.getMaxDailyApiQueries())) {
@@ -51,6 +52,7 @@ public class GoogleScraperFactoryImpl implements GoogleScraperFactory{
             LOG.info("Using Google Custom Search API instead of scraping");
             
             // ApiQueriesCounterの実装を作成
+            final int maxQueries = settings.getMaxDailyApiQueries();
             GoogleCustomSearchAPIScraper.ApiQueriesCounter counter = new GoogleCustomSearchAPIScraper.ApiQueriesCounter() {
                 @Override
                 public int getTodayCount() {
@@ -66,20 +68,15 @@ public class GoogleScraperFactoryImpl implements GoogleScraperFactory{
                 public boolean isLimitReached(int maxDailyQueries) {
                     return googleOptionsDB.isApiQueriesLimitReached(maxDailyQueries);
                 }
-            };
-            
-            // 最大使用回数をスクレイパーに設定するためのラッパーを作成
-            final int maxQueries = settings.getMaxDailyApiQueries();
-            GoogleCustomSearchAPIScraper scraper = new GoogleCustomSearchAPIScraper(http, solver, 
-                settings.getGoogleApiKey(), 
-                settings.getGoogleCustomSearchEngineId(),
-                counter) {
+                
                 @Override
-                protected int getMaxDailyQueries() {
-                    return maxQueries;
+                public boolean tryAcquire() {
+                    return googleOptionsDB.reserveApiQueries(1, maxQueries) == 1;
                 }
             };
             
+            GoogleScraper scraper = getApiScraper(http, settings, counter, googleApiCacheDB);
+            
             return scraper;
         } else {
             LOG.debug("Using traditional scraping method (API not configured or disabled)");
@@ -46,6 +46,13 @@ public class DataSourceProvider implements Provider<DataSource> {
             config.setConnectionTestQuery("select 1 from dual;");
             config.setConnectionTimeout(60000);
             config.setValidationTimeout(60000);
+            if(url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:")){
+                // multi-row rewrite of the batched upserts and client side statement cache
+                config.addDataSourceProperty("rewriteBatchedStatements", "true");
+                config.addDataSourceProperty("cachePrepStmts", "true");
+                config.addDataSourceProperty("prepStmtCacheSize", "250");
+                config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+            }
 
             DataSource ds = new HikariDataSource(config);
             if(debug){
@@ -19,6 +19,12 @@ public class Config {
     
 //    boolean cronEnabled;
     LocalTime cronTime;
+    // minutes the searches of a cron run are spread over, 0 to check them at once
+    int cronSpreadMinutes = 0;
+    // cron expressions separated by ;, in addition to the cron time
+    String cronSchedules;
+    // window the starts of the schedules are staggered over
+    int cronJitterMinutes = 0;
     
     String dbcUser;
     String dbcPass;
@@ -45,6 +51,8 @@ public class Config {
     
     public final static int DEFAULT_PRUNE_RUNS = 365;
     int pruneRuns = DEFAULT_PRUNE_RUNS;
+    int pruneDays = 0;
+    int pruneDbSizeMB = 0;
 
     public String getDbcUser() {
         return dbcUser;
@@ -121,6 +129,30 @@ public class Config {
         }
     }
 
+    public int getCronSpreadMinutes() {
+        return cronSpreadMinutes;
+    }
+
+    public void setCronSpreadMinutes(int cronSpreadMinutes) {
+        this.cronSpreadMinutes = cronSpreadMinutes;
+    }
+
+    public String getCronSchedules() {
+        return cronSchedules;
+    }
+
+    public void setCronSchedules(String cronSchedules) {
+        this.cronSchedules = cronSchedules;
+    }
+
+    public int getCronJitterMinutes() {
+        return cronJitterMinutes;
+    }
+
+    public void setCronJitterMinutes(int cronJitterMinutes) {
+        this.cronJitterMinutes = cronJitterMinutes;
+    }
+    
     public String getDisplayHome() {
         return displayHome;
     }
@@ -153,4 +185,20 @@ public class Config {
         this.pruneRuns = pruneRuns;
     }
     
+    public int getPruneDays() {
+        return pruneDays;
+    }
+
+    public void setPruneDays(int pruneDays) {
+        this.pruneDays = pruneDays;
+    }
+
+    public int getPruneDbSizeMB() {
+        return pruneDbSizeMB;
+    }
+
+    public void setPruneDbSizeMB(int pruneDbSizeMB) {
+        this.pruneDbSizeMB = pruneDbSizeMB;
+    }
+    
 }
@@ -7,6 +7,7 @@
  */
 package com.serphacker.serposcope.models.base;
 
+import java.time.LocalDateTime;
 
 public class Group {
     
@@ -24,9 +25,15 @@ public class Group {
         }
     }
 
+    public final static int MIN_PRIORITY = 1;
+    public final static int MAX_PRIORITY = 10;
+    
     int id;
     Module module;
     String name;
+    int priority = MIN_PRIORITY;
+    String schedule;
+    LocalDateTime scheduled;
 
     public Group(int id, Module module, String name) {
         this.id = id;
@@ -62,6 +69,39 @@ public class Group {
     public void setName(String name) {
         this.name = name;
     }
+
+    /**
+     * weight of the group when its searches are scheduled, from {@value #MIN_PRIORITY} to {@value #MAX_PRIORITY}
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return cron expressions of the group separated by ;, null if the group follows the global schedules
+     */
+    public String getSchedule() {
+        return schedule;
+    }
+
+    public void setSchedule(String schedule) {
+        this.schedule = schedule;
+    }
+
+    /**
+     * @return last fire of the schedules handled for the group, null if never scheduled
+     */
+    public LocalDateTime getScheduled() {
+        return scheduled;
+    }
+
+    public void setScheduled(LocalDateTime scheduled) {
+        this.scheduled = scheduled;
+    }
     
     @Override
     public int hashCode() {
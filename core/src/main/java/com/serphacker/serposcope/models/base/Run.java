@@ -13,7 +13,11 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 
@@ -44,6 +48,11 @@ public class Run {
     int progress;
     int captchas;
     int errors;
+    Set<Integer> groups;
+    // scraping threads allowed by the running task, not persisted
+    volatile int concurrency;
+    // estimated end given by the running task, not persisted
+    volatile LocalDateTime eta;
     
     public Run(Mode mode, Module module, LocalDateTime started) {
         this.mode = mode;
@@ -133,7 +142,14 @@ public class Run {
     }
     
     protected long getRemainingTimeMs(LocalDateTime now){
-        if(finished != null || started == null || progress == 0 || progress == 100){
+        if(finished != null || started == null){
+            return 0;
+        }
+        LocalDateTime estimated = eta;
+        if(estimated != null){
+            return Math.max(0, Duration.between(now, estimated).toMillis());
+        }
+        if(progress == 0 || progress == 100){
             return 0;
         }
         
@@ -171,5 +187,49 @@ public class Run {
     public boolean isRunning(){
         return Status.RUNNING.equals(status) || Status.ABORTING.equals(status);
     }
+
+    /**
+     * @return groups checked by the run, null if the run checks all the groups
+     */
+    public Set<Integer> getGroups() {
+        return groups;
+    }
+
+    public void setGroups(Collection<Integer> groups) {
+        this.groups = groups == null ? null : Collections.unmodifiableSet(new TreeSet<>(groups));
+    }
+    
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+    
+    /**
+     * @return estimated end of the run from the latency of its recent searches, null if unknown
+     */
+    public LocalDateTime getEta() {
+        return eta;
+    }
+
+    public void setEta(LocalDateTime eta) {
+        this.eta = eta;
+    }
+    
+    public boolean hasGroup(int groupId){
+        return groups == null || groups.contains(groupId);
+    }
+    
+    /**
+     * @return true if both runs check at least one common group
+     */
+    public boolean overlaps(Run other){
+        if(groups == null || other.groups == null){
+            return true;
+        }
+        return groups.stream().anyMatch(other.groups::contains);
+    }
     
 }
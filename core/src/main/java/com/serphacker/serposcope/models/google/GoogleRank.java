@@ -20,8 +20,14 @@ public class GoogleRank {
     public final short previousRank;
     public final short diff;
     public final String url;
+    // copied from the last check, the search was too stable to be checked by the run
+    public final boolean carried;
     
     public GoogleRank(int runId, int groupId, int googleTargetId, int googleSearchId, int rank, int previousRank, String url) {
+        this(runId, groupId, googleTargetId, googleSearchId, rank, previousRank, url, false);
+    }
+    
+    public GoogleRank(int runId, int groupId, int googleTargetId, int googleSearchId, int rank, int previousRank, String url, boolean carried) {
         if(previousRank == 0){
             previousRank = GoogleRank.UNRANKED;
         }
@@ -39,6 +45,7 @@ public class GoogleRank {
             url = url.substring(0, 256);
         }
         this.url = url;
+        this.carried = carried;
     }
     
     public String getDisplayDiff(){
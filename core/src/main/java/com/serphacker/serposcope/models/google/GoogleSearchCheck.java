@@ -0,0 +1,45 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.models.google;
+
+/**
+ * ranks of a search in a run, summed up over its groups and targets
+ */
+public class GoogleSearchCheck {
+
+    final int runId;
+    final int googleSearchId;
+    // ranks copied from a previous run instead of checked
+    final boolean carried;
+    // a rank differs from the one of the previous run
+    final boolean changed;
+
+    public GoogleSearchCheck(int runId, int googleSearchId, boolean carried, boolean changed) {
+        this.runId = runId;
+        this.googleSearchId = googleSearchId;
+        this.carried = carried;
+        this.changed = changed;
+    }
+
+    public int getRunId() {
+        return runId;
+    }
+
+    public int getGoogleSearchId() {
+        return googleSearchId;
+    }
+
+    public boolean isCarried() {
+        return carried;
+    }
+
+    public boolean isChanged() {
+        return changed;
+    }
+
+}
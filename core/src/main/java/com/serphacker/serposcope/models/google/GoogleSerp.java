@@ -15,18 +15,44 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 
 public class GoogleSerp {
     
-    private final static byte SERIAL_VERSION = 0;
+    /**
+     * entries urls written as strings
+     */
+    public final static byte SERIAL_VERSION_URLS = 0;
+    
+    /**
+     * entries urls written as varint ids of the url dictionary
+     */
+    public final static byte SERIAL_VERSION_URL_IDS = 1;
+    
+    /**
+     * entries written as an edit script against the entries of a previous run of the same search
+     */
+    public final static byte SERIAL_VERSION_DELTA = 2;
+    
+    /**
+     * entries identical to the ones of a previous run of the same search
+     */
+    public final static byte SERIAL_VERSION_REFERENCE = 3;
     
     int runId;
     int googleSearchId;
     LocalDateTime runDay;
     List<GoogleSerpEntry> entries = new ArrayList<>();
+    
+    int baseRunId;
+    int chainDepth;
+    byte[] delta;
 
     public GoogleSerp(int runId, int googleSearchId, LocalDateTime runDay) {
         this.runId = runId;
@@ -57,50 +83,333 @@ public class GoogleSerp {
         this.runDay = runDay;
     }
     
+    /**
+     * @return urls of the entries which don't have an url id yet
+     */
+    public Set<String> getUrlsWithoutId(){
+        Set<String> urls = new LinkedHashSet<>();
+        for (GoogleSerpEntry entry : entries) {
+            if(entry.urlId == 0 && entry.url != null){
+                urls.add(entry.url);
+            }
+        }
+        return urls;
+    }
+    
+    public void setUrlIds(Map<String,Integer> ids){
+        for (GoogleSerpEntry entry : entries) {
+            Integer id = ids.get(entry.url);
+            if(id != null){
+                entry.urlId = id;
+            }
+        }
+    }
+    
+    /**
+     * @return url ids of the entries deserialized without their url
+     */
+    public Set<Integer> getUnresolvedUrlIds(){
+        Set<Integer> ids = new HashSet<>();
+        for (GoogleSerpEntry entry : entries) {
+            if(entry.url == null && entry.urlId != 0){
+                ids.add(entry.urlId);
+            }
+        }
+        return ids;
+    }
+    
+    public void resolveUrls(Map<Integer,String> urls){
+        for (GoogleSerpEntry entry : entries) {
+            if(entry.url == null){
+                entry.url = urls.get(entry.urlId);
+            }
+        }
+    }
+    
+    /**
+     * @return run id of the SERP these entries are encoded against, 0 if entries are self contained
+     */
+    public int getBaseRunId() {
+        return baseRunId;
+    }
+
+    /**
+     * @return number of SERPs to decode before this one, 0 for a keyframe
+     */
+    public int getChainDepth() {
+        return chainDepth;
+    }
+    
+    /**
+     * @return true if entries are waiting for {@link #applyBase(GoogleSerp)}
+     */
+    public boolean isDeltaPending(){
+        return delta != null;
+    }
+    
+    /**
+     * delta and reference versions only read their header, entries are built by {@link #applyBase(GoogleSerp)}
+     */
     public void setSerializedEntries(byte[] data) throws IOException{
         ByteArrayInputStream bais = new ByteArrayInputStream(data);
         DataInputStream dis = new DataInputStream(bais);
         
+        baseRunId = 0;
+        chainDepth = 0;
+        delta = null;
+        
         byte version = dis.readByte();
-        if(version != SERIAL_VERSION){
-            throw new UnsupportedOperationException("unsupported serialized version");
+        switch(version){
+            case SERIAL_VERSION_URLS:
+                readEntriesWithUrls(dis);
+                break;
+            case SERIAL_VERSION_URL_IDS:
+                readEntriesWithUrlIds(dis);
+                break;
+            case SERIAL_VERSION_DELTA:
+            case SERIAL_VERSION_REFERENCE:
+                baseRunId = readVarint(dis);
+                chainDepth = readVarint(dis);
+                entries = new ArrayList<>();
+                delta = data;
+                break;
+            default:
+                throw new UnsupportedOperationException("unsupported serialized version");
         }
-
+    }
+    
+    /**
+     * rebuild the entries of a delta or reference from the fully decoded SERP of the base run
+     */
+    public void applyBase(GoogleSerp base) throws IOException {
+        if(delta == null){
+            return;
+        }
+        if(base.runId != baseRunId || base.delta != null){
+            throw new IllegalArgumentException("base is not the decoded SERP of run " + baseRunId);
+        }
+        
+        DataInputStream dis = new DataInputStream(new ByteArrayInputStream(delta));
+        byte version = dis.readByte();
+        readVarint(dis);
+        readVarint(dis);
+        
+        if(version == SERIAL_VERSION_REFERENCE){
+            entries = new ArrayList<>(base.entries.size());
+            for (GoogleSerpEntry baseEntry : base.entries) {
+                entries.add(copyEntry(baseEntry, true));
+            }
+        } else {
+            int entrySize = readVarint(dis);
+            entries = new ArrayList<>(entrySize);
+            for (int i = 0; i < entrySize; i++) {
+                int op = readVarint(dis);
+                GoogleSerpEntry entry;
+                if(op == 0){
+                    entry = new GoogleSerpEntry(readVarint(dis));
+                    readMap(dis, entry);
+                } else {
+                    entry = copyEntry(base.entries.get((op >>> 1) - 1), (op & 1) == 1);
+                    if((op & 1) == 0){
+                        readMap(dis, entry);
+                    }
+                }
+                entries.add(entry);
+            }
+        }
+        delta = null;
+    }
+    
+    /**
+     * deep copy of a decoded SERP, keeping its position in the delta chain
+     */
+    public GoogleSerp copy(){
+        if(delta != null){
+            throw new IllegalStateException("delta of run " + baseRunId + " not applied");
+        }
+        GoogleSerp copy = new GoogleSerp(runId, googleSearchId, runDay);
+        copy.baseRunId = baseRunId;
+        copy.chainDepth = chainDepth;
+        for (GoogleSerpEntry entry : entries) {
+            copy.entries.add(copyEntry(entry, true));
+        }
+        return copy;
+    }
+    
+    protected GoogleSerpEntry copyEntry(GoogleSerpEntry baseEntry, boolean withMap){
+        GoogleSerpEntry entry = new GoogleSerpEntry(baseEntry.urlId);
+        entry.url = baseEntry.url;
+        if(withMap){
+            entry.map.putAll(baseEntry.map);
+        }
+        return entry;
+    }
+    
+    protected void readEntriesWithUrls(DataInputStream dis) throws IOException {
         int entrySize = dis.readShort();
         entries = new ArrayList<>(entrySize);
         
         for (int i = 0; i < entrySize; i++) {
             GoogleSerpEntry entry = new GoogleSerpEntry(dis.readUTF());
-            byte mapSize = dis.readByte();
-            for (int j = 0; j < mapSize; j++) {
-                short key = dis.readShort();
-                short value = dis.readShort();
-                entry.map.put(key, value);
-            }
+            readMap(dis, entry);
             entries.add(entry);
         }
     }
     
+    protected void readEntriesWithUrlIds(DataInputStream dis) throws IOException {
+        int entrySize = readVarint(dis);
+        entries = new ArrayList<>(entrySize);
+        
+        for (int i = 0; i < entrySize; i++) {
+            GoogleSerpEntry entry = new GoogleSerpEntry(readVarint(dis));
+            readMap(dis, entry);
+            entries.add(entry);
+        }
+    }
+    
+    protected void readMap(DataInputStream dis, GoogleSerpEntry entry) throws IOException {
+        byte mapSize = dis.readByte();
+        for (int j = 0; j < mapSize; j++) {
+            short key = dis.readShort();
+            short value = dis.readShort();
+            entry.map.put(key, value);
+        }
+    }
+    
+    /**
+     * entries are written with their url id when all of them have one, with their url otherwise
+     */
     public byte[] getSerializedEntries() throws IOException {
+        if(delta != null){
+            throw new IllegalStateException("delta of run " + baseRunId + " not applied");
+        }
+        boolean withIds = !entries.isEmpty() && hasAllUrlIds();
+        return getSerializedEntries(withIds ? SERIAL_VERSION_URL_IDS : SERIAL_VERSION_URLS);
+    }
+    
+    public byte[] getSerializedEntries(byte version) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         DataOutputStream dos = new DataOutputStream(baos);
 
-        dos.writeByte(SERIAL_VERSION);
-        dos.writeShort(entries.size());
+        dos.writeByte(version);
+        if(version == SERIAL_VERSION_URL_IDS){
+            writeVarint(dos, entries.size());
+        } else {
+            dos.writeShort(entries.size());
+        }
         for (GoogleSerpEntry entry : entries) {
-            dos.writeUTF(entry.url);
-            dos.writeByte(entry.map.size());
-            for (Map.Entry<Short, Short> mapEntry : entry.map.entrySet()) {
-                dos.writeShort(mapEntry.getKey());
-                dos.writeShort(mapEntry.getValue());
+            if(version == SERIAL_VERSION_URL_IDS){
+                writeVarint(dos, entry.urlId);
+            } else {
+                dos.writeUTF(entry.url);
             }
+            writeMap(dos, entry);
         }
         
         baos.close();
         return baos.toByteArray();
     }
     
+    /**
+     * Encode the entries against the decoded SERP of a previous run. Each entry is either copied from 
+     * an entry of the base (with or without its map) or written as a literal, a SERP with the same 
+     * entries and maps is written as a pure reference.
+     * 
+     * @return null if entries or base entries don't all have url ids or if the delta isn't smaller 
+     * than a keyframe
+     */
+    public byte[] getSerializedDelta(GoogleSerp base) throws IOException {
+        if(base == null || base.delta != null || !hasAllUrlIds() || !base.hasAllUrlIds()){
+            return null;
+        }
+        
+        Map<Integer,Integer> baseIndexes = new HashMap<>();
+        for (int i = base.entries.size() - 1; i >= 0; i--) {
+            baseIndexes.put(base.entries.get(i).urlId, i);
+        }
+        
+        boolean identical = entries.size() == base.entries.size();
+        for (int i = 0; identical && i < entries.size(); i++) {
+            GoogleSerpEntry entry = entries.get(i);
+            GoogleSerpEntry baseEntry = base.entries.get(i);
+            identical = entry.urlId == baseEntry.urlId && entry.map.equals(baseEntry.map);
+        }
+        
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(baos);
+        
+        if(identical){
+            dos.writeByte(SERIAL_VERSION_REFERENCE);
+            writeVarint(dos, base.runId);
+            writeVarint(dos, base.chainDepth + 1);
+            baos.close();
+            return baos.toByteArray();
+        }
+        
+        dos.writeByte(SERIAL_VERSION_DELTA);
+        writeVarint(dos, base.runId);
+        writeVarint(dos, base.chainDepth + 1);
+        writeVarint(dos, entries.size());
+        for (GoogleSerpEntry entry : entries) {
+            Integer baseIndex = baseIndexes.get(entry.urlId);
+            if(baseIndex == null){
+                writeVarint(dos, 0);
+                writeVarint(dos, entry.urlId);
+                writeMap(dos, entry);
+            } else if(entry.map.equals(base.entries.get(baseIndex).map)){
+                writeVarint(dos, ((baseIndex + 1) << 1) | 1);
+            } else {
+                writeVarint(dos, (baseIndex + 1) << 1);
+                writeMap(dos, entry);
+            }
+        }
+        baos.close();
+        
+        byte[] data = baos.toByteArray();
+        if(data.length >= getSerializedEntries().length){
+            return null;
+        }
+        return data;
+    }
+    
+    protected boolean hasAllUrlIds(){
+        for (GoogleSerpEntry entry : entries) {
+            if(entry.urlId == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    protected void writeMap(DataOutputStream dos, GoogleSerpEntry entry) throws IOException {
+        dos.writeByte(entry.map.size());
+        for (Map.Entry<Short, Short> mapEntry : entry.map.entrySet()) {
+            dos.writeShort(mapEntry.getKey());
+            dos.writeShort(mapEntry.getValue());
+        }
+    }
     
+    /**
+     * unsigned LEB128, 7 bits per byte, high bit set when more bytes follow
+     */
+    protected static void writeVarint(DataOutputStream dos, int value) throws IOException {
+        while((value & ~0x7F) != 0){
+            dos.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dos.writeByte(value);
+    }
     
+    protected static int readVarint(DataInputStream dis) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = dis.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                return value;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
 
 }
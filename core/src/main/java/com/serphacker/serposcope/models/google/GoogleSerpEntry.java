@@ -18,12 +18,17 @@ import java.util.Objects;
 public class GoogleSerpEntry {
     
     String url;
+    int urlId;
     Short2ShortArrayMap map = new Short2ShortArrayMap();
 
     public GoogleSerpEntry(String url) {
         this.url = url;
     }
     
+    public GoogleSerpEntry(int urlId) {
+        this.urlId = urlId;
+    }
+    
     public void fillPreviousPosition(Map<Short,GoogleSerp> history){
         for (Map.Entry<Short, GoogleSerp> entrySet : history.entrySet()) {
             short day = entrySet.getKey();
@@ -43,6 +48,17 @@ public class GoogleSerpEntry {
     public String getUrl() {
         return url;
     }
+
+    /**
+     * @return id of the url in the url dictionary, 0 if not yet assigned
+     */
+    public int getUrlId() {
+        return urlId;
+    }
+
+    public void setUrlId(int urlId) {
+        this.urlId = urlId;
+    }
     
     public String getUnicodeUrl() {
         if(url == null){
@@ -85,6 +101,9 @@ public class GoogleSerpEntry {
             return false;
         }
         final GoogleSerpEntry other = (GoogleSerpEntry) obj;
+        if (this.urlId != 0 && other.urlId != 0) {
+            return this.urlId == other.urlId;
+        }
         if (!Objects.equals(this.url, other.url)) {
             return false;
         }
@@ -93,7 +112,7 @@ public class GoogleSerpEntry {
     
     @Override
     public String toString() {
-        return "GoogleSerpEntry{" + "url=" + url + ", map=" + map + '}';
+        return "GoogleSerpEntry{" + "url=" + url + ", urlId=" + urlId + ", map=" + map + '}';
     }
     
 }
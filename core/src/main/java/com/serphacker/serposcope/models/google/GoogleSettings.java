@@ -9,6 +9,8 @@ package com.serphacker.serposcope.models.google;
 
 import com.serphacker.serposcope.scraper.google.GoogleCountryCode;
 import com.serphacker.serposcope.scraper.google.GoogleDevice;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Arrays;
 import java.util.List;
 
@@ -21,6 +23,12 @@ public class GoogleSettings {
     int maxPauseBetweenPageSec = 5;
     int maxThreads = 1;
     int fetchRetry = 3;    
+    boolean leanFetch = false;
+    boolean earlyTermination = false;
+    // time of day the runs must be done by, null if none
+    LocalTime runDeadline = null;
+    // most runs between two checks of a stable search, 1 to check every search by every run
+    int maxCheckInterval = 1;
     
     GoogleCountryCode defaultCountry = GoogleCountryCode.__;
     String defaultDatacenter = null;
@@ -81,6 +89,49 @@ public class GoogleSettings {
     public void setFetchRetry(int fetchRetry) {
         this.fetchRetry = fetchRetry;
     }
+
+    public boolean isLeanFetch() {
+        return leanFetch;
+    }
+
+    public void setLeanFetch(boolean leanFetch) {
+        this.leanFetch = leanFetch;
+    }
+
+    public boolean isEarlyTermination() {
+        return earlyTermination;
+    }
+
+    public void setEarlyTermination(boolean earlyTermination) {
+        this.earlyTermination = earlyTermination;
+    }
+
+    public int getMaxCheckInterval() {
+        return maxCheckInterval;
+    }
+
+    public void setMaxCheckInterval(int maxCheckInterval) {
+        this.maxCheckInterval = maxCheckInterval;
+    }
+
+    public LocalTime getRunDeadline() {
+        return runDeadline;
+    }
+
+    public void setRunDeadline(LocalTime runDeadline) {
+        this.runDeadline = runDeadline;
+    }
+    
+    /**
+     * @return first deadline after the start of the run, null if no deadline is set
+     */
+    public LocalDateTime getRunDeadline(LocalDateTime started) {
+        if(runDeadline == null){
+            return null;
+        }
+        LocalDateTime deadline = started.toLocalDate().atTime(runDeadline);
+        return deadline.isAfter(started) ? deadline : deadline.plusDays(1);
+    }
     
     // search
 
@@ -187,4 +238,13 @@ public class GoogleSettings {
         this.maxDailyApiQueries = maxDailyApiQueries;
     }
     
+    /**
+     * APIの使用が有効で、APIキーと検索エンジンIDが設定されている場合true
+     */
+    public boolean isCustomSearchAPIConfigured() {
+        return useCustomSearchAPI && 
+            googleApiKey != null && !googleApiKey.isEmpty() &&
+            googleCustomSearchEngineId != null && !googleCustomSearchEngineId.isEmpty();
+    }
+    
 }
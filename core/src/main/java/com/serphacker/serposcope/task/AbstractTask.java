@@ -31,12 +31,25 @@ public abstract class AbstractTask extends Thread {
     protected long startMilliseconds;
     protected final Run run;
     
+    volatile Runnable onFinished;
+    
     public AbstractTask(Run run) {
         this.run = run;
     }
     
     @Override
     public void run() {
+        try {
+            runTask();
+        } finally {
+            Runnable callback = onFinished;
+            if(callback != null){
+                callback.run();
+            }
+        }
+    }
+    
+    protected void runTask() {
         startMilliseconds = System.currentTimeMillis();
         LOG.info(
             "task started for module {} of day {} ({})", 
@@ -51,7 +64,7 @@ public abstract class AbstractTask extends Thread {
         }
         
         List<Integer> groupsIds = baseDB.group.list(run.getModule())
-                .stream().map((Group g) -> g.getId()).collect(Collectors.toList());
+                .stream().map((Group g) -> g.getId()).filter(run::hasGroup).collect(Collectors.toList());
         
         if(groupsIds.isEmpty()){
             LOG.warn("no group to analyze");
@@ -93,4 +106,11 @@ public abstract class AbstractTask extends Thread {
         abort = true;
     }
     
+    /**
+     * @param onFinished called by the task thread once the run is ended
+     */
+    public void setOnFinished(Runnable onFinished) {
+        this.onFinished = onFinished;
+    }
+    
 }
@@ -0,0 +1,207 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Cron expression of 5 fields : minute hour day-of-month month day-of-week, each one being * or a list of
+ * values, ranges and steps (1,15 or 1-5 or *&#47;2 or 8-18/2). Sunday is 0 or 7. As in cron, when both the day
+ * of month and the day of week are restricted, a day matching either one fires.
+ *
+ * Shortcuts @hourly, @daily, @weekly and @monthly are accepted.
+ */
+public class CronSchedule {
+
+    // days searched for the next fire, a 29th of february fires at least once in 8 years
+    final static int MAX_DAYS = 366 * 8;
+
+    final String expression;
+    final BitSet minutes;
+    final BitSet hours;
+    final BitSet daysOfMonth;
+    final BitSet months;
+    final BitSet daysOfWeek;
+    final boolean anyDayOfMonth;
+    final boolean anyDayOfWeek;
+
+    protected CronSchedule(String expression) {
+        this.expression = expression;
+        String[] fields = expand(expression).split("\\s+");
+        if(fields.length != 5){
+            throw new IllegalArgumentException("expected 5 fields in \"" + expression + "\"");
+        }
+        minutes = parseField(fields[0], 0, 59);
+        hours = parseField(fields[1], 0, 23);
+        daysOfMonth = parseField(fields[2], 1, 31);
+        months = parseField(fields[3], 1, 12);
+        daysOfWeek = parseField(fields[4], 0, 7);
+        if(daysOfWeek.get(7)){
+            daysOfWeek.set(0);
+        }
+        anyDayOfMonth = fields[2].startsWith("*");
+        anyDayOfWeek = fields[4].startsWith("*");
+    }
+
+    /**
+     * @throws IllegalArgumentException if the expression is invalid
+     */
+    public static CronSchedule parse(String expression){
+        if(expression == null || expression.trim().isEmpty()){
+            throw new IllegalArgumentException("empty cron expression");
+        }
+        return new CronSchedule(expression.trim());
+    }
+
+    /**
+     * @param expressions expressions separated by ; or new lines, null or empty for none
+     * @throws IllegalArgumentException if an expression is invalid
+     */
+    public static List<CronSchedule> parseList(String expressions){
+        List<CronSchedule> schedules = new ArrayList<>();
+        if(expressions == null){
+            return schedules;
+        }
+        for (String expression : expressions.split("[;\\r\\n]+")) {
+            if(!expression.trim().isEmpty()){
+                schedules.add(parse(expression));
+            }
+        }
+        return schedules;
+    }
+
+    /**
+     * every day at the given time
+     */
+    public static CronSchedule daily(LocalTime time){
+        return new CronSchedule(time.getMinute() + " " + time.getHour() + " * * *");
+    }
+
+    protected static String expand(String expression){
+        switch(expression){
+            case "@hourly":
+                return "0 * * * *";
+            case "@daily":
+                return "0 0 * * *";
+            case "@weekly":
+                return "0 0 * * 0";
+            case "@monthly":
+                return "0 0 1 * *";
+            default:
+                return expression;
+        }
+    }
+
+    protected static BitSet parseField(String field, int min, int max){
+        BitSet values = new BitSet(max + 1);
+        for (String part : field.split(",")) {
+            int step = 1;
+            int slash = part.indexOf('/');
+            if(slash != -1){
+                step = parseInt(part.substring(slash + 1), 1, max);
+                part = part.substring(0, slash);
+            }
+
+            int from;
+            int to;
+            if("*".equals(part)){
+                from = min;
+                to = max;
+            } else if(part.indexOf('-') > 0){
+                from = parseInt(part.substring(0, part.indexOf('-')), min, max);
+                to = parseInt(part.substring(part.indexOf('-') + 1), min, max);
+                if(to < from){
+                    throw new IllegalArgumentException("invalid range \"" + part + "\"");
+                }
+            } else {
+                from = parseInt(part, min, max);
+                to = slash != -1 ? max : from;
+            }
+
+            for (int i = from; i <= to; i += step) {
+                values.set(i);
+            }
+        }
+        return values;
+    }
+
+    protected static int parseInt(String value, int min, int max){
+        int parsed;
+        try {
+            parsed = Integer.parseInt(value);
+        } catch(NumberFormatException ex){
+            throw new IllegalArgumentException("invalid value \"" + value + "\"");
+        }
+        if(parsed < min || parsed > max){
+            throw new IllegalArgumentException("value " + parsed + " not in " + min + "-" + max);
+        }
+        return parsed;
+    }
+
+    protected boolean matches(LocalDate day){
+        if(!months.get(day.getMonthValue())){
+            return false;
+        }
+        boolean dayOfMonth = daysOfMonth.get(day.getDayOfMonth());
+        boolean dayOfWeek = daysOfWeek.get(day.getDayOfWeek().getValue() % 7);
+        if(anyDayOfMonth || anyDayOfWeek){
+            return dayOfMonth && dayOfWeek;
+        }
+        return dayOfMonth || dayOfWeek;
+    }
+
+    /**
+     * @return first fire strictly after the given time, null if none
+     */
+    public LocalDateTime next(LocalDateTime after){
+        LocalDateTime from = after.withSecond(0).withNano(0).plusMinutes(1);
+        LocalDate day = from.toLocalDate();
+        for (int i = 0; i < MAX_DAYS; i++, day = day.plusDays(1)) {
+            if(!matches(day)){
+                continue;
+            }
+            int hour = i == 0 ? from.getHour() : 0;
+            for (hour = hours.nextSetBit(hour); hour != -1; hour = hours.nextSetBit(hour + 1)) {
+                int minute = i == 0 && hour == from.getHour() ? from.getMinute() : 0;
+                minute = minutes.nextSetBit(minute);
+                if(minute != -1){
+                    return day.atTime(hour, minute);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return last fire after the first time and not after the second one, null if none
+     */
+    public LocalDateTime last(LocalDateTime after, LocalDateTime until){
+        LocalDateTime last = null;
+        LocalDateTime fire = next(after);
+        while(fire != null && !fire.isAfter(until)){
+            last = fire;
+            fire = next(fire);
+        }
+        return last;
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task;
+
+import com.serphacker.serposcope.models.base.Config;
+import com.serphacker.serposcope.models.base.Group;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Finds the groups due for a check. A group follows its own schedules or, when it has none, the global
+ * ones. Groups due at the same fire of the same schedule are checked by the same run.
+ *
+ * Each schedule starts at a stable offset within the jitter window so schedules firing at the same
+ * minute don't start together. Fires missed while the application was stopped are caught up once, by
+ * the last one.
+ */
+public class CronScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CronScheduler.class);
+
+    public static class Trigger {
+        final CronSchedule schedule;
+        final LocalDateTime fire;
+        final Set<Integer> groups = new TreeSet<>();
+
+        public Trigger(CronSchedule schedule, LocalDateTime fire) {
+            this.schedule = schedule;
+            this.fire = fire;
+        }
+
+        public CronSchedule getSchedule() {
+            return schedule;
+        }
+
+        public LocalDateTime getFire() {
+            return fire;
+        }
+
+        /**
+         * @return groups to check in the run started by the trigger
+         */
+        public Set<Integer> getGroups() {
+            return groups;
+        }
+    }
+
+    final List<CronSchedule> globalSchedules;
+    final int jitterSeconds;
+
+    public CronScheduler(List<CronSchedule> globalSchedules, int jitterMinutes) {
+        this.globalSchedules = globalSchedules;
+        this.jitterSeconds = Math.max(0, jitterMinutes) * 60;
+    }
+
+    /**
+     * the cron time of the settings as a daily schedule followed by the other global schedules
+     */
+    public CronScheduler(Config config) {
+        this(new ArrayList<>(), config.getCronJitterMinutes());
+        if(config.getCronTime() != null){
+            globalSchedules.add(CronSchedule.daily(config.getCronTime()));
+        }
+        try {
+            globalSchedules.addAll(CronSchedule.parseList(config.getCronSchedules()));
+        } catch(IllegalArgumentException ex){
+            LOG.warn("invalid global schedules : {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * @return seconds the runs of the schedule start after its fires
+     */
+    public int getOffset(CronSchedule schedule){
+        if(jitterSeconds == 0){
+            return 0;
+        }
+        return Math.floorMod(Objects.hash(schedule.getExpression()), jitterSeconds);
+    }
+
+    /**
+     * @return schedules followed by the group, empty if it is never checked by the cron
+     */
+    public List<CronSchedule> getSchedules(Group group){
+        if(group.getSchedule() == null){
+            return globalSchedules;
+        }
+        try {
+            return CronSchedule.parseList(group.getSchedule());
+        } catch(IllegalArgumentException ex){
+            LOG.warn("invalid schedule of group {} : {}", group.getId(), ex.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    /**
+     * @return first start of a run of one of the groups after the time, null if they are never scheduled
+     */
+    public LocalDateTime nextStart(Collection<Group> groups, LocalDateTime after){
+        LocalDateTime next = null;
+        for (Group group : groups) {
+            for (CronSchedule schedule : getSchedules(group)) {
+                // runs start after the fire by the offset of the schedule
+                int offset = getOffset(schedule);
+                LocalDateTime fire = schedule.next(after.minusSeconds(offset));
+                if(fire != null && (next == null || fire.plusSeconds(offset).isBefore(next))){
+                    next = fire.plusSeconds(offset);
+                }
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Groups never scheduled before are not due, their first fire is the next one.
+     * @return runs to start, in order of fire
+     */
+    public List<Trigger> due(List<Group> groups, LocalDateTime now){
+        Map<String,Trigger> triggers = new LinkedHashMap<>();
+        for (Group group : groups) {
+            if(group.getScheduled() == null){
+                continue;
+            }
+
+            CronSchedule dueSchedule = null;
+            LocalDateTime dueFire = null;
+            for (CronSchedule schedule : getSchedules(group)) {
+                LocalDateTime fire = schedule.last(group.getScheduled(), now.minusSeconds(getOffset(schedule)));
+                if(fire != null && (dueFire == null || fire.isAfter(dueFire))){
+                    dueSchedule = schedule;
+                    dueFire = fire;
+                }
+            }
+            if(dueFire == null){
+                continue;
+            }
+
+            final CronSchedule schedule = dueSchedule;
+            final LocalDateTime fire = dueFire;
+            triggers.computeIfAbsent(schedule.getExpression() + "@" + fire, (String key) -> new Trigger(schedule, fire))
+                .groups.add(group.getId());
+        }
+
+        List<Trigger> sorted = new ArrayList<>(triggers.values());
+        sorted.sort((Trigger a, Trigger b) -> a.fire.compareTo(b.fire));
+        return sorted;
+    }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task;
+
+import com.serphacker.serposcope.db.base.PruneDB;
+import com.serphacker.serposcope.models.base.Config;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background pruning of the history, a few runs at a time with a pause between chunks to leave the
+ * database to the web queries. The oldest runs are pruned until every policy of the config is met :
+ * max number of runs of each group, max age in days and max database size.
+ *
+ * The size is measured once : deleted rows don't shrink the files right away, the number of runs to
+ * prune is estimated from the share of the budget exceeded, assuming runs of similar size.
+ */
+public class Pruner extends Thread {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Pruner.class);
+
+    public final static int DEFAULT_CHUNK_RUNS = 1;
+    public final static long DEFAULT_PAUSE_MS = 500;
+
+    final PruneDB pruneDB;
+    final Config config;
+    final LongSupplier dbSize;
+    final int chunkRuns;
+    final long pauseMS;
+
+    final AtomicInteger runsDone = new AtomicInteger();
+    volatile int totalRuns;
+    volatile boolean aborted;
+
+    public Pruner(PruneDB pruneDB, Config config, LongSupplier dbSize) {
+        this(pruneDB, config, dbSize, DEFAULT_CHUNK_RUNS, DEFAULT_PAUSE_MS);
+    }
+
+    public Pruner(PruneDB pruneDB, Config config, LongSupplier dbSize, int chunkRuns, long pauseMS) {
+        super("pruner");
+        this.pruneDB = pruneDB;
+        this.config = config;
+        this.dbSize = dbSize;
+        this.chunkRuns = Math.max(1, chunkRuns);
+        this.pauseMS = pauseMS;
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+
+        List<Integer> orphans = pruneDB.listOrphanRunIds();
+        List<Integer> prunable = getPrunableRuns(pruneDB.listRunIds());
+        totalRuns = orphans.size() + prunable.size();
+        LOG.info("pruning {} runs and {} orphan runs", prunable.size(), orphans.size());
+
+        if(pruneChunks(orphans) && pruneChunks(prunable)){
+            long bests = pruneDB.pruneOrphanBests();
+            LOG.info("{} orphan best rankings deleted", bests);
+        }
+
+        LOG.info("{}/{} runs pruned in {} ms", runsDone.get(), totalRuns, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * @param runIds all the runs, oldest first
+     * @return runs to prune to meet the policies, oldest first, the latest run is always kept
+     */
+    protected List<Integer> getPrunableRuns(List<Integer> runIds){
+        if(runIds.isEmpty()){
+            return runIds;
+        }
+        TreeSet<Integer> prunable = new TreeSet<>();
+
+        // the last runs of each group, runs may check some groups only
+        if(config.getPruneRuns() > 0){
+            prunable.addAll(pruneDB.listRunIdsBeyond(config.getPruneRuns()));
+        }
+
+        int oldest = 0;
+        if(config.getPruneDays() > 0){
+            oldest = Math.max(oldest, pruneDB.countRunsBefore(LocalDate.now().minusDays(config.getPruneDays())));
+        }
+
+        long budget = config.getPruneDbSizeMB() * 1024l * 1024l;
+        if(budget > 0){
+            long size = dbSize.getAsLong();
+            if(size > budget){
+                oldest = Math.max(oldest, (int) Math.ceil(runIds.size() * (double) (size - budget) / size));
+            }
+        }
+        prunable.addAll(runIds.subList(0, Math.min(oldest, runIds.size())));
+
+        prunable.remove(runIds.get(runIds.size() - 1));
+        return new ArrayList<>(prunable);
+    }
+
+    /**
+     * @return false if aborted
+     */
+    protected boolean pruneChunks(List<Integer> runIds){
+        for (int i = 0; i < runIds.size(); i += chunkRuns) {
+            if(aborted || isInterrupted()){
+                LOG.info("pruning aborted");
+                return false;
+            }
+
+            List<Integer> chunk = runIds.subList(i, Math.min(i + chunkRuns, runIds.size()));
+            pruneDB.pruneRuns(chunk);
+            runsDone.addAndGet(chunk.size());
+
+            try {
+                Thread.sleep(pauseMS);
+            } catch(InterruptedException ex){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void abort(){
+        aborted = true;
+    }
+
+    public int getRunsDone() {
+        return runsDone.get();
+    }
+
+    public int getTotalRuns() {
+        return totalRuns;
+    }
+
+}
@@ -9,16 +9,31 @@ package com.serphacker.serposcope.task;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.google.inject.name.Named;
 import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.db.base.PruneDB;
+import com.serphacker.serposcope.db.google.GoogleDB;
 import com.serphacker.serposcope.di.TaskFactory;
+import com.serphacker.serposcope.models.base.Config;
 import com.serphacker.serposcope.models.base.Group;
 import com.serphacker.serposcope.models.base.Group.Module;
 import com.serphacker.serposcope.models.base.Run;
 import com.serphacker.serposcope.models.base.Run.Mode;
 import com.serphacker.serposcope.task.google.GoogleTask;
+import com.serphacker.serposcope.task.google.SerpArchiver;
+import com.serphacker.serposcope.task.google.SerpRecompressor;
+import com.serphacker.serposcope.task.google.SerpSpool;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,78 +48,372 @@ public class TaskManager {
     @Inject
     BaseDB db;
     
+    @Inject
+    GoogleDB googleDB;
+    
+    @Inject
+    PruneDB pruneDB;
+    
+    @Inject
+    SerpSpool spool;
+    
+    public final static String MAX_GOOGLE_TASKS = "serposcope.task.max";
+    public final static int DEFAULT_MAX_GOOGLE_TASKS = 2;
+    
+    // written under googleTaskLock, read without it
     final Object googleTaskLock = new Object();
-    GoogleTask googleTask;
+    final List<GoogleTask> googleTasks = new CopyOnWriteArrayList<>();
+    final Deque<Run> queuedGoogleRuns = new ConcurrentLinkedDeque<>();
+    // runs whose spool is replayed, they can't start until it's done
+    final Set<Integer> replayedRunIds = new HashSet<>();
+    volatile int maxGoogleTasks = DEFAULT_MAX_GOOGLE_TASKS;
+    
+    final Object serpRecompressorLock = new Object();
+    SerpRecompressor serpRecompressor;
+    
+    final Object prunerLock = new Object();
+    Pruner pruner;
+    
+    final Object serpArchiverLock = new Object();
+    SerpArchiver serpArchiver;
+    
+    @Inject(optional = true)
+    public void setMaxGoogleTasks(@Named(MAX_GOOGLE_TASKS) int maxGoogleTasks){
+        this.maxGoogleTasks = Math.max(1, maxGoogleTasks);
+    }
     
     public boolean isGoogleRunning(){
+        return !googleTasks.isEmpty();
+    }
+    
+    /**
+     * Start the run, or queue it until a slot is free and no running task checks one of its groups.
+     * @return false if the run is already running or queued
+     */
+    public boolean startGoogleTask(Run run){
         synchronized(googleTaskLock){
-            if(googleTask != null && googleTask.isAlive()){
+            if(run.getId() != 0){
+                for (GoogleTask task : googleTasks) {
+                    if(task.getRun().getId() == run.getId()){
+                        return false;
+                    }
+                }
+                for (Run queued : queuedGoogleRuns) {
+                    if(queued.getId() == run.getId()){
+                        return false;
+                    }
+                }
+            }
+            
+            if(!queuedGoogleRuns.isEmpty() || !canStartGoogleTask(run)){
+                LOG.info("google run queued, {} running, {} queued", googleTasks.size(), queuedGoogleRuns.size());
+                queuedGoogleRuns.add(run);
                 return true;
             }
+            
+            startGoogleTaskLocked(run);
+            return true;
+        }
+    }
+    
+    protected boolean canStartGoogleTask(Run run){
+        if(googleTasks.size() >= maxGoogleTasks){
+            return false;
+        }
+        if(run.getId() != 0 && replayedRunIds.contains(run.getId())){
             return false;
-        }        
+        }
+        for (GoogleTask task : googleTasks) {
+            if(task.getRun().overlaps(run)){
+                // both would check the same searches
+                return false;
+            }
+        }
+        return true;
     }
     
-    public boolean startGoogleTask(Run run){
+    protected void startGoogleTaskLocked(Run run){
+        GoogleTask task = googleTaskFactory.create(run);
+        // the proxies and the threads are split between the slots of the concurrent tasks
+        task.setTaskSlot(freeTaskSlot(), maxGoogleTasks);
+        task.setOnFinished(() -> onGoogleTaskFinished(task));
+        googleTasks.add(task);
+        task.start();
+    }
+    
+    protected int freeTaskSlot(){
+        int slot = 0;
+        while(true){
+            final int candidate = slot;
+            if(googleTasks.stream().noneMatch((GoogleTask task) -> task.getTaskSlot() == candidate)){
+                return slot;
+            }
+            slot++;
+        }
+    }
+    
+    /**
+     * called by the thread of the task, starts the queued runs it was holding back
+     */
+    protected void onGoogleTaskFinished(GoogleTask task){
         synchronized(googleTaskLock){
-            
-            if(googleTask != null && googleTask.isAlive()){
+            googleTasks.remove(task);
+            Run done = task.getRun();
+            if(!task.getDeferredGroups().isEmpty() && done.getStatus() != Run.Status.DONE_ABORTED){
+                // groups left behind to meet the deadline
+                Run followUp = new Run(done.getMode(), done.getModule(), LocalDateTime.now().withNano(0));
+                followUp.setGroups(task.getDeferredGroups());
+                LOG.info("follow-up run queued for groups {}", followUp.getGroups());
+                queuedGoogleRuns.add(followUp);
+            }
+            startQueuedGoogleTasksLocked();
+        }
+    }
+    
+    protected void startQueuedGoogleTasksLocked(){
+        // in order, a run isn't overtaken by a later one checking the same groups
+        List<Run> skipped = new ArrayList<>();
+        Iterator<Run> it = queuedGoogleRuns.iterator();
+        while(it.hasNext()){
+            Run run = it.next();
+            if(skipped.stream().noneMatch(run::overlaps) && canStartGoogleTask(run)){
+                it.remove();
+                startGoogleTaskLocked(run);
+            } else {
+                skipped.add(run);
+            }
+        }
+    }
+    
+    /**
+     * abort all the google tasks, queued runs are dropped
+     */
+    public boolean abortGoogleTask(boolean interrupt){
+        boolean aborted = !queuedGoogleRuns.isEmpty();
+        queuedGoogleRuns.clear();
+        for (GoogleTask task : googleTasks) {
+            aborted |= abortGoogleTask(task, interrupt);
+        }
+        return aborted;
+    }
+    
+    public boolean abortGoogleTask(int runId, boolean interrupt){
+        if(queuedGoogleRuns.removeIf((Run run) -> run.getId() != 0 && run.getId() == runId)){
+            return true;
+        }
+        for (GoogleTask task : googleTasks) {
+            if(task.getRun().getId() == runId){
+                return abortGoogleTask(task, interrupt);
+            }
+        }
+        return false;
+    }
+    
+    protected boolean abortGoogleTask(GoogleTask task, boolean interrupt){
+        if(!task.isAlive()){
+            return false;
+        }
+        if(db.run.updateStatusAborting(task.getRun())){
+            task.getRun().setStatus(Run.Status.ABORTING);
+        }
+        task.abort();
+        if(interrupt){
+            task.interrupt();
+        }
+        return true;
+    }
+    
+    /**
+     * wait until the running and the queued google tasks are done, without holding any lock
+     */
+    public void joinGoogleTask() throws InterruptedException {
+        while(true){
+            List<GoogleTask> tasks = new ArrayList<>(googleTasks);
+            if(tasks.isEmpty()){
+                if(queuedGoogleRuns.isEmpty()){
+                    return;
+                }
+                // a finishing task is starting the queued runs
+                Thread.sleep(100l);
+                continue;
+            }
+            for (GoogleTask task : tasks) {
+                task.join();
+            }
+        }
+    }
+    
+    /**
+     * @return the run of the oldest running google task
+     */
+    public Run getRunningGoogleTask() { 
+        Iterator<GoogleTask> it = googleTasks.iterator();
+        return it.hasNext() ? it.next().getRun() : null;
+    }
+    
+    public List<Run> listRunningGoogleTasks(){
+        return googleTasks.stream().map(GoogleTask::getRun).collect(Collectors.toList());
+    }
+    
+    public List<Run> listQueuedGoogleRuns(){
+        return new ArrayList<>(queuedGoogleRuns);
+    }
+    
+    public boolean isGoogleQueued(Run run){
+        return queuedGoogleRuns.contains(run);
+    }
+    
+    /**
+     * apply the spooled results left by runs interrupted by a stop or a crash, call it at startup. 
+     * A replayed run started meanwhile is queued until its replay is done.
+     * @return number of results still pending
+     */
+    public int replaySpool(){
+        // the runs are held back under the lock, the results are applied without it
+        List<Integer> runIds = new ArrayList<>();
+        synchronized(googleTaskLock){
+            for (Integer runId : spool.listRuns()) {
+                if(googleTasks.stream().anyMatch((GoogleTask task) -> task.getRun().getId() == runId)){
+                    continue;
+                }
+                if(replayedRunIds.add(runId)){
+                    runIds.add(runId);
+                }
+            }
+        }
+        
+        int left = 0;
+        try {
+            for (Integer runId : runIds) {
+                Run run = db.run.find(runId);
+                if(run == null){
+                    LOG.warn("discarding spool of deleted run {}", runId);
+                    SerpSpool.Journal journal = spool.open(runId);
+                    if(journal != null){
+                        journal.delete();
+                    }
+                    continue;
+                }
+                left += googleTaskFactory.create(run).replay();
+            }
+        } finally {
+            synchronized(googleTaskLock){
+                replayedRunIds.removeAll(runIds);
+                startQueuedGoogleTasksLocked();
+            }
+        }
+        return left;
+    }
+    
+    public List<Run> listRunningTasks(){
+        List<Run> tasks = new ArrayList<>();
+        tasks.addAll(listRunningGoogleTasks());
+        return tasks;
+    }
+    
+    public boolean startSerpRecompression(){
+        synchronized(serpRecompressorLock){
+            if(serpRecompressor != null && serpRecompressor.isAlive()){
                 return false;
             }
             
-            googleTask = googleTaskFactory.create(run);
-            googleTask.start();
+            serpRecompressor = new SerpRecompressor(googleDB);
+            serpRecompressor.start();
             return true;
         }
     }
     
-    public boolean abortGoogleTask(boolean interrupt){
-        synchronized(googleTaskLock){
-            if(googleTask == null || !googleTask.isAlive()){
+    public boolean abortSerpRecompression(){
+        synchronized(serpRecompressorLock){
+            if(serpRecompressor == null || !serpRecompressor.isAlive()){
                 return false;
             }
             
-            if(db.run.updateStatusAborting(googleTask.getRun())){
-                googleTask.getRun().setStatus(Run.Status.ABORTING);
+            serpRecompressor.abort();
+            return true;
+        }
+    }
+    
+    public SerpRecompressor getRunningSerpRecompression(){
+        synchronized(serpRecompressorLock){
+            if(serpRecompressor == null || !serpRecompressor.isAlive()){
+                return null;
             }
-            googleTask.abort();
-            if(interrupt){
-                googleTask.interrupt();
+            
+            return serpRecompressor;
+        }
+    }
+    
+    /**
+     * @param days age of the runs to archive, negative to restore the archive
+     */
+    public boolean startSerpArchiving(int days){
+        synchronized(serpArchiverLock){
+            if(serpArchiver != null && serpArchiver.isAlive()){
+                return false;
             }
+            
+            serpArchiver = new SerpArchiver(googleDB, days);
+            serpArchiver.start();
             return true;
         }
     }
     
-    public void joinGoogleTask() throws InterruptedException {
-        synchronized(googleTaskLock){
-            if(googleTask == null || !googleTask.isAlive()){
-                return;
+    public boolean abortSerpArchiving(){
+        synchronized(serpArchiverLock){
+            if(serpArchiver == null || !serpArchiver.isAlive()){
+                return false;
             }
             
-            googleTask.join();
-        }        
+            serpArchiver.abort();
+            return true;
+        }
     }
     
-    public Run getRunningGoogleTask() { 
-        synchronized(googleTaskLock){
-            if(googleTask == null || !googleTask.isAlive()){
+    public SerpArchiver getRunningSerpArchiving(){
+        synchronized(serpArchiverLock){
+            if(serpArchiver == null || !serpArchiver.isAlive()){
                 return null;
             }
             
-            return googleTask.getRun();
-        } 
+            return serpArchiver;
+        }
     }
     
-    public List<Run> listRunningTasks(){
-        List<Run> tasks = new ArrayList<>();
-        
-        synchronized(googleTaskLock){
-            if(googleTask != null && googleTask.isAlive()){
-                tasks.add(googleTask.getRun());
+    /**
+     * @param dbSize measure of the database size in bytes for the size budget, -1 if unknown
+     */
+    public boolean startPruning(Config config, LongSupplier dbSize){
+        synchronized(prunerLock){
+            if(pruner != null && pruner.isAlive()){
+                return false;
             }
+            
+            pruner = new Pruner(pruneDB, config, dbSize);
+            pruner.start();
+            return true;
+        }
+    }
+    
+    public boolean abortPruning(){
+        synchronized(prunerLock){
+            if(pruner == null || !pruner.isAlive()){
+                return false;
+            }
+            
+            pruner.abort();
+            return true;
+        }
+    }
+    
+    public Pruner getRunningPruning(){
+        synchronized(prunerLock){
+            if(pruner == null || !pruner.isAlive()){
+                return null;
+            }
+            
+            return pruner;
         }
-        
-        return tasks;
     }
     
 }
@@ -0,0 +1,132 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Number of scraping threads allowed to run, adjusted AIMD style from the outcome of the scraps : halved
+ * when captchas, bans or network errors reach {@value #DECREASE_RATE} of a window, increased by one after
+ * a clean window, never above the ceiling (max threads setting, capped by the proxies).
+ *
+ * Threads get a slot number and the ones with a slot above the limit wait, see {@link #throttle(int, long)}.
+ */
+public class AdaptiveConcurrency {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrency.class);
+
+    // scraps per decision
+    public final static int WINDOW = 20;
+    public final static float DECREASE_RATE = 0.2f;
+    public final static float INCREASE_RATE = 0.05f;
+
+    int ceiling;
+    int limit;
+    int clean;
+    int troubled;
+
+    public AdaptiveConcurrency(int ceiling) {
+        this.ceiling = Math.max(1, ceiling);
+        this.limit = this.ceiling;
+    }
+
+    /**
+     * @return true if the slot is still above the limit after waiting up to timeoutMS
+     */
+    public synchronized boolean throttle(int slot, long timeoutMS) throws InterruptedException {
+        if(slot < limit){
+            return false;
+        }
+        wait(timeoutMS);
+        return slot >= limit;
+    }
+
+    /**
+     * @return true if the limit changed
+     */
+    public synchronized boolean record(GoogleScrapResult res){
+        if(res.captchas > 0 || isTroubled(res.status)){
+            troubled++;
+        } else {
+            clean++;
+        }
+
+        int previous = limit;
+        if(troubled >= WINDOW * DECREASE_RATE){
+            // don't wait for the end of the window in a captcha storm
+            limit = Math.max(1, limit / 2);
+            LOG.info("{} troubled scraps out of {}, concurrency {} -> {}", troubled, troubled + clean, previous, limit);
+            reset();
+        } else if(troubled + clean >= WINDOW){
+            if(troubled <= WINDOW * INCREASE_RATE && limit < ceiling){
+                limit++;
+                LOG.info("{} troubled scraps out of {}, concurrency {} -> {}", troubled, troubled + clean, previous, limit);
+            }
+            reset();
+        }
+        if(limit > previous){
+            notifyAll();
+        }
+        return limit != previous;
+    }
+
+    protected boolean isTroubled(GoogleScrapResult.Status status){
+        switch(status){
+            case ERROR_NETWORK:
+            case ERROR_IP_BANNED:
+            case ERROR_CAPTCHA_INCORRECT:
+            case ERROR_CAPTCHA_NO_SOLVER:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    protected void reset(){
+        clean = 0;
+        troubled = 0;
+    }
+
+    /**
+     * max threads changed, the limit is kept below it and raised to it when it was at the previous ceiling
+     */
+    public synchronized void setCeiling(int ceiling){
+        ceiling = Math.max(1, ceiling);
+        if(limit == this.ceiling || limit > ceiling){
+            limit = ceiling;
+        }
+        this.ceiling = ceiling;
+        notifyAll();
+    }
+
+    /**
+     * back to the ceiling at once, whatever the recent troubles
+     * @return true if the limit changed
+     */
+    public synchronized boolean raise(){
+        int previous = limit;
+        limit = ceiling;
+        reset();
+        if(limit > previous){
+            LOG.info("concurrency raised {} -> {}", previous, limit);
+            notifyAll();
+        }
+        return limit != previous;
+    }
+
+    public synchronized int getCeiling(){
+        return ceiling;
+    }
+
+    public synchronized int getLimit(){
+        return limit;
+    }
+
+}
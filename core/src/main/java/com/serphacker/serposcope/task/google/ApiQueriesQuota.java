@@ -0,0 +1,149 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.db.google.GoogleOptionsDB;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleCustomSearchAPIScraper.ApiQueriesCounter;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In memory daily quota of the custom search API shared by the API threads of a task.
+ * Queries are reserved in the DB by blocks and handed out with an atomic counter, the DB is only
+ * hit once per block instead of once per query. Reserved queries count as used in the DB until the
+ * unused part is released with {@link #release()}, a crash can't make us go over the daily limit.
+ */
+public class ApiQueriesQuota implements ApiQueriesCounter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApiQueriesQuota.class);
+
+    public final static int DEFAULT_BLOCK_SIZE = 10;
+
+    final GoogleOptionsDB optionsDB;
+    final int maxDailyQueries;
+    final int blockSize;
+
+    final AtomicInteger reserved = new AtomicInteger();
+    final AtomicInteger used = new AtomicInteger();
+    volatile LocalDate day = LocalDate.now();
+    volatile boolean exhausted;
+
+    public ApiQueriesQuota(GoogleOptionsDB optionsDB, int maxDailyQueries) {
+        this(optionsDB, maxDailyQueries, DEFAULT_BLOCK_SIZE);
+    }
+
+    public ApiQueriesQuota(GoogleOptionsDB optionsDB, int maxDailyQueries, int blockSize) {
+        this.optionsDB = optionsDB;
+        this.maxDailyQueries = maxDailyQueries;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public boolean tryAcquire() {
+        if(!day.equals(LocalDate.now())){
+            rollover();
+        }
+
+        while(true){
+            int available = reserved.get();
+            if(available > 0){
+                if(reserved.compareAndSet(available, available - 1)){
+                    used.incrementAndGet();
+                    return true;
+                }
+                continue;
+            }
+
+            if(!reserveBlock()){
+                return false;
+            }
+        }
+    }
+
+    protected synchronized boolean reserveBlock(){
+        if(reserved.get() > 0){
+            return true;
+        }
+
+        if(exhausted){
+            return false;
+        }
+
+        int granted = optionsDB.reserveApiQueries(blockSize, maxDailyQueries);
+        if(granted == 0){
+            LOG.info("daily API queries limit reached ({})", maxDailyQueries);
+            exhausted = true;
+            return false;
+        }
+
+        LOG.debug("reserved {} API queries", granted);
+        reserved.addAndGet(granted);
+        return true;
+    }
+
+    /**
+     * queries reserved the previous day are not counted in today's quota, drop them
+     */
+    protected synchronized void rollover(){
+        LocalDate today = LocalDate.now();
+        if(day.equals(today)){
+            return;
+        }
+        reserved.set(0);
+        used.set(0);
+        exhausted = false;
+        day = today;
+    }
+
+    /**
+     * give back to the DB the reserved queries which haven't been used
+     */
+    public synchronized void release(){
+        int unused = reserved.getAndSet(0);
+        if(unused > 0){
+            LOG.debug("releasing {} unused API queries", unused);
+            optionsDB.releaseApiQueries(unused, day);
+        }
+    }
+
+    /**
+     * @return number of queries still available today, including the ones reserved by this quota
+     */
+    public int remaining(){
+        if(exhausted && reserved.get() == 0){
+            return 0;
+        }
+        return Math.max(0, maxDailyQueries - optionsDB.getTodayApiQueriesCount()) + reserved.get();
+    }
+
+    /**
+     * @return number of queries used by this quota
+     */
+    public int getUsed() {
+        return used.get();
+    }
+
+    @Override
+    public int getTodayCount() {
+        return Math.max(0, optionsDB.getTodayApiQueriesCount() - reserved.get());
+    }
+
+    @Override
+    public int increment() {
+        tryAcquire();
+        return getTodayCount();
+    }
+
+    @Override
+    public boolean isLimitReached(int maxDailyQueries) {
+        return remaining() <= 0;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.google.GoogleSearchCheck;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides from the history of a search how often it needs to be checked. The volatility of a search is
+ * the share of its recent checks where a rank changed : a volatile search is checked by every run, a
+ * stable one every few runs up to the max interval, the runs in between carry its last ranks.
+ */
+public class CheckPlanner {
+
+    // checks needed before a search is considered stable
+    public final static int MIN_CHECKS = 3;
+
+    // volatility from which a search is checked by every run
+    public final static float VOLATILE_RATE = 0.2f;
+
+    final int maxInterval;
+    // checks of each search, newest run first
+    final Map<Integer,List<GoogleSearchCheck>> checksBySearch = new HashMap<>();
+
+    /**
+     * @param runIds runs of the history, newest first
+     * @param checks checks of the searches in these runs
+     */
+    public CheckPlanner(int maxInterval, List<Integer> runIds, Collection<GoogleSearchCheck> checks) {
+        this.maxInterval = Math.max(1, maxInterval);
+
+        Map<Integer,Integer> orderByRun = new HashMap<>();
+        for (int i = 0; i < runIds.size(); i++) {
+            orderByRun.put(runIds.get(i), i);
+        }
+        for (GoogleSearchCheck check : checks) {
+            if(orderByRun.containsKey(check.getRunId())){
+                checksBySearch.computeIfAbsent(check.getGoogleSearchId(), (Integer id) -> new ArrayList<>()).add(check);
+            }
+        }
+        for (List<GoogleSearchCheck> searchChecks : checksBySearch.values()) {
+            searchChecks.sort((GoogleSearchCheck a, GoogleSearchCheck b) ->
+                Integer.compare(orderByRun.get(a.getRunId()), orderByRun.get(b.getRunId())));
+        }
+    }
+
+    /**
+     * @return share of the checks of the search where a rank changed, -1 if there are too few checks
+     */
+    public float getVolatility(int googleSearchId){
+        int checked = 0;
+        int changed = 0;
+        for (GoogleSearchCheck check : checksBySearch.getOrDefault(googleSearchId, new ArrayList<>())) {
+            if(check.isCarried()){
+                continue;
+            }
+            checked++;
+            if(check.isChanged()){
+                changed++;
+            }
+        }
+        if(checked < MIN_CHECKS){
+            return -1f;
+        }
+        return (float) changed / checked;
+    }
+
+    /**
+     * @return number of runs between two checks of the search, from 1 for a volatile search to the max
+     * interval for a search which never changed
+     */
+    public int getInterval(int googleSearchId){
+        float volatility = getVolatility(googleSearchId);
+        if(volatility < 0 || volatility >= VOLATILE_RATE){
+            return 1;
+        }
+        return 1 + Math.round((maxInterval - 1) * (1f - volatility / VOLATILE_RATE));
+    }
+
+    /**
+     * @return run of the last check of the search to carry its ranks from, null if the search must be
+     * checked by the next run
+     */
+    public Integer getCarriedFrom(int googleSearchId){
+        int interval = getInterval(googleSearchId);
+        if(interval <= 1){
+            return null;
+        }
+
+        int carried = 0;
+        for (GoogleSearchCheck check : checksBySearch.getOrDefault(googleSearchId, new ArrayList<>())) {
+            if(!check.isCarried()){
+                // the next run is the carried + 1 th since the last check
+                return carried + 1 < interval ? check.getRunId() : null;
+            }
+            carried++;
+        }
+        return null;
+    }
+
+    public int getMaxInterval() {
+        return maxInterval;
+    }
+
+}
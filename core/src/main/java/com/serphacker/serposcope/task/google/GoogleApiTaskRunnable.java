@@ -0,0 +1,116 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSettings;
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
+import static com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status.OK;
+import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * API lane worker, no proxy rotation and no pause between pages.
+ * Searches failing on the API are handed to the scraping lane, and once the quota is exhausted
+ * the whole API queue follows.
+ */
+public class GoogleApiTaskRunnable implements Runnable {
+
+    protected static final Logger LOG = LoggerFactory.getLogger(GoogleApiTaskRunnable.class);
+
+    GoogleTask controller;
+
+    GoogleScraper scraper;
+
+    public GoogleApiTaskRunnable(GoogleTask controller) {
+        this.controller = controller;
+        scraper = controller.genApiScraper();
+    }
+
+    @Override
+    public void run() {
+        GoogleSearch search = null;
+
+        LOG.info("google api thread started");
+        try {
+            while (!controller.shouldStop()) {
+
+                if (Thread.currentThread().isInterrupted()) {
+                    LOG.error("interrupted, aborting the thread");
+                    break;
+                }
+
+                // API queue is only filled when the task starts, nothing left means the lane is done
+                search = controller.apiSearches.poll();
+                if (search == null) {
+                    break;
+                }
+
+                LOG.info("api search \"{}\" | total search done : {}/{}",
+                    new Object[]{search.getKeyword(), controller.getSearchDone(), controller.totalSearch});
+
+                GoogleScrapResult res = null;
+                try {
+                    res = scraper.scrap(getScrapConfig(controller.googleOptions, search));
+                } catch (InterruptedException ex) {
+                    LOG.error("interrupted while querying the API, aborting the thread");
+                    break;
+                }
+
+                if (res.status != OK) {
+                    LOG.warn("api query failed for {} because of {}, rerouting to scraping", search.getKeyword(), res.status);
+                    controller.rerouteToScraping(search);
+                    search = null;
+                    if (controller.apiQuota.remaining() <= 0) {
+                        drainToScraping();
+                        break;
+                    }
+                    continue;
+                }
+
+                controller.apiSearchDone.incrementAndGet();
+                controller.onSearchDone(search, res);
+                search = null;
+            }
+        } catch (Exception ex) {
+            LOG.error("unhandled exception, aborting the thread", ex);
+        } finally {
+            if (search != null) {
+                controller.rerouteToScraping(search);
+            }
+        }
+        LOG.info("google api thread stopped");
+    }
+
+    protected void drainToScraping(){
+        GoogleSearch search;
+        while ((search = controller.apiSearches.poll()) != null) {
+            controller.rerouteToScraping(search);
+        }
+    }
+
+    protected GoogleScrapSearch getScrapConfig(GoogleSettings options, GoogleSearch search) {
+        GoogleScrapSearch scrapSearch = new GoogleScrapSearch();
+
+        scrapSearch.setPagePauseMS(0l, 0l);
+        scrapSearch.setPages(options.getPages());
+        scrapSearch.setResultPerPage(options.getResultPerPage());
+
+        scrapSearch.setCustomParameters(search.getCustomParameters());
+        scrapSearch.setDatacenter(search.getDatacenter());
+        scrapSearch.setDevice(search.getDevice());
+        scrapSearch.setKeyword(search.getKeyword());
+        scrapSearch.setCountry(search.getCountry());
+        scrapSearch.setLocal(search.getLocal());
+
+        return scrapSearch;
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Queue of the searches of a task, served by smooth weighted round robin across groups : each group
+ * gets a share of the polls proportional to its priority, so the searches of the high priority groups
+ * are done first without starving the other groups.
+ *
+ * A search belonging to several groups is scheduled with its highest priority group. Within a group,
+ * searches to retry are only served once the fresh ones are done.
+ */
+public class GoogleSearchScheduler {
+
+    static class Lane {
+        final int weight;
+        final Deque<GoogleSearch> fresh = new ArrayDeque<>();
+        final Deque<GoogleSearch> retries = new ArrayDeque<>();
+        int current;
+
+        Lane(int weight) {
+            this.weight = Math.max(Group.MIN_PRIORITY, weight);
+        }
+
+        boolean isEmpty(){
+            return fresh.isEmpty() && retries.isEmpty();
+        }
+
+        GoogleSearch poll(){
+            GoogleSearch search = fresh.poll();
+            return search != null ? search : retries.poll();
+        }
+    }
+
+    final Map<Integer,Integer> groupBySearch;
+    final Map<Integer,Integer> priorityByGroup;
+    final Map<Integer,Lane> lanes = new LinkedHashMap<>();
+    int size;
+
+    public GoogleSearchScheduler() {
+        this(Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * @param groupBySearch group scheduling each search, searches without group share a lane of minimum priority
+     * @param priorityByGroup priority of the groups
+     */
+    public GoogleSearchScheduler(Map<Integer,Integer> groupBySearch, Map<Integer,Integer> priorityByGroup) {
+        this.groupBySearch = groupBySearch;
+        this.priorityByGroup = priorityByGroup;
+    }
+
+    protected Lane lane(GoogleSearch search){
+        int groupId = groupBySearch.getOrDefault(search.getId(), 0);
+        return lanes.computeIfAbsent(groupId, (Integer id) -> new Lane(priorityByGroup.getOrDefault(id, Group.MIN_PRIORITY)));
+    }
+
+    public synchronized void add(GoogleSearch search){
+        lane(search).fresh.add(search);
+        size++;
+        notifyAll();
+    }
+
+    public synchronized void addAll(Collection<GoogleSearch> searches){
+        for (GoogleSearch search : searches) {
+            lane(search).fresh.add(search);
+            size++;
+        }
+        notifyAll();
+    }
+
+    /**
+     * queue again a failed search, behind the fresh searches of its group
+     */
+    public synchronized void retry(GoogleSearch search){
+        lane(search).retries.add(search);
+        size++;
+        notifyAll();
+    }
+
+    /**
+     * @return next search, null if none
+     */
+    public synchronized GoogleSearch poll(){
+        Lane selected = null;
+        int total = 0;
+        for (Lane lane : lanes.values()) {
+            if(lane.isEmpty()){
+                continue;
+            }
+            lane.current += lane.weight;
+            total += lane.weight;
+            if(selected == null || lane.current > selected.current){
+                selected = lane;
+            }
+        }
+        if(selected == null){
+            return null;
+        }
+        selected.current -= total;
+        size--;
+        return selected.poll();
+    }
+
+    /**
+     * @return next search, null if none became available before the timeout
+     */
+    public synchronized GoogleSearch poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while(size == 0){
+            long left = deadline - System.nanoTime();
+            if(left <= 0){
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, left);
+        }
+        return poll();
+    }
+
+    /**
+     * move up to max searches, in scheduling order
+     * @return number of searches moved
+     */
+    public synchronized int drainTo(Collection<? super GoogleSearch> target, int max){
+        int drained = 0;
+        GoogleSearch search;
+        while(drained < max && (search = poll()) != null){
+            target.add(search);
+            drained++;
+        }
+        return drained;
+    }
+
+    public synchronized boolean removeIf(Predicate<GoogleSearch> filter){
+        int before = size;
+        for (Lane lane : lanes.values()) {
+            size -= remove(lane.fresh, filter) + remove(lane.retries, filter);
+        }
+        return size != before;
+    }
+
+    protected int remove(Deque<GoogleSearch> searches, Predicate<GoogleSearch> filter){
+        int before = searches.size();
+        searches.removeIf(filter);
+        return before - searches.size();
+    }
+
+    /**
+     * @return searches left per scheduling group, 0 for the searches without group
+     */
+    public synchronized Map<Integer,Integer> countByGroup(){
+        Map<Integer,Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Lane> entry : lanes.entrySet()) {
+            Lane lane = entry.getValue();
+            if(!lane.isEmpty()){
+                counts.put(entry.getKey(), lane.fresh.size() + lane.retries.size());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * remove the searches scheduled with the groups
+     * @return searches removed
+     */
+    public synchronized List<GoogleSearch> removeGroups(Collection<Integer> groupIds){
+        List<GoogleSearch> removed = new ArrayList<>();
+        for (Integer groupId : groupIds) {
+            Lane lane = lanes.remove(groupId);
+            if(lane != null){
+                removed.addAll(lane.fresh);
+                removed.addAll(lane.retries);
+            }
+        }
+        size -= removed.size();
+        return removed;
+    }
+
+    public synchronized int size(){
+        return size;
+    }
+
+    public synchronized boolean isEmpty(){
+        return size == 0;
+    }
+
+}
@@ -7,17 +7,27 @@
  */
 package com.serphacker.serposcope.task.google;
 
+import com.google.common.collect.Iterables;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import com.google.inject.name.Named;
+import com.serphacker.serposcope.db.UnitOfWork;
+import com.serphacker.serposcope.db.base.RunDB;
 import com.serphacker.serposcope.db.google.GoogleDB;
+import com.serphacker.serposcope.db.google.GoogleRankWriter;
+import com.serphacker.serposcope.db.google.GoogleRunQueueDB;
+import com.serphacker.serposcope.db.google.GoogleSerpDB;
 import com.serphacker.serposcope.di.CaptchaSolverFactory;
 import com.serphacker.serposcope.di.ScrapClientFactory;
 //import com.serphacker.serposcope.di.ScraperFactory;
+import com.serphacker.serposcope.models.base.Config;
+import com.serphacker.serposcope.models.base.Group;
 import com.serphacker.serposcope.models.base.Proxy;
 import com.serphacker.serposcope.models.base.Run;
 import com.serphacker.serposcope.models.google.GoogleSettings;
 import com.serphacker.serposcope.models.google.GoogleRank;
 import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSearchCheck;
 import com.serphacker.serposcope.models.google.GoogleSerp;
 import com.serphacker.serposcope.models.google.GoogleSerpEntry;
 import com.serphacker.serposcope.models.google.GoogleTarget;
@@ -28,10 +38,17 @@ import com.serphacker.serposcope.scraper.http.ScrapClient;
 import com.serphacker.serposcope.scraper.http.proxy.DirectNoProxy;
 import com.serphacker.serposcope.scraper.http.proxy.ProxyRotator;
 import com.serphacker.serposcope.task.AbstractTask;
+import com.serphacker.serposcope.task.CronScheduler;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
@@ -42,31 +59,92 @@ import com.serphacker.serposcope.di.GoogleScraperFactory;
 import com.serphacker.serposcope.models.google.GoogleBest;
 import com.serphacker.serposcope.models.google.GoogleTargetSummary;
 import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.lang.management.ManagementFactory;
 import java.util.Collections;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class GoogleTask extends AbstractTask {
 
     protected static final Logger LOG = LoggerFactory.getLogger(GoogleTask.class);
     
+    // the custom search API needs neither proxies nor pauses, run it wide
+    public final static int API_LANE_THREADS = 8;
+    
+    // spooled results applied per transaction on replay
+    public final static int REPLAY_BATCH = 50;
+    
+    // scrape attempts before a search is given up, a resumed run gives it one more
+    public final static int MAX_SEARCH_ATTEMPTS = 5;
+    
+    // searches leased from the run queue by the workers and the task, renewed on each attempt
+    public final static int LEASE_SECONDS = 600;
+    public final static int LEASE_BATCH_PER_THREAD = 2;
+    public final static long WORKER_POLL_MS = 5000l;
+    
+    // number of proxy shards, the web process takes shard 0 and the workers the others
+    public final static String WORKER_SHARDS = "serposcope.worker.shards";
+    
+    // max threads setting reloaded and threads added to follow it
+    public final static long CONCURRENCY_CHECK_MS = 10000l;
+    public final static long THROTTLE_WAIT_MS = 1000l;
+    
+    // a late run takes one step to catch up its deadline per period, the effect of a step is measured first
+    public final static long PLAN_STEP_MS = 60000l;
+    
     GoogleScraperFactory googleScraperFactory;
     CaptchaSolverFactory captchaSolverFactory;
     ScrapClientFactory scrapClientFactory;
     
     GoogleDB googleDB;
     ProxyRotator rotator;
+    
+    @Inject
+    SerpSpool spool;
+    SerpSpool.Journal journal;
+    
+    String leaseOwner = ManagementFactory.getRuntimeMXBean().getName();
+    int proxyShard = 0;
+    int proxyShards = 1;
+    // slot of the task among the tasks the web process can run at once
+    int taskSlot = 0;
+    int taskSlots = 1;
+    volatile boolean shared;
+    boolean worker;
 
-    Run previousRun;
-    final Map<Short,Integer> previousRunsByDay = new ConcurrentHashMap<>();
+    // last run which checked each group, runs may check some groups only
+    final Map<Integer,Run> previousRunByGroup = new ConcurrentHashMap<>();
+    // runs of the days of the SERP history, last one first
+    final Map<Short,List<Integer>> previousRunsByDay = new ConcurrentHashMap<>();
     final Map<Integer,List<GoogleTarget>> targetsByGroup = new ConcurrentHashMap<>();
     final Map<Integer,GoogleTargetSummary> summariesByTarget = new ConcurrentHashMap<>();
     
-    LinkedBlockingQueue<GoogleSearch> searches;
+    GoogleSearchScheduler searches;
+    LinkedBlockingQueue<GoogleSearch> apiSearches = new LinkedBlockingQueue<>();
+    ApiQueriesQuota apiQuota;
     GoogleSettings googleOptions;
     protected final AtomicInteger searchDone = new AtomicInteger();
+    protected final AtomicInteger searchFailed = new AtomicInteger();
+    protected final AtomicInteger searchElsewhere = new AtomicInteger();
+    final Map<Integer,Integer> attemptsBySearch = new ConcurrentHashMap<>();
     final AtomicInteger captchaCount = new AtomicInteger();
+    final AtomicInteger apiSearchDone = new AtomicInteger();
     
-    Thread[] threads;
+    final List<Thread> threads = new CopyOnWriteArrayList<>();
+    Thread[] apiThreads = new Thread[0];
+    AdaptiveConcurrency concurrency;
+    int proxyCount;
+    final RunPlanner planner = new RunPlanner();
+    LocalDateTime deadline;
+    long lastPlanStep;
+    volatile boolean economy;
+    final Set<Integer> deferredGroups = ConcurrentHashMap.newKeySet();
+    // groups having ranks written in the run, guarded by itself with the removal of deferred groups
+    final Set<Integer> rankedGroups = new HashSet<>();
+    SearchPacer pacer;
     volatile int totalSearch;
     volatile boolean interrupted;
     
@@ -95,6 +173,31 @@ public class GoogleTask extends AbstractTask {
         httpTimeoutMS = ScrapClient.DEFAULT_TIMEOUT_MS;
     }    
     
+    /**
+     * workers scrape the runs with the other shards, the task keeps the proxies of shard 0
+     */
+    @Inject(optional = true)
+    public void setWorkerShards(@Named(WORKER_SHARDS) int shards){
+        proxyShard = 0;
+        proxyShards = Math.max(1, shards);
+    }
+
+    /**
+     * the proxies and the max threads are split between the slots, concurrent tasks never use the
+     * same proxy and don't run more threads than the setting together
+     */
+    public void setTaskSlot(int slot, int slots){
+        taskSlots = Math.max(1, slots);
+        taskSlot = Math.floorMod(slot, taskSlots);
+    }
+    
+    public int getTaskSlot() {
+        return taskSlot;
+    }
+    
+    protected int getMaxThreads(GoogleSettings options){
+        return Math.max(1, options.getMaxThreads() / taskSlots);
+    }
 
     @Override
     public Run.Status doRun() {
@@ -104,29 +207,33 @@ public class GoogleTask extends AbstractTask {
         initializeSearches();
         initializePreviousRuns();
         initializeTargets();
+        carryStableSearches();
+        initializeJournal();
         
-        
-        int nThread = googleOptions.getMaxThreads();
-        List<ScrapProxy> proxies = baseDB.proxy.list().stream().map(Proxy::toScrapProxy).collect(Collectors.toList());
-        
-        if(proxies.isEmpty()){
-            LOG.warn("no proxy configured, using direct connection");
-            proxies.add(new DirectNoProxy());
-        }
-        
-        if( proxies.size() < nThread ){
-            LOG.info("less proxy ({}) than max thread ({}), setting thread number to {}", 
-                new Object[]{proxies.size(), nThread, nThread});
-            nThread = proxies.size();
-        }
-        
-        rotator = new ProxyRotator(proxies);
+        List<ScrapProxy> proxies = initializeProxies();
+        int nThread = Math.min(getMaxThreads(googleOptions), proxies.size());
         totalSearch = searches.size();
+        initializeConcurrency(nThread);
+        initializeDeadline();
+        initializePacer();
         
+        initializeApiLane();
         startThreads(nThread);
+        startApiThreads();
         waitForThreads();
+        waitForWorkers(nThread);
+        
+        if(apiQuota != null){
+            apiQuota.release();
+            LOG.info("{} searches checked with {} API queries", apiSearchDone.get(), apiQuota.getUsed());
+        }
         
+        replayJournal();
+        if(shared){
+            rebuildSummaries();
+        }
         finalizeSummaries();
+        closeJournal();
         
         if(solver != null){
             try {solver.close();} catch (IOException ex) {}
@@ -135,6 +242,20 @@ public class GoogleTask extends AbstractTask {
         LOG.warn("{} proxies failed during the task", proxies.size() - rotator.list().size());
         
         int remainingSearch = totalSearch - searchDone.get();
+        if(shared){
+            // searches checked by the workers are only known from the queue
+            Map<GoogleRunQueueDB.State,Integer> counts = googleDB.runQueue.countByState(run.getId());
+            remainingSearch = counts.entrySet().stream()
+                .filter((Map.Entry<GoogleRunQueueDB.State,Integer> e) -> e.getKey() != GoogleRunQueueDB.State.DONE)
+                .mapToInt(Map.Entry::getValue).sum();
+            LOG.info("{} searches checked by workers", counts.getOrDefault(GoogleRunQueueDB.State.DONE, 0) - searchDone.get());
+        }
+        if(remainingSearch == 0){
+            googleDB.runQueue.delete(run.getId());
+        }
+        if(searchFailed.get() > 0){
+            LOG.warn("{} searches given up after {} attempts", searchFailed.get(), MAX_SEARCH_ATTEMPTS);
+        }
         if(remainingSearch > 0){
             run.setErrors(remainingSearch);
             LOG.warn("{} searches have not been checked", remainingSearch);
@@ -144,36 +265,436 @@ public class GoogleTask extends AbstractTask {
         return Run.Status.DONE_SUCCESS;
     }
     
+    /**
+     * proxies of the task, the shard of the process only when several processes scrape the run, and 
+     * the part of the slot of the task when the process runs several tasks
+     */
+    protected List<ScrapProxy> initializeProxies(){
+        List<Proxy> sharded = new ArrayList<>();
+        List<Proxy> all = baseDB.proxy.list();
+        for (int i = 0; i < all.size(); i++) {
+            if(i % proxyShards == proxyShard){
+                sharded.add(all.get(i));
+            }
+        }
+        
+        List<ScrapProxy> proxies = new ArrayList<>();
+        // less proxies than slots, the tasks of the slots above share them
+        int parts = Math.max(1, Math.min(taskSlots, sharded.size()));
+        if(parts < taskSlots){
+            LOG.warn("less proxy ({}) than concurrent tasks ({}), proxies are shared", sharded.size(), taskSlots);
+        }
+        for (int i = 0; i < sharded.size(); i++) {
+            if(i % parts == taskSlot % parts){
+                proxies.add(sharded.get(i).toScrapProxy());
+            }
+        }
+        
+        if(proxies.isEmpty()){
+            LOG.warn("no proxy configured, using direct connection");
+            proxies.add(new DirectNoProxy());
+        }
+        
+        if( proxies.size() < getMaxThreads(googleOptions) ){
+            LOG.info("less proxy ({}) than max thread ({}), setting thread number to {}", 
+                new Object[]{proxies.size(), getMaxThreads(googleOptions), proxies.size()});
+        }
+        
+        rotator = new ProxyRotator(proxies);
+        proxyCount = proxies.size();
+        return proxies;
+    }
+    
+    /**
+     * Once the local threads are done, wait for the searches leased by workers. Searches of an expired
+     * lease are taken back and scraped locally.
+     */
+    protected void waitForWorkers(int nThread){
+        while(!interrupted){
+            Map<Integer,Integer> claimed = Collections.emptyMap();
+            if(!rotator.list().isEmpty()){
+                claimed = googleDB.runQueue.claim(run.getId(), leaseOwner, Math.max(1, nThread) * LEASE_BATCH_PER_THREAD, LEASE_SECONDS);
+            }
+            
+            if(!claimed.isEmpty()){
+                shared = true;
+                LOG.info("{} searches left by workers taken back", claimed.size());
+                enqueue(claimed);
+                startThreads(Math.min(nThread, rotator.list().size()));
+                waitForThreads();
+                continue;
+            }
+            
+            int leased = googleDB.runQueue.countLeasedByOthers(run.getId(), leaseOwner);
+            if(leased == 0){
+                return;
+            }
+            shared = true;
+            
+            LOG.debug("waiting for {} searches leased by workers", leased);
+            try {
+                Thread.sleep(WORKER_POLL_MS);
+            } catch(InterruptedException ex){
+                interruptThreads();
+            }
+        }
+    }
+    
+    /**
+     * queue searches leased from the run queue
+     */
+    protected void enqueue(Map<Integer,Integer> leased){
+        Map<Integer,GoogleSearch> searchesById = new HashMap<>();
+        for (GoogleSearch search : googleDB.search.list()) {
+            searchesById.put(search.getId(), search);
+        }
+        for (Map.Entry<Integer, Integer> entry : leased.entrySet()) {
+            GoogleSearch search = searchesById.get(entry.getKey());
+            if(search == null){
+                googleDB.runQueue.fail(run.getId(), entry.getKey());
+                continue;
+            }
+            attemptsBySearch.put(search.getId(), entry.getValue());
+            totalSearch++;
+            searches.add(search);
+        }
+    }
+    
+    /**
+     * Headless worker mode : lease batches of searches of the run from the queue and scrape them with
+     * the proxies of the shard until the queue is empty. The run, its summaries and its status are left
+     * to the process that started it.
+     * @return number of searches checked
+     */
+    public int work(String owner, int shard, int shards){
+        worker = true;
+        leaseOwner = owner;
+        proxyShard = shard;
+        proxyShards = Math.max(1, shards);
+        updateRun = true;
+        
+        solver = initializeCaptchaSolver();
+        googleOptions = googleDB.options.get();
+        searches = initializeScheduler();
+        initializePreviousRuns();
+        initializeTargets();
+        
+        int nThread = Math.min(getMaxThreads(googleOptions), initializeProxies().size());
+        initializeConcurrency(nThread);
+        LOG.info("worker {} joining run {} with {} threads", owner, run.getId(), nThread);
+        
+        while(!interrupted && !rotator.list().isEmpty()){
+            Map<Integer,Integer> claimed = googleDB.runQueue.claim(run.getId(), owner, nThread * LEASE_BATCH_PER_THREAD, LEASE_SECONDS);
+            if(claimed.isEmpty()){
+                break;
+            }
+            enqueue(claimed);
+            startThreads(Math.min(nThread, rotator.list().size()));
+            waitForThreads();
+        }
+        
+        googleDB.runQueue.release(run.getId(), owner);
+        if(solver != null){
+            try {solver.close();} catch (IOException ex) {}
+        }
+        LOG.info("worker {} left run {} after {} searches", owner, run.getId(), searchDone.get());
+        return searchDone.get();
+    }
+    
+    /**
+     * Route to the API lane as many searches as the remaining daily quota can handle, 
+     * the rest stays in the scraping lane.
+     */
+    protected void initializeApiLane(){
+        if(!googleOptions.isCustomSearchAPIConfigured()){
+            return;
+        }
+        
+        googleDB.apiCache.deleteExpired();
+        apiQuota = new ApiQueriesQuota(googleDB.options, googleOptions.getMaxDailyApiQueries());
+        int queriesPerSearch = Math.max(1, googleOptions.getPages());
+        int apiSearchCount = Math.min(searches.size(), apiQuota.remaining() / queriesPerSearch);
+        searches.drainTo(apiSearches, apiSearchCount);
+        LOG.info("{} searches routed to the API lane, {} to the scraping lane", apiSearches.size(), searches.size());
+    }
+    
+    protected void startApiThreads(){
+        if(apiSearches.isEmpty()){
+            return;
+        }
+        
+        apiThreads = new Thread[Math.min(API_LANE_THREADS, apiSearches.size())];
+        for (int iThread = 0; iThread < apiThreads.length; iThread++) {
+            apiThreads[iThread] = new Thread(new GoogleApiTaskRunnable(this), "google-api-" + iThread);
+            apiThreads[iThread].start();
+        }
+    }
+    
+    /**
+     * API lane couldn't handle the search (quota exhausted, API error), hand it to the scraping lane
+     */
+    protected void rerouteToScraping(GoogleSearch search){
+        searches.add(search);
+    }
+    
     protected void startThreads(int nThread){
-        threads = new Thread[nThread];
-        for (int iThread = 0; iThread < threads.length; iThread++) {
-            threads[iThread] = new Thread(new GoogleTaskRunnable(this), "google-" + iThread);
-            threads[iThread].start();
-        }        
+        threads.clear();
+        addThreads(nThread);
+    }
+    
+    protected void addThreads(int nThread){
+        for (int i = 0; i < nThread; i++) {
+            int slot = threads.size();
+            Thread thread = new Thread(new GoogleTaskRunnable(this, slot), "google-" + slot);
+            threads.add(thread);
+            thread.start();
+        }
     }
     
+    /**
+     * wait for the threads, following the changes of the max threads setting meanwhile
+     */
     protected void waitForThreads(){
         while(true){
             try {
+                Thread alive = null;
+                for (Thread thread : apiThreads) {
+                    if(thread.isAlive()){
+                        alive = thread;
+                    }
+                }
                 for (Thread thread : threads) {
-                    thread.join();
+                    if(thread.isAlive()){
+                        alive = thread;
+                    }
                 }
-                return;
+                if(alive == null){
+                    return;
+                }
+                alive.join(CONCURRENCY_CHECK_MS);
+                updateConcurrency();
+                updatePlan();
             }catch(InterruptedException ex){
                 interruptThreads();
             }
         }
     }
     
+    protected void initializeConcurrency(int nThread){
+        concurrency = new AdaptiveConcurrency(nThread);
+        run.setConcurrency(concurrency.getLimit());
+    }
+    
+    /**
+     * reload the max threads setting, threads are added when it was raised
+     */
+    protected void updateConcurrency(){
+        if(interrupted || concurrency == null){
+            return;
+        }
+        int ceiling = Math.max(1, Math.min(getMaxThreads(googleDB.options.get()), proxyCount));
+        if(ceiling == concurrency.getCeiling()){
+            return;
+        }
+        
+        LOG.info("max threads changed from {} to {}", concurrency.getCeiling(), ceiling);
+        concurrency.setCeiling(ceiling);
+        run.setConcurrency(concurrency.getLimit());
+        int missing = Math.min(ceiling - threads.size(), rotator.remaining());
+        if(missing > 0 && !threads.isEmpty()){
+            addThreads(missing);
+        }
+    }
+    
+    /**
+     * @return true if the thread of the slot must wait, it waited up to {@value #THROTTLE_WAIT_MS}ms
+     */
+    protected boolean throttle(int slot) throws InterruptedException {
+        return concurrency != null && concurrency.throttle(slot, THROTTLE_WAIT_MS);
+    }
+    
+    /**
+     * @param elapsedMS time the thread spent on the search, pauses included
+     */
+    protected void onScrapDone(GoogleScrapResult res, long elapsedMS){
+        if(concurrency != null && concurrency.record(res)){
+            run.setConcurrency(concurrency.getLimit());
+        }
+        planner.recordLatency(elapsedMS);
+    }
+    
+    protected void initializeDeadline(){
+        deadline = googleOptions.getRunDeadline(run.getStarted());
+        if(deadline != null){
+            LOG.info("run {} must be done by {}", run.getId(), deadline);
+        }
+    }
+    
+    /**
+     * searches of a cron run spread over the window of the settings, ending by the deadline at most, 
+     * and by the next run of its groups : a spread longer than the period of an hourly schedule would
+     * delay the next run
+     */
+    protected void initializePacer(){
+        if(run.getMode() != Run.Mode.CRON){
+            return;
+        }
+        Config config = baseDB.config.getConfig();
+        int minutes = config.getCronSpreadMinutes();
+        if(minutes <= 0){
+            return;
+        }
+        LocalDateTime end = run.getStarted().plusMinutes(minutes);
+        if(deadline != null && deadline.isBefore(end)){
+            end = deadline;
+        }
+        List<Group> groups = baseDB.group.list(Group.Module.GOOGLE).stream()
+            .filter((Group group) -> run.getGroups() == null || run.getGroups().contains(group.getId()))
+            .collect(Collectors.toList());
+        LocalDateTime next = new CronScheduler(config).nextStart(groups, run.getStarted());
+        if(next != null && next.isBefore(end)){
+            end = next;
+        }
+        pacer = new SearchPacer(end.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        LOG.info("{} searches spread until {}", searches.size(), end);
+    }
+    
+    /**
+     * wait for the start of the search polled by the thread when the searches are spread
+     */
+    protected void pace() throws InterruptedException {
+        if(pacer != null){
+            pacer.pace(searches.size() + 1);
+        }
+    }
+    
+    /**
+     * Update the ETA of the run from the latency of the recent searches. When it ends after the deadline,
+     * the threads are raised to the max threads, then pages are fetched lean with early termination, then
+     * the lowest priority groups are deferred to a follow-up run.
+     */
+    protected void updatePlan(){
+        if(interrupted || worker || concurrency == null){
+            return;
+        }
+        
+        // searches of the API lane are fast enough to be left out
+        int remaining = searches.size();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime eta = planner.estimateEnd(now, remaining, concurrency.getLimit());
+        if(pacer != null && eta != null && remaining > 0){
+            LocalDateTime spreadEnd = LocalDateTime.ofInstant(Instant.ofEpochMilli(pacer.getEndMS()), ZoneId.systemDefault());
+            eta = spreadEnd.isAfter(eta) ? spreadEnd : eta;
+        }
+        run.setEta(eta);
+        if(!planner.isLate(now, deadline, remaining, concurrency.getLimit())){
+            return;
+        }
+        
+        if(System.currentTimeMillis() - lastPlanStep < PLAN_STEP_MS){
+            return;
+        }
+        lastPlanStep = System.currentTimeMillis();
+        LOG.info("run {} estimated to end at {}, after its deadline {}", new Object[]{run.getId(), run.getEta(), deadline});
+        
+        if(concurrency.raise()){
+            run.setConcurrency(concurrency.getLimit());
+            return;
+        }
+        
+        if(!economy && !(googleOptions.isLeanFetch() && googleOptions.isEarlyTermination())){
+            LOG.info("switching to lean fetch with early termination");
+            economy = true;
+            return;
+        }
+        
+        deferGroups(now);
+    }
+    
+    /**
+     * Keep the searches that fit before the deadline by priority level, the highest level is always kept.
+     * Groups of the levels that don't fit are removed from the run and checked by a follow-up run, 
+     * except the groups which already have ranks in the run.
+     */
+    protected void deferGroups(LocalDateTime now){
+        int capacity = planner.capacity(now, deadline, concurrency.getLimit());
+        
+        TreeMap<Integer,List<Integer>> groupsByPriority = new TreeMap<>(Comparator.reverseOrder());
+        Map<Integer,Integer> countByGroup = searches.countByGroup();
+        for (Integer groupId : countByGroup.keySet()) {
+            if(groupId != 0){
+                int priority = searches.priorityByGroup.getOrDefault(groupId, Group.MIN_PRIORITY);
+                groupsByPriority.computeIfAbsent(priority, (Integer p) -> new ArrayList<>()).add(groupId);
+            }
+        }
+        
+        Set<Integer> deferred = new HashSet<>();
+        List<GoogleSearch> removed;
+        synchronized(rankedGroups){
+            int planned = 0;
+            boolean overflow = false;
+            for (List<Integer> level : groupsByPriority.values()) {
+                int count = level.stream().mapToInt(countByGroup::get).sum();
+                if(overflow || (planned > 0 && planned + count > capacity)){
+                    overflow = true;
+                    level.stream().filter((Integer groupId) -> !rankedGroups.contains(groupId)).forEach(deferred::add);
+                } else {
+                    planned += count;
+                }
+            }
+            if(deferred.isEmpty()){
+                LOG.warn("run {} will end after its deadline, no group left to defer", run.getId());
+                return;
+            }
+            
+            // once removed, the searches in progress write no rank for the deferred groups
+            removed = searches.removeGroups(deferred);
+            for (Integer groupId : deferred) {
+                targetsByGroup.remove(groupId);
+            }
+        }
+        googleDB.runQueue.delete(run.getId(), removed.stream().map(GoogleSearch::getId).collect(Collectors.toList()));
+        totalSearch -= removed.size();
+        summariesByTarget.values().removeIf((GoogleTargetSummary summary) -> deferred.contains(summary.getGroupId()));
+        
+        Set<Integer> groups = new TreeSet<>();
+        for (Group group : baseDB.group.list(Group.Module.GOOGLE)) {
+            if(run.hasGroup(group.getId()) && !deferred.contains(group.getId())){
+                groups.add(group.getId());
+            }
+        }
+        run.setGroups(groups);
+        baseDB.run.updateGroups(run);
+        deferredGroups.addAll(deferred);
+        LOG.info("{} searches of groups {} deferred to a follow-up run", removed.size(), deferred);
+    }
+    
+    /**
+     * @return groups removed from the run to meet its deadline, to check in a follow-up run
+     */
+    public Set<Integer> getDeferredGroups(){
+        return Collections.unmodifiableSet(deferredGroups);
+    }
+    
+    /**
+     * @return true if the pages must be fetched lean to meet the deadline
+     */
+    protected boolean isEconomy(){
+        return economy;
+    }
+    
     protected void interruptThreads(){
         interrupted = true;
+        for (Thread thread : apiThreads) {
+            thread.interrupt();
+        }
         for (Thread thread : threads) {
             thread.interrupt();
         }
     }
     
     protected boolean shouldStop(){
-        if(searchDone.get() == totalSearch){
+        if(searchDone.get() + searchFailed.get() + searchElsewhere.get() >= totalSearch){
             return true;
         }
         
@@ -186,20 +707,376 @@ public class GoogleTask extends AbstractTask {
     
     protected void incCaptchaCount(int captchas){
         run.setCaptchas(captchaCount.addAndGet(captchas));
-        baseDB.run.updateCaptchas(run);
+        if(!worker){
+            baseDB.run.updateCaptchas(run);
+        }
     }
     
     protected void onSearchDone(GoogleSearch search, GoogleScrapResult res){
-        insertSearchResult(search, res);
+        if(journal == null){
+            applySearchResult(search, res);
+            incSearchDone();
+            return;
+        }
+        
+        SerpSpool.Record record;
+        try {
+            record = journal.append(search.getId(), res.urls);
+        } catch(IOException ex){
+            LOG.error("can't spool result of search " + search.getId(), ex);
+            applySearchResult(search, res);
+            incSearchDone();
+            return;
+        }
+        
+        // the result is safe on disk, the search is done even if the database can't take it now
+        if(applySearchResult(search, res)){
+            journal.ack(record);
+            if(journal.hasPending()){
+                replayJournal();
+            }
+        } else {
+            LOG.warn("result of search {} kept in spool", search.getId());
+            journal.fail(record);
+        }
         incSearchDone();
     }
     
+    /**
+     * @return false if the result wasn't committed
+     */
+    protected boolean applySearchResult(GoogleSearch search, GoogleScrapResult res){
+        List<GoogleRank> ranks;
+        try {
+            // url ids are created before the transaction, they are then found in the cache of the dictionary
+            googleDB.url.getIds(res.urls);
+            try(UnitOfWork uow = baseDB.uow.begin()){
+                ranks = insertSearchResult(search, res);
+                googleDB.runQueue.done(run.getId(), search.getId());
+                if(!uow.commit()){
+                    return false;
+                }
+            }
+        } catch(IllegalStateException ex){
+            LOG.error("can't apply result of search " + search.getId(), ex);
+            return false;
+        }
+        addRankCandidats(ranks);
+        return true;
+    }
+    
+    protected void addRankCandidats(List<GoogleRank> ranks){
+        for (GoogleRank rank : ranks) {
+            GoogleTargetSummary summary = summariesByTarget.get(rank.googleTargetId);
+            if(summary != null){
+                summary.addRankCandidat(rank);
+            }
+        }
+    }
+    
+    /**
+     * Searches too stable to be checked by every run carry the ranks of their last check instead, flagged
+     * as carried. A search is checked if one of its ranks can't be carried. The history of a group is
+     * made of the runs which checked it, runs may check some groups only.
+     *
+     * Carried searches get no GOOGLE_SERP row in the run, their SERP is the one of the run they are 
+     * carried from. {@link GoogleSerpDB#stream} only reads the runs having a row : the SERP history of
+     * the search skips the runs which carried it, and a rescan of such a run keeps the carried ranks as
+     * they are, without counting them in the summaries it rebuilds.
+     */
+    protected void carryStableSearches(){
+        int maxInterval = googleOptions.getMaxCheckInterval();
+        if(updateRun || maxInterval <= 1){
+            return;
+        }
+        
+        Map<Integer,Set<Integer>> searchesByGroup = new HashMap<>();
+        for (Integer group : targetsByGroup.keySet()) {
+            searchesByGroup.put(group, googleDB.search.listByGroup(Arrays.asList(group)).stream()
+                .map(GoogleSearch::getId).collect(Collectors.toSet()));
+        }
+        
+        long history = (long)maxInterval * (CheckPlanner.MIN_CHECKS + 1);
+        Map<Integer,List<Integer>> runIdsByGroup = new HashMap<>();
+        Set<Integer> runIds = new HashSet<>();
+        for (Integer group : searchesByGroup.keySet()) {
+            List<Integer> groupRunIds = baseDB.run.listByStatus(RunDB.STATUSES_DONE, history, 0l, group).stream()
+                .filter((Run past) -> past.getModule() == Group.Module.GOOGLE)
+                .map(Run::getId)
+                .collect(Collectors.toList());
+            runIdsByGroup.put(group, groupRunIds);
+            runIds.addAll(groupRunIds);
+        }
+        List<GoogleSearchCheck> checks = googleDB.rank.listChecks(runIds);
+        Map<Integer,CheckPlanner> plannerByGroup = new HashMap<>();
+        for (Map.Entry<Integer, List<Integer>> entry : runIdsByGroup.entrySet()) {
+            plannerByGroup.put(entry.getKey(), new CheckPlanner(maxInterval, entry.getValue(), checks));
+        }
+        
+        Map<GoogleSearch,Integer> carriedFrom = new HashMap<>();
+        searches.removeIf((GoogleSearch search) -> {
+            Integer from = getCarriedFrom(search.getId(), searchesByGroup, plannerByGroup);
+            if(from != null){
+                carriedFrom.put(search, from);
+            }
+            return from != null;
+        });
+        if(carriedFrom.isEmpty()){
+            return;
+        }
+        
+        // ranks of the source and previous runs, read at once
+        Set<Integer> sourceRunIds = new HashSet<>(carriedFrom.values());
+        previousRunByGroup.values().forEach((Run previous) -> sourceRunIds.add(previous.getId()));
+        List<Integer> carriedIds = carriedFrom.keySet().stream().map(GoogleSearch::getId).collect(Collectors.toList());
+        Map<String,GoogleRank> sourceRanks = new HashMap<>();
+        for (List<Integer> chunk : Iterables.partition(carriedIds, GoogleSerpDB.IN_CHUNK_SIZE)) {
+            for (GoogleRank rank : googleDB.rank.list(sourceRunIds, null, null, chunk)) {
+                sourceRanks.put(rankKey(rank.runId, rank.groupId, rank.googleTargetId, rank.googleSearchId), rank);
+            }
+        }
+        
+        List<Integer> carried = new ArrayList<>();
+        List<GoogleRank> ranks = new ArrayList<>();
+        for (Map.Entry<GoogleSearch, Integer> entry : carriedFrom.entrySet()) {
+            GoogleSearch search = entry.getKey();
+            List<GoogleRank> searchRanks = getCarriedRanks(search, entry.getValue(), searchesByGroup, sourceRanks);
+            if(searchRanks == null){
+                searches.add(search);
+                continue;
+            }
+            ranks.addAll(searchRanks);
+            carried.add(search.getId());
+        }
+        if(carried.isEmpty()){
+            return;
+        }
+        
+        try(UnitOfWork uow = baseDB.uow.begin()){
+            GoogleRankWriter writer = googleDB.rank.writer();
+            ranks.forEach(writer::add);
+            writer.flush();
+            googleDB.runQueue.delete(run.getId(), carried);
+            if(!uow.commit()){
+                LOG.warn("can't carry {} stable searches, they are checked", carried.size());
+                carriedFrom.keySet().stream()
+                    .filter((GoogleSearch search) -> carried.contains(search.getId()))
+                    .forEach(searches::add);
+                return;
+            }
+        }
+        synchronized(rankedGroups){
+            ranks.forEach((GoogleRank rank) -> rankedGroups.add(rank.groupId));
+        }
+        addRankCandidats(ranks);
+        LOG.info("{} stable searches carried from their last check, {} searches to do", carried.size(), searches.size());
+    }
+    
+    /**
+     * @return run to carry the ranks of the search from, the same one for each of its groups, null if 
+     * the search must be checked
+     */
+    protected static Integer getCarriedFrom(int googleSearchId, Map<Integer,Set<Integer>> searchesByGroup, 
+        Map<Integer,CheckPlanner> plannerByGroup){
+        Integer from = null;
+        for (Map.Entry<Integer, Set<Integer>> groupSearches : searchesByGroup.entrySet()) {
+            if(!groupSearches.getValue().contains(googleSearchId)){
+                continue;
+            }
+            Integer groupFrom = plannerByGroup.get(groupSearches.getKey()).getCarriedFrom(googleSearchId);
+            if(groupFrom == null || (from != null && !from.equals(groupFrom))){
+                return null;
+            }
+            from = groupFrom;
+        }
+        return from;
+    }
+    
+    /**
+     * @param sourceRanks ranks of the source and previous runs by {@link #rankKey(int, int, int, int)}
+     * @return ranks of the search copied from the run, null if one of them is missing
+     */
+    protected List<GoogleRank> getCarriedRanks(GoogleSearch search, int fromRunId, 
+        Map<Integer,Set<Integer>> searchesByGroup, Map<String,GoogleRank> sourceRanks){
+        List<GoogleRank> ranks = new ArrayList<>();
+        for (Map.Entry<Integer, Set<Integer>> groupSearches : searchesByGroup.entrySet()) {
+            int group = groupSearches.getKey();
+            if(!groupSearches.getValue().contains(search.getId())){
+                continue;
+            }
+            for (GoogleTarget target : targetsByGroup.getOrDefault(group, Collections.emptyList())) {
+                GoogleRank from = sourceRanks.get(rankKey(fromRunId, group, target.getId(), search.getId()));
+                if(from == null){
+                    // group or target not checked by the run
+                    return null;
+                }
+                
+                Run previous = previousRunByGroup.get(group);
+                GoogleRank previousRank = previous == null ? null : 
+                    sourceRanks.get(rankKey(previous.getId(), group, target.getId(), search.getId()));
+                ranks.add(new GoogleRank(run.getId(), group, target.getId(), search.getId(), from.rank, 
+                    previousRank == null ? GoogleRank.UNRANKED : previousRank.rank, from.url, true));
+            }
+        }
+        return ranks;
+    }
+    
+    protected static String rankKey(int runId, int groupId, int targetId, int searchId){
+        return runId + "-" + groupId + "-" + targetId + "-" + searchId;
+    }
+    
+    protected void initializeJournal(){
+        if(spool == null || !spool.isEnabled()){
+            return;
+        }
+        journal = spool.open(run.getId());
+        if(journal == null || !journal.hasPending()){
+            return;
+        }
+        
+        // results of a previous process already scraped, don't scrape them again
+        Set<Integer> spooled = journal.getPending().stream()
+            .map(SerpSpool.Record::getGoogleSearchId).collect(Collectors.toSet());
+        searches.removeIf((GoogleSearch search) -> spooled.contains(search.getId()));
+        LOG.info("{} spooled results to replay", spooled.size());
+        replayJournal();
+    }
+    
+    /**
+     * apply the pending results of the journal, a few per transaction. Results already in the database
+     * are acknowledged without being applied again.
+     * @return number of results still pending
+     */
+    protected synchronized int replayJournal(){
+        if(journal == null){
+            return 0;
+        }
+        
+        List<SerpSpool.Record> records = journal.getPending();
+        for (int i = 0; i < records.size(); i += REPLAY_BATCH) {
+            List<SerpSpool.Record> batch = records.subList(i, Math.min(i + REPLAY_BATCH, records.size()));
+            List<SerpSpool.Record> applied = new ArrayList<>();
+            List<GoogleRank> ranks = new ArrayList<>();
+            
+            try {
+                for (SerpSpool.Record record : batch) {
+                    googleDB.url.getIds(record.getUrls());
+                }
+                try(UnitOfWork uow = baseDB.uow.begin()){
+                    for (SerpSpool.Record record : batch) {
+                        applied.add(record);
+                        googleDB.runQueue.done(run.getId(), record.getGoogleSearchId());
+                        if(googleDB.serp.get(run.getId(), record.getGoogleSearchId()) != null){
+                            continue;
+                        }
+                        GoogleSearch search = googleDB.search.find(record.getGoogleSearchId());
+                        if(search == null){
+                            continue;
+                        }
+                        ranks.addAll(insertSearchResult(search, new GoogleScrapResult(GoogleScrapResult.Status.OK, record.getUrls())));
+                    }
+                    if(!uow.commit()){
+                        LOG.warn("replay of {} spooled results failed", batch.size());
+                        return records.size() - i;
+                    }
+                }
+            } catch(IllegalStateException ex){
+                LOG.error("replay of " + batch.size() + " spooled results failed", ex);
+                return records.size() - i;
+            }
+            
+            addRankCandidats(ranks);
+            for (SerpSpool.Record record : applied) {
+                journal.ack(record);
+            }
+        }
+        return 0;
+    }
+    
+    protected void closeJournal(){
+        if(journal == null){
+            return;
+        }
+        if(journal.hasPending()){
+            LOG.warn("{} results left in spool for run {}", journal.getPending().size(), run.getId());
+            journal.close();
+        } else {
+            journal.delete();
+        }
+        journal = null;
+    }
+    
+    /**
+     * apply the journal left by a run interrupted by a stop or a crash and update its summaries
+     * @return number of results still pending
+     */
+    public int replay(){
+        googleOptions = googleDB.options.get();
+        searches = new GoogleSearchScheduler();
+        initializePreviousRuns();
+        initializeTargets();
+        journal = spool.open(run.getId());
+        if(journal == null){
+            return 0;
+        }
+        
+        int pending = journal.getPending().size();
+        LOG.info("replaying {} spooled results of run {}", pending, run.getId());
+        int left = replayJournal();
+        if(left < pending){
+            // ranks committed before the stop aren't in the summaries loaded, rebuild them from all the ranks
+            rebuildSummaries();
+            finalizeSummaries();
+        }
+        closeJournal();
+        return left;
+    }
+    
+    /**
+     * a thread starts scraping the search, the attempt is persisted in the queue of the run
+     * @return false if the search is done or leased by a worker
+     */
+    protected boolean onSearchAttempt(GoogleSearch search){
+        int attempts = attemptsBySearch.merge(search.getId(), 1, Integer::sum);
+        if(googleDB.runQueue.lease(run.getId(), search.getId(), leaseOwner, attempts, LEASE_SECONDS)){
+            return true;
+        }
+        if(!googleDB.runQueue.exists(run.getId())){
+            // queue not available, scrape anyway
+            return true;
+        }
+        LOG.debug("search \"{}\" is handled by a worker", search.getKeyword());
+        attemptsBySearch.merge(search.getId(), -1, Integer::sum);
+        shared = true;
+        searchElsewhere.incrementAndGet();
+        return false;
+    }
+    
+    /**
+     * @return true if the search failed too many times to be tried again
+     */
+    protected boolean isPoisoned(GoogleSearch search){
+        return attemptsBySearch.getOrDefault(search.getId(), 0) >= MAX_SEARCH_ATTEMPTS;
+    }
+    
+    protected void onSearchFailed(GoogleSearch search){
+        LOG.warn("giving up search \"{}\" after {} attempts", search.getKeyword(), attemptsBySearch.get(search.getId()));
+        googleDB.runQueue.fail(run.getId(), search.getId());
+        searchFailed.incrementAndGet();
+    }
+    
     protected void incSearchDone(){
         run.setProgress((int) (((float)searchDone.incrementAndGet()/(float)totalSearch)*100f) );
-        baseDB.run.updateProgress(run);
+        if(!worker){
+            // the run belongs to the process that started it
+            baseDB.run.updateProgress(run);
+        }
     }
     
-    protected void insertSearchResult(GoogleSearch search, GoogleScrapResult res) {
+    /**
+     * @return the ranks inserted, to add to the summaries once committed
+     */
+    protected List<GoogleRank> insertSearchResult(GoogleSearch search, GoogleScrapResult res) {
         Map<Short, GoogleSerp> history = getHistory(search);
 
         GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
@@ -210,9 +1087,11 @@ public class GoogleTask extends AbstractTask {
         }
         googleDB.serp.insert(serp);
 
+        List<GoogleRank> ranks = new ArrayList<>();
+        GoogleRankWriter writer = googleDB.rank.writer();
         List<Integer> groups = googleDB.search.listGroups(search);
         for (Integer group : groups) {
-            List<GoogleTarget> targets = targetsByGroup.get(group);
+            List<GoogleTarget> targets = getTargetsToRank(group);
             if (targets == null) {
                 continue;
             }
@@ -228,47 +1107,93 @@ public class GoogleTask extends AbstractTask {
                     }
                 }
                 
-                int previousRank = GoogleRank.UNRANKED;
-                if (previousRun != null) {
-                    previousRank = googleDB.rank.get(previousRun.getId(), group, target.getId(), search.getId());
-                }
+                int previousRank = getPreviousRank(group, target.getId(), search.getId());
                 
                 GoogleRank gRank = new GoogleRank(run.getId(), group, target.getId(), search.getId(), rank, previousRank, rankedUrl);
-                googleDB.rank.insert(gRank);
-                
-                GoogleTargetSummary summary = summariesByTarget.get(target.getId());
-                summary.addRankCandidat(gRank);
+                writer.add(gRank);
+                ranks.add(gRank);
                 
                 if(rank != GoogleRank.UNRANKED && rank <= best){
-                    googleDB.rank.insertBest(new GoogleBest(group, target.getId(), search.getId(), rank, run.getStarted(), rankedUrl));
+                    writer.addBest(new GoogleBest(group, target.getId(), search.getId(), rank, run.getStarted(), rankedUrl));
                 }
             }
         }
+        writer.flush();
+        return ranks;
     }    
     
+    /**
+     * @return targets of the group, null if the group is not checked by the run, the group can't be 
+     * deferred anymore once returned
+     */
+    protected List<GoogleTarget> getTargetsToRank(int group){
+        synchronized(rankedGroups){
+            List<GoogleTarget> targets = targetsByGroup.get(group);
+            if(targets != null){
+                rankedGroups.add(group);
+            }
+            return targets;
+        }
+    }
+    
     protected void initializeSearches() {
         List<GoogleSearch> searchList;
-        if(updateRun){
-            searchList = googleDB.search.listUnchecked(run.getId());
+        if(updateRun && googleDB.runQueue.exists(run.getId())){
+            // resume where the run stopped, with the attempts of its searches
+            Map<Integer,Integer> attempts = googleDB.runQueue.resume(run.getId());
+            attemptsBySearch.putAll(attempts);
+            searchList = googleDB.search.list().stream()
+                .filter((GoogleSearch search) -> attempts.containsKey(search.getId()))
+                .collect(Collectors.toList());
         } else {
-            searchList = googleDB.search.list();
+            if(updateRun){
+                // runs started before the queue existed
+                searchList = googleDB.search.listUnchecked(run.getId());
+            } else if(run.getGroups() != null){
+                searchList = googleDB.search.listByGroup(run.getGroups());
+            } else {
+                searchList = googleDB.search.list();
+            }
+            googleDB.runQueue.create(run.getId(), searchList.stream().map(GoogleSearch::getId).collect(Collectors.toList()));
         }
         if(shuffle){
             Collections.shuffle(searchList);
         }
-        searches = new LinkedBlockingQueue<>(searchList);
+        searches = initializeScheduler();
+        searches.addAll(searchList);
         LOG.info("{} searches to do", searches.size());
     }
     
-    protected void initializeTargets() {
-        Map<Integer, Integer> previousScorePercent = new HashMap<>();
+    /**
+     * the searches are scheduled with their highest priority group checked by the run
+     */
+    protected GoogleSearchScheduler initializeScheduler(){
+        Map<Integer,Integer> priorityByGroup = new HashMap<>();
+        Map<Integer,Integer> groupBySearch = new HashMap<>();
         
-        if(previousRun != null){
-            previousScorePercent = googleDB.targetSummary.getPreviousScore(previousRun.getId());
-        } 
+        List<Group> groups = baseDB.group.list(Group.Module.GOOGLE);
+        groups.sort(Comparator.comparingInt(Group::getPriority).reversed());
+        for (Group group : groups) {
+            if(!run.hasGroup(group.getId())){
+                continue;
+            }
+            priorityByGroup.put(group.getId(), group.getPriority());
+            for (GoogleSearch search : googleDB.search.listByGroup(Arrays.asList(group.getId()))) {
+                groupBySearch.putIfAbsent(search.getId(), group.getId());
+            }
+        }
+        return new GoogleSearchScheduler(groupBySearch, priorityByGroup);
+    }
+    
+    protected void initializeTargets() {
+        Map<Integer, Integer> previousScorePercent = getPreviousScores();
         
         List<GoogleTarget> targets = googleDB.target.list();
         for (GoogleTarget target : targets) {
+            if(!run.hasGroup(target.getGroupId())){
+                // ranks and summaries of the groups checked by the run only
+                continue;
+            }
             targetsByGroup.putIfAbsent(target.getGroupId(), new ArrayList<>());
             targetsByGroup.get(target.getGroupId()).add(target);
             summariesByTarget.put(
@@ -286,33 +1211,101 @@ public class GoogleTask extends AbstractTask {
     }
     
     protected void initializePreviousRuns(){
-        previousRun = baseDB.run.findPrevious(run.getId());
-        if(previousRun == null){
+        for (Group group : baseDB.group.list(Group.Module.GOOGLE)) {
+            if(!run.hasGroup(group.getId())){
+                continue;
+            }
+            Run previous = baseDB.run.findPrevious(run.getId(), group.getId());
+            if(previous != null){
+                previousRunByGroup.put(group.getId(), previous);
+            }
+        }
+        if(previousRunByGroup.isEmpty()){
             return;
         }
         
         short[] days = new short[]{1,7,30,90};
         
         for (short day : days) {
+            // the search may have been checked by any run of the day
             List<Run> pastRuns = baseDB.run.findByDay(run.getModule(), run.getDay().minusDays(day));
             if(!pastRuns.isEmpty()){
-                previousRunsByDay.put(day, pastRuns.get(0).getId());
+                previousRunsByDay.put(day, pastRuns.stream().map(Run::getId).collect(Collectors.toList()));
             }
         }
     }
     
+    /**
+     * @return rank in the last run which checked the group
+     */
+    protected int getPreviousRank(int groupId, int targetId, int searchId){
+        Run previous = previousRunByGroup.get(groupId);
+        if(previous == null){
+            return GoogleRank.UNRANKED;
+        }
+        return googleDB.rank.get(previous.getId(), groupId, targetId, searchId);
+    }
+    
+    /**
+     * @return score of each target in the last run which checked its group
+     */
+    protected Map<Integer,Integer> getPreviousScores(){
+        Map<Integer,Integer> scores = new HashMap<>();
+        // a run has summaries for the groups it checked only, the last one of a target is kept
+        Set<Integer> runIds = new TreeSet<>();
+        for (Run previous : previousRunByGroup.values()) {
+            runIds.add(previous.getId());
+        }
+        for (Integer runId : runIds) {
+            scores.putAll(googleDB.targetSummary.getPreviousScore(runId));
+        }
+        return scores;
+    }
+    
     protected Map<Short,GoogleSerp> getHistory(GoogleSearch search){
         Map<Short,GoogleSerp> history = new HashMap<>();
+        if(previousRunsByDay.isEmpty()){
+            return history;
+        }
+        
+        Set<Integer> runIds = new HashSet<>();
+        previousRunsByDay.values().forEach(runIds::addAll);
+        Map<Integer,GoogleSerp> serpsByRun = new HashMap<>();
+        for (GoogleSerp serp : googleDB.serp.list(runIds, Arrays.asList(search.getId()))) {
+            serpsByRun.put(serp.getRunId(), serp);
+        }
         
-        for (Map.Entry<Short, Integer> entry : previousRunsByDay.entrySet()) {
-            GoogleSerp serp = googleDB.serp.get(entry.getValue(), search.getId());
-            if(serp != null){
-                history.put(entry.getKey(), serp);
+        for (Map.Entry<Short, List<Integer>> entry : previousRunsByDay.entrySet()) {
+            // last run of the day which checked the search
+            for (Integer runId : entry.getValue()) {
+                GoogleSerp serp = serpsByRun.get(runId);
+                if(serp != null){
+                    history.put(entry.getKey(), serp);
+                    break;
+                }
             }
         }
         return history;
     }    
     
+    /**
+     * summaries from all the ranks of the run, the ones inserted by the workers included
+     */
+    protected void rebuildSummaries(){
+        Map<Integer, Integer> previousScorePercent = getPreviousScores();
+        
+        for (List<GoogleTarget> targets : targetsByGroup.values()) {
+            for (GoogleTarget target : targets) {
+                GoogleTargetSummary summary = new GoogleTargetSummary(target.getGroupId(), target.getId(), run.getId(), 
+                    previousScorePercent.getOrDefault(target.getId(), 0));
+                for (GoogleRank rank : googleDB.rank.list(run.getId(), target.getGroupId(), target.getId())) {
+                    summary.addRankCandidat(rank);
+                }
+                summariesByTarget.put(target.getId(), summary);
+            }
+        }
+    }
+    
     protected void finalizeSummaries(){
         Map<Integer, Integer> searchCountByGroup = googleDB.search.countByGroup();
         for (GoogleTargetSummary summary : summariesByTarget.values()) {
@@ -322,6 +1315,10 @@ public class GoogleTask extends AbstractTask {
     }
     
     protected GoogleScraper genScraper(){
+        if(apiQuota != null){
+            // API searches have their own lane
+            return googleScraperFactory.get(scrapClientFactory.get(httpUserAgent, httpTimeoutMS), solver);
+        }
         return googleScraperFactory.get(
             scrapClientFactory.get(httpUserAgent, httpTimeoutMS),
             solver,
@@ -331,7 +1328,11 @@ public class GoogleTask extends AbstractTask {
 
     @Override
     protected void onCrash(Exception ex) {
-        
+        if(journal != null){
+            // pending results are replayed at next startup
+            journal.close();
+            journal = null;
+        }
     }
     
     protected final CaptchaSolver initializeCaptchaSolver(){
@@ -349,6 +1350,15 @@ public class GoogleTask extends AbstractTask {
         
     }
     
+    protected GoogleScraper genApiScraper(){
+        return googleScraperFactory.getApiScraper(
+            scrapClientFactory.get(httpUserAgent, httpTimeoutMS),
+            googleOptions,
+            apiQuota,
+            googleDB.apiCache
+        );
+    }
+    
     int getSearchDone(){
         return searchDone != null ? searchDone.get() : 0;
     }
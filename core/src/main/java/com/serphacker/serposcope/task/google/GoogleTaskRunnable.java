@@ -29,9 +29,17 @@ public class GoogleTaskRunnable implements Runnable {
     GoogleTask controller;
     
     GoogleScraper scraper;
+    
+    // threads with a slot above the concurrency limit wait
+    final int slot;
 
     public GoogleTaskRunnable(GoogleTask controller) {
+        this(controller, 0);
+    }
+
+    public GoogleTaskRunnable(GoogleTask controller, int slot) {
         this.controller = controller;
+        this.slot = slot;
         scraper = controller.genScraper();
     }
     
@@ -53,6 +61,15 @@ public class GoogleTaskRunnable implements Runnable {
                     break;
                 }
                 
+                try {
+                    if(controller.throttle(slot)){
+                        continue;
+                    }
+                } catch (InterruptedException ex) {
+                    LOG.error("interrupted while throttled, aborting the thread");
+                    break;
+                }
+                
                 if(cookiesStickToProxy && proxy != null){
                     List<Cookie> cookies = scraper.getHttp().getCookies();
                     if(cookies != null){
@@ -90,11 +107,23 @@ public class GoogleTaskRunnable implements Runnable {
                     continue;
                 }
 
+                try {
+                    controller.pace();
+                } catch (InterruptedException ex) {
+                    LOG.error("interrupted while paced, aborting the thread");
+                    break;
+                }
+
+                if(!controller.onSearchAttempt(search)){
+                    search = null;
+                    continue;
+                }
                 ++searchTry;
                 GoogleScrapResult res = null;
                 LOG.info("search \"{}\" | try {} | total search done : {}/{}",
                     new Object[]{search.getKeyword(), searchTry, controller.getSearchDone(), controller.totalSearch});
 
+                long scrapStart = System.currentTimeMillis();
                 try {
                     res = scraper.scrap(getScrapConfig(controller.googleOptions, search));
                 } catch (InterruptedException ex) {
@@ -105,10 +134,18 @@ public class GoogleTaskRunnable implements Runnable {
                 if( res.captchas > 0 ){
                     controller.incCaptchaCount(res.captchas);
                 }
+                controller.onScrapDone(res, System.currentTimeMillis() - scrapStart);
 
                 if (res.status != OK) {
                     LOG.warn("scrap failed for {} because of {}", search.getKeyword(), res.status);
                     proxy = null;
+                    if(controller.isPoisoned(search)){
+                        controller.onSearchFailed(search);
+                    } else {
+                        // behind the fresh searches of its group
+                        controller.searches.retry(search);
+                    }
+                    search = null;
                     continue;
                 }
 
@@ -137,6 +174,10 @@ public class GoogleTaskRunnable implements Runnable {
         scrapSearch.setPagePauseMS(options.getMinPauseBetweenPageSec()*1000l, options.getMaxPauseBetweenPageSec()*1000l);
         scrapSearch.setPages(options.getPages());
         scrapSearch.setResultPerPage(options.getResultPerPage());
+        // a run late for its deadline fetches lean
+        boolean economy = controller.isEconomy();
+        scrapSearch.setLeanFetch(options.isLeanFetch() || economy);
+        scrapSearch.setEarlyTermination(options.isEarlyTermination() || economy);
         
         scrapSearch.setCustomParameters(search.getCustomParameters());
         scrapSearch.setDatacenter(search.getDatacenter());
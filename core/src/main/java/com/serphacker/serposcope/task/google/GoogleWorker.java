@@ -0,0 +1,187 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.google.inject.Singleton;
+import com.google.inject.assistedinject.FactoryModuleBuilder;
+import com.querydsl.sql.Configuration;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.db.google.GoogleDB;
+import com.serphacker.serposcope.db.google.GoogleSerpArchive;
+import com.serphacker.serposcope.di.TaskFactory;
+import com.serphacker.serposcope.di.db.ConfigurationProvider;
+import com.serphacker.serposcope.di.db.DataSourceProvider;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Headless scraping worker : joins the google runs started by the web process and scrapes the searches
+ * it leases from their queue, see {@link GoogleTask#work(String, int, int)}. Several workers, on one or
+ * several hosts, share a run through the database, which must be a server : MariaDB/MySQL or an H2 TCP
+ * server.
+ *
+ * java -Dserposcope.db.url=jdbc:mysql://host/serposcope?user=u&amp;password=p -Dserposcope.worker.shard=1
+ * -Dserposcope.worker.shards=3 -cp serposcope.jar com.serphacker.serposcope.task.google.GoogleWorker
+ *
+ * The proxies are split between the processes by shard : a process uses the proxies whose index modulo
+ * shards is its shard. The web process takes shard 0 when started with the same -Dserposcope.worker.shards,
+ * the workers take the shards 1 to shards - 1.
+ *
+ * Workers don't read the SERP archive, its segments are files of the web process. They only need the
+ * SERPs of the recent runs, which are in the database.
+ */
+@Singleton
+public class GoogleWorker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GoogleWorker.class);
+
+    public final static long DEFAULT_POLL_MS = 10000l;
+
+    @Inject
+    BaseDB baseDB;
+
+    @Inject
+    GoogleDB googleDB;
+
+    @Inject
+    TaskFactory taskFactory;
+
+    String owner = ManagementFactory.getRuntimeMXBean().getName();
+    int shard = 0;
+    int shards = 1;
+    long pollMS = DEFAULT_POLL_MS;
+
+    volatile boolean stopped;
+    volatile GoogleTask current;
+
+    /**
+     * work on the running runs until stopped
+     * @param once return when no run has searches left instead of waiting for the next one
+     */
+    public void work(boolean once){
+        LOG.info("worker {} started, shard {}/{}", owner, shard, shards);
+        while(!stopped){
+            Run run = findRun();
+            if(run == null){
+                if(once){
+                    break;
+                }
+                try {
+                    Thread.sleep(pollMS);
+                } catch(InterruptedException ex){
+                    break;
+                }
+                continue;
+            }
+
+            current = taskFactory.create(run);
+            current.work(owner, shard, shards);
+            current = null;
+        }
+        LOG.info("worker {} stopped", owner);
+    }
+
+    public void stop(){
+        stopped = true;
+        GoogleTask task = current;
+        if(task != null){
+            task.interruptThreads();
+        }
+    }
+
+    /**
+     * @return a running google run with searches left to lease
+     */
+    protected Run findRun(){
+        for (Run run : baseDB.run.listByStatus(Arrays.asList(Run.Status.RUNNING), null, null)) {
+            if(run.getModule() != Group.Module.GOOGLE){
+                continue;
+            }
+            if(googleDB.runQueue.countClaimable(run.getId()) > 0){
+                return run;
+            }
+        }
+        return null;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public void setShard(int shard, int shards) {
+        this.shard = shard;
+        this.shards = Math.max(1, shards);
+    }
+
+    public void setPollMS(long pollMS) {
+        this.pollMS = pollMS;
+    }
+
+    /**
+     * @param modules bindings overriding the defaults, such as the scraper
+     */
+    public static Injector createInjector(String dbUrl, Module... modules){
+        List<Module> all = new ArrayList<>();
+        all.add(new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(DataSource.class).toProvider(new DataSourceProvider(dbUrl, false)).in(Singleton.class);
+                bind(Configuration.class).toProvider(new ConfigurationProvider(dbUrl)).in(Singleton.class);
+                install(new FactoryModuleBuilder().build(TaskFactory.class));
+            }
+        });
+        all.addAll(Arrays.asList(modules));
+        return Guice.createInjector(all);
+    }
+
+    public static void main(String[] args) {
+        String dbUrl = System.getProperty("serposcope.db.url");
+        if(dbUrl == null){
+            System.err.println("serposcope.db.url is required, the database must be shared with the web process");
+            System.exit(1);
+        }
+        if(dbUrl.startsWith("jdbc:h2") && !dbUrl.toLowerCase().contains(";mode=mysql")){
+            dbUrl += ";MODE=MySQL";
+        }
+
+        if(System.getProperty(GoogleSerpArchive.DIR) != null){
+            System.err.println(GoogleSerpArchive.DIR + " is not supported, the archive is only read by the web process");
+            System.exit(1);
+        }
+        int shard = Integer.getInteger("serposcope.worker.shard", 1);
+        int shards = Integer.getInteger(GoogleTask.WORKER_SHARDS, 2);
+        if(shard < 1 || shard >= shards){
+            System.err.println("serposcope.worker.shard must be between 1 and " + GoogleTask.WORKER_SHARDS +
+                " - 1, shard 0 is the one of the web process");
+            System.exit(1);
+        }
+
+        GoogleWorker worker = createInjector(dbUrl).getInstance(GoogleWorker.class);
+        worker.setShard(shard, shards);
+        Thread main = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            worker.stop();
+            // leases are released by the work loop
+            try {main.join(30000l);} catch(InterruptedException ex){}
+        }, "worker-shutdown"));
+        worker.work(Arrays.asList(args).contains("--once"));
+    }
+
+}
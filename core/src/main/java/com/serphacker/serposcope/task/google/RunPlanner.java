@@ -0,0 +1,75 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Estimates the end of a run from the latency of its recent searches : an exponentially weighted
+ * moving average of the time a thread spends on a search, pauses included, divided among the threads
+ * allowed to scrape.
+ */
+public class RunPlanner {
+
+    // weight of the last search in the average latency
+    public final static double ALPHA = 0.1d;
+
+    double latencyMS = -1;
+    int samples;
+
+    public synchronized void recordLatency(long ms){
+        if(ms < 0){
+            return;
+        }
+        latencyMS = latencyMS < 0 ? ms : ALPHA * ms + (1d - ALPHA) * latencyMS;
+        samples++;
+    }
+
+    /**
+     * @return average latency of a search, -1 if none recorded
+     */
+    public synchronized double getLatencyMS(){
+        return latencyMS;
+    }
+
+    public synchronized int getSamples(){
+        return samples;
+    }
+
+    /**
+     * @return estimated end of the remaining searches, null if no search was recorded yet
+     */
+    public synchronized LocalDateTime estimateEnd(LocalDateTime now, int remaining, int concurrency){
+        if(latencyMS < 0){
+            return null;
+        }
+        long ms = (long) (Math.max(0, remaining) * latencyMS / Math.max(1, concurrency));
+        return now.plus(Duration.ofMillis(ms));
+    }
+
+    /**
+     * @return true if the remaining searches are estimated to end after the deadline
+     */
+    public boolean isLate(LocalDateTime now, LocalDateTime deadline, int remaining, int concurrency){
+        LocalDateTime end = estimateEnd(now, remaining, concurrency);
+        return deadline != null && end != null && end.isAfter(deadline);
+    }
+
+    /**
+     * @return number of searches that can be done before the deadline, -1 if unknown
+     */
+    public synchronized int capacity(LocalDateTime now, LocalDateTime deadline, int concurrency){
+        if(latencyMS < 0 || deadline == null){
+            return -1;
+        }
+        long left = Math.max(0, Duration.between(now, deadline).toMillis());
+        return (int) Math.min(Integer.MAX_VALUE, left * Math.max(1, concurrency) / Math.max(1d, latencyMS));
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+/**
+ * Spreads the start of the searches evenly until the end of a window instead of starting them all at
+ * once. The interval between two starts is the time left divided by the searches left, it follows the
+ * searches queued again after a failure. Once the window is over the searches start without delay.
+ */
+public class SearchPacer {
+
+    final long endMS;
+    long nextMS;
+
+    /**
+     * @param endMS end of the window, epoch milliseconds
+     */
+    public SearchPacer(long endMS) {
+        this.endMS = endMS;
+    }
+
+    /**
+     * book the next start
+     * @param remaining searches left, the one starting included
+     * @return milliseconds to wait before starting
+     */
+    public synchronized long delay(long nowMS, int remaining){
+        long start = Math.max(nowMS, nextMS);
+        if(start >= endMS){
+            return 0;
+        }
+        nextMS = start + (endMS - start) / Math.max(1, remaining);
+        return start - nowMS;
+    }
+
+    /**
+     * wait for the next start
+     */
+    public void pace(int remaining) throws InterruptedException {
+        long delay = delay(System.currentTimeMillis(), remaining);
+        if(delay > 0){
+            Thread.sleep(delay);
+        }
+    }
+
+    public long getEndMS() {
+        return endMS;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.db.google.GoogleDB;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background move of the SERPs older than a number of days to the archive, a few runs at a time with
+ * a pause between them, or restore of the whole archive to the database when days is negative.
+ */
+public class SerpArchiver extends Thread {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SerpArchiver.class);
+
+    public final static int CHUNK_RUNS = 10;
+    public final static long DEFAULT_PAUSE_MS = 100;
+
+    final GoogleDB googleDB;
+    final int days;
+    final long pauseMS;
+
+    final AtomicInteger runsDone = new AtomicInteger();
+    final AtomicInteger serps = new AtomicInteger();
+    volatile int totalRuns;
+    volatile boolean aborted;
+
+    public SerpArchiver(GoogleDB googleDB, int days) {
+        this(googleDB, days, DEFAULT_PAUSE_MS);
+    }
+
+    public SerpArchiver(GoogleDB googleDB, int days, long pauseMS) {
+        super("serp-archiver");
+        this.googleDB = googleDB;
+        this.days = days;
+        this.pauseMS = pauseMS;
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+
+        if(days < 0){
+            LOG.info("restoring archived SERPs");
+            serps.set(googleDB.serp.restore());
+            LOG.info("{} SERPs restored in {} ms", serps.get(), System.currentTimeMillis() - start);
+            return;
+        }
+
+        List<Integer> runIds = googleDB.serp.listRunIdsBefore(LocalDate.now().minusDays(days));
+        totalRuns = runIds.size();
+        LOG.info("archiving SERPs of {} runs older than {} days", totalRuns, days);
+
+        for (int i = 0; i < runIds.size(); i += CHUNK_RUNS) {
+            if(aborted || isInterrupted()){
+                LOG.info("SERPs archiving aborted");
+                break;
+            }
+
+            List<Integer> chunk = runIds.subList(i, Math.min(i + CHUNK_RUNS, runIds.size()));
+            serps.addAndGet(googleDB.serp.archive(chunk));
+            runsDone.addAndGet(chunk.size());
+
+            try {
+                Thread.sleep(pauseMS);
+            } catch(InterruptedException ex){
+                break;
+            }
+        }
+
+        LOG.info("{} SERPs of {}/{} runs archived in {} ms",
+            serps.get(), runsDone.get(), totalRuns, System.currentTimeMillis() - start);
+    }
+
+    public void abort(){
+        aborted = true;
+    }
+
+    public boolean isRestoring(){
+        return days < 0;
+    }
+
+    public int getRunsDone() {
+        return runsDone.get();
+    }
+
+    public int getTotalRuns() {
+        return totalRuns;
+    }
+
+    public int getSerps() {
+        return serps.get();
+    }
+
+}
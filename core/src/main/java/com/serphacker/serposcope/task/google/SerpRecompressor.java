@@ -0,0 +1,88 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.db.google.GoogleDB;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Background conversion of the stored SERPs to the default codec, one run at a time with a pause
+ * between runs to leave the database to the other tasks.
+ */
+public class SerpRecompressor extends Thread {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SerpRecompressor.class);
+
+    public final static long DEFAULT_PAUSE_MS = 100;
+
+    final GoogleDB googleDB;
+    final long pauseMS;
+
+    final AtomicInteger runsDone = new AtomicInteger();
+    final AtomicInteger recompressed = new AtomicInteger();
+    volatile int totalRuns;
+    volatile boolean aborted;
+
+    public SerpRecompressor(GoogleDB googleDB) {
+        this(googleDB, DEFAULT_PAUSE_MS);
+    }
+
+    public SerpRecompressor(GoogleDB googleDB, long pauseMS) {
+        super("serp-recompressor");
+        this.googleDB = googleDB;
+        this.pauseMS = pauseMS;
+    }
+
+    @Override
+    public void run() {
+        long start = System.currentTimeMillis();
+        LOG.info("recompressing SERPs with codec {}", googleDB.serpCodec.getDefaultCodecName());
+
+        List<Integer> runIds = googleDB.serp.listRunIds();
+        totalRuns = runIds.size();
+
+        for (Integer runId : runIds) {
+            if(aborted || isInterrupted()){
+                LOG.info("SERPs recompression aborted");
+                break;
+            }
+
+            recompressed.addAndGet(googleDB.serp.recompress(runId));
+            runsDone.incrementAndGet();
+
+            try {
+                Thread.sleep(pauseMS);
+            } catch(InterruptedException ex){
+                break;
+            }
+        }
+
+        LOG.info("{} SERPs of {}/{} runs recompressed in {} ms",
+            recompressed.get(), runsDone.get(), totalRuns, System.currentTimeMillis() - start);
+    }
+
+    public void abort(){
+        aborted = true;
+    }
+
+    public int getRunsDone() {
+        return runsDone.get();
+    }
+
+    public int getTotalRuns() {
+        return totalRuns;
+    }
+
+    public int getRecompressed() {
+        return recompressed.get();
+    }
+
+}
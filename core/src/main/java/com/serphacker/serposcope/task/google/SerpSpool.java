@@ -0,0 +1,316 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local spool of the scraped SERPs : each result is appended to the journal of its run and forced to
+ * disk before being written to the database, and acknowledged once the database committed it. Results
+ * the database couldn't take stay pending and are replayed later, by the task or at next startup when
+ * the application stopped during a run.
+ *
+ * Journals are append-only memory-mapped files, one per run, deleted when nothing is pending. A record
+ * is [byte state][int length][int crc32][payload], the state is written after the payload so a torn
+ * write is never seen as pending, and a zero state marks the end of the journal.
+ *
+ * Disabled until a directory is configured with {@value #DIR}, results are then written directly.
+ */
+@Singleton
+public class SerpSpool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SerpSpool.class);
+
+    public final static String DIR = "serposcope.spooldir";
+
+    final static String PREFIX = "run-";
+    final static String EXT = ".journal";
+    final static int INITIAL_SIZE = 1024 * 1024;
+    final static int HEADER_SIZE = 9;
+
+    final static byte STATE_END = 0;
+    final static byte STATE_PENDING = 1;
+    final static byte STATE_ACKED = 2;
+
+    public static class Record {
+
+        final int position;
+        final int googleSearchId;
+        final List<String> urls;
+
+        Record(int position, int googleSearchId, List<String> urls) {
+            this.position = position;
+            this.googleSearchId = googleSearchId;
+            this.urls = urls;
+        }
+
+        public int getGoogleSearchId() {
+            return googleSearchId;
+        }
+
+        public List<String> getUrls() {
+            return urls;
+        }
+
+    }
+
+    /**
+     * journal of a run, thread safe
+     */
+    public static class Journal implements AutoCloseable {
+
+        final int runId;
+        final File file;
+        final RandomAccessFile raf;
+        final FileChannel channel;
+        MappedByteBuffer buffer;
+        int end;
+
+        final Map<Integer,Record> pending = new TreeMap<>();
+
+        Journal(int runId, File file) throws IOException {
+            this.runId = runId;
+            this.file = file;
+            this.raf = new RandomAccessFile(file, "rw");
+            this.channel = raf.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_SIZE, channel.size()));
+            scan();
+        }
+
+        /**
+         * reads back the records of a previous process, the ones never acknowledged are pending
+         */
+        protected final void scan(){
+            while(end + HEADER_SIZE <= buffer.capacity()){
+                byte state = buffer.get(end);
+                int length = buffer.getInt(end + 1);
+                if(state == STATE_END || length < 0 || end + HEADER_SIZE + length > buffer.capacity()){
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.position(end + HEADER_SIZE);
+                buffer.get(payload);
+                if(crc(payload) != buffer.getInt(end + 5)){
+                    LOG.warn("corrupted record at {} of {}, truncating", end, file);
+                    break;
+                }
+                if(state == STATE_PENDING){
+                    try {
+                        pending.put(end, decode(end, payload));
+                    } catch(IOException ex){
+                        LOG.warn("invalid record at {} of {}", end, file);
+                    }
+                }
+                end += HEADER_SIZE + length;
+            }
+            // a torn write left garbage after the last valid record
+            for (int i = end; i < Math.min(buffer.capacity(), end + HEADER_SIZE); i++) {
+                buffer.put(i, STATE_END);
+            }
+        }
+
+        /**
+         * appends the result and forces it to disk
+         * @return the record to acknowledge
+         */
+        public synchronized Record append(int googleSearchId, List<String> urls) throws IOException {
+            byte[] payload = encode(googleSearchId, urls);
+            ensureCapacity(end + HEADER_SIZE + payload.length + HEADER_SIZE);
+
+            int position = end;
+            buffer.putInt(position + 1, payload.length);
+            buffer.putInt(position + 5, crc(payload));
+            buffer.position(position + HEADER_SIZE);
+            buffer.put(payload);
+            buffer.put(position, STATE_PENDING);
+            buffer.force();
+
+            end += HEADER_SIZE + payload.length;
+            return new Record(position, googleSearchId, urls);
+        }
+
+        /**
+         * the result is in the database
+         */
+        public synchronized void ack(Record record){
+            buffer.put(record.position, STATE_ACKED);
+            buffer.force();
+            pending.remove(record.position);
+        }
+
+        /**
+         * the database couldn't take the result, keep it for a replay
+         */
+        public synchronized void fail(Record record){
+            pending.put(record.position, record);
+        }
+
+        /**
+         * @return pending records in append order
+         */
+        public synchronized List<Record> getPending(){
+            return new ArrayList<>(pending.values());
+        }
+
+        public synchronized boolean hasPending(){
+            return !pending.isEmpty();
+        }
+
+        public int getRunId() {
+            return runId;
+        }
+
+        protected void ensureCapacity(int size) throws IOException {
+            if(size <= buffer.capacity()){
+                return;
+            }
+            long capacity = buffer.capacity();
+            while(capacity < size){
+                capacity *= 2;
+            }
+            if(capacity > Integer.MAX_VALUE){
+                throw new IOException("journal full " + file);
+            }
+            buffer.force();
+            // the previous mapping is released once collected
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+
+        @Override
+        public synchronized void close(){
+            try {
+                buffer.force();
+                channel.close();
+                raf.close();
+            } catch(IOException ex){
+                LOG.error("can't close journal " + file, ex);
+            }
+        }
+
+        /**
+         * close and delete the journal, pending records are lost
+         */
+        public synchronized void delete(){
+            close();
+            if(!file.delete()){
+                // still mapped on windows
+                file.deleteOnExit();
+            }
+        }
+
+        static byte[] encode(int googleSearchId, List<String> urls) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 * urls.size() + 8);
+            try(DataOutputStream out = new DataOutputStream(bytes)){
+                out.writeInt(googleSearchId);
+                out.writeInt(urls.size());
+                for (String url : urls) {
+                    out.writeUTF(url);
+                }
+            }
+            return bytes.toByteArray();
+        }
+
+        static Record decode(int position, byte[] payload) throws IOException {
+            try(DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))){
+                int googleSearchId = in.readInt();
+                int count = in.readInt();
+                List<String> urls = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    urls.add(in.readUTF());
+                }
+                return new Record(position, googleSearchId, urls);
+            }
+        }
+
+        static int crc(byte[] payload){
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            return (int) crc.getValue();
+        }
+
+    }
+
+    File dir;
+
+    @com.google.inject.Inject(optional = true)
+    public void setDirectory(@Named(DIR) String directory){
+        if(directory == null || directory.isEmpty()){
+            return;
+        }
+        setDirectory(new File(directory));
+    }
+
+    public void setDirectory(File directory){
+        if(!directory.isDirectory() && !directory.mkdirs()){
+            LOG.error("can't create spool directory {}", directory);
+            return;
+        }
+        dir = directory;
+    }
+
+    public boolean isEnabled(){
+        return dir != null;
+    }
+
+    /**
+     * open or create the journal of the run
+     * @return null if the spool is disabled or the journal can't be opened
+     */
+    public Journal open(int runId){
+        if(dir == null){
+            return null;
+        }
+        try {
+            return new Journal(runId, new File(dir, PREFIX + runId + EXT));
+        } catch(IOException ex){
+            LOG.error("can't open journal of run " + runId, ex);
+            return null;
+        }
+    }
+
+    /**
+     * @return runs with a journal left on disk
+     */
+    public List<Integer> listRuns(){
+        if(dir == null){
+            return Collections.emptyList();
+        }
+        List<Integer> runIds = new ArrayList<>();
+        File[] files = dir.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            String name = file.getName();
+            if(name.startsWith(PREFIX) && name.endsWith(EXT)){
+                try {
+                    runIds.add(Integer.parseInt(name.substring(PREFIX.length(), name.length() - EXT.length())));
+                } catch(NumberFormatException ex){
+                }
+            }
+        }
+        Collections.sort(runIds);
+        return runIds;
+    }
+
+}
@@ -19,7 +19,10 @@ drop table if exists `GROUP`;
 create table `GROUP` (
     id int primary key auto_increment,
     module_id int,
-    name varchar(255)
+    name varchar(255),
+    priority int not null default 1, -- share of the scraping threads, higher first
+    schedule varchar(255), -- cron expressions of the group, null for the global schedules
+    scheduled datetime -- last fire of the schedules handled
 ) engine = innodb default charset=utf8 /*! collate utf8_bin */;
 
 drop table if exists `EVENT`;
@@ -54,7 +57,8 @@ create table `RUN` (
     captchas int,
     errors int,
     status int, -- running, aborted, finished, error
-    mode int
+    mode int,
+    group_ids varchar(2048) -- comma separated groups checked by the run, null for all
 ) engine = innodb default charset=utf8 /*! collate utf8_bin */;
 create index RUN_MODULE_ID_DAY on RUN(module_id,day);
 
@@ -18,9 +18,11 @@ create table `GOOGLE_SERP` (
     google_search_id int,
     run_day datetime default null,
     serp blob,
+    base_run_id int,
     primary key(run_id, google_search_id),
     foreign key (google_search_id) references `GOOGLE_SEARCH`(id)
 ) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+create index GOOGLE_SERP_BASE_RUN on `GOOGLE_SERP`(base_run_id);
 
 drop table if exists `GOOGLE_SEARCH_GROUP`;
 create table `GOOGLE_SEARCH_GROUP` (
@@ -51,7 +53,8 @@ create table `GOOGLE_RANK` (
     rank smallint,
     previous_rank smallint,
     diff smallint,
-    url varchar(256),
+    url_id int,
+    carried boolean not null default false, -- copied from the last check of a stable search
 
     primary key(run_id, group_id, google_target_id, google_search_id),
     foreign key (run_id) references `RUN`(id),
@@ -68,7 +71,7 @@ create table `GOOGLE_RANK_BEST` (
 
     rank smallint,
     run_day datetime,
-    url varchar(256),
+    url_id int,
 
     primary key(group_id, google_target_id, google_search_id),
     foreign key (group_id) references `GROUP`(id),
@@ -101,4 +104,39 @@ create table `GOOGLE_TARGET_SUMMARY` (
     foreign key (run_id) references `RUN`(id)
 ) engine = innodb default charset=utf8 /*! collate utf8_bin */;
 
+drop table if exists `GOOGLE_API_CACHE`;
+create table `GOOGLE_API_CACHE` (
+    cache_key varchar(64),
+    expires datetime,
+    response blob,
+    primary key(cache_key)
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+
+drop table if exists `GOOGLE_URL`;
+create table `GOOGLE_URL` (
+    id int primary key auto_increment,
+    hash bigint not null,
+    url varchar(2048) not null
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+create unique index GOOGLE_URL_HASH_URL on `GOOGLE_URL`(hash, url/*!(255)*/);
+
+drop table if exists `GOOGLE_SERP_DICTIONARY`;
+create table `GOOGLE_SERP_DICTIONARY` (
+    id int primary key auto_increment,
+    created datetime,
+    dictionary blob
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+
+drop table if exists `GOOGLE_RUN_QUEUE`;
+create table `GOOGLE_RUN_QUEUE` (
+    run_id int,
+    google_search_id int,
+    state int, -- pending, leased, done, failed
+    attempts int default 0,
+    updated datetime,
+    lease_owner varchar(64),
+    lease_expires datetime,
+    primary key(run_id, google_search_id)
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+
 SET FOREIGN_KEY_CHECKS=1;
\ No newline at end of file
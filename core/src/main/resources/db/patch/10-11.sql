@@ -0,0 +1,8 @@
+drop table if exists `GOOGLE_SERP_DICTIONARY`;
+create table `GOOGLE_SERP_DICTIONARY` (
+    id int primary key auto_increment,
+    created datetime,
+    dictionary blob
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','11') ON DUPLICATE KEY UPDATE `value` = '11';
@@ -0,0 +1,11 @@
+drop table if exists `GOOGLE_RUN_QUEUE`;
+create table `GOOGLE_RUN_QUEUE` (
+    run_id int,
+    google_search_id int,
+    state int, -- pending, leased, done, failed
+    attempts int default 0,
+    updated datetime,
+    primary key(run_id, google_search_id)
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','12') ON DUPLICATE KEY UPDATE `value` = '12';
@@ -0,0 +1,4 @@
+alter table `GOOGLE_RUN_QUEUE` add column `lease_owner` varchar(64);
+alter table `GOOGLE_RUN_QUEUE` add column `lease_expires` datetime;
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','13') ON DUPLICATE KEY UPDATE `value` = '13';
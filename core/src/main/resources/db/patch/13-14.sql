@@ -0,0 +1,3 @@
+alter table `RUN` add column `group_ids` varchar(2048);
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','14') ON DUPLICATE KEY UPDATE `value` = '14';
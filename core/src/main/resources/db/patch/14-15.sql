@@ -0,0 +1,3 @@
+alter table `GROUP` add column `priority` int not null default 1;
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','15') ON DUPLICATE KEY UPDATE `value` = '15';
@@ -0,0 +1,4 @@
+alter table `GROUP` add column `schedule` varchar(255);
+alter table `GROUP` add column `scheduled` datetime;
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','16') ON DUPLICATE KEY UPDATE `value` = '16';
@@ -0,0 +1,3 @@
+alter table `GOOGLE_RANK` add column `carried` boolean not null default false;
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','17') ON DUPLICATE KEY UPDATE `value` = '17';
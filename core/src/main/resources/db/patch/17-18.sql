@@ -0,0 +1,11 @@
+-- urls created twice by concurrent processes keep their ids, referenced by the serps and the ranks
+update `GOOGLE_URL` set hash = -id where id in (
+    select id from (
+        select dup.id from `GOOGLE_URL` dup
+        join `GOOGLE_URL` first on first.hash = dup.hash and first.url = dup.url and first.id < dup.id
+    ) duplicates
+);
+
+create unique index GOOGLE_URL_HASH_URL on `GOOGLE_URL`(hash, url/*!(255)*/);
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','18') ON DUPLICATE KEY UPDATE `value` = '18';
@@ -0,0 +1,4 @@
+-- SERPs based on the runs to delete, rewritten as keyframes before the delete
+create index GOOGLE_SERP_BASE_RUN on `GOOGLE_SERP`(base_run_id);
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','19') ON DUPLICATE KEY UPDATE `value` = '19';
@@ -0,0 +1,9 @@
+drop table if exists `GOOGLE_API_CACHE`;
+create table `GOOGLE_API_CACHE` (
+    cache_key varchar(64),
+    expires datetime,
+    response blob,
+    primary key(cache_key)
+) engine = innodb default charset=utf8 /*! collate utf8_bin */;
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','8') ON DUPLICATE KEY UPDATE `value` = '8';
\ No newline at end of file
@@ -0,0 +1,3 @@
+alter table `GOOGLE_SERP` add column `base_run_id` int;
+
+INSERT INTO `CONFIG` VALUES ('app.dbversion','10') ON DUPLICATE KEY UPDATE `value` = '10';
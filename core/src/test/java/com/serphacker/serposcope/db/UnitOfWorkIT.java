@@ -0,0 +1,60 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db;
+
+import com.google.inject.Inject;
+import com.serphacker.serposcope.db.base.BaseDB;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class UnitOfWorkIT extends AbstractDBIT {
+
+    @Inject
+    BaseDB baseDB;
+
+    @Test
+    public void testCommitAndRollback() throws Exception {
+        try(UnitOfWork uow = baseDB.uow.begin()){
+            baseDB.config.update("test.committed", "1");
+            uow.commit();
+            baseDB.config.update("test.uncommitted", "1");
+        }
+        assertEquals("1", baseDB.config.get("test.committed", null));
+        assertNull(baseDB.config.get("test.uncommitted", null));
+
+        try(UnitOfWork uow = baseDB.uow.begin()){
+            baseDB.config.update("test.rollback", "1");
+            uow.rollback();
+            uow.commit();
+        }
+        assertNull(baseDB.config.get("test.rollback", null));
+    }
+
+    @Test
+    public void testJoinAndIsolation() throws Exception {
+        try(UnitOfWork uow = baseDB.uow.begin()){
+            try(UnitOfWork inner = baseDB.uow.begin()){
+                baseDB.config.update("test.joined", "1");
+                inner.commit();
+            }
+            assertEquals("1", baseDB.config.get("test.joined", null));
+
+            // other threads don't see the work until it's committed
+            AtomicReference<String> seen = new AtomicReference<>("");
+            Thread thread = new Thread(() -> seen.set(baseDB.config.get("test.joined", null)));
+            thread.start();
+            thread.join();
+            assertNull(seen.get());
+
+            uow.commit();
+        }
+        assertEquals("1", baseDB.config.get("test.joined", null));
+    }
+
+}
@@ -54,7 +54,8 @@ public class ExportDBIT {
     
     String[] tables = new String[]{
         "CONFIG", "USER", "GROUP", "EVENT", "USER_GROUP", "RUN", "PROXY",
-        "GOOGLE_SEARCH", "GOOGLE_SERP", "GOOGLE_SEARCH_GROUP", "GOOGLE_TARGET", "GOOGLE_RANK", "GOOGLE_RANK_BEST", "GOOGLE_TARGET_SUMMARY"
+        "GOOGLE_SEARCH", "GOOGLE_SERP", "GOOGLE_SEARCH_GROUP", "GOOGLE_TARGET", "GOOGLE_RANK", "GOOGLE_RANK_BEST", "GOOGLE_TARGET_SUMMARY",
+        "GOOGLE_API_CACHE", "GOOGLE_URL", "GOOGLE_SERP_DICTIONARY", "GOOGLE_RUN_QUEUE"
     };
     
     protected Injector injectorH2 = null;
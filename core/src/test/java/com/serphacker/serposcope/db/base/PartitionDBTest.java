@@ -0,0 +1,112 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.base;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PartitionDBTest {
+
+    @Test
+    public void testPartitionBy() {
+        Map<String,Integer> bounds = new LinkedHashMap<>();
+        bounds.put("p201001", 32);
+        bounds.put("p201002", 60);
+        assertEquals(
+            "ALTER TABLE `GOOGLE_RANK` PARTITION BY RANGE (run_id) (" +
+            "PARTITION p201001 VALUES LESS THAN (32), PARTITION p201002 VALUES LESS THAN (60), " +
+            "PARTITION p_future VALUES LESS THAN MAXVALUE)",
+            PartitionDB.partitionBy("GOOGLE_RANK", bounds)
+        );
+        assertEquals(
+            "ALTER TABLE `GOOGLE_SERP` PARTITION BY RANGE (run_id) (PARTITION p_future VALUES LESS THAN MAXVALUE)",
+            PartitionDB.partitionBy("GOOGLE_SERP", new LinkedHashMap<>())
+        );
+    }
+
+    @Test
+    public void testPrepare() {
+        Map<String,Integer> partitions = new LinkedHashMap<>();
+        partitions.put("p201001", 32);
+        partitions.put("p_future", null);
+
+        // the current month and the next one, sized for 30 runs
+        Map<String,Integer> added = PartitionDB.aheadBounds(partitions,
+            Arrays.asList(YearMonth.of(2010, 2), YearMonth.of(2010, 3)), 40, 30);
+        assertEquals(Arrays.asList("p201002", "p201003"), Arrays.asList(added.keySet().toArray()));
+        assertEquals(70, (int) added.get("p201002"));
+        assertEquals(100, (int) added.get("p201003"));
+        assertEquals(
+            "ALTER TABLE `GOOGLE_RANK` REORGANIZE PARTITION p_future INTO (" +
+            "PARTITION p201002 VALUES LESS THAN (70), PARTITION p201003 VALUES LESS THAN (100), " +
+            "PARTITION p_future VALUES LESS THAN MAXVALUE)",
+            PartitionDB.splitFuture("GOOGLE_RANK", added)
+        );
+
+        // the next day, nothing to create
+        partitions.remove("p_future");
+        partitions.putAll(added);
+        partitions.put("p_future", null);
+        assertTrue(PartitionDB.aheadBounds(partitions,
+            Arrays.asList(YearMonth.of(2010, 2), YearMonth.of(2010, 3)), 41, 30).isEmpty());
+
+        // a month later, after the bounds
+        added = PartitionDB.aheadBounds(partitions,
+            Arrays.asList(YearMonth.of(2010, 3), YearMonth.of(2010, 4)), 120, 0);
+        assertEquals(121, (int) added.get("p201004"));
+        assertEquals(1, added.size());
+    }
+
+    @Test
+    public void testDroppable() {
+        Map<String,Integer> partitions = new LinkedHashMap<>();
+        partitions.put("p201001", 32);
+        partitions.put("p201002", 70);
+        partitions.put("p201003", 100);
+        partitions.put("p_future", null);
+
+        Map<String,Integer> maxRunIds = new LinkedHashMap<>();
+        maxRunIds.put("p201001", 31);
+        maxRunIds.put("p201002", 58);
+        maxRunIds.put("p201003", null);
+        maxRunIds.put("p_future", null);
+
+        assertEquals(Arrays.asList(), PartitionDB.droppable(partitions, maxRunIds, 31));
+        assertEquals(Arrays.asList("p201001"), PartitionDB.droppable(partitions, maxRunIds, 32));
+        // the runs of the partition end before its bound
+        assertEquals(Arrays.asList("p201001", "p201002"), PartitionDB.droppable(partitions, maxRunIds, 59));
+        // created ahead, no run yet
+        assertEquals(Arrays.asList("p201001", "p201002"), PartitionDB.droppable(partitions, maxRunIds, 99));
+        assertEquals(Arrays.asList("p201001", "p201002", "p201003"), PartitionDB.droppable(partitions, maxRunIds, 100));
+    }
+
+    @Test
+    public void testForeignKeys() {
+        assertEquals(
+            "ALTER TABLE `GOOGLE_RANK` ADD FOREIGN KEY (run_id) REFERENCES `RUN`(id), " +
+            "ADD FOREIGN KEY (group_id) REFERENCES `GROUP`(id), " +
+            "ADD FOREIGN KEY (google_target_id) REFERENCES `GOOGLE_TARGET`(id), " +
+            "ADD FOREIGN KEY (google_search_id) REFERENCES `GOOGLE_SEARCH`(id)",
+            PartitionDB.addForeignKeys("GOOGLE_RANK")
+        );
+        assertEquals(
+            "ALTER TABLE `GOOGLE_SERP` ADD FOREIGN KEY (google_search_id) REFERENCES `GOOGLE_SEARCH`(id)",
+            PartitionDB.addForeignKeys("GOOGLE_SERP")
+        );
+        assertEquals(
+            Arrays.asList("DELETE FROM `GOOGLE_SERP` WHERE google_search_id IS NOT NULL AND google_search_id " +
+                "NOT IN (SELECT id FROM `GOOGLE_SEARCH`)"),
+            PartitionDB.deleteOrphans("GOOGLE_SERP")
+        );
+    }
+
+}
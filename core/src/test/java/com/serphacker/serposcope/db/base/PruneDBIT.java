@@ -16,6 +16,7 @@ import com.serphacker.serposcope.db.AbstractDBIT;
 import com.serphacker.serposcope.db.google.GoogleDB;
 import com.serphacker.serposcope.di.GoogleScraperFactory;
 import com.serphacker.serposcope.di.TaskFactory;
+import com.serphacker.serposcope.models.base.Config;
 import com.serphacker.serposcope.models.base.Group;
 import com.serphacker.serposcope.models.base.Run;
 import com.serphacker.serposcope.models.google.GoogleSearch;
@@ -27,6 +28,7 @@ import com.serphacker.serposcope.querybuilder.QGoogleTargetSummary;
 import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
 import com.serphacker.serposcope.scraper.google.scraper.FakeGScraper;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
+import com.serphacker.serposcope.task.Pruner;
 import com.serphacker.serposcope.task.google.GoogleTask;
 import com.serphacker.serposcope.task.google.GoogleTaskIT;
 import java.sql.Connection;
@@ -103,6 +105,11 @@ public class PruneDBIT extends AbstractDBIT {
 
         assertEquals(50, baseDB.run.listByStatus(null, null, null).size());
         
+        // H2 has no partitions, pruning falls back to deletes
+        assertFalse(baseDB.partition.enable());
+        assertFalse(baseDB.partition.isPartitioned());
+        assertEquals(0, baseDB.partition.dropBefore(40));
+        
         pruneDB.prune(10);
         List<Run> runs = baseDB.run.listByStatus(null, null, null);
         assertEquals(10, runs.size());
@@ -113,6 +120,61 @@ public class PruneDBIT extends AbstractDBIT {
         
     }
     
+    @Test
+    public void testPruneRunsByGroup() {
+        Group group1 = new Group(Group.Module.GOOGLE, "group#1");
+        baseDB.group.insert(group1);
+        Group group2 = new Group(Group.Module.GOOGLE, "group#2");
+        baseDB.group.insert(group2);
+        
+        // hourly runs of the first group, then a few runs of the second one
+        List<Integer> group1Runs = new ArrayList<>();
+        LocalDateTime ldt = LocalDateTime.of(2010,10,10,10,10,10);
+        for (int i = 0; i < 10; i++) {
+            Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, ldt);
+            run.setGroups(Arrays.asList(group1.getId()));
+            group1Runs.add(baseDB.run.insert(run));
+            ldt = ldt.plusHours(1);
+        }
+        List<Integer> group2Runs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, ldt);
+            run.setGroups(Arrays.asList(group2.getId()));
+            group2Runs.add(baseDB.run.insert(run));
+            ldt = ldt.plusHours(1);
+        }
+        
+        assertEquals(group1Runs.subList(0, 7), pruneDB.listRunIdsBeyond(3));
+        pruneDB.prune(3);
+        assertEquals(6, baseDB.run.listByStatus(null, null, null).size());
+        
+        // a run of all the groups counts for each of them
+        baseDB.run.insert(new Run(Run.Mode.CRON, Group.Module.GOOGLE, ldt));
+        assertEquals(Arrays.asList(group1Runs.get(7), group2Runs.get(0)), pruneDB.listRunIdsBeyond(3));
+    }
+    
+    @Test
+    public void testPruner() {
+        LocalDateTime ldt = LocalDateTime.now().minusDays(49);
+        for (int i = 0; i < 50; i++) {
+            baseDB.run.insert(new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, ldt));
+            ldt = ldt.plusDays(1);
+        }
+        
+        Config config = new Config();
+        config.setPruneRuns(40);
+        config.setPruneDays(20);
+        new Pruner(pruneDB, config, () -> -1l, 3, 0).run();
+        assertEquals(21, baseDB.run.listByStatus(null, null, null).size());
+        
+        // half of the budget exceeded : half of the runs pruned
+        config = new Config();
+        config.setPruneRuns(0);
+        config.setPruneDbSizeMB(1);
+        new Pruner(pruneDB, config, () -> 2*1024l*1024l, 3, 0).run();
+        assertEquals(10, baseDB.run.listByStatus(null, null, null).size());
+    }
+    
     @Test
     public void testInTask() throws Exception {
         
@@ -188,7 +188,52 @@ public class RunDBIT extends AbstractDBIT {
         
     }
     
+    @Test
+    public void findByGroup(){
+        Group group1 = new Group(Module.GOOGLE, "group1");
+        groupDB.insert(group1);
+        Group group2 = new Group(Module.GOOGLE, "group2");
+        groupDB.insert(group2);
+        Group group3 = new Group(Module.GOOGLE, "group3");
+        groupDB.insert(group3);
+        
+        // all the groups, then group1 only, then group2 and group3
+        Run run1 = new Run(Mode.CRON, Module.GOOGLE, LocalDateTime.of(2010, 10, 10, 10, 10));
+        run1.setStatus(Run.Status.DONE_SUCCESS);
+        run1.setFinished(run1.getStarted().plusHours(1));
+        runDB.insert(run1);
+        
+        Run run2 = new Run(Mode.CRON, Module.GOOGLE, LocalDateTime.of(2010, 10, 11, 10, 10));
+        run2.setStatus(Run.Status.DONE_SUCCESS);
+        run2.setFinished(run2.getStarted().plusHours(1));
+        run2.setGroups(Arrays.asList(group1.getId()));
+        runDB.insert(run2);
+        
+        Run run3 = new Run(Mode.CRON, Module.GOOGLE, LocalDateTime.of(2010, 10, 11, 12, 10));
+        run3.setStatus(Run.Status.DONE_SUCCESS);
+        run3.setFinished(run3.getStarted().plusHours(1));
+        run3.setGroups(Arrays.asList(group2.getId(), group3.getId()));
+        runDB.insert(run3);
+        
+        assertEquals(run2.getId(), runDB.findLast(Module.GOOGLE, STATUSES_DONE, null, group1.getId()).getId());
+        assertEquals(run3.getId(), runDB.findLast(Module.GOOGLE, STATUSES_DONE, null, group2.getId()).getId());
+        assertEquals(run3.getId(), runDB.findLast(Module.GOOGLE, STATUSES_DONE, null, group3.getId()).getId());
+        assertEquals(run1.getId(), runDB.findFirst(Module.GOOGLE, STATUSES_DONE, null, group2.getId()).getId());
+        assertEquals(run2.getId(), runDB.findFirst(Module.GOOGLE, STATUSES_DONE, LocalDate.of(2010, 10, 11), group1.getId()).getId());
+        
+        assertEquals(run1.getId(), runDB.findPrevious(run3.getId(), group3.getId()).getId());
+        assertEquals(run2.getId(), runDB.findPrevious(run3.getId(), group1.getId()).getId());
+        assertEquals(run2.getId(), runDB.findPrevious(run3.getId()).getId());
+        
+        List<Run> runs = runDB.findByDay(Module.GOOGLE, LocalDate.of(2010, 10, 11), group1.getId());
+        assertEquals(1, runs.size());
+        assertEquals(run2.getId(), runs.get(0).getId());
+        runs = runDB.findByDay(Module.GOOGLE, LocalDate.of(2010, 10, 11));
+        assertEquals(run3.getId(), runs.get(0).getId());
+        
+        runs = runDB.listDone(null, null, group2.getId());
+        assertEquals(Arrays.asList(run1.getId(), run3.getId()), Arrays.asList(runs.get(0).getId(), runs.get(1).getId()));
+        assertEquals(2, runs.size());
+    }
+    
 }
-
-
-
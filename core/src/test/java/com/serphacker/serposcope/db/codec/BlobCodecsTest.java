@@ -0,0 +1,76 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.codec;
+
+import com.serphacker.serposcope.db.LZ4Blob;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BlobCodecsTest {
+
+    protected List<byte[]> samples(int count){
+        Random random = new Random(count);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            StringBuilder builder = new StringBuilder();
+            for (int j = 0; j < 10; j++) {
+                builder.append("https://www.site-").append(random.nextInt(30)).append(".com/page-").append(random.nextInt(5)).append('\n');
+            }
+            samples.add(builder.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return samples;
+    }
+
+    @Test
+    public void testDecodeAnyCodec() {
+        List<byte[]> samples = samples(100);
+        DeflateDictionaryCodec dictionaryCodec = new DeflateDictionaryCodec(7, DictionaryTrainer.train(samples, 4096));
+
+        BlobCodecs codecs = new BlobCodecs();
+        codecs.addDictionaryCodec(dictionaryCodec);
+
+        for (byte[] sample : samples) {
+            // blobs written before codecs existed
+            byte[] legacy = LZ4Blob.compress(sample);
+            assertArrayEquals(sample, codecs.decode(legacy));
+            assertTrue(codecs.isDefaultEncoding(legacy));
+
+            byte[] encoded = dictionaryCodec.encode(sample);
+            assertEquals(DeflateDictionaryCodec.ID, encoded[0]);
+            assertArrayEquals(sample, codecs.decode(encoded));
+            assertFalse(codecs.isDefaultEncoding(encoded));
+        }
+
+        codecs.setDefaultCodec(dictionaryCodec);
+        assertTrue(codecs.isDefaultEncoding(codecs.encode(samples.get(0))));
+        assertFalse(codecs.isDefaultEncoding(LZ4Blob.compress(samples.get(0))));
+
+        // dictionary trained after the codecs were loaded
+        byte[] unknown = new DeflateDictionaryCodec(8, DictionaryTrainer.train(samples, 4096)).encode(samples.get(0));
+        assertFalse(codecs.canDecode(unknown));
+        assertFalse(codecs.isDefaultEncoding(unknown));
+        assertTrue(codecs.canDecode(codecs.encode(samples.get(0))));
+    }
+
+    @Test
+    public void testDictionaryImprovesRatio() {
+        List<byte[]> samples = samples(400);
+        byte[] dictionary = DictionaryTrainer.train(samples.subList(0, 200), DictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+        assertTrue(dictionary.length > 0);
+        assertTrue(dictionary.length <= DictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+
+        CodecBenchmark plain = CodecBenchmark.run("deflate", new DeflateDictionaryCodec(0, null), samples.subList(200, 400));
+        CodecBenchmark trained = CodecBenchmark.run("deflate-dict", new DeflateDictionaryCodec(1, dictionary), samples.subList(200, 400));
+        assertTrue(trained.getRatio() > plain.getRatio());
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.serphacker.serposcope.db.AbstractDBIT;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GoogleApiCacheDBIT extends AbstractDBIT {
+
+    @Inject
+    GoogleDB googleDB;
+
+    @Test
+    public void testPutGet() {
+        String key = "cx|serposcope|fr|null|1|10";
+        String response = "{\"items\":[{\"link\":\"https://serposcope.serphacker.com/\"}]}";
+
+        assertNull(googleDB.apiCache.get(key));
+
+        googleDB.apiCache.put(key, response);
+        assertEquals(response, googleDB.apiCache.get(key));
+        assertNull(googleDB.apiCache.get("cx|serposcope|fr|null|11|10"));
+
+        googleDB.apiCache.put(key, "{}");
+        assertEquals("{}", googleDB.apiCache.get(key));
+
+        assertEquals(0, googleDB.apiCache.deleteExpired());
+        googleDB.apiCache.wipe();
+        assertNull(googleDB.apiCache.get(key));
+    }
+
+}
@@ -12,6 +12,7 @@ import com.serphacker.serposcope.db.AbstractDBIT;
 import com.serphacker.serposcope.db.base.BaseDB;
 import com.serphacker.serposcope.models.base.Group;
 import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleBest;
 import com.serphacker.serposcope.models.google.GoogleRank;
 import com.serphacker.serposcope.models.google.GoogleSearch;
 import com.serphacker.serposcope.models.google.GoogleTarget;
@@ -21,6 +22,7 @@ import java.util.List;
 import java.util.regex.Pattern;
 import org.apache.commons.lang3.time.DurationFormatUtils;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
@@ -100,4 +102,44 @@ public class GoogleRankDBIT extends AbstractDBIT {
         
     }    
     
+    @Test
+    public void testWriter() {
+        
+        Group grp = new Group(Group.Module.GOOGLE, "grp");
+        baseDB.group.insert(grp);
+        
+        GoogleSearch search1 = new GoogleSearch("search1");
+        GoogleSearch search2 = new GoogleSearch("search2");
+        googleDB.search.insert(Arrays.asList(search1, search2), grp.getId());
+        
+        GoogleTarget target = new GoogleTarget(grp.getId(), "name", GoogleTarget.PatternType.REGEX, "pattern");
+        googleDB.target.insert(Arrays.asList(target));
+        
+        Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0));
+        baseDB.run.insert(run);
+        
+        try(GoogleRankWriter writer = googleDB.rank.writer()){
+            writer.add(new GoogleRank(run.getId(), grp.getId(), target.getId(), search1.getId(), 1, 2, "url-1"));
+            writer.add(new GoogleRank(run.getId(), grp.getId(), target.getId(), search2.getId(), 2, 3, null));
+            writer.addBest(new GoogleBest(grp.getId(), target.getId(), search1.getId(), 1, run.getStarted(), "url-1"));
+            writer.addBest(new GoogleBest(grp.getId(), target.getId(), search2.getId(), 2, run.getStarted(), "url-2"));
+            assertTrue(googleDB.rank.list(run.getId(), grp.getId(), target.getId()).isEmpty());
+        }
+        
+        List<GoogleRank> ranks = googleDB.rank.list(run.getId(), grp.getId(), target.getId());
+        assertEquals(2, ranks.size());
+        assertEquals("url-1", ranks.get(0).url);
+        assertNull(ranks.get(1).url);
+        assertEquals("url-2", googleDB.rank.getBest(grp.getId(), target.getId(), search2.getId()).getUrl());
+        
+        assertTrue(googleDB.rank.insertBest(Arrays.asList(
+            new GoogleBest(grp.getId(), target.getId(), search1.getId(), 1, run.getStarted(), "url-xxx-1"),
+            new GoogleBest(grp.getId(), target.getId(), search2.getId(), 1, null, "url-xxx-2")
+        )));
+        GoogleBest best = googleDB.rank.getBest(grp.getId(), target.getId(), search2.getId());
+        assertEquals(1, best.getRank());
+        assertEquals("url-xxx-2", best.getUrl());
+        assertNull(best.getRunDay());
+    }
+    
 }
@@ -0,0 +1,63 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.serphacker.serposcope.db.AbstractDBIT;
+import com.serphacker.serposcope.db.google.GoogleRunQueueDB.State;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GoogleRunQueueDBIT extends AbstractDBIT {
+
+    @Inject
+    GoogleDB googleDB;
+
+    @Test
+    public void testResume() {
+        List<Integer> searchIds = new ArrayList<>();
+        for (int i = 1; i <= 2500; i++) {
+            searchIds.add(i);
+        }
+
+        assertFalse(googleDB.runQueue.exists(1));
+        assertTrue(googleDB.runQueue.create(1, searchIds));
+        assertTrue(googleDB.runQueue.create(2, Arrays.asList(1, 2)));
+        assertTrue(googleDB.runQueue.exists(1));
+        assertEquals(2500, (int) googleDB.runQueue.countByState(1).get(State.PENDING));
+
+        googleDB.runQueue.lease(1, 1, 1);
+        googleDB.runQueue.done(1, 1);
+        googleDB.runQueue.lease(1, 2, 3);
+        googleDB.runQueue.lease(1, 3, 5);
+        googleDB.runQueue.fail(1, 3);
+
+        Map<State,Integer> counts = googleDB.runQueue.countByState(1);
+        assertEquals(2497, (int) counts.get(State.PENDING));
+        assertEquals(1, (int) counts.get(State.LEASED));
+        assertEquals(1, (int) counts.get(State.DONE));
+        assertEquals(1, (int) counts.get(State.FAILED));
+
+        Map<Integer,Integer> attempts = googleDB.runQueue.resume(1);
+        assertEquals(2499, attempts.size());
+        assertFalse(attempts.containsKey(1));
+        assertEquals(3, (int) attempts.get(2));
+        assertEquals(5, (int) attempts.get(3));
+        assertEquals(0, (int) attempts.get(4));
+        assertNull(googleDB.runQueue.countByState(1).get(State.LEASED));
+
+        googleDB.runQueue.delete(1);
+        assertFalse(googleDB.runQueue.exists(1));
+        assertTrue(googleDB.runQueue.exists(2));
+    }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+public class GoogleSerpArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    protected void addSegment(GoogleSerpArchive archive, int... runIds) throws Exception {
+        try(SerpSegment.Writer writer = archive.newSegment()){
+            for (int runId : runIds) {
+                for (int searchId = 1; searchId <= 3; searchId++) {
+                    writer.add(runId, searchId, LocalDateTime.of(2010, 1, 1, 0, 0), new byte[]{(byte) runId});
+                }
+            }
+            archive.add(writer.commit());
+        }
+    }
+
+    protected List<Integer> runIds(Iterator<GoogleSerpArchive.Entry> entries){
+        List<Integer> runIds = new ArrayList<>();
+        while(entries.hasNext()){
+            GoogleSerpArchive.Entry entry = entries.next();
+            assertEquals(2, entry.getGoogleSearchId());
+            runIds.add(entry.getRunId());
+        }
+        return runIds;
+    }
+
+    @Test
+    public void testListBySearch() throws Exception {
+        GoogleSerpArchive archive = new GoogleSerpArchive();
+        archive.open(folder.getRoot());
+        // a restored then archived again run overlaps the runs of an older segment
+        addSegment(archive, 1, 3, 5);
+        addSegment(archive, 2, 4);
+        addSegment(archive, 7);
+
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 7), runIds(archive.listBySearch(2, null, null)));
+        assertEquals(Arrays.asList(2, 3, 4), runIds(archive.listBySearch(2, 2, 4)));
+        assertFalse(archive.listBySearch(4, null, null).hasNext());
+
+        // reopened from the files
+        archive = new GoogleSerpArchive();
+        archive.open(folder.getRoot());
+        assertEquals(Arrays.asList(3, 4, 5, 7), runIds(archive.listBySearch(2, 3, null)));
+    }
+
+    @Test
+    public void testDropBefore() throws Exception {
+        GoogleSerpArchive archive = new GoogleSerpArchive();
+        archive.open(folder.getRoot());
+        addSegment(archive, 1, 2);
+        addSegment(archive, 3, 4);
+
+        assertEquals(1, archive.dropBefore(3));
+        assertEquals(0, archive.deleteTombstones());
+        assertEquals(Arrays.asList(3, 4), archive.listRunIds());
+        assertEquals(2, folder.getRoot().list().length);
+    }
+
+}
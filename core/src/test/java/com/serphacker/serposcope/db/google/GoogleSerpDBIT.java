@@ -17,9 +17,12 @@ import com.serphacker.serposcope.models.google.GoogleSerp;
 import com.serphacker.serposcope.models.google.GoogleSerpEntry;
 import it.unimi.dsi.fastutil.shorts.Short2ShortArrayMap;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
 import net.jpountz.lz4.LZ4Compressor;
@@ -116,6 +119,195 @@ public class GoogleSerpDBIT extends AbstractDBIT {
 
     }
     
+    @Test
+    public void testDelta() {
+
+        Group grp = new Group(Group.Module.GOOGLE, "google group");
+        baseDB.group.insert(grp);
+
+        GoogleSearch search = new GoogleSearch("my keyword");
+        googleDB.search.insert(Arrays.asList(search), grp.getId());
+
+        LocalDateTime startDate = LocalDateTime.of(2010, 10, 10, 10, 10);
+        List<GoogleSerp> inserted = new ArrayList<>();
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            urls.add("url-" + i);
+        }
+
+        for (int date = 0; date < 40; date++) {
+            Run run = new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, startDate.plusDays(date));
+            baseDB.run.insert(run);
+
+            // every third day is identical to the previous one
+            if(date % 3 != 0){
+                urls.add(r.nextInt(urls.size()), urls.remove(r.nextInt(urls.size())));
+                if(date % 5 == 0){
+                    urls.set(r.nextInt(urls.size()), "new-url-" + date);
+                }
+            }
+
+            GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+            for (int i = 0; i < urls.size(); i++) {
+                GoogleSerpEntry entry = new GoogleSerpEntry(urls.get(i));
+                entry.getMap().put((short) 1, (short) (i % 7));
+                serp.addEntry(entry);
+            }
+            googleDB.serp.insert(serp);
+            inserted.add(serp);
+        }
+
+        int deltas = 0;
+        for (GoogleSerp serp : inserted) {
+            GoogleSerp fetched = googleDB.serp.get(serp.getRunId(), serp.getGoogleSearchId());
+            assertEquals(serp.getEntries().size(), fetched.getEntries().size());
+            for (int i = 0; i < serp.getEntries().size(); i++) {
+                assertEquals(serp.getEntries().get(i).getUrl(), fetched.getEntries().get(i).getUrl());
+                assertEquals(serp.getEntries().get(i).getMap(), fetched.getEntries().get(i).getMap());
+            }
+            assertTrue(fetched.getChainDepth() <= GoogleSerpDB.MAX_DELTA_CHAIN);
+            if(fetched.getBaseRunId() != 0){
+                deltas++;
+            }
+        }
+        assertTrue(deltas > 0);
+
+        List<GoogleSerp> streamed = new ArrayList<>();
+        googleDB.serp.stream(null, null, search.getId(), streamed::add);
+        assertEquals(inserted.size(), streamed.size());
+        for (int i = 0; i < inserted.size(); i++) {
+            assertEquals(inserted.get(i).getEntries(), streamed.get(i).getEntries());
+        }
+
+        // deleting a base run turns the SERPs based on it into keyframes
+        googleDB.serp.deleteByRun(inserted.get(1).getRunId());
+        GoogleSerp fetched = googleDB.serp.get(inserted.get(2).getRunId(), search.getId());
+        assertEquals(0, fetched.getBaseRunId());
+        assertEquals(inserted.get(2).getEntries(), fetched.getEntries());
+        for (int i = 3; i < inserted.size(); i++) {
+            assertEquals(inserted.get(i).getEntries(),
+                googleDB.serp.get(inserted.get(i).getRunId(), search.getId()).getEntries());
+        }
+    }
+    
+    @Test
+    public void testBulk() {
+
+        Group grp = new Group(Group.Module.GOOGLE, "google group");
+        baseDB.group.insert(grp);
+
+        List<GoogleSearch> searches = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            searches.add(new GoogleSearch("keyword-" + i));
+        }
+        googleDB.search.insert(searches, grp.getId());
+
+        LocalDateTime startDate = LocalDateTime.of(2010, 10, 10, 10, 10);
+        List<Integer> runIds = new ArrayList<>();
+        List<GoogleSerp> serps = new ArrayList<>();
+        for (int date = 0; date < 4; date++) {
+            Run run = new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, startDate.plusDays(date));
+            baseDB.run.insert(run);
+            runIds.add(run.getId());
+            for (GoogleSearch search : searches) {
+                GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+                for (int i = 0; i < 10; i++) {
+                    serp.addEntry(new GoogleSerpEntry("url-" + search.getId() + "-" + ((i + date) % 12)));
+                }
+                serps.add(serp);
+            }
+        }
+
+        assertEquals(serps.size(), googleDB.serp.insert(serps));
+        // later runs of the batch are deltas of the earlier ones
+        assertNotEquals(0, googleDB.serp.get(runIds.get(3), searches.get(0).getId()).getBaseRunId());
+
+        List<GoogleSerp> listed = googleDB.serp.list(
+            Arrays.asList(runIds.get(1), runIds.get(3)),
+            Arrays.asList(searches.get(0).getId(), searches.get(4).getId(), Integer.MAX_VALUE)
+        );
+        assertEquals(4, listed.size());
+        for (GoogleSerp serp : listed) {
+            GoogleSerp expected = serps.stream()
+                .filter((x) -> x.getRunId() == serp.getRunId() && x.getGoogleSearchId() == serp.getGoogleSearchId())
+                .findFirst().get();
+            assertEquals(expected.getEntries(), serp.getEntries());
+        }
+        assertEquals(runIds.get(1).intValue(), listed.get(0).getRunId());
+        assertEquals(searches.get(0).getId(), listed.get(0).getGoogleSearchId());
+
+        Map<Integer,GoogleSerp> byRun = googleDB.serp.listByRun(runIds.get(2));
+        assertEquals(searches.size(), byRun.size());
+        for (GoogleSearch search : searches) {
+            GoogleSerp expected = googleDB.serp.get(runIds.get(2), search.getId());
+            assertEquals(expected.getEntries(), byRun.get(search.getId()).getEntries());
+        }
+
+        assertTrue(googleDB.serp.list(Arrays.asList(Integer.MAX_VALUE), Arrays.asList(searches.get(0).getId())).isEmpty());
+    }
+    
+    @Test
+    public void testArchive() throws IOException {
+
+        googleDB.serpArchive.open(Files.createTempDirectory("serp-archive").toFile());
+
+        Group grp = new Group(Group.Module.GOOGLE, "google group");
+        baseDB.group.insert(grp);
+
+        List<GoogleSearch> searches = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            searches.add(new GoogleSearch("keyword-" + i));
+        }
+        googleDB.search.insert(searches, grp.getId());
+
+        LocalDateTime startDate = LocalDateTime.of(2010, 10, 10, 10, 10);
+        List<Integer> runIds = new ArrayList<>();
+        List<GoogleSerp> serps = new ArrayList<>();
+        for (int date = 0; date < 6; date++) {
+            Run run = new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, startDate.plusDays(date));
+            baseDB.run.insert(run);
+            runIds.add(run.getId());
+            for (GoogleSearch search : searches) {
+                GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+                for (int i = 0; i < 10; i++) {
+                    serp.addEntry(new GoogleSerpEntry("url-" + search.getId() + "-" + ((i + date) % 12)));
+                }
+                serps.add(serp);
+            }
+        }
+        assertEquals(serps.size(), googleDB.serp.insert(serps));
+
+        // the 4 first runs move to the archive, the remaining ones are based on them
+        assertEquals(4, googleDB.serp.listRunIdsBefore(startDate.plusDays(4).toLocalDate()).size());
+        assertEquals(12, googleDB.serp.archive(runIds.subList(0, 4)));
+        assertEquals(Arrays.asList(runIds.get(4), runIds.get(5)), googleDB.serp.listRunIds());
+        assertEquals(runIds.subList(0, 4), googleDB.serpArchive.listRunIds());
+
+        for (GoogleSerp serp : serps) {
+            assertEquals(serp.getEntries(), googleDB.serp.get(serp.getRunId(), serp.getGoogleSearchId()).getEntries());
+        }
+        assertEquals(searches.size(), googleDB.serp.listByRun(runIds.get(1)).size());
+        assertEquals(4, googleDB.serp.list(runIds.subList(2, 6), Arrays.asList(searches.get(1).getId())).size());
+
+        List<GoogleSerp> streamed = new ArrayList<>();
+        googleDB.serp.stream(runIds.get(1), null, searches.get(2).getId(), streamed::add);
+        assertEquals(5, streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            assertEquals(runIds.get(i + 1).intValue(), streamed.get(i).getRunId());
+        }
+
+        // reopened from disk
+        googleDB.serpArchive.open(googleDB.serpArchive.dir);
+        assertEquals(runIds.subList(0, 4), googleDB.serpArchive.listRunIds());
+
+        assertEquals(12, googleDB.serp.restore());
+        assertTrue(googleDB.serpArchive.isEmpty());
+        assertEquals(runIds, googleDB.serp.listRunIds());
+        for (GoogleSerp serp : serps) {
+            assertEquals(serp.getEntries(), googleDB.serp.get(serp.getRunId(), serp.getGoogleSearchId()).getEntries());
+        }
+    }
+    
     @Test
     public void testFFF() throws IOException {
         String raw = "http://www.banque.net/\n"
@@ -0,0 +1,131 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.db.google;
+
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.serphacker.serposcope.db.AbstractDBIT;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleRank;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleSerp;
+import com.serphacker.serposcope.models.google.GoogleSerpEntry;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.models.google.GoogleTarget.PatternType;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GoogleUrlDBIT extends AbstractDBIT {
+
+    @Inject
+    BaseDB baseDB;
+
+    @Inject
+    GoogleDB googleDB;
+
+    @Inject
+    Injector guice;
+
+    @Test
+    public void testGetOrCreate() {
+        Integer id1 = googleDB.url.getId("https://serposcope.serphacker.com/");
+        Integer id2 = googleDB.url.getId("https://www.serphacker.com/");
+        assertNotNull(id1);
+        assertNotNull(id2);
+        assertNotEquals(id1, id2);
+
+        assertEquals(id1, googleDB.url.getId("https://serposcope.serphacker.com/"));
+        assertNull(googleDB.url.getId(null));
+        assertEquals(2, googleDB.url.count());
+
+        googleDB.url.clearCache();
+        Map<String,Integer> ids = googleDB.url.getIds(Arrays.asList(
+            "https://serposcope.serphacker.com/", "https://www.serphacker.com/", "https://www.google.com/"
+        ));
+        assertEquals(id1, ids.get("https://serposcope.serphacker.com/"));
+        assertEquals(id2, ids.get("https://www.serphacker.com/"));
+        assertEquals(3, googleDB.url.count());
+
+        googleDB.url.clearCache();
+        assertEquals("https://www.serphacker.com/", googleDB.url.getUrl(id2));
+        assertNull(googleDB.url.getUrl(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testManyUrls() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < GoogleUrlDB.IN_CHUNK_SIZE * 2 + 10; i++) {
+            urls.add("https://www.serphacker.com/" + i);
+        }
+        Map<String,Integer> ids = googleDB.url.getIds(urls);
+        assertEquals(urls.size(), ids.size());
+
+        googleDB.url.clearCache();
+        assertEquals(ids, googleDB.url.getIds(urls));
+        assertEquals(urls.size(), googleDB.url.count());
+    }
+
+    @Test
+    public void testOtherProcess() {
+        // dictionary of another process, with its own cache
+        GoogleUrlDB other = new GoogleUrlDB();
+        guice.injectMembers(other);
+
+        Integer id = other.getId("https://www.serphacker.com/");
+        assertEquals(id, googleDB.url.getIds(Arrays.asList("https://www.serphacker.com/", "https://www.google.com/"))
+            .get("https://www.serphacker.com/"));
+        assertEquals(googleDB.url.getId("https://www.google.com/"), other.getId("https://www.google.com/"));
+        assertEquals(2, googleDB.url.count());
+    }
+
+    @Test
+    public void testSerpAndRankUseIds() throws Exception {
+        Group grp = new Group(Group.Module.GOOGLE, "google group");
+        baseDB.group.insert(grp);
+
+        GoogleSearch search = new GoogleSearch("my keyword");
+        googleDB.search.insert(Arrays.asList(search), grp.getId());
+
+        GoogleTarget target = new GoogleTarget(grp.getId(), "serphacker", PatternType.REGEX, "serphacker");
+        googleDB.target.insert(Arrays.asList(target));
+
+        Run run = new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, LocalDateTime.now().withNano(0));
+        baseDB.run.insert(run);
+
+        GoogleSerp serp = new GoogleSerp(run.getId(), search.getId(), run.getStarted());
+        serp.addEntry(new GoogleSerpEntry("https://www.google.com/"));
+        serp.addEntry(new GoogleSerpEntry("https://www.serphacker.com/"));
+        googleDB.serp.insert(serp);
+
+        int urlId = googleDB.url.getId("https://www.serphacker.com/");
+        assertEquals(urlId, serp.getEntries().get(1).getUrlId());
+
+        googleDB.url.clearCache();
+        GoogleSerp fetched = googleDB.serp.get(run.getId(), search.getId());
+        assertEquals("https://www.google.com/", fetched.getEntries().get(0).getUrl());
+        assertEquals("https://www.serphacker.com/", fetched.getEntries().get(1).getUrl());
+        assertEquals(urlId, fetched.getEntries().get(1).getUrlId());
+
+        GoogleRank rank = new GoogleRank(run.getId(), grp.getId(), target.getId(), search.getId(),
+            (short)2, (short)GoogleRank.UNRANKED, "https://www.serphacker.com/");
+        googleDB.rank.insert(rank);
+        assertEquals("https://www.serphacker.com/",
+            googleDB.rank.getFull(run.getId(), grp.getId(), target.getId(), search.getId()).url);
+
+        // no duplicate url in the dictionary
+        assertEquals(2, googleDB.url.count());
+    }
+
+}
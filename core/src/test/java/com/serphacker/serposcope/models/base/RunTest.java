@@ -8,6 +8,7 @@
 package com.serphacker.serposcope.models.base;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -38,4 +39,23 @@ public class RunTest {
         }        
     }
 
+    @Test
+    public void testOverlaps() {
+        Run all = new Run();
+        Run r1 = new Run();
+        r1.setGroups(Arrays.asList(1, 2));
+        Run r2 = new Run();
+        r2.setGroups(Arrays.asList(3));
+        Run r3 = new Run();
+        r3.setGroups(Arrays.asList(2, 3));
+
+        assertTrue(all.overlaps(r1));
+        assertTrue(r1.overlaps(all));
+        assertFalse(r1.overlaps(r2));
+        assertTrue(r1.overlaps(r3));
+        assertTrue(r2.overlaps(r3));
+        assertTrue(all.hasGroup(4));
+        assertFalse(r1.hasGroup(3));
+    }
+
 }
@@ -8,6 +8,7 @@
 package com.serphacker.serposcope.models.google;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Random;
 import java.util.concurrent.ThreadLocalRandom;
 import org.junit.Test;
@@ -46,4 +47,43 @@ public class GoogleSerpIT {
         
     }
     
+    @Test
+    public void testSerializationWithUrlIds() throws IOException {
+        GoogleSerp serp = new GoogleSerp(1, 2, null);
+        
+        int[] ids = new int[]{1, 127, 128, 16383, 16384, 2097152, Integer.MAX_VALUE};
+        for (int id : ids) {
+            GoogleSerpEntry entry = new GoogleSerpEntry(id);
+            entry.map.put((short)r.nextInt(Short.MAX_VALUE), (short)r.nextInt(Short.MAX_VALUE));
+            serp.addEntry(entry);
+        }
+        
+        byte[] data = serp.getSerializedEntries();
+        assertEquals(GoogleSerp.SERIAL_VERSION_URL_IDS, data[0]);
+        
+        GoogleSerp serpUnserialized = new GoogleSerp(1, 2, null);
+        serpUnserialized.setSerializedEntries(data);
+        ReflectionAssert.assertReflectionEquals(serp, serpUnserialized);
+        
+        assertEquals(ids.length, serpUnserialized.getUnresolvedUrlIds().size());
+    }
+    
+    @Test
+    public void testSerializationFallbackToUrls() throws IOException {
+        GoogleSerp serp = new GoogleSerp(1, 2, null);
+        serp.addEntry(new GoogleSerpEntry("url-1"));
+        serp.addEntry(new GoogleSerpEntry("url-2"));
+        
+        // an entry without id keeps the whole serp serialized with urls
+        serp.setUrlIds(Collections.singletonMap("url-1", 1));
+        
+        byte[] data = serp.getSerializedEntries();
+        assertEquals(GoogleSerp.SERIAL_VERSION_URLS, data[0]);
+        
+        GoogleSerp serpUnserialized = new GoogleSerp(1, 2, null);
+        serpUnserialized.setSerializedEntries(data);
+        assertEquals("url-1", serpUnserialized.getEntries().get(0).getUrl());
+        assertEquals("url-2", serpUnserialized.getEntries().get(1).getUrl());
+    }
+    
 }
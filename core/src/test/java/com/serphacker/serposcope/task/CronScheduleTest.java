@@ -0,0 +1,61 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CronScheduleTest {
+
+    // a friday
+    LocalDateTime now = LocalDateTime.of(2016, 4, 1, 10, 20, 30);
+
+    @Test
+    public void testNext() throws Exception {
+        assertEquals(LocalDateTime.of(2016, 4, 1, 10, 21), CronSchedule.parse("* * * * *").next(now));
+        assertEquals(LocalDateTime.of(2016, 4, 1, 11, 0), CronSchedule.parse("@hourly").next(now));
+        assertEquals(LocalDateTime.of(2016, 4, 2, 0, 0), CronSchedule.parse("@daily").next(now));
+        assertEquals(LocalDateTime.of(2016, 4, 3, 0, 0), CronSchedule.parse("@weekly").next(now));
+        assertEquals(LocalDateTime.of(2016, 5, 1, 0, 0), CronSchedule.parse("@monthly").next(now));
+        assertEquals(LocalDateTime.of(2016, 4, 1, 12, 0), CronSchedule.parse("0 */6 * * 1-5").next(now));
+        assertEquals(LocalDateTime.of(2016, 4, 4, 8, 15), CronSchedule.parse("15,45 8-18/2 * * 1").next(now));
+        assertEquals(LocalDateTime.of(2016, 4, 3, 2, 30), CronSchedule.parse("30 2 * * 7").next(now));
+        assertEquals(LocalDateTime.of(2017, 2, 28, 0, 0), CronSchedule.parse("0 0 28 2 *").next(now));
+        assertEquals(LocalDateTime.of(2016, 4, 2, 10, 20), CronSchedule.daily(LocalTime.of(10, 20)).next(now));
+
+        // day of month or day of week when both are restricted
+        assertEquals(LocalDateTime.of(2016, 4, 4, 0, 0), CronSchedule.parse("0 0 15 * 1").next(now));
+        assertEquals(LocalDateTime.of(2016, 4, 15, 0, 0), CronSchedule.parse("0 0 15 * *").next(now));
+    }
+
+    @Test
+    public void testLast() throws Exception {
+        CronSchedule hourly = CronSchedule.parse("@hourly");
+        assertEquals(LocalDateTime.of(2016, 4, 1, 10, 0), hourly.last(now.minusDays(3), now));
+        assertEquals(LocalDateTime.of(2016, 4, 1, 10, 0), hourly.last(now.minusMinutes(20).minusSeconds(31), now));
+        assertNull(hourly.last(now.minusMinutes(20), now));
+    }
+
+    @Test
+    public void testInvalid() throws Exception {
+        String[] invalids = {"", "* * * *", "60 * * * *", "* 24 * * *", "* * 0 * *", "* * * 13 *", "* * * * 8",
+            "5-1 * * * *", "a * * * *", "*/0 * * * *", "@yearly"};
+        for (String invalid : invalids) {
+            try {
+                CronSchedule.parse(invalid);
+                fail("\"" + invalid + "\" should be invalid");
+            } catch(IllegalArgumentException ex){
+            }
+        }
+        assertEquals(2, CronSchedule.parseList("@hourly; 0 3 * * 1\n").size());
+        assertTrue(CronSchedule.parseList(null).isEmpty());
+    }
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task;
+
+import com.serphacker.serposcope.models.base.Config;
+import com.serphacker.serposcope.models.base.Group;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CronSchedulerTest {
+
+    LocalDateTime now = LocalDateTime.of(2016, 4, 1, 3, 0);
+
+    Group group(int id, String schedule, LocalDateTime scheduled){
+        Group group = new Group(id, Group.Module.GOOGLE, "group" + id);
+        group.setSchedule(schedule);
+        group.setScheduled(scheduled);
+        return group;
+    }
+
+    @Test
+    public void testDue() throws Exception {
+        Config config = new Config();
+        config.setCronTime(LocalTime.of(3, 0));
+        CronScheduler scheduler = new CronScheduler(config);
+
+        List<Group> groups = new ArrayList<>(Arrays.asList(
+            group(1, null, now.minusDays(1)),
+            group(2, null, now.minusDays(1)),
+            group(3, "@hourly", now.minusHours(1)),
+            group(4, "0 0 * * 1", now.minusDays(1)),
+            group(5, null, null)
+        ));
+
+        List<CronScheduler.Trigger> triggers = scheduler.due(groups, now);
+        assertEquals(2, triggers.size());
+        assertEquals("0 3 * * *", triggers.get(0).getSchedule().getExpression());
+        assertEquals(Arrays.asList(1, 2), new ArrayList<>(triggers.get(0).getGroups()));
+        assertEquals("@hourly", triggers.get(1).getSchedule().getExpression());
+        assertEquals(Arrays.asList(3), new ArrayList<>(triggers.get(1).getGroups()));
+
+        // handled
+        for (Group group : groups) {
+            group.setScheduled(now);
+        }
+        assertTrue(scheduler.due(groups, now).isEmpty());
+    }
+
+    @Test
+    public void testCatchUp() throws Exception {
+        CronScheduler scheduler = new CronScheduler(Arrays.asList(CronSchedule.parse("@hourly")), 0);
+        // stopped for 5 hours, checked once for the last fire
+        List<CronScheduler.Trigger> triggers = scheduler.due(Arrays.asList(group(1, null, now.minusHours(5))), now.plusMinutes(10));
+        assertEquals(1, triggers.size());
+        assertEquals(now, triggers.get(0).getFire());
+    }
+
+    @Test
+    public void testStagger() throws Exception {
+        CronSchedule hourly = CronSchedule.parse("@hourly");
+        CronSchedule daily = CronSchedule.parse("0 * * * 0-6");
+        CronScheduler scheduler = new CronScheduler(Arrays.asList(hourly), 30);
+        int offset = scheduler.getOffset(hourly);
+        assertTrue(offset >= 0 && offset < 30 * 60);
+        assertEquals(offset, scheduler.getOffset(CronSchedule.parse("@hourly")));
+        assertNotEquals(offset, scheduler.getOffset(daily));
+
+        List<Group> groups = Arrays.asList(group(1, null, now.minusHours(1)));
+        assertTrue(scheduler.due(groups, now.plusSeconds(offset - 1)).isEmpty());
+        assertEquals(now, scheduler.due(groups, now.plusSeconds(offset)).get(0).getFire());
+    }
+
+    @Test
+    public void testNextStart() throws Exception {
+        CronSchedule hourly = CronSchedule.parse("@hourly");
+        CronScheduler scheduler = new CronScheduler(Arrays.asList(CronSchedule.daily(LocalTime.of(3, 0))), 30);
+        int offset = scheduler.getOffset(hourly);
+        LocalDateTime started = now.plusSeconds(offset);
+
+        // a spread of 2 hours of an hourly run ends by the next run
+        LocalDateTime next = scheduler.nextStart(Arrays.asList(group(1, "@hourly", now)), started);
+        assertEquals(started.plusHours(1), next);
+        assertTrue(next.isBefore(started.plusMinutes(120)));
+
+        // the daily run of the global schedule
+        assertEquals(now.plusDays(1).plusSeconds(scheduler.getOffset(CronSchedule.daily(LocalTime.of(3, 0)))),
+            scheduler.nextStart(Arrays.asList(group(2, null, now)), now.plusHours(1)));
+
+        assertNull(scheduler.nextStart(Arrays.asList(group(3, "", now)), started));
+    }
+
+}
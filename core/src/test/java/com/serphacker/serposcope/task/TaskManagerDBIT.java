@@ -43,6 +43,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 import org.junit.Test;
+import static org.junit.Assert.*;
 
 /**
  *
@@ -140,6 +141,46 @@ public class TaskManagerDBIT extends AbstractDBIT {
     }
     
     
+    @Test
+    public void testGroupRuns() throws Exception {
+        initialize();
+        GoogleSettings options = googleDB.options.get();
+        options.setPages(1);
+        googleDB.options.update(options);
+        
+        Group grpVegetable = new Group(Group.Module.GOOGLE, "group #2");
+        baseDB.group.insert(grpVegetable);
+        googleDB.search.insert(Arrays.asList(new GoogleSearch("search #4"), new GoogleSearch("search #5")), grpVegetable.getId());
+        GoogleTarget vegetableTarget = new GoogleTarget(grpVegetable.getId(), "www.site1.com", PatternType.DOMAIN, "www.site1.com");
+        googleDB.target.insert(Arrays.asList(vegetableTarget));
+        int fruitGroupId = baseDB.group.list(Group.Module.GOOGLE).get(0).getId();
+        
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Run fruitRun = new Run(Mode.MANUAL, Group.Module.GOOGLE, now);
+        fruitRun.setGroups(Arrays.asList(fruitGroupId));
+        Run vegetableRun = new Run(Mode.MANUAL, Group.Module.GOOGLE, now);
+        vegetableRun.setGroups(Arrays.asList(grpVegetable.getId()));
+        Run fullRun = new Run(Mode.CRON, Group.Module.GOOGLE, now);
+        
+        assertTrue(taskManager.startGoogleTask(fruitRun));
+        assertTrue(taskManager.startGoogleTask(vegetableRun));
+        assertTrue(taskManager.startGoogleTask(fullRun));
+        assertEquals(2, taskManager.listRunningGoogleTasks().size());
+        assertTrue(taskManager.isGoogleQueued(fullRun));
+        
+        taskManager.joinGoogleTask();
+        assertFalse(taskManager.isGoogleRunning());
+        
+        assertEquals(Run.Status.DONE_SUCCESS, baseDB.run.find(fullRun.getId()).getStatus());
+        assertEquals(Collections.singleton(fruitGroupId), baseDB.run.find(fruitRun.getId()).getGroups());
+        assertNull(baseDB.run.find(fullRun.getId()).getGroups());
+        
+        assertEquals(3, googleDB.serp.listByRun(fruitRun.getId()).size());
+        assertEquals(2, googleDB.rank.list(vegetableRun.getId(), grpVegetable.getId(), vegetableTarget.getId()).size());
+        assertTrue(googleDB.rank.list(fruitRun.getId(), grpVegetable.getId(), vegetableTarget.getId()).isEmpty());
+        assertEquals(2, googleDB.rank.list(fullRun.getId(), grpVegetable.getId(), vegetableTarget.getId()).size());
+    }
+    
     protected void entryToString(GoogleSerpEntry entry, int position){
         System.out.println(
             position + "|" + 
@@ -0,0 +1,77 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
+import java.util.ArrayList;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AdaptiveConcurrencyTest {
+
+    GoogleScrapResult ok = new GoogleScrapResult(GoogleScrapResult.Status.OK, new ArrayList<>());
+    GoogleScrapResult banned = new GoogleScrapResult(GoogleScrapResult.Status.ERROR_IP_BANNED, new ArrayList<>());
+    GoogleScrapResult parsing = new GoogleScrapResult(GoogleScrapResult.Status.ERROR_PARSING, new ArrayList<>());
+
+    @Test
+    public void testAimd() throws Exception {
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(8);
+        assertEquals(8, concurrency.getLimit());
+
+        // clean window at the ceiling
+        for (int i = 0; i < AdaptiveConcurrency.WINDOW; i++) {
+            assertFalse(concurrency.record(ok));
+        }
+
+        // captcha storm, halved without waiting for the end of the window
+        assertFalse(concurrency.record(banned));
+        assertFalse(concurrency.record(banned));
+        assertFalse(concurrency.record(banned));
+        assertTrue(concurrency.record(banned));
+        assertEquals(4, concurrency.getLimit());
+
+        GoogleScrapResult captcha = new GoogleScrapResult(GoogleScrapResult.Status.OK, new ArrayList<>());
+        captcha.captchas = 1;
+        for (int i = 0; i < 4; i++) {
+            concurrency.record(captcha);
+        }
+        assertEquals(2, concurrency.getLimit());
+        assertFalse(concurrency.throttle(1, 1));
+        assertTrue(concurrency.throttle(2, 1));
+
+        // parsing errors aren't caused by the load
+        for (int i = 0; i < AdaptiveConcurrency.WINDOW; i++) {
+            concurrency.record(i == 0 ? parsing : ok);
+        }
+        assertEquals(3, concurrency.getLimit());
+        assertFalse(concurrency.throttle(2, 1));
+    }
+
+    @Test
+    public void testCeiling() throws Exception {
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(4);
+        concurrency.setCeiling(6);
+        assertEquals(6, concurrency.getLimit());
+
+        for (int i = 0; i < 4; i++) {
+            concurrency.record(banned);
+        }
+        assertEquals(3, concurrency.getLimit());
+
+        // raised ceiling while backed off, ramp up instead of jumping
+        concurrency.setCeiling(10);
+        assertEquals(3, concurrency.getLimit());
+        concurrency.setCeiling(2);
+        assertEquals(2, concurrency.getLimit());
+        for (int i = 0; i < AdaptiveConcurrency.WINDOW; i++) {
+            concurrency.record(ok);
+        }
+        assertEquals(2, concurrency.getLimit());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.google.inject.Inject;
+import com.serphacker.serposcope.db.AbstractDBIT;
+import com.serphacker.serposcope.db.google.GoogleOptionsDB;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ApiQueriesQuotaDBIT extends AbstractDBIT {
+
+    @Inject
+    GoogleOptionsDB optionsDB;
+
+    @Test
+    public void testReserveByBlock() {
+        ApiQueriesQuota quota = new ApiQueriesQuota(optionsDB, 25, 10);
+        assertEquals(25, quota.remaining());
+
+        assertTrue(quota.tryAcquire());
+        // a whole block is accounted in the DB
+        assertEquals(10, optionsDB.getTodayApiQueriesCount());
+        assertEquals(1, quota.getTodayCount());
+
+        for (int i = 1; i < 25; i++) {
+            assertTrue(quota.tryAcquire());
+        }
+        assertFalse(quota.tryAcquire());
+        assertEquals(0, quota.remaining());
+        assertEquals(25, quota.getUsed());
+        assertEquals(25, optionsDB.getTodayApiQueriesCount());
+    }
+
+    @Test
+    public void testRelease() {
+        ApiQueriesQuota quota = new ApiQueriesQuota(optionsDB, 50, 10);
+        for (int i = 0; i < 12; i++) {
+            assertTrue(quota.tryAcquire());
+        }
+        assertEquals(20, optionsDB.getTodayApiQueriesCount());
+
+        quota.release();
+        assertEquals(12, optionsDB.getTodayApiQueriesCount());
+        assertEquals(38, quota.remaining());
+    }
+
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        ApiQueriesQuota quota = new ApiQueriesQuota(optionsDB, 100, 7);
+        AtomicInteger acquired = new AtomicInteger();
+
+        Thread[] threads = new Thread[10];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                while (quota.tryAcquire()) {
+                    acquired.incrementAndGet();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        quota.release();
+        assertEquals(100, acquired.get());
+        assertEquals(100, optionsDB.getTodayApiQueriesCount());
+    }
+
+}
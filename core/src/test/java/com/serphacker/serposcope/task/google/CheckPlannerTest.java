@@ -0,0 +1,74 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.google.GoogleSearchCheck;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CheckPlannerTest {
+
+    @Test
+    public void testInterval() throws Exception {
+        List<GoogleSearchCheck> checks = new ArrayList<>();
+        for (int run = 1; run <= 10; run++) {
+            // search 1 never changes, search 2 changes on every check, search 3 once in ten checks
+            checks.add(new GoogleSearchCheck(run, 1, false, false));
+            checks.add(new GoogleSearchCheck(run, 2, false, true));
+            checks.add(new GoogleSearchCheck(run, 3, false, run == 5));
+        }
+        // search 4 is too recent to be judged
+        checks.add(new GoogleSearchCheck(10, 4, false, false));
+        checks.add(new GoogleSearchCheck(9, 4, false, false));
+
+        CheckPlanner planner = new CheckPlanner(4, Arrays.asList(10, 9, 8, 7, 6, 5, 4, 3, 2, 1), checks);
+        assertEquals(0f, planner.getVolatility(1), 0.001f);
+        assertEquals(1f, planner.getVolatility(2), 0.001f);
+        assertEquals(0.1f, planner.getVolatility(3), 0.001f);
+        assertEquals(-1f, planner.getVolatility(4), 0.001f);
+        assertEquals(-1f, planner.getVolatility(5), 0.001f);
+
+        assertEquals(4, planner.getInterval(1));
+        assertEquals(1, planner.getInterval(2));
+        assertEquals(3, planner.getInterval(3));
+        assertEquals(1, planner.getInterval(4));
+
+        assertEquals(Integer.valueOf(10), planner.getCarriedFrom(1));
+        assertNull(planner.getCarriedFrom(2));
+        assertEquals(Integer.valueOf(10), planner.getCarriedFrom(3));
+        assertNull(planner.getCarriedFrom(4));
+    }
+
+    @Test
+    public void testCarriedFrom() throws Exception {
+        List<GoogleSearchCheck> checks = new ArrayList<>();
+        for (int run = 1; run <= 5; run++) {
+            checks.add(new GoogleSearchCheck(run, 1, false, false));
+        }
+        // carried by runs 6 and 7, run 8 didn't check the group of the search
+        checks.add(new GoogleSearchCheck(6, 1, true, false));
+        checks.add(new GoogleSearchCheck(7, 1, true, false));
+
+        CheckPlanner planner = new CheckPlanner(4, Arrays.asList(8, 7, 6, 5, 4, 3, 2, 1), checks);
+        assertEquals(0f, planner.getVolatility(1), 0.001f);
+        assertEquals(Integer.valueOf(5), planner.getCarriedFrom(1));
+
+        checks.add(new GoogleSearchCheck(9, 1, true, false));
+        planner = new CheckPlanner(4, Arrays.asList(9, 8, 7, 6, 5, 4, 3, 2, 1), checks);
+        assertNull(planner.getCarriedFrom(1));
+
+        // disabled
+        planner = new CheckPlanner(1, Arrays.asList(8, 7, 6, 5, 4, 3, 2, 1), checks);
+        assertEquals(1, planner.getInterval(1));
+        assertNull(planner.getCarriedFrom(1));
+    }
+
+}
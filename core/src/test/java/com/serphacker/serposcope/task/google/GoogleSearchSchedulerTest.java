@@ -0,0 +1,114 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GoogleSearchSchedulerTest {
+
+    @Test
+    public void testWeightedRoundRobin() throws Exception {
+        Map<Integer,Integer> groupBySearch = new HashMap<>();
+        Map<Integer,Integer> priorityByGroup = new HashMap<>();
+        priorityByGroup.put(1, 3);
+        priorityByGroup.put(2, 1);
+
+        List<GoogleSearch> searches = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            groupBySearch.put(i, i <= 20 ? 1 : 2);
+            searches.add(new GoogleSearch(i));
+        }
+
+        GoogleSearchScheduler scheduler = new GoogleSearchScheduler(groupBySearch, priorityByGroup);
+        scheduler.addAll(searches);
+        assertEquals(40, scheduler.size());
+
+        // 3 searches of group 1 for 1 of group 2
+        int group1 = 0;
+        for (int i = 0; i < 20; i++) {
+            if(groupBySearch.get(scheduler.poll().getId()) == 1){
+                group1++;
+            }
+        }
+        assertEquals(15, group1);
+
+        // group 1 is done after 27 searches, then group 2 goes alone
+        for (int i = 0; i < 7; i++) {
+            if(groupBySearch.get(scheduler.poll().getId()) == 1){
+                group1++;
+            }
+        }
+        assertEquals(20, group1);
+        for (int i = 0; i < 13; i++) {
+            assertEquals(2, (int) groupBySearch.get(scheduler.poll().getId()));
+        }
+        assertNull(scheduler.poll());
+        assertNull(scheduler.poll(10, TimeUnit.MILLISECONDS));
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testRetry() throws Exception {
+        GoogleSearchScheduler scheduler = new GoogleSearchScheduler();
+        scheduler.add(new GoogleSearch(1));
+        scheduler.add(new GoogleSearch(2));
+
+        GoogleSearch failed = scheduler.poll();
+        scheduler.retry(failed);
+        scheduler.add(new GoogleSearch(3));
+
+        assertEquals(2, scheduler.poll().getId());
+        assertEquals(3, scheduler.poll().getId());
+        assertEquals(failed, scheduler.poll());
+
+        scheduler.add(new GoogleSearch(4));
+        scheduler.retry(new GoogleSearch(5));
+        assertTrue(scheduler.removeIf((GoogleSearch search) -> search.getId() == 5));
+        assertEquals(1, scheduler.size());
+
+        List<GoogleSearch> drained = new ArrayList<>();
+        assertEquals(1, scheduler.drainTo(drained, 10));
+        assertEquals(4, drained.get(0).getId());
+    }
+
+    @Test
+    public void testRemoveGroups() throws Exception {
+        Map<Integer,Integer> groupBySearch = new HashMap<>();
+        Map<Integer,Integer> priorityByGroup = new HashMap<>();
+        priorityByGroup.put(1, 5);
+        priorityByGroup.put(2, 1);
+        List<GoogleSearch> searches = new ArrayList<>();
+        for (int i = 1; i <= 10; i++) {
+            groupBySearch.put(i, i <= 4 ? 1 : 2);
+            searches.add(new GoogleSearch(i));
+        }
+
+        GoogleSearchScheduler scheduler = new GoogleSearchScheduler(groupBySearch, priorityByGroup);
+        scheduler.addAll(searches);
+        scheduler.retry(scheduler.poll());
+        assertEquals(4, (int) scheduler.countByGroup().get(1));
+        assertEquals(6, (int) scheduler.countByGroup().get(2));
+
+        assertEquals(6, scheduler.removeGroups(Arrays.asList(2, 3)).size());
+        assertEquals(4, scheduler.size());
+        assertNull(scheduler.countByGroup().get(2));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(1, (int) groupBySearch.get(scheduler.poll().getId()));
+        }
+        assertTrue(scheduler.isEmpty());
+    }
+
+}
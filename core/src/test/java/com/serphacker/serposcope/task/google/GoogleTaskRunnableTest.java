@@ -86,6 +86,7 @@ public class GoogleTaskRunnableTest {
 //        taskController.searchDone = new AtomicInteger();
         taskController.totalSearch = 0;        
         taskController.googleOptions = new GoogleSettings();
+        when(taskController.onSearchAttempt(any(GoogleSearch.class))).thenReturn(true);
         
         runnable = new GoogleTaskRunnable(taskController);
         runnable.scraper = mock(GoogleScraper.class);
@@ -109,7 +110,7 @@ public class GoogleTaskRunnableTest {
     @Test
     public void testInterruptPolling() throws Exception{
         taskController.rotator.add(new BindProxy("127.0.0.1"));
-        taskController.searches = new LinkedBlockingQueue<>();
+        taskController.searches = new GoogleSearchScheduler();
         
         Thread thread = new Thread(runnable);
         thread.start();
@@ -133,7 +134,7 @@ public class GoogleTaskRunnableTest {
     public void testUnhandledExceptionInScrap() throws Exception{
         List<ScrapProxy> proxies = Arrays.asList(new BindProxy("127.0.0.1"),new BindProxy("127.0.0.2"));
         taskController.rotator.addAll(proxies);
-        taskController.searches = new LinkedBlockingQueue<>();
+        taskController.searches = new GoogleSearchScheduler();
         taskController.searches.add(new GoogleSearch("keyword"));
 
         when(taskController.shouldStop()).thenReturn(false, true);
@@ -150,7 +151,7 @@ public class GoogleTaskRunnableTest {
     public void testSucessfullSearch() throws Exception{
         List<ScrapProxy> proxies = Arrays.asList(new BindProxy("127.0.0.1"),new BindProxy("127.0.0.2"));
         taskController.rotator.addAll(proxies);
-        taskController.searches = new LinkedBlockingQueue<>();
+        taskController.searches = new GoogleSearchScheduler();
         GoogleSearch theSearch = new GoogleSearch("keyword");
         taskController.searches.add(theSearch);
 
@@ -175,7 +176,7 @@ public class GoogleTaskRunnableTest {
     public void testSucessfullSearchMultiTry() throws Exception{
         List<ScrapProxy> proxies = Arrays.asList(new BindProxy("127.0.0.1"),new BindProxy("127.0.0.2"));
         taskController.rotator.addAll(proxies);
-        taskController.searches = new LinkedBlockingQueue<>();
+        taskController.searches = new GoogleSearchScheduler();
         GoogleSearch theSearch = new GoogleSearch("keyword");
         taskController.searches.add(theSearch);
 
@@ -201,7 +202,7 @@ public class GoogleTaskRunnableTest {
     @Test
     public void testErrorMultiTry() throws Exception{
         taskController.rotator.add(new BindProxy("127.0.0.1"));
-        taskController.searches = new LinkedBlockingQueue<>();
+        taskController.searches = new GoogleSearchScheduler();
         GoogleSearch theSearch = new GoogleSearch("keyword");
         taskController.searches.add(theSearch);
 
@@ -229,7 +230,7 @@ public class GoogleTaskRunnableTest {
         ScrapProxy evictableProxy = new BindProxy("127.0.0.1");
         List<ScrapProxy> proxies = Arrays.asList(evictableProxy, new BindProxy("127.0.0.2"), new BindProxy("127.0.0.3"));
         taskController.rotator.addAll(proxies);
-        taskController.searches = new LinkedBlockingQueue<>();
+        taskController.searches = new GoogleSearchScheduler();
         GoogleSearch theSearch = new GoogleSearch("keyword");
         taskController.searches.add(theSearch);
 
@@ -11,6 +11,7 @@ import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.serphacker.serposcope.db.google.*;
 import com.google.inject.Inject;
+import com.google.inject.Injector;
 import com.google.inject.Module;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.serphacker.serposcope.db.AbstractDBIT;
@@ -24,6 +25,8 @@ import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
 import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
 import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
+import java.io.File;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -35,6 +38,7 @@ import com.serphacker.serposcope.models.base.Run.Status;
 import com.serphacker.serposcope.models.google.GoogleTargetSummary;
 import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  *
@@ -171,12 +175,13 @@ public class GoogleTaskUpdateIT extends AbstractDBIT {
         return res;
     }
 
+    Group group1;
     List<GoogleSearch> searchesGroup1 = new ArrayList<>();
     GoogleTarget tagert1;
     GoogleTarget tagert2;
 
     public void initialize() {
-        Group group1 = new Group(Group.Module.GOOGLE, "group1");
+        group1 = new Group(Group.Module.GOOGLE, "group1");
         baseDB.group.insert(group1);
 
         searchesGroup1.clear();
@@ -291,4 +296,49 @@ public class GoogleTaskUpdateIT extends AbstractDBIT {
         assertEquals(t2sum.getTotalOut(), t2sumR3.getTotalOut());     
     }
 
+    @Test
+    public void testReplayCommittedRun() throws Exception {
+        Injector injector = Guice.createInjector(getModule());
+        taskFactory = injector.getInstance(TaskFactory.class);
+        SerpSpool spool = injector.getInstance(SerpSpool.class);
+        File dir = Files.createTempDirectory("spool").toFile();
+        spool.setDirectory(dir);
+        initialize();
+
+        GoogleTask task = taskFactory.create(new Run(Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0)));
+        currentFactory = successFactory;
+        task.shuffle = false;
+        task.run();
+        Run run = baseDB.run.findLast(Group.Module.GOOGLE, null, null);
+        List<GoogleTargetSummary> summaries = googleDB.targetSummary.list(run.getId());
+        GoogleTargetSummary t1sum = summaries.get(0);
+        GoogleTargetSummary t2sum = summaries.get(1);
+
+        // crash after the ranks of the other searches were committed, the last result is left in the spool
+        GoogleSearch search9 = searchesGroup1.get(8);
+        googleDB.rank.deleteBySearch(group1.getId(), search9.getId());
+        googleDB.serp.deleteBySearch(search9.getId());
+        try(SerpSpool.Journal journal = spool.open(run.getId())){
+            journal.append(search9.getId(), buildResult(1, -1).urls);
+        }
+
+        task = taskFactory.create(run);
+        assertEquals(0, task.replay());
+        assertEquals(1, googleDB.rank.get(run.getId(), group1.getId(), tagert1.getId(), search9.getId()));
+
+        summaries = googleDB.targetSummary.list(run.getId());
+        GoogleTargetSummary t1sumReplay = summaries.get(0);
+        GoogleTargetSummary t2sumReplay = summaries.get(1);
+
+        assertEquals(t1sum.getScoreRaw(), t1sumReplay.getScoreRaw());
+        assertEquals(t1sum.getScoreBP(), t1sumReplay.getScoreBP());
+        assertEquals(t1sum.getTotalTop3(), t1sumReplay.getTotalTop3());
+        assertEquals(t1sum.getTotalTop10(), t1sumReplay.getTotalTop10());
+        assertEquals(t1sum.getTotalTop100(), t1sumReplay.getTotalTop100());
+        assertEquals(t1sum.getTotalOut(), t1sumReplay.getTotalOut());
+        assertEquals(t2sum.getScoreRaw(), t2sumReplay.getScoreRaw());
+        assertEquals(t2sum.getScoreBP(), t2sumReplay.getScoreBP());
+        assertTrue(spool.listRuns().isEmpty());
+    }
+
 }
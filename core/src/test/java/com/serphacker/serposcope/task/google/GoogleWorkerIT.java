@@ -0,0 +1,152 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Injector;
+import com.google.inject.Module;
+import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.db.google.GoogleDB;
+import com.serphacker.serposcope.db.google.GoogleRunQueueDB.State;
+import com.serphacker.serposcope.di.GoogleScraperFactory;
+import com.serphacker.serposcope.models.base.Group;
+import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.models.google.GoogleSearch;
+import com.serphacker.serposcope.models.google.GoogleTarget;
+import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
+import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
+import com.serphacker.serposcope.scraper.http.ScrapClient;
+import com.zaxxer.hikari.HikariDataSource;
+import java.net.ServerSocket;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.h2.tools.Server;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Workers and the web process only share the database : each one has its own injector, so its own
+ * connection pool and caches, against an H2 TCP server.
+ */
+public class GoogleWorkerIT {
+
+    Server server;
+    String dbUrl;
+    List<Injector> injectors = new ArrayList<>();
+
+    BaseDB baseDB;
+    GoogleDB googleDB;
+
+    protected Module getScraperModule() {
+        return new AbstractModule() {
+            @Override
+            protected void configure() {
+                bind(GoogleScraperFactory.class).toInstance((ScrapClient http, CaptchaSolver solver) -> new GoogleScraper(http, solver) {
+                    @Override
+                    public GoogleScrapResult scrap(GoogleScrapSearch search) throws InterruptedException {
+                        return new GoogleScrapResult(GoogleScrapResult.Status.OK,
+                            new ArrayList<>(Arrays.asList("http://www.site1.com/", "http://" + search.getKeyword() + ".com/")));
+                    }
+                });
+            }
+        };
+    }
+
+    protected Injector createInjector() {
+        Injector injector = GoogleWorker.createInjector(dbUrl, getScraperModule());
+        injectors.add(injector);
+        return injector;
+    }
+
+    @Before
+    public void before() throws Exception {
+        int port;
+        try(ServerSocket socket = new ServerSocket(0)){
+            port = socket.getLocalPort();
+        }
+        server = Server.createTcpServer("-tcpPort", "" + port).start();
+        dbUrl = "jdbc:h2:tcp://localhost:" + port + "/mem:workerit;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+        // the web process
+        Injector injector = createInjector();
+        baseDB = injector.getInstance(BaseDB.class);
+        googleDB = injector.getInstance(GoogleDB.class);
+        baseDB.migration.recreateDb();
+    }
+
+    @After
+    public void after() {
+        for (Injector injector : injectors) {
+            ((HikariDataSource) injector.getInstance(DataSource.class)).close();
+        }
+        injectors.clear();
+        if(server != null){
+            server.stop();
+        }
+    }
+
+    @Test
+    public void testWorkers() throws Exception {
+        Group group = new Group(Group.Module.GOOGLE, "group");
+        baseDB.group.insert(group);
+        List<GoogleSearch> searches = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            searches.add(new GoogleSearch("search" + i));
+        }
+        googleDB.search.insert(searches, group.getId());
+        googleDB.target.insert(Arrays.asList(new GoogleTarget(group.getId(), "site1", GoogleTarget.PatternType.DOMAIN, "www.site1.com")));
+
+        // run started by the web process
+        Run run = new Run(Run.Mode.CRON, Group.Module.GOOGLE, LocalDateTime.now().withNano(0));
+        run.setStatus(Run.Status.RUNNING);
+        baseDB.run.insert(run);
+        List<Integer> searchIds = new ArrayList<>();
+        searches.forEach((GoogleSearch search) -> searchIds.add(search.getId()));
+        googleDB.runQueue.create(run.getId(), searchIds);
+
+        // a lease of a dead worker
+        assertEquals(1, googleDB.runQueue.claim(run.getId(), "dead", 1, -1).size());
+
+        GoogleWorker[] workers = new GoogleWorker[3];
+        Thread[] threads = new Thread[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            // one injector per worker, each one stands for a process
+            workers[i] = createInjector().getInstance(GoogleWorker.class);
+            workers[i].setOwner("worker-" + i);
+            workers[i].setShard(i, workers.length);
+            final GoogleWorker worker = workers[i];
+            threads[i] = new Thread(() -> worker.work(true));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<State,Integer> counts = googleDB.runQueue.countByState(run.getId());
+        assertEquals(40, (int) counts.get(State.DONE));
+        assertEquals(1, counts.size());
+        for (GoogleSearch search : searches) {
+            assertNotNull(googleDB.serp.get(run.getId(), search.getId()));
+        }
+        assertEquals(40, googleDB.rank.list(run.getId(), group.getId(), googleDB.target.list().get(0).getId()).size());
+        assertEquals(0, baseDB.run.find(run.getId()).getProgress());
+        // urls created by concurrent workers are not duplicated
+        assertEquals(41, googleDB.url.count());
+    }
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import java.time.LocalDateTime;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class RunPlannerTest {
+
+    @Test
+    public void testEstimate() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2016, 1, 1, 10, 0);
+        RunPlanner planner = new RunPlanner();
+        assertNull(planner.estimateEnd(now, 100, 4));
+        assertEquals(-1, planner.capacity(now, now.plusHours(1), 4));
+        assertFalse(planner.isLate(now, now.plusHours(1), 100, 4));
+
+        planner.recordLatency(10000);
+        assertEquals(10000d, planner.getLatencyMS(), 0.1d);
+        // 100 searches of 10 seconds on 4 threads
+        assertEquals(now.plusSeconds(250), planner.estimateEnd(now, 100, 4));
+        assertTrue(planner.isLate(now, now.plusSeconds(200), 100, 4));
+        assertFalse(planner.isLate(now, now.plusSeconds(300), 100, 4));
+        assertFalse(planner.isLate(now, null, 100, 4));
+        assertEquals(80, planner.capacity(now, now.plusSeconds(200), 4));
+        assertEquals(0, planner.capacity(now, now.minusSeconds(10), 4));
+
+        // recent searches weight more
+        planner.recordLatency(20000);
+        assertEquals(11000d, planner.getLatencyMS(), 0.1d);
+        assertEquals(2, planner.getSamples());
+    }
+
+}
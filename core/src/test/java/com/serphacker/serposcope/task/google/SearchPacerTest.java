@@ -0,0 +1,39 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SearchPacerTest {
+
+    @Test
+    public void testDelay() throws Exception {
+        SearchPacer pacer = new SearchPacer(1000);
+
+        // 4 searches over 1000ms, started by threads polling at once
+        assertEquals(0, pacer.delay(0, 4));
+        assertEquals(250, pacer.delay(0, 3));
+        assertEquals(500, pacer.delay(0, 2));
+        assertEquals(750, pacer.delay(0, 1));
+
+        // a failed search queued again shortens the interval
+        assertEquals(0, pacer.delay(1000, 1));
+        assertEquals(0, pacer.delay(2000, 10));
+    }
+
+    @Test
+    public void testLateStart() throws Exception {
+        SearchPacer pacer = new SearchPacer(1000);
+        assertEquals(0, pacer.delay(0, 2));
+        // the thread came back after the booked start
+        assertEquals(0, pacer.delay(700, 1));
+        assertEquals(0, pacer.delay(800, 1));
+    }
+
+}
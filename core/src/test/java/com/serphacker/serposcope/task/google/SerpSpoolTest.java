@@ -0,0 +1,62 @@
+/*
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ *
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.task.google;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SerpSpoolTest {
+
+    @Test
+    public void testReopen() throws Exception {
+        File dir = Files.createTempDirectory("spool").toFile();
+        SerpSpool spool = new SerpSpool();
+        assertNull(spool.open(1));
+        spool.setDirectory(dir);
+
+        List<SerpSpool.Record> records = new ArrayList<>();
+        try(SerpSpool.Journal journal = spool.open(1)){
+            for (int i = 0; i < 1000; i++) {
+                records.add(journal.append(i, Arrays.asList("http://www.site" + i + ".com/", "http://www.other.com/" + i)));
+            }
+            for (int i = 0; i < records.size(); i += 2) {
+                journal.ack(records.get(i));
+            }
+            journal.fail(records.get(1));
+            assertEquals(1, journal.getPending().size());
+        }
+
+        assertEquals(Arrays.asList(1), spool.listRuns());
+
+        SerpSpool.Journal journal = spool.open(1);
+        List<SerpSpool.Record> pending = journal.getPending();
+        assertEquals(500, pending.size());
+        assertEquals(1, pending.get(0).getGoogleSearchId());
+        assertEquals(Arrays.asList("http://www.site1.com/", "http://www.other.com/1"), pending.get(0).getUrls());
+
+        SerpSpool.Record appended = journal.append(2000, Arrays.asList("http://www.new.com/"));
+        for (SerpSpool.Record record : pending) {
+            journal.ack(record);
+        }
+        journal.fail(appended);
+        journal.close();
+
+        journal = spool.open(1);
+        assertEquals(1, journal.getPending().size());
+        assertEquals(2000, journal.getPending().get(0).getGoogleSearchId());
+        journal.delete();
+
+        assertTrue(spool.listRuns().isEmpty());
+    }
+
+}
@@ -28,6 +28,8 @@ public class GoogleScrapSearch {
     GoogleDevice device = GoogleDevice.DESKTOP;
     String local;
     String customParameters;
+    boolean leanFetch;
+    boolean earlyTermination;
 
     public int getResultPerPage() {
         return resultPerPage;
@@ -93,6 +95,22 @@ public class GoogleScrapSearch {
         this.customParameters = customParameters;
     }
     
+    public boolean isLeanFetch() {
+        return leanFetch;
+    }
+
+    public void setLeanFetch(boolean leanFetch) {
+        this.leanFetch = leanFetch;
+    }
+    
+    public boolean isEarlyTermination() {
+        return earlyTermination;
+    }
+
+    public void setEarlyTermination(boolean earlyTermination) {
+        this.earlyTermination = earlyTermination;
+    }
+    
     public void setPagePauseMS(long minMs, long maxMs){
         if(minMs > maxMs){
             throw new IllegalArgumentException("minMs > maxMs");
@@ -121,6 +139,8 @@ public class GoogleScrapSearch {
         hash = 79 * hash + (this.device == null ? 0 : (this.device.ordinal()+1) );
         hash = 79 * hash + Objects.hashCode(this.local);
         hash = 79 * hash + Objects.hashCode(this.customParameters);
+        hash = 79 * hash + (this.leanFetch ? 1 : 0);
+        hash = 79 * hash + (this.earlyTermination ? 1 : 0);
         return hash;
     }
 
@@ -166,6 +186,12 @@ public class GoogleScrapSearch {
         if (this.device != other.device) {
             return false;
         }
+        if (this.leanFetch != other.leanFetch) {
+            return false;
+        }
+        if (this.earlyTermination != other.earlyTermination) {
+            return false;
+        }
         return true;
     }
     
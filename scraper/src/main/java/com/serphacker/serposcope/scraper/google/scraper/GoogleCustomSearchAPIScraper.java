@@ -42,6 +42,7 @@ public class GoogleCustomSearchAPIScraper extends GoogleScraper {
     private final String apiKey;
     private final String customSearchEngineId;
     private final ApiQueriesCounter apiQueriesCounter;
+    private ApiResponseCache responseCache;
     private CustomSearchAPI customSearchAPI;
     
     /**
@@ -67,6 +68,31 @@ public class GoogleCustomSearchAPIScraper extends GoogleScraper {
          * @return 制限に達している場合true
          */
         boolean isLimitReached(int maxDailyQueries);
+        
+        /**
+         * 使用回数を1回分確保する（チェックとインクリメントを一度に行う）
+         * 複数スレッドから同時に呼ばれても上限を超えない
+         * @return 確保できた場合true、上限に達している場合false
+         */
+        boolean tryAcquire();
+    }
+    
+    /**
+     * APIレスポンスのキャッシュ（同じ日の再実行で使用回数を消費しないため）
+     * coreモジュールで実装されます
+     */
+    public interface ApiResponseCache {
+        /**
+         * @param key リクエストのキー（cx, q, gl, lr, start, num）
+         * @return キャッシュされたレスポンス（JSON）、ない場合null
+         */
+        String get(String key);
+        
+        /**
+         * @param key リクエストのキー
+         * @param response レスポンス（JSON）
+         */
+        void put(String key, String response);
     }
     
     public GoogleCustomSearchAPIScraper(ScrapClient client, CaptchaSolver solver, String apiKey, String customSearchEngineId, 
@@ -95,8 +121,7 @@ public class GoogleCustomSearchAPIScraper extends GoogleScraper {
             return new GoogleScrapResult(Status.ERROR_NETWORK, new ArrayList<>(), 0);
         }
 
-        // 使用回数制限のチェックはGoogleScraperFactoryImplで行われます
-        // ここに到達した時点で、使用可能であることが保証されています
+        // 使用回数は各ページのAPI呼び出し前にApiQueriesCounter.tryAcquire()で確保します
 
         List<String> urls = new ArrayList<>();
         long resultsNumber = 0;
@@ -110,14 +135,6 @@ public class GoogleCustomSearchAPIScraper extends GoogleScraper {
                     throw new InterruptedException();
                 }
                 
-                // 各ページのAPI呼び出し前に使用回数制限をチェック
-                if (apiQueriesCounter != null && apiQueriesCounter.isLimitReached(getMaxDailyQueries())) {
-                    int todayCount = apiQueriesCounter.getTodayCount();
-                    LOG.warn("Daily API queries limit reached during pagination ({} / {}). Stopping at page {}.", 
-                        todayCount, getMaxDailyQueries(), page);
-                    break; // 制限に達したらループを抜ける
-                }
-                
                 long startIndex = (long)page * resultPerPage + 1L; // API uses 1-based indexing
                 
                 CustomSearchAPI.Cse.List list = customSearchAPI.cse().list()
@@ -145,14 +162,28 @@ public class GoogleCustomSearchAPIScraper extends GoogleScraper {
                 LOG.debug("Querying Google Custom Search API: keyword='{}', page={}, start={}", 
                     search.getKeyword(), page, startIndex);
                 
-                // API呼び出し前に使用回数をインクリメント
-                if (apiQueriesCounter != null) {
-                    int currentCount = apiQueriesCounter.increment();
-                    LOG.debug("API queries count incremented to: {} / {}", currentCount, getMaxDailyQueries());
+                // キャッシュにあれば使用回数を消費しない
+                String cacheKey = buildCacheKey(list);
+                Search results = getCachedResponse(cacheKey);
+                if (results != null) {
+                    LOG.debug("API response found in cache for keyword='{}', page={}", search.getKeyword(), page);
+                } else {
+                    // 各ページのAPI呼び出し前に使用回数を確保
+                    if (apiQueriesCounter != null && !apiQueriesCounter.tryAcquire()) {
+                        int todayCount = apiQueriesCounter.getTodayCount();
+                        LOG.warn("Daily API queries limit reached during pagination ({} / {}). Stopping at page {}.", 
+                            todayCount, getMaxDailyQueries(), page);
+                        if (page == 0) {
+                            // 1件も取得できていないので、順位なしとして記録せずエラーを返す
+                            return new GoogleScrapResult(Status.ERROR_NETWORK, urls, 0);
+                        }
+                        break; // 制限に達したらループを抜ける
+                    }
+                    
+                    results = list.execute();
+                    putCachedResponse(cacheKey, results);
                 }
                 
-                Search results = list.execute();
-                
                 if (results.getItems() != null) {
                     for (Result item : results.getItems()) {
                         urls.add(item.getLink());
@@ -201,6 +232,47 @@ public class GoogleCustomSearchAPIScraper extends GoogleScraper {
         }
     }
     
+    public ApiResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    public void setResponseCache(ApiResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+    
+    protected String buildCacheKey(CustomSearchAPI.Cse.List list) {
+        return list.getCx() + "|" + list.getQ() + "|" + list.getGl() + "|" + list.getLr() + "|" 
+            + list.getStart() + "|" + list.getNum();
+    }
+    
+    protected Search getCachedResponse(String key) {
+        if (responseCache == null) {
+            return null;
+        }
+        
+        try {
+            String json = responseCache.get(key);
+            if (json != null) {
+                return JSON_FACTORY.fromString(json, Search.class);
+            }
+        } catch (Exception ex) {
+            LOG.warn("Invalid cached API response, ignoring it", ex);
+        }
+        return null;
+    }
+    
+    protected void putCachedResponse(String key, Search results) {
+        if (responseCache == null || results == null) {
+            return;
+        }
+        
+        try {
+            responseCache.put(key, JSON_FACTORY.toString(results));
+        } catch (Exception ex) {
+            LOG.warn("Failed to cache API response", ex);
+        }
+    }
+    
     /**
      * Extract language code from locale string (approximate)
      * This is a simple mapping - you may need to enhance this based on your needs
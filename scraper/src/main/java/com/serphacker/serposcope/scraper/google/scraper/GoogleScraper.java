@@ -61,6 +61,13 @@ public class GoogleScraper {
     public final static String DEFAULT_DESKTOP_UA = "Mozilla/5.0 (Windows NT 10.0; Win64; x64; rv:58.0) Gecko/20100101 Firefox/58.0";
     public final static String DEFAULT_SMARTPHONE_UA = "Mozilla/5.0 (Android 7.0; Mobile; rv:59.0) Gecko/59.0 Firefox/59.0 ";
 
+    // user agents getting the basic (no javascript) SERP, a fraction of the size of the full one
+    public final static String LEAN_DESKTOP_UA = "Lynx/2.8.9rel.1 libwww-FM/2.14 SSL-MM/1.4.1 OpenSSL/1.1.1d";
+    public final static String LEAN_SMARTPHONE_UA = "Nokia6300/2.0 (05.00) Profile/MIDP-2.0 Configuration/CLDC-1.1";
+
+    // number of lean pages without organic results (while the full variant had some) before giving up the lean mode
+    public final static int LEAN_FETCH_MAX_FAILURES = 3;
+
     private static final Logger LOG = LoggerFactory.getLogger(GoogleScraper.class);
 
     int maxRetry = DEFAULT_MAX_RETRY;
@@ -71,6 +78,13 @@ public class GoogleScraper {
     Document lastSerpHtml = null;
     int captchas=0;
 
+    boolean lean = false;
+    boolean leanFetchDisabled = false;
+    int leanFetchFailures = 0;
+    boolean earlyTerminationDisabled = false;
+    // detector of the last SERP request, null without early termination
+    SerpCompletionDetector detector;
+
     public GoogleScraper(ScrapClient client, CaptchaSolver solver) {
 //        this.search = search;
         this.http = client;
@@ -80,6 +94,7 @@ public class GoogleScraper {
     public GoogleScrapResult scrap(GoogleScrapSearch search) throws InterruptedException {
         lastSerpHtml = null;
         captchas = 0;
+        lean = search.isLeanFetch() && !leanFetchDisabled;
         List<String> urls = new ArrayList<>();
         prepareHttpClient(search);
         long resultsNumber = 0;
@@ -91,24 +106,10 @@ public class GoogleScraper {
                 throw new InterruptedException();
             }
 
-            String url = buildRequestUrl(search, page);
-
-            Status status = null;
-            for (int retry = 0; retry < maxRetry; retry++) {
-
-                LOG.debug("GET {} via {} try {}", url, http.getProxy() == null ? new DirectNoProxy() : http.getProxy(), retry+1);
-
-                status = downloadSerp(url, referrer, search, retry);
-                if(status == Status.OK){
-                    status = parseSerp(urls);
-                    if(status == Status.OK){
-                        break;
-                    }
-                }
-
-                if(!isRetryableStatus(status)){
-                    break;
-                }
+            int previousSize = urls.size();
+            Status status = fetchPage(search, page, referrer, urls);
+            if(status == Status.OK && page + 1 < search.getPages() && isPaginationMissing()){
+                status = fetchFullPage(search, page, referrer, urls, previousSize);
             }
 
             if(status != Status.OK){
@@ -136,14 +137,100 @@ public class GoogleScraper {
         return new GoogleScrapResult(Status.OK, urls, captchas, resultsNumber);
     }
 
+    /**
+     * Fetch and parse one page. In lean mode, a page without organic results is fetched again with the
+     * full variant, and the lean mode is disabled for this scraper if it keeps failing where the full one works.
+     */
+    protected Status fetchPage(GoogleScrapSearch search, int page, String referrer, List<String> urls) throws InterruptedException {
+        if(!lean){
+            return fetchPageWithRetry(buildRequestUrl(search, page), referrer, search, urls);
+        }
+
+        int previousSize = urls.size();
+        Status status = fetchPageWithRetry(buildRequestUrl(search, page), referrer, search, urls);
+        if(status == Status.OK && urls.size() > previousSize){
+            leanFetchFailures = 0;
+            return status;
+        }
+
+        if(status != Status.OK && status != Status.ERROR_PARSING){
+            return status;
+        }
+
+        LOG.debug("no organic result in lean SERP, fetching the full SERP");
+        urls.subList(previousSize, urls.size()).clear();
+        lean = false;
+        prepareHttpClient(search);
+
+        status = fetchPageWithRetry(buildRequestUrl(search, page), referrer, search, urls);
+        if(status == Status.OK && urls.size() > previousSize && ++leanFetchFailures >= LEAN_FETCH_MAX_FAILURES){
+            LOG.warn("lean SERP failed to parse {} times in a row, falling back to full SERP", leanFetchFailures);
+            leanFetchDisabled = true;
+        }
+        return status;
+    }
+
+    /**
+     * @return true if the page was truncated before its pagination, a short last page is complete once the
+     * end of results notice is received
+     */
+    protected boolean isPaginationMissing(){
+        return http.isContentTruncated() && (detector == null || !detector.hasPagination()) && !hasNextPage();
+    }
+
+    /**
+     * Fetch again in full a page truncated before its pagination. Early termination is disabled for this
+     * scraper if the full page has a next page.
+     */
+    protected Status fetchFullPage(GoogleScrapSearch search, int page, String referrer, List<String> urls, int previousSize) throws InterruptedException {
+        LOG.debug("no next page in truncated SERP, fetching the full SERP");
+        urls.subList(previousSize, urls.size()).clear();
+        earlyTerminationDisabled = true;
+        Status status = fetchPage(search, page, referrer, urls);
+        if(status == Status.OK && hasNextPage()){
+            LOG.warn("next page missing from truncated SERP, disabling early termination");
+        } else {
+            earlyTerminationDisabled = false;
+        }
+        return status;
+    }
+
+    protected Status fetchPageWithRetry(String url, String referrer, GoogleScrapSearch search, List<String> urls) throws InterruptedException {
+        Status status = null;
+        for (int retry = 0; retry < maxRetry; retry++) {
+
+            LOG.debug("GET {} via {} try {}", url, http.getProxy() == null ? new DirectNoProxy() : http.getProxy(), retry+1);
+
+            status = downloadSerp(url, referrer, search, retry);
+            if(status == Status.OK){
+                status = parseSerp(urls);
+                if(status == Status.OK){
+                    break;
+                }
+                
+                if(status == Status.ERROR_PARSING && http.isContentTruncated()){
+                    LOG.warn("failed to parse truncated SERP, disabling early termination");
+                    earlyTerminationDisabled = true;
+                    --retry;
+                    continue;
+                }
+            }
+
+            if(!isRetryableStatus(status)){
+                break;
+            }
+        }
+        return status;
+    }
+
     protected void prepareHttpClient(GoogleScrapSearch search){
 
         switch(search.getDevice()){
             case DESKTOP:
-                http.setUseragent(DEFAULT_DESKTOP_UA);
+                http.setUseragent(lean ? LEAN_DESKTOP_UA : DEFAULT_DESKTOP_UA);
                 break;
             case SMARTPHONE:
-                http.setUseragent(DEFAULT_SMARTPHONE_UA);
+                http.setUseragent(lean ? LEAN_SMARTPHONE_UA : DEFAULT_SMARTPHONE_UA);
                 break;
         }
 
@@ -169,7 +256,14 @@ public class GoogleScraper {
             referrer = "https://www.google.com";
         }
 
-        int status = http.get(url, referrer);
+        int status;
+        detector = isEarlyTermination(search) ? new SerpCompletionDetector() : null;
+        http.setContentListener(detector);
+        try {
+            status = http.get(url, referrer);
+        } finally {
+            http.setContentListener(null);
+        }
         LOG.info("GOT status=[{}] exception=[{}]", status, http.getException() == null ? "none" :
             (http.getException().getClass().getSimpleName() + " : " + http.getException().getMessage()));
         switch(status){
@@ -188,6 +282,13 @@ public class GoogleScraper {
         return Status.ERROR_NETWORK;
     }
 
+    /**
+     * stop downloading the SERP once the organic results and the pagination have been received
+     */
+    protected boolean isEarlyTermination(GoogleScrapSearch search){
+        return search.isEarlyTermination() && !earlyTerminationDisabled;
+    }
+
     protected Status parseSerp(List<String> urls){
         String html = http.getContentAsString();
         if(html == null || html.isEmpty()){
@@ -199,6 +300,10 @@ public class GoogleScraper {
             return Status.ERROR_NETWORK;
         }
 
+        if(lean){
+            return parseSerpLean(urls);
+        }
+
         Element resDiv = lastSerpHtml.getElementById("res");
         if(resDiv != null){
             return parseSerpLayoutRes(resDiv, urls);
@@ -212,6 +317,23 @@ public class GoogleScraper {
         return Status.ERROR_PARSING;
     }
 
+    /**
+     * basic html SERP, either the current #main layout or the legacy #ires one
+     */
+    protected Status parseSerpLean(List<String> urls) {
+        final Element mainDiv = lastSerpHtml.getElementById("main");
+        if(mainDiv != null) {
+            return parseSerpLayoutMain(mainDiv, urls);
+        }
+
+        Element iresDiv = lastSerpHtml.getElementById("ires");
+        if(iresDiv != null){
+            return parseSerpLayoutResLegacy(iresDiv, urls);
+        }
+
+        return Status.ERROR_PARSING;
+    }
+
     protected Status parseSerpLayoutRes(Element resElement, List<String> urls) {
 
         Elements h3Elts = resElement.select("a > h3");
@@ -412,6 +534,10 @@ public class GoogleScraper {
         if(page > 0){
             url+="&start=" + (page*search.getResultPerPage());
         }
+
+        if(lean){
+            url+="&gbv=1";
+        }
         return url;
     }
 
@@ -724,4 +850,12 @@ public class GoogleScraper {
     public Document getLastSerpHtml() {
         return lastSerpHtml;
     }
+
+    public boolean isEarlyTerminationDisabled() {
+        return earlyTerminationDisabled;
+    }
+
+    public boolean isLeanFetchDisabled() {
+        return leanFetchDisabled;
+    }
 }
@@ -0,0 +1,121 @@
+/* 
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ * 
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.google.scraper;
+
+import com.serphacker.serposcope.scraper.http.ContentListener;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Watch a SERP while it is downloaded and stop it once the organic results and the pagination have been received.
+ * The results container must be seen first, then the pagination or the end of results notice of a last page,
+ * then any of the markers following them (footer of the full SERP, closing footer tag of the basic/mobile one
+ * whose pagination is in the footer).
+ * Everything after (footer links, inline scripts) is useless for rank tracking.
+ * not thread safe, one instance per request
+ */
+public class SerpCompletionDetector implements ContentListener {
+    
+    final static byte[][] RESULTS_MARKERS = markers(
+        "id=\"res\"", "id=\"main\"", "id=\"ires\""
+    );
+    
+    final static byte[][] PAGINATION_MARKERS = markers(
+        "id=\"pnnext\"", "id=\"navcnt\"", "role=\"navigation\"", "id=\"ofr\"", "id=\"botstuff\"", "<footer"
+    );
+    
+    final static byte[][] END_MARKERS = markers(
+        "id=\"footcnt\"", "id=\"fbar\"", "</footer>"
+    );
+    
+    final static int MAX_MARKER_LENGTH = Math.max(maxLength(RESULTS_MARKERS), 
+        Math.max(maxLength(PAGINATION_MARKERS), maxLength(END_MARKERS)));
+    
+    int scanned = 0;
+    int resultsOffset = -1;
+    int paginationOffset = -1;
+    int endOffset = -1;
+
+    @Override
+    public boolean onContent(byte[] buffer, int length) {
+        // rescan the tail of the previous chunk in case a marker was split between two reads
+        int from = Math.max(0, scanned - MAX_MARKER_LENGTH + 1);
+        scanned = length;
+        
+        if(resultsOffset == -1){
+            resultsOffset = indexOfAny(buffer, from, length, RESULTS_MARKERS);
+            if(resultsOffset == -1){
+                return false;
+            }
+            from = resultsOffset;
+        }
+        
+        if(paginationOffset == -1){
+            paginationOffset = indexOfAny(buffer, from, length, PAGINATION_MARKERS);
+            if(paginationOffset == -1){
+                return false;
+            }
+            from = paginationOffset;
+        }
+        
+        endOffset = indexOfAny(buffer, from, length, END_MARKERS);
+        return endOffset != -1;
+    }
+
+    /**
+     * @return true if the pagination or the end of results notice has been received
+     */
+    public boolean hasPagination() {
+        return paginationOffset != -1;
+    }
+
+    public boolean isComplete() {
+        return endOffset != -1;
+    }
+    
+    static int indexOfAny(byte[] buffer, int from, int to, byte[][] markers){
+        int first = -1;
+        for (byte[] marker : markers) {
+            int index = indexOf(buffer, from, to, marker);
+            if(index != -1 && (first == -1 || index < first)){
+                first = index;
+            }
+        }
+        return first;
+    }
+    
+    static int indexOf(byte[] buffer, int from, int to, byte[] marker){
+        int last = to - marker.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < marker.length; j++) {
+                if(buffer[i+j] != marker[j]){
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+    
+    static byte[][] markers(String... markers){
+        byte[][] bytes = new byte[markers.length][];
+        for (int i = 0; i < markers.length; i++) {
+            bytes[i] = markers[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return bytes;
+    }
+    
+    static int maxLength(byte[][] markers){
+        int max = 0;
+        for (byte[] marker : markers) {
+            max = Math.max(max, marker.length);
+        }
+        return max;
+    }
+    
+}
@@ -0,0 +1,23 @@
+/* 
+ * Serposcope - SEO rank checker https://serposcope.serphacker.com/
+ * 
+ * Copyright (c) 2016 SERP Hacker
+ * @author Pierre Nogues <support@serphacker.com>
+ * @license https://opensource.org/licenses/MIT MIT License
+ */
+package com.serphacker.serposcope.scraper.http;
+
+/**
+ * receive the decoded body of a 200 response while it is being downloaded
+ */
+public interface ContentListener {
+    
+    /**
+     * @param buffer decoded content received so far
+     * @param length number of valid bytes in buffer
+     * @return true if enough content has been received, the download is then aborted and 
+     * the content truncated to what has been read
+     */
+    public boolean onContent(byte[] buffer, int length);
+    
+}
@@ -18,6 +18,7 @@ import com.serphacker.serposcope.scraper.http.proxy.HttpProxy;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.charset.Charset;
@@ -26,6 +27,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpException;
@@ -62,6 +64,7 @@ import java.util.HashMap;
 import java.util.Map;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.DeflateInputStream;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.config.RegistryBuilder;
@@ -74,6 +77,7 @@ import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.impl.DefaultConnectionReuseStrategy;
 import org.apache.http.impl.client.RedirectLocations;
 import org.apache.http.message.BasicNameValuePair;
+import org.brotli.dec.BrotliInputStream;
 
 /**
  * *
@@ -96,6 +100,7 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     public final static String DEFAULT_USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; WOW64; rv:42.0) Gecko/20100101 Firefox/42.0";
     public final static int DEFAULT_TIMEOUT_MS = 30000;
     public final static int DEFAULT_MAX_RESPONSE_LENGTH = (1024 * 1024 * 4) - 1;// 4MB
+    public final static String ACCEPT_ENCODING = "gzip, deflate, br";
 
     CloseableHttpClient client;
     BasicCredentialsProvider credentialProvider = new BasicCredentialsProvider();
@@ -113,10 +118,15 @@ public class ScrapClient implements Closeable, CredentialsProvider {
     Map<HttpHost, HttpHost> routes = new HashMap<>();
     boolean proxyChangedSinceLastRequest;
     int maxRedirect = 0;
+    ContentListener contentListener;
 
     long executionTimeMS;
     CloseableHttpResponse response;
     byte[] content;
+    long wireContentLength;
+    long totalWireContentLength;
+    long totalContentLength;
+    boolean contentTruncated;
     int statusCode;
     Exception exception;
     String lastRedirect;
@@ -196,6 +206,7 @@ public class ScrapClient implements Closeable, CredentialsProvider {
             .setDefaultCookieStore(basicCookieStore)
             .setConnectionReuseStrategy(this.new SCliConnectionReuseStrategy())
             .setConnectionManager(connManager)
+            .disableContentCompression()
             .build();
 
         setTimeout(timeoutMS);
@@ -285,6 +296,49 @@ public class ScrapClient implements Closeable, CredentialsProvider {
         return content;
     }
 
+    /**
+     * @return number of entity bytes received on the wire for the last request (before decompression)
+     */
+    public long getWireContentLength() {
+        return wireContentLength;
+    }
+
+    /**
+     * @return decoded size / wire size of the last request, 1 if the response wasn't compressed
+     */
+    public double getCompressionRatio() {
+        if (content == null || wireContentLength <= 0) {
+            return 1d;
+        }
+        return (double) content.length / (double) wireContentLength;
+    }
+
+    public long getTotalWireContentLength() {
+        return totalWireContentLength;
+    }
+
+    public long getTotalContentLength() {
+        return totalContentLength;
+    }
+
+    /**
+     * @return true if the last response has been aborted by the content listener before being fully downloaded
+     */
+    public boolean isContentTruncated() {
+        return contentTruncated;
+    }
+
+    public ContentListener getContentListener() {
+        return contentListener;
+    }
+
+    /**
+     * @param contentListener notified of the decoded content of 200 responses as it arrives, null to disable
+     */
+    public void setContentListener(ContentListener contentListener) {
+        this.contentListener = contentListener;
+    }
+
     public String getContentAsString() {
         if (response == null || content == null) {
             return null;
@@ -505,6 +559,8 @@ public class ScrapClient implements Closeable, CredentialsProvider {
 
     protected void clearPreviousRequest() {
         content = null;
+        wireContentLength = 0;
+        contentTruncated = false;
         exception = null;
         response = null;
         statusCode = 0;
@@ -528,6 +584,11 @@ public class ScrapClient implements Closeable, CredentialsProvider {
                 }
 
                 HttpEntity entity = response.getEntity();
+                if (entity == null) {
+                    // 204, 304 and HEAD responses
+                    content = new byte[0];
+                    return statusCode;
+                }
                 long contentLength = entity.getContentLength();
 
                 if (contentLength > maxResponseLength) {
@@ -537,19 +598,40 @@ public class ScrapClient implements Closeable, CredentialsProvider {
                     );
                 }
 
-                InputStream stream = entity.getContent();
+                CountingInputStream wireStream = new CountingInputStream(entity.getContent());
+                InputStream stream = decodeContent(wireStream, entity.getContentEncoding(), contentLength);
+                ContentListener listener = statusCode == 200 ? contentListener : null;
                 int totalRead = 0;
                 int read = 0;
 
-                while (totalRead < maxResponseLength
-                    && (read = stream.read(buffer, totalRead, maxResponseLength - totalRead)) != -1) {
-                    totalRead += read;
+                try {
+                    // maxResponseLength is enforced on the decoded size
+                    while (totalRead < maxResponseLength
+                        && (read = stream.read(buffer, totalRead, maxResponseLength - totalRead)) != -1) {
+                        totalRead += read;
+                        if (read > 0 && listener != null && listener.onContent(buffer, totalRead)) {
+                            // connection can't be reused with unread content, drop it
+                            contentTruncated = true;
+                            request.abort();
+                            break;
+                        }
+                    }
+                } finally {
+                    wireContentLength = wireStream.getCount();
+                    totalWireContentLength += wireContentLength;
                 }
 
-                if (totalRead == maxResponseLength && read != 0) {
+                if (!contentTruncated && totalRead == maxResponseLength && read != 0) {
                     throw new ResponseTooBigException("already read " + totalRead + " bytes");
                 }
                 content = Arrays.copyOfRange(buffer, 0, totalRead);
+                totalContentLength += totalRead;
+                
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("received {} bytes on wire, {} bytes decoded (ratio {}){}", 
+                        wireContentLength, totalRead, String.format("%.2f", getCompressionRatio()),
+                        contentTruncated ? ", truncated by listener" : "");
+                }
 
             } catch (Exception ex) {
                 content = null;
@@ -565,10 +647,59 @@ public class ScrapClient implements Closeable, CredentialsProvider {
         }
     }
     
+    /**
+     * Codings are listed in the order they were applied and undone from the last one, an empty body is 
+     * returned as is whatever its encoding.
+     * 
+     * @param contentLength length of the body on the wire, -1 if unknown
+     */
+    protected InputStream decodeContent(InputStream stream, Header contentEncoding, long contentLength) throws IOException {
+        if (contentEncoding == null || contentEncoding.getValue() == null || contentLength == 0) {
+            return stream;
+        }
+        
+        if (contentLength < 0) {
+            PushbackInputStream pushback = new PushbackInputStream(stream, 1);
+            int first = pushback.read();
+            if (first == -1) {
+                return pushback;
+            }
+            pushback.unread(first);
+            stream = pushback;
+        }
+        
+        String[] codings = contentEncoding.getValue().split(",");
+        for (int i = codings.length - 1; i >= 0; i--) {
+            stream = decodeContent(stream, codings[i].trim().toLowerCase(), contentEncoding.getValue());
+        }
+        return stream;
+    }
+    
+    protected InputStream decodeContent(InputStream stream, String coding, String contentEncoding) throws IOException {
+        switch (coding) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(stream, 8192);
+            case "deflate":
+                return new DeflateInputStream(stream);
+            case "br":
+                return new BrotliInputStream(stream);
+            case "identity":
+            case "":
+                return stream;
+            default:
+                throw new IOException("unsupported content encoding " + contentEncoding);
+        }
+    }
+    
     protected void initializeRequest(HttpRequestBase request, HttpClientContext context){
         if (request.getFirstHeader("user-agent") == null) {
             request.setHeader("User-Agent", useragent);
         }
+        
+        if (request.getFirstHeader("accept-encoding") == null) {
+            request.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+        }
 
         for (Header requestHeader : requestHeaders) {
             request.setHeader(requestHeader);
@@ -7,6 +7,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -79,4 +80,48 @@ public class GoogleScraperParserTest {
 
     }
 
+    @Test
+    public void truncatedSerp() throws Exception {
+
+        List<String> dirs = DIRECTORIES.stream().flatMap(d -> Arrays.asList(d + "/top-10", d + "/last-page").stream())
+            .collect(Collectors.toList());
+        List<String> files = ResourceHelper.listResourceDir(dirs);
+
+        for (String file : files) {
+
+            if (file.endsWith(".res")) {
+                continue;
+            }
+
+            LOG.info("checking {}", file);
+
+            String serpHtml = ResourceHelper.readResourceAsString(file);
+            byte[] content = serpHtml.getBytes(StandardCharsets.UTF_8);
+
+            // feed the detector like a download would, by chunks
+            SerpCompletionDetector detector = new SerpCompletionDetector();
+            int length = 0;
+            while (length < content.length) {
+                length = Math.min(content.length, length + 1500);
+                if (detector.onContent(content, length)) {
+                    break;
+                }
+            }
+
+            ScrapClient http = mock(ScrapClient.class);
+            when(http.getContentAsString()).thenReturn(serpHtml);
+            GoogleScraper scraper = new GoogleScraper(http, null);
+            List<String> urls = new ArrayList<>();
+            assertEquals(OK, scraper.parseSerp(urls));
+            boolean nextPage = scraper.hasNextPage();
+
+            when(http.getContentAsString()).thenReturn(new String(content, 0, length, StandardCharsets.UTF_8));
+            List<String> truncatedUrls = new ArrayList<>();
+            assertEquals(OK, scraper.parseSerp(truncatedUrls));
+            assertEquals(urls, truncatedUrls);
+            assertEquals(nextPage, scraper.hasNextPage());
+        }
+
+    }
+
 }
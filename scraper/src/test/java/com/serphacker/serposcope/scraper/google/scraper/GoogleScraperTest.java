@@ -9,14 +9,17 @@ package com.serphacker.serposcope.scraper.google.scraper;
 
 import com.serphacker.serposcope.scraper.ResourceHelper;
 import com.serphacker.serposcope.scraper.google.GoogleCountryCode;
+import com.serphacker.serposcope.scraper.google.GoogleScrapResult;
 
 import static com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status.ERROR_NETWORK;
 import static com.serphacker.serposcope.scraper.google.GoogleScrapResult.Status.OK;
 
 import com.serphacker.serposcope.scraper.google.GoogleScrapSearch;
+import com.serphacker.serposcope.scraper.http.ContentListener;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -30,7 +33,10 @@ import static org.junit.Assert.*;
 import org.junit.runner.RunWith;
 
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.mockito.runners.MockitoJUnitRunner;
@@ -106,6 +112,92 @@ public class GoogleScraperTest {
     }
 
 
+    @Test
+    public void testLeanFetchFallback() throws Exception {
+        String leanHtml = "<html><body><div id=\"nothing\"></div></body></html>";
+        String fullHtml = "<html><body><div id=\"res\"><a href=\"https://www.serphacker.com/\"><h3>title</h3></a></div></body></html>";
+
+        ScrapClient http = mock(ScrapClient.class);
+        when(http.get(any(), any())).thenReturn(200);
+        when(http.getContentAsString()).thenReturn(leanHtml, fullHtml, leanHtml, fullHtml, leanHtml, fullHtml);
+
+        GoogleScrapSearch search = new GoogleScrapSearch();
+        search.setKeyword("suivi de position");
+        search.setLeanFetch(true);
+
+        GoogleScraper scraper = new GoogleScraper(http, null);
+        for (int i = 0; i < GoogleScraper.LEAN_FETCH_MAX_FAILURES; i++) {
+            assertFalse(scraper.isLeanFetchDisabled());
+            GoogleScrapResult res = scraper.scrap(search);
+            assertEquals(OK, res.status);
+            assertEquals(Arrays.asList("https://www.serphacker.com/"), res.urls);
+        }
+        assertTrue(scraper.isLeanFetchDisabled());
+    }
+
+    @Test
+    public void testEarlyTerminationFallback() throws Exception {
+        String page1 = "<html><body><div id=\"res\"><a href=\"https://www.serphacker.com/\"><h3>title</h3></a></div>";
+        String fullPage1 = page1 + "<a id=\"pnnext\" href=\"/search?q=keyword&start=10\">next</a></body></html>";
+        String page2 = "<html><body><div id=\"res\"><a href=\"https://serposcope.serphacker.com/\"><h3>title</h3></a></div></body></html>";
+
+        ScrapClient http = mock(ScrapClient.class);
+        when(http.get(any(), any())).thenReturn(200);
+        // pagination cut by the early termination, then a real last page
+        when(http.getContentAsString()).thenReturn(page1, fullPage1, page2, page1, page1);
+        when(http.isContentTruncated()).thenReturn(true, true);
+
+        GoogleScrapSearch search = new GoogleScrapSearch();
+        search.setKeyword("keyword");
+        search.setPages(2);
+        search.setEarlyTermination(true);
+
+        GoogleScraper scraper = new GoogleScraper(http, null);
+        GoogleScrapResult res = scraper.scrap(search);
+        assertEquals(OK, res.status);
+        assertEquals(Arrays.asList("https://www.serphacker.com/", "https://serposcope.serphacker.com/"), res.urls);
+        assertTrue(scraper.isEarlyTerminationDisabled());
+
+        scraper = new GoogleScraper(http, null);
+        res = scraper.scrap(search);
+        assertEquals(OK, res.status);
+        assertEquals(Arrays.asList("https://www.serphacker.com/"), res.urls);
+        assertFalse(scraper.isEarlyTerminationDisabled());
+    }
+
+    @Test
+    public void testEarlyTerminationShortLastPage() throws Exception {
+        // truncated after the end of results notice, the page is complete
+        String lastPage = "<html><body><div id=\"res\"><a href=\"https://www.serphacker.com/\"><h3>title</h3></a></div>" +
+            "<div id=\"botstuff\"><div id=\"ofr\">omitted results</div></div><div id=\"footcnt\">";
+
+        ScrapClient http = mock(ScrapClient.class);
+        ContentListener[] listener = new ContentListener[1];
+        doAnswer(invocation -> {
+            listener[0] = (ContentListener) invocation.getArguments()[0];
+            return null;
+        }).when(http).setContentListener(any());
+        when(http.get(any(), any())).thenAnswer(invocation -> {
+            byte[] content = lastPage.getBytes(StandardCharsets.UTF_8);
+            assertTrue(listener[0].onContent(content, content.length));
+            return 200;
+        });
+        when(http.getContentAsString()).thenReturn(lastPage);
+        when(http.isContentTruncated()).thenReturn(true);
+
+        GoogleScrapSearch search = new GoogleScrapSearch();
+        search.setKeyword("keyword");
+        search.setPages(5);
+        search.setEarlyTermination(true);
+
+        GoogleScraper scraper = new GoogleScraper(http, null);
+        GoogleScrapResult res = scraper.scrap(search);
+        assertEquals(OK, res.status);
+        assertEquals(Arrays.asList("https://www.serphacker.com/"), res.urls);
+        assertFalse(scraper.isEarlyTerminationDisabled());
+        verify(http, times(1)).get(any(), any());
+    }
+
     @Test
     public void testBuildUule() {
         GoogleScraper scraper = new GoogleScraper(null, null);
@@ -248,6 +248,7 @@ public class ScrapClientIT {
         String encoding = (String)((Map)props.get("headers")).get("Accept-Encoding");
         Assert.assertThat(encoding, CoreMatchers.containsString("gzip"));
         Assert.assertThat(encoding, CoreMatchers.containsString("deflate"));
+        Assert.assertThat(encoding, CoreMatchers.containsString("br"));
     }
     
     
@@ -262,6 +263,33 @@ public class ScrapClientIT {
             .readValue(cli.getContentAsString(), new TypeReference<HashMap<String,Object>>() {});
         
         assertTrue((boolean)props.get("gzipped"));
+        assertTrue(cli.getWireContentLength() > 0);
+        assertTrue(cli.getWireContentLength() < cli.getContent().length);
+        assertTrue(cli.getCompressionRatio() > 1d);
+    }
+    
+    @Test
+    public void testBrotli() throws Exception {
+        ScrapClient cli = new ScrapClient();
+        
+        int status = cli.get("https://httpbin.org/brotli");
+        assertEquals(200, status);
+        
+        HashMap<String,Object> props = new ObjectMapper()
+            .readValue(cli.getContentAsString(), new TypeReference<HashMap<String,Object>>() {});
+        
+        assertTrue((boolean)props.get("brotli"));
+        assertTrue(cli.getWireContentLength() < cli.getContent().length);
+    }
+    
+    @Test
+    public void testNoContent() throws Exception {
+        ScrapClient cli = new ScrapClient();
+        
+        int status = cli.get("https://httpbin.org/status/204");
+        assertEquals(204, status);
+        assertNull(cli.getException());
+        assertEquals(0, cli.getContent().length);
     }
     
     @Test
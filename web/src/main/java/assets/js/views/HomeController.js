@@ -84,6 +84,10 @@ serposcope.HomeController = function () {
                     if(typeof(data.progress) !== "undefined"){
                         $('.home-task-progress .progress-bar').css('width', data.progress + '%');
                         $('.home-task-progress .progress-bar span').html(data.progress + '%');
+                        if(typeof(data.remainingTime) !== "undefined"){
+                            var title = $('.home-task-progress').attr('data-remaining-label') + ' : ' + data.remainingTime;
+                            $('.home-task-progress').attr('data-original-title', title);
+                        }
                         if(data.progress != 100){
                             setTimeout(updateProgressBar, 3000);
                         }
@@ -76,6 +76,14 @@ serposcope.adminSettingsController = function () {
                 'name': 'pruneRuns',
                 'value': $('#pruneRuns').val(),
                 'type': 'hidden'
+            })).append($('<input>', {
+                'name': 'pruneDays',
+                'value': $('#pruneDays').val(),
+                'type': 'hidden'
+            })).append($('<input>', {
+                'name': 'pruneDbSize',
+                'value': $('#pruneDbSize').val(),
+                'type': 'hidden'
             })).appendTo(document.body).submit();
         }
     };
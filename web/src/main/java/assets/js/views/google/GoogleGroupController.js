@@ -312,6 +312,54 @@ serposcope.googleGroupController = function () {
         return false;
     };
     
+    var setPriority = function(elt){
+        var href = $(elt.currentTarget).attr("href");
+        var priority = prompt("group priority, from 1 (lowest) to 10 (highest)", $(elt.currentTarget).attr("data-priority"));
+        if(priority === null){
+            return false;
+        }
+        
+        $('<form>', {
+            'action': href,
+            'method': 'post',
+            'target': '_top'
+        }).append($('<input>', {
+            'name': 'priority',
+            'value': priority,
+            'type': 'hidden'
+        })).append($('<input>', {
+            'name': '_xsrf',
+            'value': $('#_xsrf').attr("data-value"),
+            'type': 'hidden'
+        })).appendTo(document.body).submit();
+        
+        return false;
+    };
+    
+    var setSchedule = function(elt){
+        var href = $(elt.currentTarget).attr("href");
+        var schedule = prompt($(elt.currentTarget).attr("data-prompt"), $(elt.currentTarget).attr("data-schedule"));
+        if(schedule === null){
+            return false;
+        }
+        
+        $('<form>', {
+            'action': href,
+            'method': 'post',
+            'target': '_top'
+        }).append($('<input>', {
+            'name': 'schedule',
+            'value': schedule,
+            'type': 'hidden'
+        })).append($('<input>', {
+            'name': '_xsrf',
+            'value': $('#_xsrf').attr("data-value"),
+            'type': 'hidden'
+        })).appendTo(document.body).submit();
+        
+        return false;
+    };
+    
     var renameTarget = function(elt){
         var href = $(elt.currentTarget).attr("href");
         var id = $(elt.currentTarget).attr("data-id");
@@ -438,6 +486,8 @@ serposcope.googleGroupController = function () {
         $('.target-radio').change(onRadioTargetChange);
         $("#pattern").attr('placeholder', $('#target-domain').attr("data-help"));
         $('.btn-rename').click(renameGroup);
+        $('.btn-priority').click(setPriority);
+        $('.btn-schedule').click(setSchedule);
         $('.btn-rename-target').click(renameTarget);
         $('.toggle-event').click(toggleEvent);
         $('.btn-add-event').click(showNewEventModal);
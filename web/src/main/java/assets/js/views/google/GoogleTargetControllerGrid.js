@@ -32,6 +32,7 @@ serposcope.googleTargetControllerGrid = function () {
     var COL_RANK_CURRENT = 0;
     var COL_RANK_PREVIOUS = 1;
     var COL_RANK_URL = 2;
+    var COL_RANK_CARRIED = 3;
 
     var grid = null;
     var dataView = null;
@@ -291,6 +292,10 @@ serposcope.googleTargetControllerGrid = function () {
                 bestClass = "best-cell";
                 bestText = " (best)";
             }
+            
+            if(rank[COL_RANK_CARRIED] == 1){
+                diffText += " (carried)";
+            }
         }
         
         var rankUrl = rank[COL_RANK_URL] == null ? "not provided" : serposcope.utils.escapeHTMLQuotes(rank[COL_RANK_URL]);
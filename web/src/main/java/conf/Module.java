@@ -15,7 +15,10 @@ import ch.qos.logback.core.rolling.RollingFileAppender;
 import ch.qos.logback.core.rolling.TimeBasedRollingPolicy;
 import com.google.inject.Singleton;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
+import com.google.inject.name.Names;
 import com.querydsl.sql.Configuration;
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.db.google.GoogleSerpArchive;
 import com.serphacker.serposcope.di.CaptchaSolverFactory;
 import com.serphacker.serposcope.di.GoogleScraperFactory;
 import com.serphacker.serposcope.di.db.ConfigurationProvider;
@@ -24,10 +27,14 @@ import com.serphacker.serposcope.di.TaskFactory;
 import com.serphacker.serposcope.models.base.Config;
 import com.serphacker.serposcope.models.google.GoogleSettings;
 import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleCustomSearchAPIScraper.ApiQueriesCounter;
+import com.serphacker.serposcope.scraper.google.scraper.GoogleCustomSearchAPIScraper.ApiResponseCache;
 import com.serphacker.serposcope.scraper.google.scraper.GoogleScraper;
 import com.serphacker.serposcope.scraper.google.scraper.RandomGScraper;
 import com.serphacker.serposcope.scraper.http.ScrapClient;
 import com.serphacker.serposcope.task.TaskManager;
+import com.serphacker.serposcope.task.google.GoogleTask;
+import com.serphacker.serposcope.task.google.SerpSpool;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import javax.sql.DataSource;
@@ -82,6 +89,11 @@ public class Module extends FrameworkModule {
         bind(TemplateEngineFreemarkerReverseRouteHelper.class).to(TemplateEngineFreemarkerReverseRouteHelperSerposcope.class);
         bind(Configuration.class).toProvider(new ConfigurationProvider(conf.dbUrl)).in(Singleton.class);
         bind(DataSource.class).toProvider(new DataSourceProvider(conf.dbUrl,conf.dbDebug)).in(Singleton.class);
+        bindConstant().annotatedWith(Names.named(AbstractDB.FETCH_SIZE)).to(conf.dbFetchSize);
+        bindConstant().annotatedWith(Names.named(GoogleSerpArchive.DIR)).to(conf.archivedir);
+        bindConstant().annotatedWith(Names.named(SerpSpool.DIR)).to(conf.spooldir);
+        bindConstant().annotatedWith(Names.named(TaskManager.MAX_GOOGLE_TASKS)).to(conf.maxTasks);
+        bindConstant().annotatedWith(Names.named(GoogleTask.WORKER_SHARDS)).to(conf.workerShards);
         bind(TaskManager.class).in(Singleton.class);
         install(new FactoryModuleBuilder().build(TaskFactory.class));
         
@@ -98,6 +110,12 @@ public class Module extends FrameworkModule {
                 public GoogleScraper get(ScrapClient http, CaptchaSolver solver, GoogleSettings settings) {
                     return new RandomGScraper(http, solver);
                 }
+                
+                @Override
+                public GoogleScraper getApiScraper(ScrapClient http, GoogleSettings settings, 
+                    ApiQueriesCounter counter, ApiResponseCache cache) {
+                    return new RandomGScraper(http, null);
+                }
             });
         }
     }
@@ -53,6 +53,12 @@ public class Routes implements ApplicationRoutes {
         router.POST().route("/admin/debug/dry-run").with(DebugController.class, "dryRun"); 
         router.GET().route("/admin/debug/test").with(DebugController.class, "test"); 
         router.GET().route("/admin/debug/shutdown").with(DebugController.class, "shutdown"); 
+        router.GET().route("/admin/debug/serp-codecs").with(DebugController.class, "serpCodecs"); 
+        router.POST().route("/admin/debug/serp-codecs/train").with(DebugController.class, "trainSerpDictionary"); 
+        router.POST().route("/admin/debug/serp-codecs/switch").with(DebugController.class, "switchSerpCodec"); 
+        router.POST().route("/admin/debug/serp-archive/archive").with(DebugController.class, "archiveSerps"); 
+        router.POST().route("/admin/debug/serp-archive/restore").with(DebugController.class, "restoreSerps"); 
+        router.POST().route("/admin/debug/partitions").with(DebugController.class, "partitions"); 
         router.POST().route("/admin/debug/dummy-post").with(DebugController.class, "dummyPost"); 
         
         router.GET().route("/admin/settings").with(SettingsController.class, "settings");
@@ -100,6 +106,8 @@ public class Routes implements ApplicationRoutes {
         // google
         router.GET().route("/google/{groupId: [0-9]+}").with(GoogleGroupController.class, "view");
         router.POST().route("/google/{groupId: [0-9]+}/rename").with(GoogleGroupController.class, "rename");
+        router.POST().route("/google/{groupId: [0-9]+}/priority").with(GoogleGroupController.class, "priority");
+        router.POST().route("/google/{groupId: [0-9]+}/schedule").with(GoogleGroupController.class, "schedule");
         router.POST().route("/google/{groupId: [0-9]+}/delete").with(GoogleGroupController.class, "delete");        
         router.POST().route("/google/{groupId: [0-9]+}/search/add").with(GoogleGroupController.class, "addSearch");
         router.POST().route("/google/{groupId: [0-9]+}/search/delete").with(GoogleGroupController.class, "delSearch");        
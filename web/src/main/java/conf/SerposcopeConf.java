@@ -7,6 +7,9 @@
  */
 package conf;
 
+import com.serphacker.serposcope.db.AbstractDB;
+import com.serphacker.serposcope.task.TaskManager;
+import com.serphacker.serposcope.task.google.GoogleTask;
 import java.io.File;
 import java.io.FileInputStream;
 import java.nio.file.Files;
@@ -27,8 +30,13 @@ public class SerposcopeConf {
     Random r = new Random();
     public String datadir;
     public String logdir;
+    public String archivedir;
+    public String spooldir;
     public String dbUrl;
     public boolean dbDebug;
+    public int dbFetchSize;
+    public int maxTasks;
+    public int workerShards;
     public String listenAddress;
     public int listenPort;
 
@@ -86,6 +94,8 @@ public class SerposcopeConf {
             (System.getProperty("user.home") + "/serposcope")
         );
         logdir = props.getProperty("serposcope.logdir", datadir + "/logs");
+        archivedir = props.getProperty("serposcope.archivedir", datadir + "/archive");
+        spooldir = props.getProperty("serposcope.spooldir", datadir + "/spool");
         dbUrl = props.getProperty("serposcope.db.url", "jdbc:h2:" + datadir + "/db");
         if(dbUrl.startsWith("jdbc:h2")){
             String dbOptions = props.getProperty("serposcope.db.options", "");
@@ -95,6 +105,21 @@ public class SerposcopeConf {
             dbUrl += dbOptions;
         }
         dbDebug = "true".equals(props.getProperty("serposcope.db.debug", "false"));
+        try {
+            dbFetchSize = Integer.parseInt(props.getProperty("serposcope.db.fetchSize", "" + AbstractDB.DEFAULT_FETCH_SIZE));
+        } catch(Exception ex){
+            dbFetchSize = AbstractDB.DEFAULT_FETCH_SIZE;
+        }
+        try {
+            maxTasks = Integer.parseInt(props.getProperty("serposcope.task.max", "" + TaskManager.DEFAULT_MAX_GOOGLE_TASKS));
+        } catch(Exception ex){
+            maxTasks = TaskManager.DEFAULT_MAX_GOOGLE_TASKS;
+        }
+        try {
+            workerShards = Integer.parseInt(props.getProperty(GoogleTask.WORKER_SHARDS, "1"));
+        } catch(Exception ex){
+            workerShards = 1;
+        }
         listenAddress = props.getProperty("serposcope.listenAddress", "0.0.0.0");
         try {
             listenPort = Integer.parseInt(props.getProperty("serposcope.listenPort", "7134"));
@@ -108,6 +133,8 @@ public class SerposcopeConf {
             System.getProperty("java.io.tmpdir") + "/serposcope/" + (100000 +r.nextInt(100000))
         );        
         logdir = props.getProperty("serposcope.logdir", datadir + "/logs");
+        archivedir = props.getProperty("serposcope.archivedir", datadir + "/archive");
+        spooldir = props.getProperty("serposcope.spooldir", datadir + "/spool");
         dbUrl = props.getProperty("serposcope.db.url", "jdbc:h2:mem:integrationtest");
         if(dbUrl.startsWith("jdbc:h2")){
             String dbOptions = props.getProperty("serposcope.db.options", "");
@@ -117,6 +144,21 @@ public class SerposcopeConf {
             dbUrl += dbOptions;
         }
         dbDebug = "true".equals(props.getProperty("serposcope.db.debug", "false"));
+        try {
+            dbFetchSize = Integer.parseInt(props.getProperty("serposcope.db.fetchSize", "" + AbstractDB.DEFAULT_FETCH_SIZE));
+        } catch(Exception ex){
+            dbFetchSize = AbstractDB.DEFAULT_FETCH_SIZE;
+        }
+        try {
+            maxTasks = Integer.parseInt(props.getProperty("serposcope.task.max", "" + TaskManager.DEFAULT_MAX_GOOGLE_TASKS));
+        } catch(Exception ex){
+            maxTasks = TaskManager.DEFAULT_MAX_GOOGLE_TASKS;
+        }
+        try {
+            workerShards = Integer.parseInt(props.getProperty(GoogleTask.WORKER_SHARDS, "1"));
+        } catch(Exception ex){
+            workerShards = 1;
+        }
         listenAddress = props.getProperty("serposcope.listenAddress", "0.0.0.0");
         try {
             listenPort = Integer.parseInt(props.getProperty("serposcope.listenPort", "1024"));
@@ -133,8 +175,13 @@ public class SerposcopeConf {
         LOG.info("serposcope.version          : " + Version.CURRENT);
         LOG.info("serposcope.datadir          : " + datadir);
         LOG.info("serposcope.logdir           : " + logdir);
+        LOG.info("serposcope.archivedir       : " + archivedir);
+        LOG.info("serposcope.spooldir         : " + spooldir);
         LOG.info("serposcope.db.url           : " + dbUrl);
         LOG.info("serposcope.db.debug         : " + dbDebug);
+        LOG.info("serposcope.db.fetchSize     : " + dbFetchSize);
+        LOG.info("serposcope.task.max         : " + maxTasks);
+        LOG.info("serposcope.worker.shards    : " + workerShards);
         LOG.info("serposcope.listenAddress    : " + listenAddress);
         LOG.info("serposcope.listenPort       : " + listenPort);
     }
@@ -144,8 +191,13 @@ public class SerposcopeConf {
             "serposcope.version          : " + Version.CURRENT + "\n" + 
             "serposcope.datadir          : " + datadir + "\n" + 
             "serposcope.logdir           : " + logdir + "\n" + 
+            "serposcope.archivedir       : " + archivedir + "\n" + 
+            "serposcope.spooldir         : " + spooldir + "\n" + 
             "serposcope.db.url           : " + dbUrl + "\n" + 
             "serposcope.db.debug         : " + dbDebug + "\n" + 
+            "serposcope.db.fetchSize     : " + dbFetchSize + "\n" + 
+            "serposcope.task.max         : " + maxTasks + "\n" + 
+            "serposcope.worker.shards    : " + workerShards + "\n" + 
             "serposcope.listenAddress    : " + listenAddress + "\n" + 
             "serposcope.listenPort       : " + listenPort;
     }
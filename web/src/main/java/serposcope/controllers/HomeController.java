@@ -18,6 +18,7 @@ import com.serphacker.serposcope.models.base.Group.Module;
 import com.serphacker.serposcope.models.base.Run;
 import com.serphacker.serposcope.models.google.GoogleTarget;
 import com.serphacker.serposcope.models.google.GoogleTargetSummary;
+import com.serphacker.serposcope.task.TaskManager;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -56,6 +57,9 @@ public class HomeController extends BaseController {
     @Inject
     DBSizeUtils dbSizeUtils;
     
+    @Inject
+    TaskManager taskManager;
+    
     public static class TargetHomeEntry {
 
         public TargetHomeEntry(String groupName, GoogleTarget target, GoogleTargetSummary summary, List<Integer> scoreHistory) {
@@ -101,10 +105,23 @@ public class HomeController extends BaseController {
         
         List<TargetHomeEntry> summaries = new ArrayList<>();
         
-        Map<Integer, GoogleTargetSummary> summariesByTarget = googleDB.targetSummary.list(
-            lastRun.getId(), "table".equals(display)).stream().collect(
-                Collectors.toMap(GoogleTargetSummary::getTargetId,Function.identity())
-            );
+        // runs may check some groups only, the summaries of a group are the ones of the last run which checked it
+        Map<Integer, GoogleTargetSummary> summariesByTarget = new HashMap<>();
+        Map<Integer, List<GoogleTargetSummary>> summariesByRun = new HashMap<>();
+        boolean skipTop = "table".equals(display);
+        for (Group group : groups) {
+            Run groupRun = baseDB.run.findLast(Module.GOOGLE, RunDB.STATUSES_DONE, null, group.getId());
+            if(groupRun == null){
+                continue;
+            }
+            List<GoogleTargetSummary> runSummaries = summariesByRun.computeIfAbsent(groupRun.getId(), 
+                (Integer runId) -> googleDB.targetSummary.list(runId, skipTop));
+            for (GoogleTargetSummary summary : runSummaries) {
+                if(summary.getGroupId() == group.getId()){
+                    summariesByTarget.put(summary.getTargetId(), summary);
+                }
+            }
+        }
         
         List<GoogleTarget> targets = googleDB.target.list(groups.stream().map(Group::getId).collect(Collectors.toList()));
         
@@ -150,10 +167,20 @@ public class HomeController extends BaseController {
         Map<String,Object> map = new HashMap<>();
         
         if(taskId != null){
-            Run run = baseDB.run.find(taskId);
+            // estimates are only known by the running task
+            Run run = taskManager.listRunningGoogleTasks().stream()
+                .filter((Run running) -> running.getId() == taskId).findFirst().orElse(null);
+            if(run == null){
+                run = baseDB.run.find(taskId);
+            }
             if(run != null){
                 map.put("progress", run.getProgress());
                 map.put("status", run.getStatus());
+                map.put("concurrency", run.getConcurrency());
+                if(run.getEta() != null){
+                    map.put("eta", run.getEta().withNano(0).toString());
+                }
+                map.put("remainingTime", run.getRemainingTimeFormated());
             }
         }
         
@@ -11,6 +11,8 @@ import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.p6spy.engine.spy.P6DataSource;
 import com.serphacker.serposcope.db.base.BaseDB;
+import com.serphacker.serposcope.db.codec.CodecBenchmark;
+import com.serphacker.serposcope.db.google.GoogleSerpCodecDB;
 import com.serphacker.serposcope.db.google.GoogleDB;
 import com.serphacker.serposcope.models.base.Group;
 import com.serphacker.serposcope.models.base.Group.Module;
@@ -21,6 +23,8 @@ import com.serphacker.serposcope.models.google.GoogleTarget;
 import com.serphacker.serposcope.models.google.GoogleTarget.PatternType;
 import com.serphacker.serposcope.scraper.google.GoogleCountryCode;
 import com.serphacker.serposcope.task.TaskManager;
+import com.serphacker.serposcope.task.google.SerpArchiver;
+import com.serphacker.serposcope.task.google.SerpRecompressor;
 import com.zaxxer.hikari.HikariDataSource;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -109,6 +113,7 @@ public class DebugController extends BaseController {
         googleDB.targetSummary.wipe();
         googleDB.rank.wipe();
         googleDB.serp.wipe();
+        googleDB.runQueue.wipe();
         baseDB.run.wipe();
         
         flash.put("warning","admin.debug.rankingsWiped");
@@ -123,6 +128,7 @@ public class DebugController extends BaseController {
         googleDB.targetSummary.wipe();
         googleDB.rank.wipe();
         googleDB.serp.wipe();
+        googleDB.runQueue.wipe();
         baseDB.run.wipe();
         
         googleDB.target.wipe();
@@ -270,6 +276,107 @@ public class DebugController extends BaseController {
             .render(duration);
     }
     
+    public Result serpCodecs(){
+        StringBuilder builder = new StringBuilder();
+        builder.append("default codec : ").append(googleDB.serpCodec.getDefaultCodecName()).append('\n');
+        
+        SerpRecompressor recompressor = taskManager.getRunningSerpRecompression();
+        if(recompressor != null){
+            builder.append("recompression : ").append(recompressor.getRunsDone()).append('/').append(recompressor.getTotalRuns())
+                .append(" runs, ").append(recompressor.getRecompressed()).append(" SERPs\n");
+        }
+        
+        SerpArchiver archiver = taskManager.getRunningSerpArchiving();
+        if(archiver != null){
+            builder.append(archiver.isRestoring() ? "restore : " : "archiving : ").append(archiver.getRunsDone()).append('/')
+                .append(archiver.getTotalRuns()).append(" runs, ").append(archiver.getSerps()).append(" SERPs\n");
+        }
+        if(googleDB.serpArchive.isEnabled()){
+            builder.append("archived runs : ").append(googleDB.serpArchive.listRunIds().size()).append('\n');
+        }
+        
+        builder.append('\n');
+        for (CodecBenchmark benchmark : googleDB.serpCodec.benchmark(GoogleSerpCodecDB.DEFAULT_SAMPLE_SIZE)) {
+            builder.append(benchmark).append('\n');
+        }
+        
+        return Results.ok().text().render(builder.toString());
+    }
+    
+    @FilterWith(XSRFFilter.class)
+    public Result trainSerpDictionary(Context context){
+        FlashScope flash = context.getFlashScope();
+        
+        Integer dictionaryId = googleDB.serpCodec.trainDictionary(GoogleSerpCodecDB.DEFAULT_SAMPLE_SIZE);
+        if(dictionaryId == null){
+            flash.error("error.internalError");
+        } else {
+            flash.success("ok");
+        }
+        return Results.redirect(router.getReverseRoute(DebugController.class, "debug"));
+    }
+    
+    @FilterWith(XSRFFilter.class)
+    public Result switchSerpCodec(Context context, @Param("codec") String codec){
+        FlashScope flash = context.getFlashScope();
+        
+        if(!googleDB.serpCodec.setDefaultCodec(codec)){
+            flash.error("error.invalidParameters");
+            return Results.redirect(router.getReverseRoute(DebugController.class, "debug"));
+        }
+        
+        taskManager.abortSerpRecompression();
+        taskManager.startSerpRecompression();
+        flash.success("ok");
+        return Results.redirect(router.getReverseRoute(DebugController.class, "debug"));
+    }
+    
+    @FilterWith(XSRFFilter.class)
+    public Result archiveSerps(Context context, @Param("days") Integer days){
+        FlashScope flash = context.getFlashScope();
+        
+        if(!googleDB.serpArchive.isEnabled() || days == null || days < 0){
+            flash.error("error.invalidParameters");
+            return Results.redirect(router.getReverseRoute(DebugController.class, "debug"));
+        }
+        
+        if(taskManager.startSerpArchiving(days)){
+            flash.success("ok");
+        } else {
+            flash.error("error.internalError");
+        }
+        return Results.redirect(router.getReverseRoute(DebugController.class, "debug"));
+    }
+    
+    @FilterWith(XSRFFilter.class)
+    public Result restoreSerps(Context context){
+        FlashScope flash = context.getFlashScope();
+        
+        if(taskManager.startSerpArchiving(-1)){
+            flash.success("ok");
+        } else {
+            flash.error("error.internalError");
+        }
+        return Results.redirect(router.getReverseRoute(DebugController.class, "debug"));
+    }
+    
+    @FilterWith(XSRFFilter.class)
+    public Result partitions(Context context, @Param("enable") boolean enable){
+        FlashScope flash = context.getFlashScope();
+        
+        if(!baseDB.partition.isSupported()){
+            flash.error("error.invalidParameters");
+            return Results.redirect(router.getReverseRoute(DebugController.class, "debug"));
+        }
+        
+        if(enable ? baseDB.partition.enable() : baseDB.partition.disable()){
+            flash.success("ok");
+        } else {
+            flash.error("error.internalError");
+        }
+        return Results.redirect(router.getReverseRoute(DebugController.class, "debug"));
+    }
+    
     public Result shutdown(){
         System.exit(0);
         return Results.ok();
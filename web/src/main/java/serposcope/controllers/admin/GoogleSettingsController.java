@@ -13,6 +13,7 @@ import com.serphacker.serposcope.db.google.GoogleDB;
 import com.serphacker.serposcope.models.google.GoogleSettings;
 import com.serphacker.serposcope.scraper.google.GoogleDevice;
 import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
 import java.time.format.DateTimeFormatter;
 import ninja.Context;
 import ninja.FilterWith;
@@ -54,6 +55,8 @@ public class GoogleSettingsController extends BaseController {
         @Param("pages") Integer pages, @Param("result-per-page") Integer resultPerPage,
         @Param("min-pause") Integer minPause, @Param("max-pause") Integer maxPause,
         @Param("maxThreads") Integer maxThreads, @Param("fetchRetry") Integer fetchRetry,
+        @Param("leanFetch") Boolean leanFetch, @Param("earlyTermination") Boolean earlyTermination,
+        @Param("runDeadline") String runDeadline, @Param("maxCheckInterval") Integer maxCheckInterval,
         @Param("country") String country, @Param("datacenter") String datacenter,
         @Param("device") Integer device,
         @Param("local") String local, @Param("custom") String custom,
@@ -92,6 +95,33 @@ public class GoogleSettingsController extends BaseController {
         if(maxThreads != null){
             options.setMaxThreads(maxThreads);
         }
+        
+        if(leanFetch != null){
+            options.setLeanFetch(leanFetch);
+        }
+        
+        if(earlyTermination != null){
+            options.setEarlyTermination(earlyTermination);
+        }
+        
+        if(Validator.isNotEmpty(runDeadline)){
+            try {
+                options.setRunDeadline(LocalTime.parse(runDeadline));
+            } catch(DateTimeParseException ex){
+                flash.error("admin.google.invalidRunDeadline");
+                return Results.redirect(router.getReverseRoute(GoogleSettingsController.class, "settings"));
+            }
+        } else {
+            options.setRunDeadline(null);
+        }
+        
+        if(maxCheckInterval != null){
+            if(maxCheckInterval < 1){
+                flash.error("admin.google.invalidMaxCheckInterval");
+                return Results.redirect(router.getReverseRoute(GoogleSettingsController.class, "settings"));
+            }
+            options.setMaxCheckInterval(maxCheckInterval);
+        }
         options.setDefaultCountry(country);
         
         if(!Validator.isEmpty(datacenter)){
@@ -11,8 +11,9 @@ import com.google.common.base.Optional;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import com.serphacker.serposcope.db.base.BaseDB;
+import static com.serphacker.serposcope.db.base.ConfigDB.APP_PRUNE_DAYS;
+import static com.serphacker.serposcope.db.base.ConfigDB.APP_PRUNE_DB_SIZE;
 import static com.serphacker.serposcope.db.base.ConfigDB.APP_PRUNE_RUNS;
-import com.serphacker.serposcope.db.base.PruneDB;
 import com.serphacker.serposcope.models.base.Config;
 import com.serphacker.serposcope.scraper.captcha.solver.AntiCaptchaSolver;
 import com.serphacker.serposcope.scraper.captcha.solver.CaptchaSolver;
@@ -20,6 +21,8 @@ import com.serphacker.serposcope.scraper.captcha.solver.DeathByCaptchaSolver;
 import com.serphacker.serposcope.scraper.captcha.solver.DecaptcherSolver;
 import com.serphacker.serposcope.scraper.captcha.solver.ImageTyperzSolver;
 import com.serphacker.serposcope.scraper.captcha.solver.TwoCaptchaSolver;
+import com.serphacker.serposcope.task.CronSchedule;
+import com.serphacker.serposcope.task.TaskManager;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import ninja.Context;
@@ -57,7 +60,7 @@ public class SettingsController extends BaseController {
     Messages msg;    
     
     @Inject
-    PruneDB pruneDB;
+    TaskManager taskManager;
     
     @Inject
     DBSizeUtils dbSizeUtils;
@@ -74,6 +77,7 @@ public class SettingsController extends BaseController {
             .render("diskUsage", diskUsage)
             .render("diskFree", diskFree)
             .render("runs", baseDB.run.count())
+            .render("pruner", taskManager.getRunningPruning())
             ;
     }
     
@@ -84,6 +88,9 @@ public class SettingsController extends BaseController {
         @Param("displayGoogleTarget") String displayGoogleTarget,
         @Param("displayGoogleSearch") String displayGoogleSearch,
         @Param("cronTime") String cronTime,
+        @Param("cronSpread") Integer cronSpread,
+        @Param("cronSchedules") String cronSchedules,
+        @Param("cronJitter") Integer cronJitter,
         @Param("dbcUser") String dbcUser,
         @Param("dbcPass") String dbcPass,
         @Param("decaptcherUser") String decaptcherUser,
@@ -91,7 +98,9 @@ public class SettingsController extends BaseController {
         @Param("anticaptchaApiKey") String anticaptchaApiKey,
         @Param("twoCaptchaKey") String twoCaptchaKey,
         @Param("imageTyperzKey") String imageTyperzKey,
-        @Param("pruneRuns") Integer pruneRuns
+        @Param("pruneRuns") Integer pruneRuns,
+        @Param("pruneDays") Integer pruneDays,
+        @Param("pruneDbSize") Integer pruneDbSize
     ){
         FlashScope flash = context.getFlashScope();
         
@@ -114,6 +123,19 @@ public class SettingsController extends BaseController {
 //            config.setCronTime(LocalTime.of(Integer.parseInt(matcher.group(0)), Integer.parseInt(matcher.group(1))));
         }
         
+        config.setCronSpreadMinutes(cronSpread == null || cronSpread < 0 ? 0 : Math.min(cronSpread, 24 * 60));
+        config.setCronJitterMinutes(cronJitter == null || cronJitter < 0 ? 0 : Math.min(cronJitter, 24 * 60));
+        
+        if(!Validator.isEmpty(cronSchedules)){
+            try {
+                CronSchedule.parseList(cronSchedules);
+            } catch(IllegalArgumentException ex){
+                flash.error("admin.settings.cronSchedulesError");
+                return Results.redirect(router.getReverseRoute(SettingsController.class, "settings"));
+            }
+            config.setCronSchedules(cronSchedules.trim());
+        }
+        
         if(!Validator.isEmpty(dbcUser) && !Validator.isEmpty(dbcPass)){
             config.setDbcUser(dbcUser);
             config.setDbcPass(dbcPass);
@@ -142,6 +164,9 @@ public class SettingsController extends BaseController {
             config.setPruneRuns(pruneRuns);
         }
         
+        config.setPruneDays(pruneDays == null || pruneDays < 0 ? 0 : pruneDays);
+        config.setPruneDbSizeMB(pruneDbSize == null || pruneDbSize < 0 ? 0 : pruneDbSize);
+        
         if(displayHome != null && !Config.DEFAULT_DISPLAY_HOME.equals(displayHome) && Config.VALID_DISPLAY_HOME.contains(displayHome)){
             config.setDisplayHome(displayHome);
         }
@@ -174,16 +199,21 @@ public class SettingsController extends BaseController {
     @FilterWith(XSRFFilter.class)
     public Result prune(
         Context context,
-        @Param("pruneRuns") Integer pruneRuns
+        @Param("pruneRuns") Integer pruneRuns,
+        @Param("pruneDays") Integer pruneDays,
+        @Param("pruneDbSize") Integer pruneDbSize
     ){
-        if(pruneRuns == null){
-            pruneRuns = 0;
-        }
-        baseDB.config.updateInt(APP_PRUNE_RUNS, pruneRuns);
+        baseDB.config.updateInt(APP_PRUNE_RUNS, pruneRuns == null ? 0 : pruneRuns);
+        baseDB.config.updateInt(APP_PRUNE_DAYS, pruneDays == null ? 0 : pruneDays);
+        baseDB.config.updateInt(APP_PRUNE_DB_SIZE, pruneDbSize == null ? 0 : pruneDbSize);
         
-        if(pruneRuns > 0){
-            long prunedDays = pruneDB.prune(pruneRuns);
-            context.getFlashScope().success(msg.get("admin.settings.pruneResult", context, Optional.absent(), prunedDays).get());
+        Config config = baseDB.config.getConfig();
+        if(config.getPruneRuns() > 0 || config.getPruneDays() > 0 || config.getPruneDbSizeMB() > 0){
+            if(taskManager.startPruning(config, dbSizeUtils::getDbUsage)){
+                context.getFlashScope().success("admin.settings.pruneStarted");
+            } else {
+                context.getFlashScope().error("admin.settings.pruneRunning");
+            }
         }
         
         return Results.redirect(router.getReverseRoute(SettingsController.class, "settings"));
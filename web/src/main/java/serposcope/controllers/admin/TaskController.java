@@ -89,7 +89,8 @@ public class TaskController extends BaseController {
     public Result startTask(
         Context context,
         @Param("module") Integer moduleId,
-        @Param("update") Boolean update
+        @Param("update") Boolean update,
+        @Param("group") Integer groupId
     ) {
         FlashScope flash = context.getFlashScope();
 //        Module module = Module.getByOrdinal(moduleId);
@@ -105,6 +106,14 @@ public class TaskController extends BaseController {
         
         if(run == null){
             run = new Run(Run.Mode.MANUAL, Group.Module.GOOGLE, LocalDateTime.now());
+            if(groupId != null){
+                Group group = baseDB.group.find(groupId);
+                if(group == null || group.getModule() != Group.Module.GOOGLE){
+                    flash.error("error.invalidGroup");
+                    return Results.redirect(router.getReverseRoute(HomeController.class, "home"));
+                }
+                run.setGroups(Arrays.asList(group.getId()));
+            }
         } else {
             run.setStatus(Run.Status.RUNNING);
             run.setStarted(LocalDateTime.now());            
@@ -114,7 +123,11 @@ public class TaskController extends BaseController {
             flash.error("admin.task.errGoogleAlreadyRunning");
             return Results.redirect(router.getReverseRoute(HomeController.class, "home"));
         }
-        flash.success("admin.task.tasksStarted");
+        if(taskManager.isGoogleQueued(run)){
+            flash.success("admin.task.taskQueued");
+        } else {
+            flash.success("admin.task.tasksStarted");
+        }
         return Results.redirect(router.getReverseRoute(HomeController.class, "home"));
     }
 
@@ -142,7 +155,7 @@ public class TaskController extends BaseController {
 
         switch (run.getModule()) {
             case GOOGLE:
-                if (taskManager.abortGoogleTask(true)) {
+                if (taskManager.abortGoogleTask(run.getId(), true)) {
                     flash.success("admin.task.abortingTask");
                 } else {
                     flash.error("admin.task.failAbort");
@@ -176,6 +189,7 @@ public class TaskController extends BaseController {
                 googleDB.targetSummary.deleteByRun(run.getId());
                 googleDB.rank.deleteByRunId(run.getId());
                 googleDB.serp.deleteByRun(run.getId());
+                googleDB.runQueue.delete(run.getId());
                 baseDB.run.delete(run.getId());
                 flash.put("warning", "admin.task.googleRunDeleted");
                 break;
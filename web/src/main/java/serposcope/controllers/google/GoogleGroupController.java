@@ -13,6 +13,7 @@ import ninja.Result;
 import ninja.Results;
 
 import com.google.inject.Singleton;
+import com.serphacker.serposcope.db.UnitOfWork;
 import com.serphacker.serposcope.db.base.BaseDB;
 import com.serphacker.serposcope.db.base.RunDB;
 import com.serphacker.serposcope.db.google.GoogleDB;
@@ -26,6 +27,7 @@ import com.serphacker.serposcope.models.google.GoogleTargetSummary;
 import com.serphacker.serposcope.scraper.google.GoogleCountryCode;
 import com.serphacker.serposcope.scraper.google.GoogleDevice;
 import static com.serphacker.serposcope.scraper.google.GoogleDevice.SMARTPHONE;
+import com.serphacker.serposcope.task.CronSchedule;
 import com.serphacker.serposcope.task.TaskManager;
 import java.io.OutputStream;
 import java.io.PrintWriter;
@@ -86,7 +88,7 @@ public class GoogleGroupController extends GoogleController {
         Map<Integer, GoogleTargetSummary> summaryByTagetId = new HashMap<>();
         Map<Integer, List<Integer>> scoreHistoryByTagetId = new HashMap<>();
 
-        Run lastRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, null);
+        Run lastRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, null, group.getId());
         if (lastRun != null) {
             List<GoogleTargetSummary> summaries = googleDB.targetSummary.list(lastRun.getId());
             for (GoogleTargetSummary summary : summaries) {
@@ -425,8 +427,11 @@ public class GoogleGroupController extends GoogleController {
             return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
         }
 
-        for (GoogleSearch search : searches) {
-            deleteSearch(group, search);
+        try (UnitOfWork uow = baseDB.uow.begin()) {
+            for (GoogleSearch search : searches) {
+                deleteSearch(group, search);
+            }
+            uow.commit();
         }
 
         return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()) + "#tab-searches");
@@ -489,28 +494,32 @@ public class GoogleGroupController extends GoogleController {
             return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
         }
 
-        List<GoogleTarget> targets = googleDB.target.list(Arrays.asList(group.getId()));
-        for (GoogleTarget target : targets) {
-            googleDB.targetSummary.deleteByTarget(target.getId());
-            googleDB.rank.deleteByTarget(group.getId(), target.getId());
-            googleDB.target.delete(target.getId());
-        }
+        // the group is deleted with all its data or not at all
+        try (UnitOfWork uow = baseDB.uow.begin()) {
+            List<GoogleTarget> targets = googleDB.target.list(Arrays.asList(group.getId()));
+            for (GoogleTarget target : targets) {
+                googleDB.targetSummary.deleteByTarget(target.getId());
+                googleDB.rank.deleteByTarget(group.getId(), target.getId());
+                googleDB.target.delete(target.getId());
+            }
 
-        List<GoogleSearch> searches = googleDB.search.listByGroup(Arrays.asList(group.getId()));
-        for (GoogleSearch search : searches) {
-            deleteSearch(group, search);
-        }
+            List<GoogleSearch> searches = googleDB.search.listByGroup(Arrays.asList(group.getId()));
+            for (GoogleSearch search : searches) {
+                deleteSearch(group, search);
+            }
 
-        baseDB.event.delete(group);
-        baseDB.user.delPerm(group);
-        if (!baseDB.group.delete(group)) {
-            flash.error("admin.google.failedDeleteGroup");
-            return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
-        } else {
-            flash.success("admin.google.groupDeleted");
-            return Results.redirect(router.getReverseRoute(GroupController.class, "groups"));
+            baseDB.event.delete(group);
+            baseDB.user.delPerm(group);
+            // a failed commit already rolled back, closing the unit rolls back the rest
+            if (!baseDB.group.delete(group) || !uow.commit()) {
+                flash.error("admin.google.failedDeleteGroup");
+                return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
+            }
         }
 
+        flash.success("admin.google.groupDeleted");
+        return Results.redirect(router.getReverseRoute(GroupController.class, "groups"));
+
     }
 
     @FilterWith({
@@ -671,6 +680,52 @@ public class GoogleGroupController extends GoogleController {
         return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
     }
 
+    @FilterWith({
+        XSRFFilter.class,
+        AdminFilter.class
+    })
+    public Result priority(Context context, @Param("priority") Integer priority) {
+        FlashScope flash = context.getFlashScope();
+        Group group = context.getAttribute("group", Group.class);
+
+        if (priority == null || priority < Group.MIN_PRIORITY || priority > Group.MAX_PRIORITY) {
+            flash.error("error.invalidPriority");
+            return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
+        }
+
+        group.setPriority(priority);
+        baseDB.group.update(group);
+
+        flash.success("google.group.priorityUpdated");
+        return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
+    }
+
+    @FilterWith({
+        XSRFFilter.class,
+        AdminFilter.class
+    })
+    public Result schedule(Context context, @Param("schedule") String schedule) {
+        FlashScope flash = context.getFlashScope();
+        Group group = context.getAttribute("group", Group.class);
+
+        if (Validator.isEmpty(schedule)) {
+            // back to the global schedules
+            group.setSchedule(null);
+        } else {
+            try {
+                CronSchedule.parseList(schedule);
+            } catch (IllegalArgumentException ex) {
+                flash.error("error.invalidSchedule");
+                return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
+            }
+            group.setSchedule(schedule.trim());
+        }
+        baseDB.group.update(group);
+
+        flash.success("google.group.scheduleUpdated");
+        return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
+    }
+
     public Result jsonTargetSuggest(
         Context context,
         @Param("query") String query
@@ -75,8 +75,8 @@ public class GoogleSearchController extends GoogleController {
             return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
         }
         
-        Run minRun = baseDB.run.findFirst(Module.GOOGLE, STATUSES_DONE, null);
-        Run maxRun = baseDB.run.findLast(Module.GOOGLE, STATUSES_DONE, null);
+        Run minRun = baseDB.run.findFirst(Module.GOOGLE, STATUSES_DONE, null, group.getId());
+        Run maxRun = baseDB.run.findLast(Module.GOOGLE, STATUSES_DONE, null, group.getId());
         if(maxRun == null || minRun == null){
             return Results.ok()
                 .render("search", search);
@@ -99,8 +99,8 @@ public class GoogleSearchController extends GoogleController {
             endDate = maxDay;
         }
         
-        Run firstRun = baseDB.run.findFirst(Module.GOOGLE, STATUSES_DONE, startDate);
-        Run lastRun = baseDB.run.findLast(Module.GOOGLE, STATUSES_DONE, endDate);
+        Run firstRun = baseDB.run.findFirst(Module.GOOGLE, STATUSES_DONE, startDate, group.getId());
+        Run lastRun = baseDB.run.findLast(Module.GOOGLE, STATUSES_DONE, endDate, group.getId());
         
         if(firstRun == null || lastRun == null || firstRun.getDay().isAfter(lastRun.getDay())){
             return Results.ok()
@@ -235,8 +235,8 @@ public class GoogleSearchController extends GoogleController {
             try {endDate = LocalDate.parse(endDateStr);} catch(Exception ex){}
         }        
         
-        Run firstRun = baseDB.run.findFirst(Module.GOOGLE, STATUSES_DONE, startDate);
-        Run lastRun = baseDB.run.findLast(Module.GOOGLE, STATUSES_DONE, endDate);
+        Run firstRun = baseDB.run.findFirst(Module.GOOGLE, STATUSES_DONE, startDate, group.getId());
+        Run lastRun = baseDB.run.findLast(Module.GOOGLE, STATUSES_DONE, endDate, group.getId());
         
         if(url == null || firstRun == null || lastRun == null){
             return Results.badRequest().text();
@@ -279,7 +279,8 @@ public class GoogleSearchController extends GoogleController {
         LocalDate date=null;
         try {date = LocalDate.parse(pdate);}catch(Exception ex){}
         if(date != null){
-            List<Run> runs = baseDB.run.findByDay(Module.GOOGLE, date);
+            Group group = context.getAttribute("group", Group.class);
+            List<Run> runs = baseDB.run.findByDay(Module.GOOGLE, date, group.getId());
             if(!runs.isEmpty()){
                 GoogleSearch search = getSearch(context, searchId);
                 if(search != null){
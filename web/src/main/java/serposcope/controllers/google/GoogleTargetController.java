@@ -161,8 +161,8 @@ public class GoogleTargetController extends GoogleController {
             return Results.redirect(router.getReverseRoute(GoogleGroupController.class, "view", "groupId", group.getId()));
         }
 
-        Run minRun = baseDB.run.findFirst(group.getModule(), RunDB.STATUSES_DONE, null);
-        Run maxRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, null);
+        Run minRun = baseDB.run.findFirst(group.getModule(), RunDB.STATUSES_DONE, null, group.getId());
+        Run maxRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, null, group.getId());
 
         if (maxRun == null || minRun == null || searches.isEmpty()) {
             String fallbackDisplay = "export".equals(display) ? "table" : display;
@@ -197,10 +197,10 @@ public class GoogleTargetController extends GoogleController {
             endDate = maxDay;
         }
 
-        Run firstRun = baseDB.run.findFirst(group.getModule(), RunDB.STATUSES_DONE, startDate);
-        Run lastRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, endDate);
+        Run firstRun = baseDB.run.findFirst(group.getModule(), RunDB.STATUSES_DONE, startDate, group.getId());
+        Run lastRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, endDate, group.getId());
 
-        List<Run> runs = baseDB.run.listDone(firstRun.getId(), lastRun.getId());
+        List<Run> runs = baseDB.run.listDone(firstRun.getId(), lastRun.getId(), group.getId());
 
         startDate = firstRun.getDay();
         endDate = lastRun.getDay();
@@ -242,7 +242,7 @@ public class GoogleTargetController extends GoogleController {
         } catch (Exception ex) {
             return Results.json().renderRaw("[[],[],[]]");
         }
-        Run lastRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, endDate);
+        Run lastRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, endDate, group.getId());
         
         List<TargetVariation> ranksUp = new ArrayList<>();
         List<TargetVariation> ranksDown = new ArrayList<>();
@@ -532,9 +532,9 @@ public class GoogleTargetController extends GoogleController {
             return Results.json().renderRaw("[]");
         }
 
-        final Run firstRun = baseDB.run.findFirst(group.getModule(), RunDB.STATUSES_DONE, startDate);
-        final Run lastRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, endDate);
-        final List<Run> runs = baseDB.run.listDone(firstRun.getId(), lastRun.getId());
+        final Run firstRun = baseDB.run.findFirst(group.getModule(), RunDB.STATUSES_DONE, startDate, group.getId());
+        final Run lastRun = baseDB.run.findLast(group.getModule(), RunDB.STATUSES_DONE, endDate, group.getId());
+        final List<Run> runs = baseDB.run.listDone(firstRun.getId(), lastRun.getId(), group.getId());
 
         return Results.ok()
             .json()
@@ -654,7 +654,8 @@ public class GoogleTargetController extends GoogleController {
                     builder.append("[").append(fullRank.rank)
                         .append(",").append(fullRank.previousRank)
                         .append(",\"").append(StringEscapeUtils.escapeJson(fullRank.url))
-                        .append("\"],");
+                        .append("\",").append(fullRank.carried ? 1 : 0)
+                        .append("],");
                 } else {
                     builder.append("0,");
                 }
@@ -8,6 +8,7 @@
 
 package serposcope.lifecycle;
 
+import com.serphacker.serposcope.db.base.PruneDB;
 import conf.SerposcopeConf;
 import java.io.File;
 import javax.inject.Inject;
@@ -20,10 +21,13 @@ public class DBSizeUtils {
     @Inject
     SerposcopeConf conf;
     
+    @Inject
+    PruneDB pruneDB;
+    
     public long getDbUsage() {
         File file = getDbFile();
         if(file == null){
-            return -1l;
+            return pruneDB == null ? -1l : pruneDB.getDatabaseSize();
         }
         return file.length();
     }
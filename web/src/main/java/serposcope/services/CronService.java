@@ -9,17 +9,22 @@
 package serposcope.services;
 
 import com.serphacker.serposcope.db.base.ConfigDB;
-import com.serphacker.serposcope.db.base.PruneDB;
+import com.serphacker.serposcope.db.base.GroupDB;
+import com.serphacker.serposcope.db.base.PartitionDB;
 import com.serphacker.serposcope.models.base.Config;
 import com.serphacker.serposcope.models.base.Group;
 import com.serphacker.serposcope.models.base.Group.Module;
 import com.serphacker.serposcope.models.base.Run;
+import com.serphacker.serposcope.task.CronScheduler;
 import com.serphacker.serposcope.task.TaskManager;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import ninja.lifecycle.Dispose;
@@ -27,6 +32,7 @@ import ninja.lifecycle.Start;
 import ninja.scheduler.Schedule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import serposcope.lifecycle.DBSizeUtils;
 
 @Singleton
 public class CronService implements Runnable {
@@ -34,6 +40,10 @@ public class CronService implements Runnable {
     private static final Logger LOG = LoggerFactory.getLogger(CronService.class);
     
     LocalTime previousCheck = null;
+    // history pruned once the scheduled runs are done
+    boolean pruneAfterRuns = false;
+    // partitions of the coming month are created once a day
+    LocalDate partitionsPrepared = null;
     ScheduledExecutorService executor;
 
     
@@ -44,12 +54,25 @@ public class CronService implements Runnable {
     ConfigDB configDB;
     
     @Inject
-    PruneDB pruneDB;
+    GroupDB groupDB;
+    
+    @Inject
+    PartitionDB partitionDB;
+    
+    @Inject
+    DBSizeUtils dbSizeUtils;
     
     @Start(order = 90)
     public void startService() {
         LOG.info("startService");
         executor = Executors.newSingleThreadScheduledExecutor();
+        // results spooled by a run interrupted before the stop, applied before the next run can start
+        executor.execute(() -> {
+            int left = manager.replaySpool();
+            if(left > 0){
+                LOG.warn("{} spooled results could not be replayed", left);
+            }
+        });
         executor.scheduleAtFixedRate(this,0, 30, TimeUnit.SECONDS);
     }
 
@@ -61,40 +84,59 @@ public class CronService implements Runnable {
     
     @Override
     public void run() {
-        LocalTime now = LocalTime.now();
-        if(previousCheck != null && now.getMinute() == previousCheck.getMinute()){
+        LocalTime time = LocalTime.now();
+        if(previousCheck != null && time.getMinute() == previousCheck.getMinute()){
             return;
         }
         
-        previousCheck = now;
+        previousCheck = time;
+        LocalDateTime now = LocalDateTime.now().withSecond(0).withNano(0);
         
         Config config = configDB.getConfig();
-        if(config.getCronTime() == null){
-            return;
-        }
+        List<Group> groups = groupDB.list(Module.GOOGLE);
         
-        if(config.getCronTime().getHour() != now.getHour() || config.getCronTime().getMinute() != now.getMinute()){
-            return;
+        // ahead of the runs, the partitions must not be split while a run inserts its ranks
+        if(!now.toLocalDate().equals(partitionsPrepared) && !manager.isGoogleRunning()){
+            partitionDB.prepare(now.toLocalDate());
+            partitionsPrepared = now.toLocalDate();
         }
         
+        // first fire of the new groups is the next one
+        List<Integer> unscheduled = groups.stream()
+            .filter((Group group) -> group.getScheduled() == null)
+            .map(Group::getId)
+            .collect(Collectors.toList());
+        if(!unscheduled.isEmpty()){
+            groupDB.updateScheduled(unscheduled, now);
+        }
         
-        if(manager.startGoogleTask(new Run(Run.Mode.CRON, Module.GOOGLE, LocalDateTime.now()))){
-            LOG.debug("starting google task via cron");
-        } else {
-            LOG.debug("failed to start google task via cron, this task is already running");
-            return;
+        for (CronScheduler.Trigger trigger : new CronScheduler(config).due(groups, now)) {
+            Run run = new Run(Run.Mode.CRON, Module.GOOGLE, LocalDateTime.now());
+            if(trigger.getGroups().size() < groups.size()){
+                run.setGroups(trigger.getGroups());
+            }
+            
+            if(manager.startGoogleTask(run)){
+                LOG.info("starting google task via cron, schedule \"{}\" of {} for groups {}", 
+                    new Object[]{trigger.getSchedule(), trigger.getFire(), run.getGroups() == null ? "all" : run.getGroups()});
+            } else {
+                LOG.debug("failed to start google task via cron, this task is already running");
+            }
+            groupDB.updateScheduled(trigger.getGroups(), trigger.getFire());
+            pruneAfterRuns = true;
         }
         
-        try {
-            manager.joinGoogleTask();
-        }catch(InterruptedException ex){
-            LOG.debug("interrupted while waiting for google task");
+        if(!pruneAfterRuns || manager.isGoogleRunning()){
             return;
         }
+        pruneAfterRuns = false;
         
-        if(config.getPruneRuns() > 0){
-            long pruned = pruneDB.prune(config.getPruneRuns());
-            LOG.info("history pruning : {} runs deleted", pruned);
+        if(config.getPruneRuns() > 0 || config.getPruneDays() > 0 || config.getPruneDbSizeMB() > 0){
+            if(manager.startPruning(config, dbSizeUtils::getDbUsage)){
+                LOG.info("history pruning started");
+            } else {
+                LOG.info("history pruning already running");
+            }
         } else {
             LOG.info("history pruning is disabled");
         }